@@ -0,0 +1,88 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark;
+
+import java.util.Date;
+
+/**
+ * The domain object used by the benchmarks. Mapped under the <code>a</code> alias
+ * (single sub index) and the <code>am</code> alias (hashed into several sub indexes).
+ *
+ * @author kimchy
+ */
+public class A {
+
+    private Long id;
+
+    private String data1;
+
+    private String data2;
+
+    private int value;
+
+    private Date indexTime;
+
+    public static A create(long id) {
+        A a = new A();
+        a.setId(id);
+        a.setData1("data1 value" + (id % 100) + " the quick brown fox jumps over the lazy dog");
+        a.setData2("data2 value" + (id % 1000) + " lorem ipsum dolor sit amet");
+        a.setValue((int) id);
+        a.setIndexTime(new Date());
+        return a;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getData1() {
+        return data1;
+    }
+
+    public void setData1(String data1) {
+        this.data1 = data1;
+    }
+
+    public String getData2() {
+        return data2;
+    }
+
+    public void setData2(String data2) {
+        this.data2 = data2;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public void setValue(int value) {
+        this.value = value;
+    }
+
+    public Date getIndexTime() {
+        return indexTime;
+    }
+
+    public void setIndexTime(Date indexTime) {
+        this.indexTime = indexTime;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.compass.core.Compass;
+import org.compass.core.config.CompassConfiguration;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.util.FileSystemUtils;
+
+/**
+ * Base class for benchmarks running against a {@link Compass} instance built
+ * using the benchmark {@link A} mappings. The index is created under
+ * <code>target/benchmark/index</code> and deleted on tear down.
+ *
+ * @author kimchy
+ */
+public abstract class AbstractCompassBenchmark implements Benchmark {
+
+    public static final String INDEX_LOCATION = "target/benchmark/index";
+
+    private final Map<String, String> params = new LinkedHashMap<String, String>();
+
+    protected Compass compass;
+
+    protected long nextId;
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    protected void addParam(String name, Object value) {
+        params.put(name, String.valueOf(value));
+    }
+
+    public void setUp() throws Exception {
+        CompassConfiguration conf = new CompassConfiguration();
+        conf.setSetting(CompassEnvironment.CONNECTION, INDEX_LOCATION);
+        conf.addResource("org/compass/core/benchmark/A.cpm.xml");
+        configure(conf);
+        compass = conf.buildCompass();
+        compass.getSearchEngineIndexManager().deleteIndex();
+        compass.getSearchEngineIndexManager().verifyIndex();
+    }
+
+    /**
+     * Allows sub classes to further configure Compass before it is built.
+     */
+    protected void configure(CompassConfiguration conf) {
+    }
+
+    public void tearDown() throws Exception {
+        if (compass != null) {
+            // closing first lets asynchronous processors finish pending work before the index is removed
+            compass.close();
+        }
+        FileSystemUtils.deleteRecursively(new File(INDEX_LOCATION));
+    }
+
+    protected A nextA() {
+        return A.create(++nextId);
+    }
+}
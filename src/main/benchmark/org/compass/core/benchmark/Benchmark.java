@@ -0,0 +1,49 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark;
+
+import java.util.Map;
+
+/**
+ * A single benchmark executed by the {@link BenchmarkRunner}. The runner calls
+ * {@link #setUp()} once, {@link #invoke()} repeatedly during the warmup and
+ * measurement iterations, and {@link #tearDown()} once at the end.
+ *
+ * @author kimchy
+ */
+public interface Benchmark {
+
+    /**
+     * The name of the benchmark (without its parameters).
+     */
+    String getName();
+
+    /**
+     * The parameters this benchmark instance runs with, written as part of the
+     * results so runs can be compared.
+     */
+    Map<String, String> getParams();
+
+    void setUp() throws Exception;
+
+    /**
+     * Performs a single benchmarked operation.
+     */
+    void invoke() throws Exception;
+
+    void tearDown() throws Exception;
+}
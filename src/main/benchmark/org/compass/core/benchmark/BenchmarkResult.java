@@ -0,0 +1,116 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The measured result of a single {@link Benchmark}: the throughput of each
+ * measurement iteration and the latency percentiles of all the operations
+ * performed during the measurement iterations.
+ *
+ * @author kimchy
+ */
+public class BenchmarkResult {
+
+    private final String name;
+
+    private final Map<String, String> params;
+
+    private final double[] iterationThroughput;
+
+    private final long[] latencies;
+
+    private final long operations;
+
+    /**
+     * @param iterationThroughput operations per second of each measurement iteration
+     * @param latencies           the latency (in nanoseconds) of the recorded operations
+     * @param latencyCount        the number of recorded latencies in the array
+     * @param operations          the total number of measured operations
+     */
+    public BenchmarkResult(String name, Map<String, String> params, double[] iterationThroughput, long[] latencies,
+                           int latencyCount, long operations) {
+        this.name = name;
+        this.params = params;
+        this.iterationThroughput = iterationThroughput;
+        this.latencies = new long[latencyCount];
+        System.arraycopy(latencies, 0, this.latencies, 0, latencyCount);
+        Arrays.sort(this.latencies);
+        this.operations = operations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public double[] getIterationThroughput() {
+        return iterationThroughput;
+    }
+
+    /**
+     * The mean throughput (operations per second) across measurement iterations.
+     */
+    public double getThroughput() {
+        double sum = 0;
+        for (double t : iterationThroughput) {
+            sum += t;
+        }
+        return sum / iterationThroughput.length;
+    }
+
+    /**
+     * The standard deviation of the throughput across measurement iterations.
+     */
+    public double getThroughputStdDev() {
+        if (iterationThroughput.length < 2) {
+            return 0;
+        }
+        double mean = getThroughput();
+        double sum = 0;
+        for (double t : iterationThroughput) {
+            sum += (t - mean) * (t - mean);
+        }
+        return Math.sqrt(sum / (iterationThroughput.length - 1));
+    }
+
+    /**
+     * Returns the latency (in microseconds) at the given percentile (<code>0</code> to <code>100</code>).
+     */
+    public double getLatencyPercentile(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        index = Math.max(0, Math.min(latencies.length - 1, index));
+        return latencies[index] / 1000.0;
+    }
+
+    public String toString() {
+        return String.format("%-20s %-60s %14.2f ops/s +- %10.2f  p50 %10.2fus  p99 %10.2fus",
+                name, params, getThroughput(), getThroughputStdDev(), getLatencyPercentile(50), getLatencyPercentile(99));
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.compass.core.benchmark.index.SaveBenchmark;
+import org.compass.core.benchmark.marshall.MarshallingBenchmark;
+import org.compass.core.benchmark.search.FindBenchmark;
+import org.compass.core.lucene.LuceneEnvironment;
+
+/**
+ * Runs the Compass benchmarks and writes their results as JSON so they can be
+ * compared across runs and releases.
+ * <p>
+ * Each benchmark is set up once, then runs a number of warmup iterations
+ * (results discarded) followed by a number of measurement iterations, each
+ * invoking the benchmark operation repeatedly for a fixed amount of time. The
+ * throughput of each measurement iteration and the latency of the measured
+ * operations are recorded.
+ * <p>
+ * Supported arguments:
+ * <ul>
+ * <li><code>-wi &lt;count&gt;</code>: number of warmup iterations (defaults to <code>3</code>).</li>
+ * <li><code>-i &lt;count&gt;</code>: number of measurement iterations, at least <code>1</code> (defaults to <code>5</code>).</li>
+ * <li><code>-t &lt;millis&gt;</code>: the time of each iteration, at least <code>1</code> (defaults to <code>1000</code>).</li>
+ * <li><code>-rf &lt;file&gt;</code>: the JSON results file (defaults to <code>target/benchmark/results.json</code>).</li>
+ * <li>Any other argument is a regular expression, only benchmarks whose name matches it will run.</li>
+ * </ul>
+ *
+ * @author kimchy
+ */
+public class BenchmarkRunner {
+
+    private static final int MAX_RECORDED_LATENCIES = 1000000;
+
+    private int warmupIterations = 3;
+
+    private int measurementIterations = 5;
+
+    private long iterationTime = 1000;
+
+    private String resultFile = "target/benchmark/results.json";
+
+    private Pattern filter;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for (int i = 0; i < args.length; i++) {
+            if ("-wi".equals(args[i])) {
+                runner.warmupIterations = Integer.parseInt(args[++i]);
+            } else if ("-i".equals(args[i])) {
+                runner.measurementIterations = Integer.parseInt(args[++i]);
+            } else if ("-t".equals(args[i])) {
+                runner.iterationTime = Long.parseLong(args[++i]);
+            } else if ("-rf".equals(args[i])) {
+                runner.resultFile = args[++i];
+            } else {
+                runner.filter = Pattern.compile(args[i]);
+            }
+        }
+        if (runner.warmupIterations < 0) {
+            throw new IllegalArgumentException("Number of warmup iterations [" + runner.warmupIterations + "] can not be negative");
+        }
+        if (runner.measurementIterations < 1) {
+            throw new IllegalArgumentException("Number of measurement iterations [" + runner.measurementIterations + "] must be at least 1");
+        }
+        if (runner.iterationTime < 1) {
+            throw new IllegalArgumentException("Iteration time [" + runner.iterationTime + "] must be at least 1 millisecond");
+        }
+        runner.run(createBenchmarks());
+    }
+
+    /**
+     * Creates all the benchmarks.
+     */
+    public static List<Benchmark> createBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (boolean compiled : new boolean[]{false, true}) {
+            benchmarks.add(new MarshallingBenchmark(false, compiled));
+            benchmarks.add(new MarshallingBenchmark(true, compiled));
+        }
+        String[] processors = new String[]{
+                LuceneEnvironment.Transaction.Processor.ReadCommitted.NAME,
+                LuceneEnvironment.Transaction.Processor.Lucene.NAME,
+                LuceneEnvironment.Transaction.Processor.Async.NAME,
+                LuceneEnvironment.Transaction.Processor.MT.NAME,
+                LuceneEnvironment.Transaction.Processor.Shared.NAME
+        };
+        for (String processor : processors) {
+            benchmarks.add(new SaveBenchmark(processor, true, 100));
+            benchmarks.add(new SaveBenchmark(processor, false, 100));
+        }
+        String[] localCaches = new String[]{null, "ram://"};
+        for (String localCache : localCaches) {
+            benchmarks.add(new FindBenchmark(false, localCache, 10000));
+            benchmarks.add(new FindBenchmark(true, localCache, 10000));
+        }
+        return benchmarks;
+    }
+
+    public List<BenchmarkResult> run(List<Benchmark> benchmarks) throws Exception {
+        List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+        for (Benchmark benchmark : benchmarks) {
+            if (filter != null && !filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+            System.out.println("Running [" + benchmark.getName() + "] with " + benchmark.getParams());
+            BenchmarkResult result = run(benchmark);
+            System.out.println(result);
+            results.add(result);
+        }
+        writeResults(results);
+        return results;
+    }
+
+    public BenchmarkResult run(Benchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                runWarmupIteration(benchmark);
+            }
+            double[] throughput = new double[measurementIterations];
+            long[] latencies = new long[1024];
+            int latencyCount = 0;
+            long operations = 0;
+            for (int i = 0; i < measurementIterations; i++) {
+                long start = System.nanoTime();
+                long iterationOperations = 0;
+                long end = start + iterationTime * 1000000;
+                long now = start;
+                while (now < end) {
+                    benchmark.invoke();
+                    long after = System.nanoTime();
+                    if (latencyCount < MAX_RECORDED_LATENCIES) {
+                        if (latencyCount == latencies.length) {
+                            long[] newLatencies = new long[latencies.length * 2];
+                            System.arraycopy(latencies, 0, newLatencies, 0, latencies.length);
+                            latencies = newLatencies;
+                        }
+                        latencies[latencyCount++] = after - now;
+                    }
+                    now = after;
+                    iterationOperations++;
+                }
+                throughput[i] = iterationOperations * 1000000000.0 / (now - start);
+                operations += iterationOperations;
+            }
+            return new BenchmarkResult(benchmark.getName(), benchmark.getParams(), throughput, latencies, latencyCount,
+                    operations);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private void runWarmupIteration(Benchmark benchmark) throws Exception {
+        long end = System.nanoTime() + iterationTime * 1000000;
+        while (System.nanoTime() < end) {
+            benchmark.invoke();
+        }
+    }
+
+    private void writeResults(List<BenchmarkResult> results) throws IOException {
+        File file = new File(resultFile);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("{\n");
+            writer.write("  \"timestamp\": " + quote(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date())) + ",\n");
+            writer.write("  \"java.version\": " + quote(System.getProperty("java.version")) + ",\n");
+            writer.write("  \"warmupIterations\": " + warmupIterations + ",\n");
+            writer.write("  \"measurementIterations\": " + measurementIterations + ",\n");
+            writer.write("  \"iterationTimeMillis\": " + iterationTime + ",\n");
+            writer.write("  \"benchmarks\": [");
+            for (int i = 0; i < results.size(); i++) {
+                BenchmarkResult result = results.get(i);
+                writer.write(i == 0 ? "\n" : ",\n");
+                writer.write("    {\n");
+                writer.write("      \"name\": " + quote(result.getName()) + ",\n");
+                writer.write("      \"params\": {");
+                int paramIndex = 0;
+                for (Map.Entry<String, String> param : result.getParams().entrySet()) {
+                    writer.write((paramIndex++ == 0 ? "" : ", ") + quote(param.getKey()) + ": " + quote(param.getValue()));
+                }
+                writer.write("},\n");
+                writer.write("      \"operations\": " + result.getOperations() + ",\n");
+                writer.write("      \"throughput\": {\"unit\": \"ops/s\", \"score\": " + format(result.getThroughput())
+                        + ", \"stdDev\": " + format(result.getThroughputStdDev()) + ", \"iterations\": [");
+                double[] iterationThroughput = result.getIterationThroughput();
+                for (int j = 0; j < iterationThroughput.length; j++) {
+                    writer.write((j == 0 ? "" : ", ") + format(iterationThroughput[j]));
+                }
+                writer.write("]},\n");
+                writer.write("      \"latency\": {\"unit\": \"us\", \"p50\": " + format(result.getLatencyPercentile(50))
+                        + ", \"p90\": " + format(result.getLatencyPercentile(90))
+                        + ", \"p99\": " + format(result.getLatencyPercentile(99))
+                        + ", \"max\": " + format(result.getLatencyPercentile(100)) + "}\n");
+                writer.write("    }");
+            }
+            writer.write("\n  ]\n}\n");
+        } finally {
+            writer.close();
+        }
+        System.out.println("Wrote results of [" + results.size() + "] benchmarks to [" + file.getAbsolutePath() + "]");
+    }
+
+    /**
+     * Formats a number for the JSON results, JSON has no representation for
+     * <code>NaN</code> or infinite values so they are written as <code>null</code>.
+     */
+    private static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+}
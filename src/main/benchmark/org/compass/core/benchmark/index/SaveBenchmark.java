@@ -0,0 +1,79 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark.index;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.benchmark.AbstractCompassBenchmark;
+import org.compass.core.config.CompassConfiguration;
+import org.compass.core.lucene.LuceneEnvironment;
+
+/**
+ * Benchmarks indexing throughput of a given transaction processor. Each
+ * operation is a transaction that creates (or saves, overriding existing
+ * objects) a batch of objects.
+ *
+ * @author kimchy
+ */
+public class SaveBenchmark extends AbstractCompassBenchmark {
+
+    private final String processor;
+
+    private final boolean create;
+
+    private final int batchSize;
+
+    public SaveBenchmark(String processor, boolean create, int batchSize) {
+        this.processor = processor;
+        this.create = create;
+        this.batchSize = batchSize;
+        addParam("processor", processor);
+        addParam("operation", create ? "create" : "save");
+        addParam("batchSize", batchSize);
+    }
+
+    public String getName() {
+        return "index." + (create ? "create" : "save");
+    }
+
+    protected void configure(CompassConfiguration conf) {
+        conf.setSetting(LuceneEnvironment.Transaction.Processor.TYPE, processor);
+    }
+
+    public void invoke() throws Exception {
+        CompassSession session = compass.openSession();
+        CompassTransaction tr = session.beginTransaction();
+        try {
+            if (create) {
+                for (int i = 0; i < batchSize; i++) {
+                    session.create("a", nextA());
+                }
+            } else {
+                // keep saving over the same set of ids, so each save is an update
+                if (nextId >= batchSize * 10) {
+                    nextId = 0;
+                }
+                for (int i = 0; i < batchSize; i++) {
+                    session.save("a", nextA());
+                }
+            }
+            tr.commit();
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark.marshall;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.benchmark.A;
+import org.compass.core.benchmark.AbstractCompassBenchmark;
+import org.compass.core.config.CompassConfiguration;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.marshall.MarshallingStrategy;
+import org.compass.core.spi.InternalCompassSession;
+
+/**
+ * Benchmarks OSEM marshalling of a single object into a {@link Resource} (and
+ * back) using the session {@link MarshallingStrategy}, which goes through the
+ * <code>DefaultMarshallingStrategy</code> and <code>ClassMappingConverter</code>,
+ * with or without a compiled class mapping marshaller. No index operations are performed.
+ *
+ * @author kimchy
+ */
+public class MarshallingBenchmark extends AbstractCompassBenchmark {
+
+    private final boolean unmarshall;
+
+    private final boolean compiled;
+
+    private CompassSession session;
+
+    private CompassTransaction tr;
+
+    private MarshallingStrategy marshallingStrategy;
+
+    private A a;
+
+    private Resource resource;
+
+    public MarshallingBenchmark(boolean unmarshall, boolean compiled) {
+        this.unmarshall = unmarshall;
+        this.compiled = compiled;
+        addParam("operation", unmarshall ? "unmarshall" : "marshall");
+        addParam("compiled", compiled);
+    }
+
+    public String getName() {
+        return "osem.marshalling";
+    }
+
+    protected void configure(CompassConfiguration conf) {
+        conf.setSetting(CompassEnvironment.Osem.COMPILE_MARSHALLERS, String.valueOf(compiled));
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        session = compass.openSession();
+        tr = session.beginTransaction();
+        marshallingStrategy = ((InternalCompassSession) session).getMarshallingStrategy();
+        a = nextA();
+        resource = marshallingStrategy.marshall("a", a);
+    }
+
+    public void invoke() throws Exception {
+        if (unmarshall) {
+            marshallingStrategy.unmarshall(resource);
+        } else {
+            marshallingStrategy.marshall("a", a);
+        }
+    }
+
+    public void tearDown() throws Exception {
+        tr.commit();
+        session.close();
+        super.tearDown();
+    }
+}
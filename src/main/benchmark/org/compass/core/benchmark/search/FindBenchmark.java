@@ -0,0 +1,99 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.benchmark.search;
+
+import org.compass.core.CompassHits;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.benchmark.AbstractCompassBenchmark;
+import org.compass.core.config.CompassConfiguration;
+import org.compass.core.lucene.LuceneEnvironment;
+
+/**
+ * Benchmarks <code>find</code> latency against an index of a fixed number of
+ * objects, either stored in a single sub index (the <code>a</code> alias) or
+ * hashed into several sub indexes (the <code>am</code> alias), optionally with
+ * a local directory cache (for example <code>ram://</code>) in front of the
+ * index. Each operation opens a session, runs a query, loads the first page of
+ * hits and closes the session.
+ *
+ * @author kimchy
+ */
+public class FindBenchmark extends AbstractCompassBenchmark {
+
+    private final boolean multipleSubIndexes;
+
+    private final String localCache;
+
+    private final int numberOfObjects;
+
+    private final int pageSize = 10;
+
+    private int queryCounter;
+
+    public FindBenchmark(boolean multipleSubIndexes, String localCache, int numberOfObjects) {
+        this.multipleSubIndexes = multipleSubIndexes;
+        this.localCache = localCache;
+        this.numberOfObjects = numberOfObjects;
+        addParam("subIndexes", multipleSubIndexes ? "multiple" : "single");
+        addParam("localCache", localCache == null ? "none" : localCache);
+        addParam("objects", numberOfObjects);
+    }
+
+    public String getName() {
+        return "search.find";
+    }
+
+    protected void configure(CompassConfiguration conf) {
+        if (localCache != null) {
+            conf.setSetting(LuceneEnvironment.LocalCache.PREFIX + "." + LuceneEnvironment.LocalCache.DEFAULT_NAME + "."
+                    + LuceneEnvironment.LocalCache.CONNECTION, localCache);
+        }
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        CompassSession session = compass.openSession();
+        CompassTransaction tr = session.beginTransaction();
+        for (int i = 0; i < numberOfObjects; i++) {
+            session.create(getAlias(), nextA());
+        }
+        tr.commit();
+        session.close();
+        compass.getSearchEngineOptimizer().optimize();
+    }
+
+    public void invoke() throws Exception {
+        CompassSession session = compass.openSession();
+        CompassTransaction tr = session.beginTransaction();
+        try {
+            CompassHits hits = session.queryBuilder().queryString("mdata1:value" + (queryCounter++ % 100)).toQuery()
+                    .setAliases(getAlias()).hits();
+            int length = Math.min(pageSize, hits.length());
+            for (int i = 0; i < length; i++) {
+                hits.data(i);
+            }
+            tr.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    private String getAlias() {
+        return multipleSubIndexes ? "am" : "a";
+    }
+}
@@ -17,6 +17,9 @@
 package org.apache.lucene.index;
 
 import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IndexInput;
@@ -150,6 +153,65 @@ public abstract class LuceneUtils {
         return true;
     }
 
+    /**
+     * Returns the names of the files referenced by the segments of the directory (not including the segments
+     * file itself). Returns <code>null</code> if the directory has no index.
+     */
+    public static Set<String> listSegmentsFiles(final Directory directory) throws IOException {
+        if (!IndexReader.indexExists(directory)) {
+            return null;
+        }
+        final SegmentInfos segmentInfos = new SegmentInfos();
+        segmentInfos.read(directory);
+        Set<String> fileNames = new LinkedHashSet<String>();
+        for (int i = 0; i < segmentInfos.size(); i++) {
+            fileNames.addAll(segmentInfos.info(i).files());
+        }
+        return fileNames;
+    }
+
+    /**
+     * Reads the latest segments of the src directory and writes a new segments file referencing them into
+     * the dest directory. Assumes that the segments files were already copied (or linked) into the dest directory.
+     */
+    public static void commitSegments(final Directory src, final Directory dest) throws IOException {
+        final SegmentInfos segmentInfos = new SegmentInfos();
+        segmentInfos.read(src);
+        segmentInfos.commit(dest);
+    }
+
+    /**
+     * Collects the segment readers the given reader is composed of into the provided map, keyed by the segment
+     * name and its max doc. Multi readers (such as the one used to search a single sub index) are traversed.
+     *
+     * <p>Returns <code>false</code> if the reader (or one of its sub readers) is not segment based, in which case
+     * the map content should not be used.
+     */
+    public static boolean collectSegmentReaders(IndexReader reader, Map<String, IndexReader> segmentReaders) {
+        if (reader instanceof SegmentReader) {
+            SegmentReader segmentReader = (SegmentReader) reader;
+            segmentReaders.put(segmentReader.getSegmentName() + "/" + segmentReader.maxDoc(), segmentReader);
+            return true;
+        }
+        if (reader instanceof MultiSegmentReader) {
+            for (SegmentReader segmentReader : ((MultiSegmentReader) reader).getSubReaders()) {
+                if (!collectSegmentReaders(segmentReader, segmentReaders)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (reader instanceof MultiReader) {
+            for (IndexReader subReader : ((MultiReader) reader).subReaders) {
+                if (!collectSegmentReaders(subReader, segmentReaders)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Clears all the locks within the array, ignoring any exceptions.
      */
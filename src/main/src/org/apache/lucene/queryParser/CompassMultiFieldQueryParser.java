@@ -28,7 +28,6 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.ConstantScoreRangeQuery;
 import org.apache.lucene.search.MultiPhraseQuery;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
@@ -168,7 +167,7 @@ public class CompassMultiFieldQueryParser extends MultiFieldQueryParser {
             }
         }
 
-        return QueryParserUtils.andAliasQueryIfNeeded(new ConstantScoreRangeQuery(lookup.getPath(), part1, part2, inclusive, inclusive), lookup, addAliasQueryWithDotPath, searchEngineFactory);
+        return QueryParserUtils.andAliasQueryIfNeeded(QueryParserUtils.createRangeQuery(lookup, part1, part2, inclusive), lookup, addAliasQueryWithDotPath, searchEngineFactory);
     }
 
     protected Query getPrefixQuery(String field, String termStr) throws ParseException {
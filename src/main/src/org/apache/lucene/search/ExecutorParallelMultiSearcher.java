@@ -0,0 +1,214 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.executor.ExecutorManager;
+import org.compass.core.transaction.context.TransactionContext;
+import org.compass.core.transaction.context.TransactionalCallable;
+
+/**
+ * A multi searcher that searches each of its searchables in parallel using Compass
+ * {@link org.compass.core.executor.ExecutorManager} (instead of spawning a thread per
+ * searchable like Lucene {@link org.apache.lucene.search.ParallelMultiSearcher}), and merges
+ * the top docs of each one using a bounded priority queue.
+ *
+ * <p>A timeout can be set for each top docs search. Searchables that did not return within the timeout
+ * are cancelled and partial results (from the searchables that did return) are returned. Note, running
+ * searches are not interrupted since interrupting a thread reading from an NIO channel closes it.
+ *
+ * @author kimchy
+ */
+// LUCENE MONITOR
+public class ExecutorParallelMultiSearcher extends MultiSearcher {
+
+    private static final Log log = LogFactory.getLog(ExecutorParallelMultiSearcher.class);
+
+    private final ExecutorManager executorManager;
+
+    private final TransactionContext transactionContext;
+
+    private final long timeout;
+
+    /**
+     * @param searchables        The searchables to search in parallel
+     * @param executorManager    The executor manager used to search each searchable
+     * @param transactionContext The transaction context each search is executed within
+     * @param timeout            The timeout (in milliseconds) to wait for results, <code>-1</code> to wait forever
+     */
+    public ExecutorParallelMultiSearcher(Searchable[] searchables, ExecutorManager executorManager,
+                                         TransactionContext transactionContext, long timeout) throws IOException {
+        super(searchables);
+        this.executorManager = executorManager;
+        this.transactionContext = transactionContext;
+        this.timeout = timeout;
+    }
+
+    public TopDocs search(final Weight weight, final Filter filter, final int nDocs) throws IOException {
+        Searchable[] searchables = getSearchables();
+        int[] starts = getStarts();
+        List<Future<TopDocs>> futures = new ArrayList<Future<TopDocs>>(searchables.length);
+        for (final Searchable searchable : searchables) {
+            futures.add(submit(new Callable<TopDocs>() {
+                public TopDocs call() throws Exception {
+                    return searchable.search(weight, filter, nDocs);
+                }
+            }));
+        }
+
+        HitQueue hq = new HitQueue(nDocs);
+        int totalHits = 0;
+        float maxScore = Float.NEGATIVE_INFINITY;
+        long deadline = System.currentTimeMillis() + timeout;
+        for (int i = 0; i < searchables.length; i++) {
+            TopDocs docs = waitFor(futures, i, deadline, weight);
+            if (docs == null) {
+                continue;
+            }
+            totalHits += docs.totalHits;
+            maxScore = Math.max(maxScore, docs.getMaxScore());
+            ScoreDoc[] scoreDocs = docs.scoreDocs;
+            for (ScoreDoc scoreDoc : scoreDocs) {
+                scoreDoc.doc += starts[i];
+                if (!hq.insert(scoreDoc)) {
+                    break;
+                }
+            }
+        }
+
+        ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
+        for (int i = hq.size() - 1; i >= 0; i--) {
+            scoreDocs[i] = (ScoreDoc) hq.pop();
+        }
+        return new TopDocs(totalHits, scoreDocs, maxScore);
+    }
+
+    public TopFieldDocs search(final Weight weight, final Filter filter, final int n, final Sort sort) throws IOException {
+        Searchable[] searchables = getSearchables();
+        int[] starts = getStarts();
+        List<Future<TopFieldDocs>> futures = new ArrayList<Future<TopFieldDocs>>(searchables.length);
+        for (final Searchable searchable : searchables) {
+            futures.add(submit(new Callable<TopFieldDocs>() {
+                public TopFieldDocs call() throws Exception {
+                    return searchable.search(weight, filter, n, sort);
+                }
+            }));
+        }
+
+        FieldDocSortedHitQueue hq = null;
+        int totalHits = 0;
+        float maxScore = Float.NEGATIVE_INFINITY;
+        long deadline = System.currentTimeMillis() + timeout;
+        for (int i = 0; i < searchables.length; i++) {
+            TopFieldDocs docs = waitFor(futures, i, deadline, weight);
+            if (docs == null) {
+                continue;
+            }
+            // if one of the sort fields is FIELD_DOC, fix its values so it will break ties by the global doc id
+            for (int j = 0; j < docs.fields.length; j++) {
+                if (docs.fields[j].getType() == SortField.DOC) {
+                    for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                        FieldDoc fd = (FieldDoc) scoreDoc;
+                        fd.fields[j] = new Integer(((Integer) fd.fields[j]).intValue() + starts[i]);
+                    }
+                    break;
+                }
+            }
+            if (hq == null) {
+                hq = new FieldDocSortedHitQueue(docs.fields, n);
+            }
+            totalHits += docs.totalHits;
+            maxScore = Math.max(maxScore, docs.getMaxScore());
+            for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                scoreDoc.doc += starts[i];
+                if (!hq.insert(scoreDoc)) {
+                    break;
+                }
+            }
+        }
+
+        if (hq == null) {
+            // all the searchables timed out
+            return new TopFieldDocs(0, new ScoreDoc[0], sort.getSort(), maxScore);
+        }
+        ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
+        for (int i = hq.size() - 1; i >= 0; i--) {
+            scoreDocs[i] = (ScoreDoc) hq.pop();
+        }
+        return new TopFieldDocs(totalHits, scoreDocs, hq.getFields(), maxScore);
+    }
+
+    private <T> Future<T> submit(Callable<T> callable) {
+        return executorManager.submit(new TransactionalCallable<T>(transactionContext, callable));
+    }
+
+    /**
+     * Waits for the search result of the searchable at the given index. Returns <code>null</code>
+     * if the timeout expired (cancelling the searchable search).
+     */
+    private <T> T waitFor(List<? extends Future<T>> futures, int index, long deadline, Weight weight) throws IOException {
+        Future<T> future = futures.get(index);
+        try {
+            if (timeout < 0) {
+                return future.get();
+            }
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            if (log.isDebugEnabled()) {
+                log.debug("Searchable [" + index + "] timed out after [" + timeout + "ms] for query [" + weight.getQuery() + "], returning partial results");
+            }
+            return null;
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for searchable [" + index + "]");
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            // unwrap the transactional callable exception
+            if (cause instanceof RuntimeException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            IOException ioException = new IOException("Failed to search searchable [" + index + "]");
+            ioException.initCause(cause);
+            throw ioException;
+        }
+    }
+
+    private void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+}
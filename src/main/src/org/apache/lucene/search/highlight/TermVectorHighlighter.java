@@ -0,0 +1,371 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.search.highlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.index.TermPositionVector;
+import org.apache.lucene.index.TermVectorOffsetInfo;
+
+/**
+ * A highlighter that locates the query terms using a term vector stored with positions and offsets, and
+ * does not need to re-analyze the text.
+ *
+ * <p>Fragments are fixed size windows around the located terms and are scored by term density: the weight
+ * of each distinct query term in the window, plus half of the weight for each repeated occurrence. The best
+ * non overlapping fragments are returned in score order, snapped to whitespace boundaries.
+ *
+ * <p>Multi valued fields are supported using {@link #valueOffsets(TermPositionVector, String[])}, which locates
+ * the offset each value starts at within the term vector.
+ *
+ * @author kimchy
+ */
+public class TermVectorHighlighter {
+
+    /**
+     * A query term located in the text.
+     */
+    public static class Hit {
+
+        private final String term;
+
+        private final int startOffset;
+
+        private final int endOffset;
+
+        private final float weight;
+
+        public Hit(String term, int startOffset, int endOffset, float weight) {
+            this.term = term;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.weight = weight;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getStartOffset() {
+            return startOffset;
+        }
+
+        public int getEndOffset() {
+            return endOffset;
+        }
+
+        public float getWeight() {
+            return weight;
+        }
+    }
+
+    private static final Comparator<Hit> HIT_OFFSET_COMPARATOR = new Comparator<Hit>() {
+        public int compare(Hit o1, Hit o2) {
+            if (o1.startOffset != o2.startOffset) {
+                return o1.startOffset - o2.startOffset;
+            }
+            return o1.endOffset - o2.endOffset;
+        }
+    };
+
+    private static class Fragment {
+
+        int firstHit;
+
+        int lastHit;
+
+        float score;
+
+        int start;
+
+        int end;
+    }
+
+    private final Formatter formatter;
+
+    private final Encoder encoder;
+
+    private final Map<String, Float> termWeights = new HashMap<String, Float>();
+
+    private final int fragmentSize;
+
+    public TermVectorHighlighter(Formatter formatter, Encoder encoder, WeightedTerm[] weightedTerms, int fragmentSize) {
+        this.formatter = formatter;
+        this.encoder = encoder;
+        this.fragmentSize = fragmentSize;
+        for (WeightedTerm weightedTerm : weightedTerms) {
+            Float existing = termWeights.get(weightedTerm.getTerm());
+            if (existing == null || existing < weightedTerm.getWeight()) {
+                termWeights.put(weightedTerm.getTerm(), weightedTerm.getWeight());
+            }
+        }
+    }
+
+    /**
+     * Returns the query terms located in the term vector, sorted by their start offset. Returns
+     * <code>null</code> if the term vector was not stored with offsets.
+     */
+    public Hit[] getHits(TermPositionVector termVector) {
+        List<Hit> hits = new ArrayList<Hit>();
+        for (Map.Entry<String, Float> entry : termWeights.entrySet()) {
+            int index = termVector.indexOf(entry.getKey());
+            if (index < 0) {
+                continue;
+            }
+            TermVectorOffsetInfo[] offsets = termVector.getOffsets(index);
+            if (offsets == null) {
+                return null;
+            }
+            for (TermVectorOffsetInfo offset : offsets) {
+                hits.add(new Hit(entry.getKey(), offset.getStartOffset(), offset.getEndOffset(), entry.getValue()));
+            }
+        }
+        Hit[] result = hits.toArray(new Hit[hits.size()]);
+        Arrays.sort(result, HIT_OFFSET_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Returns the best fragments (up to <code>maxNumFragments</code>) of the given text, which starts at
+     * <code>baseOffset</code> within the term vector the hits were located in. Returns an empty array if
+     * no query term is located within the text.
+     */
+    public String[] getBestFragments(String text, Hit[] hits, int baseOffset, int maxNumFragments) {
+        List<Hit> textHits = new ArrayList<Hit>();
+        int lastEnd = -1;
+        for (Hit hit : hits) {
+            int start = hit.startOffset - baseOffset;
+            int end = hit.endOffset - baseOffset;
+            // skip hits outside of the text, and hits overlapping a previous one (for example, synonyms)
+            if (start < 0 || end > text.length() || start < lastEnd) {
+                continue;
+            }
+            textHits.add(new Hit(hit.term, start, end, hit.weight));
+            lastEnd = end;
+        }
+        if (textHits.isEmpty()) {
+            return new String[0];
+        }
+
+        List<Fragment> candidates = new ArrayList<Fragment>(textHits.size());
+        for (int i = 0; i < textHits.size(); i++) {
+            Fragment fragment = new Fragment();
+            fragment.firstHit = i;
+            fragment.lastHit = i;
+            while (fragment.lastHit + 1 < textHits.size()
+                    && textHits.get(fragment.lastHit + 1).endOffset - textHits.get(i).startOffset <= fragmentSize) {
+                fragment.lastHit++;
+            }
+            Set<String> distinctTerms = new HashSet<String>();
+            for (int j = fragment.firstHit; j <= fragment.lastHit; j++) {
+                Hit hit = textHits.get(j);
+                fragment.score += distinctTerms.add(hit.term) ? hit.weight : hit.weight / 2;
+            }
+            candidates.add(fragment);
+        }
+        // best score first, earlier fragment first on equal scores
+        Collections.sort(candidates, new Comparator<Fragment>() {
+            public int compare(Fragment o1, Fragment o2) {
+                if (o1.score != o2.score) {
+                    return o1.score > o2.score ? -1 : 1;
+                }
+                return o1.firstHit - o2.firstHit;
+            }
+        });
+
+        List<Fragment> selected = new ArrayList<Fragment>(maxNumFragments);
+        for (Fragment candidate : candidates) {
+            if (selected.size() == maxNumFragments) {
+                break;
+            }
+            boolean overlaps = false;
+            for (Fragment fragment : selected) {
+                if (candidate.firstHit <= fragment.lastHit && candidate.lastHit >= fragment.firstHit) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) {
+                selected.add(candidate);
+            }
+        }
+
+        // compute the text boundaries, making sure selected fragments do not overlap in the text
+        Fragment[] byPosition = selected.toArray(new Fragment[selected.size()]);
+        Arrays.sort(byPosition, new Comparator<Fragment>() {
+            public int compare(Fragment o1, Fragment o2) {
+                return o1.firstHit - o2.firstHit;
+            }
+        });
+        int minStart = 0;
+        for (int i = 0; i < byPosition.length; i++) {
+            int maxEnd = i + 1 < byPosition.length ? textHits.get(byPosition[i + 1].firstHit).startOffset : text.length();
+            computeBoundaries(text, byPosition[i], textHits, minStart, maxEnd);
+            minStart = byPosition[i].end;
+        }
+
+        String[] result = new String[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = render(text, selected.get(i), textHits);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offset each of the values of a multi valued field starts at within the term vector, or
+     * <code>null</code> if it can not be determined.
+     *
+     * <p>Each value starts one character after the end offset of the last token of the previous value (values
+     * without tokens do not move the offset). The tokens are traversed in position order, and a token is assigned
+     * to a following value if it does not fit within the current one, or if its text matches a following value
+     * (and not the current one) at the corresponding offset.
+     */
+    public static int[] valueOffsets(TermPositionVector termVector, String[] values) {
+        int[] valueOffsets = new int[values.length];
+        if (values.length == 0) {
+            return valueOffsets;
+        }
+        String[] terms = termVector.getTerms();
+        List<Hit> tokens = new ArrayList<Hit>();
+        final Map<Hit, Integer> positions = new HashMap<Hit, Integer>();
+        for (int i = 0; i < terms.length; i++) {
+            TermVectorOffsetInfo[] offsets = termVector.getOffsets(i);
+            int[] termPositions = termVector.getTermPositions(i);
+            if (offsets == null || termPositions == null || offsets.length != termPositions.length) {
+                return null;
+            }
+            for (int j = 0; j < offsets.length; j++) {
+                Hit token = new Hit(terms[i], offsets[j].getStartOffset(), offsets[j].getEndOffset(), 0);
+                tokens.add(token);
+                positions.put(token, termPositions[j]);
+            }
+        }
+        Collections.sort(tokens, new Comparator<Hit>() {
+            public int compare(Hit o1, Hit o2) {
+                int result = positions.get(o1) - positions.get(o2);
+                if (result != 0) {
+                    return result;
+                }
+                return HIT_OFFSET_COMPARATOR.compare(o1, o2);
+            }
+        });
+
+        int value = 0;
+        int lastEnd = -1;
+        for (Hit token : tokens) {
+            int start = token.startOffset - valueOffsets[value];
+            int end = token.endOffset - valueOffsets[value];
+            boolean fits = start >= 0 && end <= values[value].length();
+            if (fits && matches(values[value], start, end, token.term)) {
+                lastEnd = Math.max(lastEnd, end);
+                continue;
+            }
+            // the offset the next value starts at, values without tokens do not move it
+            int nextOffset = valueOffsets[value] + (lastEnd >= 0 ? lastEnd + 1 : 0);
+            int nextValue = -1;
+            for (int i = value + 1; i < values.length; i++) {
+                if (matches(values[i], token.startOffset - nextOffset, token.endOffset - nextOffset, token.term)) {
+                    nextValue = i;
+                    break;
+                }
+            }
+            if (nextValue == -1) {
+                if (fits) {
+                    // the term text does not match the value text (for example, it was stemmed)
+                    lastEnd = Math.max(lastEnd, end);
+                    continue;
+                }
+                // move to the first following value the token fits in
+                for (int i = value + 1; i < values.length; i++) {
+                    if (token.startOffset >= nextOffset && token.endOffset - nextOffset <= values[i].length()) {
+                        nextValue = i;
+                        break;
+                    }
+                }
+                if (nextValue == -1) {
+                    return null;
+                }
+            }
+            for (int i = value + 1; i <= nextValue; i++) {
+                valueOffsets[i] = nextOffset;
+            }
+            value = nextValue;
+            lastEnd = token.endOffset - nextOffset;
+        }
+        for (int i = value + 1; i < values.length; i++) {
+            valueOffsets[i] = valueOffsets[i - 1] + (lastEnd >= 0 ? lastEnd + 1 : 0);
+            lastEnd = -1;
+        }
+        return valueOffsets;
+    }
+
+    private static boolean matches(String value, int start, int end, String term) {
+        return start >= 0 && end <= value.length() && value.substring(start, end).equalsIgnoreCase(term);
+    }
+
+    private void computeBoundaries(String text, Fragment fragment, List<Hit> hits, int minStart, int maxEnd) {
+        int spanStart = hits.get(fragment.firstHit).startOffset;
+        int spanEnd = hits.get(fragment.lastHit).endOffset;
+        int pad = Math.max(0, fragmentSize - (spanEnd - spanStart)) / 2;
+        int start = Math.max(minStart, spanStart - pad);
+        int end = Math.min(maxEnd, start + Math.max(fragmentSize, spanEnd - spanStart));
+        if (end - start < fragmentSize) {
+            start = Math.max(minStart, Math.min(spanStart, end - fragmentSize));
+        }
+        // snap to whitespace boundaries without cutting the located terms
+        if (start > 0 && !Character.isWhitespace(text.charAt(start - 1))) {
+            int index = start;
+            while (index < spanStart && !Character.isWhitespace(text.charAt(index - 1))) {
+                index++;
+            }
+            start = index;
+        }
+        if (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+            int index = end;
+            while (index > spanEnd && !Character.isWhitespace(text.charAt(index))) {
+                index--;
+            }
+            end = index;
+        }
+        fragment.start = start;
+        fragment.end = end;
+    }
+
+    private String render(String text, Fragment fragment, List<Hit> hits) {
+        StringBuilder sb = new StringBuilder();
+        int current = fragment.start;
+        for (int i = fragment.firstHit; i <= fragment.lastHit; i++) {
+            Hit hit = hits.get(i);
+            sb.append(encoder.encodeText(text.substring(current, hit.startOffset)));
+            TokenGroup tokenGroup = new TokenGroup();
+            tokenGroup.addToken(new Token(hit.term, hit.startOffset, hit.endOffset), hit.weight);
+            sb.append(formatter.highlightTerm(encoder.encodeText(text.substring(hit.startOffset, hit.endOffset)), tokenGroup));
+            current = hit.endOffset;
+        }
+        sb.append(encoder.encodeText(text.substring(current, fragment.end)));
+        return sb.toString();
+    }
+}
@@ -18,13 +18,19 @@ package org.apache.lucene.search.spell;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Hits;
@@ -66,6 +72,9 @@ import org.apache.lucene.store.Directory;
 // 4. In indexDictioanry, if the searcher is null, don't reopen it
 // 5. Added a constructor that won't open an index searcher ("indexing" spell checker)
 // 6. Added indexDictionary that accepts a dictionary and IndexWriter so we can configure it
+// 7. Added a constructor that accepts in memory symmetric delete indexes, used instead of the n-gram index for suggestions
+// 8. Added indexWords and removeWords to incrementally update the n-gram index
+// 9. exist ignores deleted words
 
 // LUCENE MONITOR
 public class CompassSpellChecker {
@@ -94,6 +103,8 @@ public class CompassSpellChecker {
 
   private StringDistance sd;
 
+  private SymmetricDeleteSpellIndex[] memoryIndexes;
+
 
   public CompassSpellChecker(Searcher searcher, IndexReader reader) {
       this.searcher = searcher;
@@ -101,6 +112,11 @@ public class CompassSpellChecker {
       setStringDistance(new LevensteinDistance());
   }
 
+  public CompassSpellChecker(SymmetricDeleteSpellIndex[] memoryIndexes) {
+      this.memoryIndexes = memoryIndexes;
+      setStringDistance(new LevensteinDistance());
+  }
+
   /**
    * Use the given directory as a spell checker index. The directory
    * is created if it doesn't exist yet.
@@ -125,16 +141,20 @@ public class CompassSpellChecker {
     }
 
     public void close() {
-        try {
-            searcher.close();
-        } catch (IOException e) {
-            // do nothing
+        if (searcher != null) {
+            try {
+                searcher.close();
+            } catch (IOException e) {
+                // do nothing
+            }
         }
 
-        try {
-            reader.close();
-        } catch (IOException e) {
-            // do nothing
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // do nothing
+            }
         }
     }
 
@@ -231,44 +251,11 @@ public class CompassSpellChecker {
         return new String[] { word };
       }
 
-      BooleanQuery query = new BooleanQuery();
-      String[] grams;
-      String key;
-
-      for (int ng = getMin(lengthWord); ng <= getMax(lengthWord); ng++) {
-
-        key = "gram" + ng; // form key
-
-        grams = formGrams(word, ng); // form word into ngrams (allow dups too)
-
-        if (grams.length == 0) {
-          continue; // hmm
-        }
-
-        if (bStart > 0) { // should we boost prefixes?
-          add(query, "start" + ng, grams[0], bStart); // matches start of word
-
-        }
-        if (bEnd > 0) { // should we boost suffixes
-          add(query, "end" + ng, grams[grams.length - 1], bEnd); // matches end of word
-
-        }
-        for (int i = 0; i < grams.length; i++) {
-          add(query, key, grams[i]);
-        }
-      }
-
-//    System.out.println("Q: " + query);
-      Hits hits = searcher.search(query);
-//    System.out.println("HITS: " + hits.length());
       SuggestWordQueue sugQueue = new SuggestWordQueue(numSug);
-
-      // go thru more than 'maxr' matches in case the distance filter triggers
-      int stop = Math.min(hits.length(), 10 * numSug);
       SuggestWord sugWord = new SuggestWord();
-      for (int i = 0; i < stop; i++) {
+      for (String candidate : candidates(word, lengthWord, numSug)) {
 
-        sugWord.string = hits.doc(i).get(F_WORD); // get orig word
+        sugWord.string = candidate; // get orig word
 
         // don't suggest a word for itself, that would be silly
         if (sugWord.string.equals(word)) {
@@ -305,6 +292,59 @@ public class CompassSpellChecker {
       return list;
     }
 
+    /**
+     * Returns the candidate words for the given word. Uses the in memory indexes if there are any, otherwise
+     * the top matches of an n-gram query against the spell index.
+     */
+    private Collection<String> candidates(String word, int lengthWord, int numSug) throws IOException {
+      if (memoryIndexes != null) {
+        Set<String> candidates = new TreeSet<String>();
+        for (SymmetricDeleteSpellIndex memoryIndex : memoryIndexes) {
+          memoryIndex.candidates(word, candidates);
+        }
+        return candidates;
+      }
+
+      BooleanQuery query = new BooleanQuery();
+      String[] grams;
+      String key;
+
+      for (int ng = getMin(lengthWord); ng <= getMax(lengthWord); ng++) {
+
+        key = "gram" + ng; // form key
+
+        grams = formGrams(word, ng); // form word into ngrams (allow dups too)
+
+        if (grams.length == 0) {
+          continue; // hmm
+        }
+
+        if (bStart > 0) { // should we boost prefixes?
+          add(query, "start" + ng, grams[0], bStart); // matches start of word
+
+        }
+        if (bEnd > 0) { // should we boost suffixes
+          add(query, "end" + ng, grams[grams.length - 1], bEnd); // matches end of word
+
+        }
+        for (int i = 0; i < grams.length; i++) {
+          add(query, key, grams[i]);
+        }
+      }
+
+//    System.out.println("Q: " + query);
+      Hits hits = searcher.search(query);
+//    System.out.println("HITS: " + hits.length());
+
+      // go thru more than 'maxr' matches in case the distance filter triggers
+      int stop = Math.min(hits.length(), 10 * numSug);
+      List<String> candidates = new ArrayList<String>(stop);
+      for (int i = 0; i < stop; i++) {
+        candidates.add(hits.doc(i).get(F_WORD));
+      }
+      return candidates;
+    }
+
     /**
      * Add a clause to a boolean query.
      */
@@ -357,11 +397,25 @@ public class CompassSpellChecker {
      * @return true iff the word exists in the index
      */
     public boolean exist(String word) throws IOException {
+        if (memoryIndexes != null) {
+            for (SymmetricDeleteSpellIndex memoryIndex : memoryIndexes) {
+                if (memoryIndex.exist(word)) {
+                    return true;
+                }
+            }
+            return false;
+        }
         // COMPASS: Adding check for index reader
         if (reader == null) {
           reader = IndexReader.open(spellIndex, true);
         }
-      return reader.docFreq(new Term(F_WORD, word)) > 0;
+        // COMPASS: Use term docs so words removed incrementally (deleted but not yet merged away) do not exist
+        TermDocs termDocs = reader.termDocs(new Term(F_WORD, word));
+        try {
+            return termDocs.next();
+        } finally {
+            termDocs.close();
+        }
     }
 
     /**
@@ -406,6 +460,29 @@ public class CompassSpellChecker {
         }
     }
 
+    /**
+     * Adds the given words to the spell index using the provided writer. Unlike {@link #indexDictionary(IndexWriter, Dictionary)}
+     * does not check if the word already exists.
+     */
+    public void indexWords(IndexWriter writer, Collection<String> words) throws IOException {
+      for (String word : words) {
+        int len = word.length();
+        if (len < 3) {
+          continue;
+        }
+        writer.addDocument(createDocument(word, getMin(len), getMax(len)));
+      }
+    }
+
+    /**
+     * Removes the given words from the spell index using the provided writer.
+     */
+    public void removeWords(IndexWriter writer, Collection<String> words) throws IOException {
+      for (String word : words) {
+        writer.deleteDocuments(new Term(F_WORD, word));
+      }
+    }
+
     private int getMin(int l) {
       if (l > 5) {
         return 3;
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.search.spell;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in memory spell index based on the symmetric delete algorithm. Each word is indexed under all the
+ * variations of it with up to <code>maxEdits</code> characters deleted. Candidates for a (possibly misspelled)
+ * word are the words indexed under any of its own delete variations, which covers all the words within
+ * <code>maxEdits</code> edits of it without scanning the dictionary.
+ *
+ * <p>Words can be added and removed incrementally, and the index can be searched concurrently with
+ * modifications.
+ *
+ * @author kimchy
+ */
+public class SymmetricDeleteSpellIndex {
+
+    private final int maxEdits;
+
+    private final Set<String> words = new HashSet<String>();
+
+    private final Map<String, List<String>> deletes = new HashMap<String, List<String>>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SymmetricDeleteSpellIndex(int maxEdits) {
+        this.maxEdits = maxEdits;
+    }
+
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+
+    /**
+     * Returns the number of words in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return words.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the word is in the index.
+     */
+    public boolean exist(String word) {
+        lock.readLock().lock();
+        try {
+            return words.contains(word);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the words in the index.
+     */
+    public Set<String> words() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<String>(words);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(Collection<String> wordsToAdd) {
+        lock.writeLock().lock();
+        try {
+            for (String word : wordsToAdd) {
+                if (!words.add(word)) {
+                    continue;
+                }
+                for (String variation : variations(word)) {
+                    List<String> list = deletes.get(variation);
+                    if (list == null) {
+                        list = new ArrayList<String>(1);
+                        deletes.put(variation, list);
+                    }
+                    list.add(word);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<String> wordsToRemove) {
+        lock.writeLock().lock();
+        try {
+            for (String word : wordsToRemove) {
+                if (!words.remove(word)) {
+                    continue;
+                }
+                for (String variation : variations(word)) {
+                    List<String> list = deletes.get(variation);
+                    if (list != null) {
+                        list.remove(word);
+                        if (list.isEmpty()) {
+                            deletes.remove(variation);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            words.clear();
+            deletes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds to the given set all the words within <code>maxEdits</code> edits of the given word (the word itself
+     * included if it is in the index).
+     */
+    public void candidates(String word, Set<String> candidates) {
+        Set<String> variations = variations(word);
+        lock.readLock().lock();
+        try {
+            for (String variation : variations) {
+                List<String> list = deletes.get(variation);
+                if (list != null) {
+                    candidates.addAll(list);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the word itself and all the variations of it with up to <code>maxEdits</code> characters deleted.
+     */
+    private Set<String> variations(String word) {
+        Set<String> variations = new HashSet<String>();
+        variations.add(word);
+        List<String> current = new ArrayList<String>();
+        current.add(word);
+        for (int edit = 0; edit < maxEdits; edit++) {
+            List<String> next = new ArrayList<String>();
+            for (String value : current) {
+                if (value.length() <= 1) {
+                    continue;
+                }
+                for (int i = 0; i < value.length(); i++) {
+                    String variation = value.substring(0, i) + value.substring(i + 1);
+                    if (variations.add(variation)) {
+                        next.add(variation);
+                    }
+                }
+            }
+            current = next;
+        }
+        return variations;
+    }
+}
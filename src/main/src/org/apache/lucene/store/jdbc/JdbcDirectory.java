@@ -38,6 +38,7 @@ import org.apache.lucene.store.MultiDeleteDirectory;
 import org.apache.lucene.store.jdbc.dialect.Dialect;
 import org.apache.lucene.store.jdbc.dialect.DialectResolver;
 import org.apache.lucene.store.jdbc.handler.FileEntryHandler;
+import org.apache.lucene.store.jdbc.index.ChunkCache;
 import org.apache.lucene.store.jdbc.lock.JdbcLock;
 import org.apache.lucene.store.jdbc.support.JdbcTable;
 import org.apache.lucene.store.jdbc.support.JdbcTemplate;
@@ -51,6 +52,10 @@ import org.apache.lucene.store.jdbc.support.JdbcTemplate;
  * has an entry in the database, and different {@link FileEntryHandler} can be defines for different files (or
  * files groups).
  * <p/>
+ * When {@link JdbcDirectorySettings#isChunked()}, each file is stored as several fixed size chunk rows (see
+ * {@link JdbcTable}), which are read using range queries with read ahead and cached in a per directory
+ * {@link ChunkCache}.
+ * <p/>
  * Most of the files will not be deleted from the database when the directory delete method is called, but will
  * only be marked to be deleted (see {@link org.apache.lucene.store.jdbc.handler.MarkDeleteFileEntryHandler}. It is
  * done since other readers or searchers might be working with the database, and still use the files. The ability to
@@ -97,6 +102,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
 
     private JdbcTemplate jdbcTemplate;
 
+    private ChunkCache chunkCache;
 
     /**
      * Creates a new jdbc directory.  Creates new {@link JdbcDirectorySettings} using it's default values.
@@ -164,6 +170,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
         this.table = table;
         this.settings = table.getSettings();
         dialect.processSettings(settings);
+        this.chunkCache = new ChunkCache(settings.isChunked() ? settings.getChunkCacheSize() : 0);
         Map fileEntrySettings = settings.getFileEntrySettings();
         // go over all the file entry settings and configure them
         for (Iterator it = fileEntrySettings.keySet().iterator(); it.hasNext();) {
@@ -221,6 +228,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
             }
         }
         jdbcTemplate.executeUpdate(table.sqlDrop());
+        chunkCache.clear();
     }
 
     /**
@@ -245,6 +253,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
      */
     public void deleteContent() throws IOException {
         jdbcTemplate.executeUpdate(table.sqlDeletaAll());
+        chunkCache.clear();
     }
 
     /**
@@ -329,6 +338,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
     }
 
     public void deleteFile(final String name) throws IOException {
+        chunkCache.invalidate(name);
         if (LuceneFileNames.isStaticFile(name)) {
             forceDeleteFile(name);
         } else {
@@ -337,6 +347,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
     }
 
     public void forceDeleteFile(final String name) throws IOException {
+        chunkCache.invalidate(name);
         jdbcTemplate.executeUpdate(table.sqlDeleteByName(), new JdbcTemplate.PrepateStatementAwareCallback() {
             public void fillPrepareStatement(PreparedStatement ps) throws Exception {
                 ps.setFetchSize(1);
@@ -349,6 +360,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
         HashMap tempMap = new HashMap();
         for (Iterator it = names.iterator(); it.hasNext();) {
             String name = (String) it.next();
+            chunkCache.invalidate(name);
             FileEntryHandler fileEntryHandler = getFileEntryHandler(name);
             ArrayList tempNames = (ArrayList) tempMap.get(fileEntryHandler);
             if (tempNames == null) {
@@ -370,6 +382,8 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
     }
 
     public void renameFile(final String from, final String to) throws IOException {
+        chunkCache.invalidate(from);
+        chunkCache.invalidate(to);
         getFileEntryHandler(from).renameFile(from, to);
     }
 
@@ -382,6 +396,7 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
     }
 
     public IndexOutput createOutput(String name) throws IOException {
+        chunkCache.invalidate(name);
         if (LuceneFileNames.isStaticFile(name)) {
             forceDeleteFile(name);
         }
@@ -442,6 +457,13 @@ public class JdbcDirectory extends Directory implements MultiDeleteDirectory {
         return dialect;
     }
 
+    /**
+     * Returns the cache of file chunks read (only used with the chunked table layout).
+     */
+    public ChunkCache getChunkCache() {
+        return this.chunkCache;
+    }
+
     public JdbcTemplate getJdbcTemplate() {
         return this.jdbcTemplate;
     }
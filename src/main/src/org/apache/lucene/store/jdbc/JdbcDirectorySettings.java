@@ -39,6 +39,9 @@ import org.apache.lucene.store.jdbc.lock.PhantomReadLock;
  * and {@link RAMJdbcIndexOutput}.
  * The file suffix "fnm" uses the {@link FetchOnOpenJdbcIndexInput}, and {@link RAMJdbcIndexOutput}.
  * The file suffix "del" and "tmp" uses the {@link ActualDeleteFileEntryHandler}.
+ * <p />
+ * Setting the {@link #setChunkSize(int)} to a positive value uses the chunked table layout, where each file is
+ * stored as several fixed size rows (see {@link org.apache.lucene.store.jdbc.support.JdbcTable}).
  *
  * @author kimchy
  */
@@ -68,6 +71,16 @@ public class JdbcDirectorySettings {
 
     private String deletedColumnName = "deleted_";
 
+    private String chunkColumnName = "chunk_";
+
+    private int chunkSize = 0;
+
+    private int chunkBatchSize = 20;
+
+    private int chunkReadAheadMax = 8;
+
+    private int chunkCacheSize = 256;
+
     private HashMap fileEntrySettings = new HashMap();
 
     private long deleteMarkDeletedDelta = HOUR;
@@ -263,6 +276,86 @@ public class JdbcDirectorySettings {
         return (JdbcFileEntrySettings) fileEntrySettings.get(DEFAULT_FILE_ENTRY);
     }
 
+    /**
+     * Returns the name of the chunk column (only used with the chunked table layout). Defaults to chunk_.
+     */
+    public String getChunkColumnName() {
+        return chunkColumnName;
+    }
+
+    /**
+     * Sets the name of the chunk column (only used with the chunked table layout).
+     */
+    public void setChunkColumnName(String chunkColumnName) {
+        this.chunkColumnName = chunkColumnName;
+    }
+
+    /**
+     * Returns the size (in bytes) of each chunk row. A value of <code>0</code> (the default) means that
+     * each file is stored in a single row.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the size (in bytes) of each chunk row. A positive value stores files as fixed size chunk rows
+     * keyed by the file name and the chunk number. Note, the table must be created using the same layout.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns <code>true</code> if files are stored as chunk rows.
+     */
+    public boolean isChunked() {
+        return chunkSize > 0;
+    }
+
+    /**
+     * Returns the number of chunks inserted in a single Jdbc batch. Defaults to <code>20</code>.
+     */
+    public int getChunkBatchSize() {
+        return chunkBatchSize;
+    }
+
+    /**
+     * Sets the number of chunks inserted in a single Jdbc batch.
+     */
+    public void setChunkBatchSize(int chunkBatchSize) {
+        this.chunkBatchSize = chunkBatchSize;
+    }
+
+    /**
+     * Returns the maximum number of chunks read ahead when reading a file sequentially. Defaults to <code>8</code>.
+     */
+    public int getChunkReadAheadMax() {
+        return chunkReadAheadMax;
+    }
+
+    /**
+     * Sets the maximum number of chunks read ahead when reading a file sequentially. The read ahead starts
+     * from a single chunk and doubles for each sequential fetch, a random seek resets it.
+     */
+    public void setChunkReadAheadMax(int chunkReadAheadMax) {
+        this.chunkReadAheadMax = chunkReadAheadMax;
+    }
+
+    /**
+     * Returns the number of chunks cached by each directory. Defaults to <code>256</code>.
+     */
+    public int getChunkCacheSize() {
+        return chunkCacheSize;
+    }
+
+    /**
+     * Sets the number of chunks cached by each directory. <code>0</code> disables the cache.
+     */
+    public void setChunkCacheSize(int chunkCacheSize) {
+        this.chunkCacheSize = chunkCacheSize;
+    }
+
     /**
      * Returns the delta (in millis) for the delete mark deleted. File entries marked as being deleted will
      * be deleted from the system (using {@link org.apache.lucene.store.jdbc.JdbcDirectory#deleteMarkDeleted()}
@@ -26,6 +26,8 @@ import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.jdbc.JdbcDirectory;
 import org.apache.lucene.store.jdbc.JdbcFileEntrySettings;
 import org.apache.lucene.store.jdbc.JdbcStoreException;
+import org.apache.lucene.store.jdbc.index.ChunkedJdbcIndexInput;
+import org.apache.lucene.store.jdbc.index.ChunkedJdbcIndexOutput;
 import org.apache.lucene.store.jdbc.index.JdbcIndexConfigurable;
 import org.apache.lucene.store.jdbc.support.JdbcTable;
 import org.apache.lucene.store.jdbc.support.JdbcTemplate;
@@ -35,7 +37,8 @@ import org.apache.lucene.store.jdbc.support.JdbcTemplate;
  * <p/>
  * Supports the creation of configurable <code>IndexInput</code> and <code>IndexOutput</code>,
  * base on the {@link JdbcFileEntrySettings#INDEX_INPUT_TYPE_SETTING} and
- * {@link JdbcFileEntrySettings#INDEX_OUTPUT_TYPE_SETTING}.
+ * {@link JdbcFileEntrySettings#INDEX_OUTPUT_TYPE_SETTING}. When using the chunked table layout, the
+ * {@link ChunkedJdbcIndexInput} and {@link ChunkedJdbcIndexOutput} are always used.
  * <p/>
  * Does not implement the deletion of files.
  *
@@ -128,11 +131,15 @@ public abstract class AbstractFileEntryHandler implements FileEntryHandler {
     public IndexInput openInput(String name) throws IOException {
         IndexInput indexInput;
         JdbcFileEntrySettings settings = jdbcDirectory.getSettings().getFileEntrySettings(name);
-        try {
-            Class inputClass = settings.getSettingAsClass(JdbcFileEntrySettings.INDEX_INPUT_TYPE_SETTING, null);
-            indexInput = (IndexInput) inputClass.newInstance();
-        } catch (Exception e) {
-            throw new JdbcStoreException("Failed to create indexInput instance [" + settings.getSetting(JdbcFileEntrySettings.INDEX_INPUT_TYPE_SETTING) + "]", e);
+        if (table.isChunked()) {
+            indexInput = new ChunkedJdbcIndexInput();
+        } else {
+            try {
+                Class inputClass = settings.getSettingAsClass(JdbcFileEntrySettings.INDEX_INPUT_TYPE_SETTING, null);
+                indexInput = (IndexInput) inputClass.newInstance();
+            } catch (Exception e) {
+                throw new JdbcStoreException("Failed to create indexInput instance [" + settings.getSetting(JdbcFileEntrySettings.INDEX_INPUT_TYPE_SETTING) + "]", e);
+            }
         }
         ((JdbcIndexConfigurable) indexInput).configure(name, jdbcDirectory, settings);
         return indexInput;
@@ -141,11 +148,15 @@ public abstract class AbstractFileEntryHandler implements FileEntryHandler {
     public IndexOutput createOutput(String name) throws IOException {
         IndexOutput indexOutput;
         JdbcFileEntrySettings settings = jdbcDirectory.getSettings().getFileEntrySettings(name);
-        try {
-            Class inputClass = settings.getSettingAsClass(JdbcFileEntrySettings.INDEX_OUTPUT_TYPE_SETTING, null);
-            indexOutput = (IndexOutput) inputClass.newInstance();
-        } catch (Exception e) {
-            throw new JdbcStoreException("Failed to create indexOutput instance [" + settings.getSetting(JdbcFileEntrySettings.INDEX_OUTPUT_TYPE_SETTING) + "]", e);
+        if (table.isChunked()) {
+            indexOutput = new ChunkedJdbcIndexOutput();
+        } else {
+            try {
+                Class inputClass = settings.getSettingAsClass(JdbcFileEntrySettings.INDEX_OUTPUT_TYPE_SETTING, null);
+                indexOutput = (IndexOutput) inputClass.newInstance();
+            } catch (Exception e) {
+                throw new JdbcStoreException("Failed to create indexOutput instance [" + settings.getSetting(JdbcFileEntrySettings.INDEX_OUTPUT_TYPE_SETTING) + "]", e);
+            }
         }
         ((JdbcIndexConfigurable) indexOutput).configure(name, jdbcDirectory, settings);
         return indexOutput;
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.store.jdbc.index;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded (least recently used) cache of file chunks read by {@link ChunkedJdbcIndexInput}, held per
+ * {@link org.apache.lucene.store.jdbc.JdbcDirectory}.
+ * <p/>
+ * Chunks are cached by the file name, the file length and the chunk number. Lucene files are write once, and
+ * the file length is part of the key in order not to use chunks of a (rolled back) file with the same name.
+ * Files with a given name are invalidated when they are created, renamed or deleted.
+ *
+ * @author kimchy
+ */
+public class ChunkCache {
+
+    private final int size;
+
+    private final LinkedHashMap cache;
+
+    /**
+     * Creates a new cache holding up to the given number of chunks. A size of <code>0</code> disables the cache.
+     */
+    public ChunkCache(final int size) {
+        this.size = size;
+        this.cache = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > ChunkCache.this.size;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached chunk, <code>null</code> if it is not cached.
+     */
+    public synchronized byte[] get(String name, long length, long chunk) {
+        if (size == 0) {
+            return null;
+        }
+        return (byte[]) cache.get(new ChunkKey(name, length, chunk));
+    }
+
+    public synchronized void put(String name, long length, long chunk, byte[] value) {
+        if (size == 0) {
+            return;
+        }
+        cache.put(new ChunkKey(name, length, chunk), value);
+    }
+
+    /**
+     * Removes all the chunks of the given file name.
+     */
+    public synchronized void invalidate(String name) {
+        for (Iterator it = cache.keySet().iterator(); it.hasNext();) {
+            ChunkKey key = (ChunkKey) it.next();
+            if (key.name.equals(name)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private static final class ChunkKey {
+
+        private final String name;
+
+        private final long length;
+
+        private final long chunk;
+
+        private ChunkKey(String name, long length, long chunk) {
+            this.name = name;
+            this.length = length;
+            this.chunk = chunk;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) o;
+            return chunk == other.chunk && length == other.length && name.equals(other.name);
+        }
+
+        public int hashCode() {
+            int result = name.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (chunk ^ (chunk >>> 32));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.store.jdbc.index;
+
+import java.io.IOException;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.apache.lucene.index.LuceneFileNames;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.jdbc.JdbcDirectory;
+import org.apache.lucene.store.jdbc.JdbcFileEntrySettings;
+import org.apache.lucene.store.jdbc.JdbcStoreException;
+import org.apache.lucene.store.jdbc.support.JdbcTemplate;
+
+/**
+ * An <code>IndexInput</code> implementation for the chunked table layout (see
+ * {@link org.apache.lucene.store.jdbc.support.JdbcTable#isChunked()}).
+ * <p/>
+ * Reads only the chunks required, using a single range query for several chunks. When reading sequentially,
+ * the number of chunks read ahead doubles with each fetch (up to
+ * {@link org.apache.lucene.store.jdbc.JdbcDirectorySettings#getChunkReadAheadMax()}), and a random seek resets it
+ * so term dictionary lookups only fetch the chunk they need. Fetched chunks are cached in the directory
+ * {@link ChunkCache}.
+ *
+ * @author kimchy
+ */
+public class ChunkedJdbcIndexInput extends IndexInput implements JdbcIndexConfigurable {
+
+    private String name;
+
+    private JdbcDirectory jdbcDirectory;
+
+    private ChunkCache chunkCache;
+
+    private int chunkSize;
+
+    private int readAheadMax;
+
+    private long length;
+
+    private long position;
+
+    // the current chunk
+    private byte[] chunk;
+
+    private long chunkNumber = -1;
+
+    private int readAhead;
+
+    // the chunks fetched by the last range query, replaced (and not changed) on each fetch since it is shared by clones
+    private byte[][] fetchedChunks;
+
+    private long fetchedStart = -1;
+
+    public void configure(final String name, final JdbcDirectory jdbcDirectory, JdbcFileEntrySettings settings) throws IOException {
+        this.name = name;
+        this.jdbcDirectory = jdbcDirectory;
+        this.chunkSize = jdbcDirectory.getSettings().getChunkSize();
+        this.readAheadMax = jdbcDirectory.getSettings().getChunkReadAheadMax();
+        // static files are overridden in place, don't cache them
+        this.chunkCache = LuceneFileNames.isStaticFile(name) ? null : jdbcDirectory.getChunkCache();
+        this.length = ((Long) jdbcDirectory.getJdbcTemplate().executeSelect(jdbcDirectory.getTable().sqlSelectSizeByName(),
+                new JdbcTemplate.ExecuteSelectCallback() {
+                    public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                        ps.setFetchSize(1);
+                        ps.setString(1, name);
+                    }
+
+                    public Object execute(ResultSet rs) throws Exception {
+                        if (!rs.next()) {
+                            throw new JdbcStoreException("No entry for [" + name + "] table " + jdbcDirectory.getTable());
+                        }
+                        return new Long(rs.getLong(1));
+                    }
+                })).longValue();
+    }
+
+    public byte readByte() throws IOException {
+        if (position >= length) {
+            throw new IOException("read past EOF");
+        }
+        byte[] chunk = chunkFor(position);
+        return chunk[(int) (position++ - chunkNumber * chunkSize)];
+    }
+
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+        if (position + len > length) {
+            throw new IOException("read past EOF");
+        }
+        while (len > 0) {
+            byte[] chunk = chunkFor(position);
+            int chunkOffset = (int) (position - chunkNumber * chunkSize);
+            int toCopy = Math.min(len, chunk.length - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, b, offset, toCopy);
+            position += toCopy;
+            offset += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    public long getFilePointer() {
+        return position;
+    }
+
+    public void seek(long pos) throws IOException {
+        this.position = pos;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public void close() throws IOException {
+    }
+
+    private byte[] chunkFor(long pos) throws IOException {
+        long requiredChunk = pos / chunkSize;
+        if (requiredChunk == chunkNumber) {
+            return chunk;
+        }
+        byte[] value = null;
+        if (fetchedChunks != null && requiredChunk >= fetchedStart && requiredChunk < fetchedStart + fetchedChunks.length) {
+            value = fetchedChunks[(int) (requiredChunk - fetchedStart)];
+        }
+        if (value == null && chunkCache != null) {
+            value = chunkCache.get(name, length, requiredChunk);
+        }
+        if (value == null) {
+            if (requiredChunk == chunkNumber + 1) {
+                readAhead = (readAhead == 0) ? 1 : Math.min(readAhead * 2, readAheadMax);
+            } else {
+                readAhead = 0;
+            }
+            long lastChunk = (length - 1) / chunkSize;
+            fetch(requiredChunk, Math.min(requiredChunk + readAhead, lastChunk));
+            value = fetchedChunks[0];
+        }
+        chunk = value;
+        chunkNumber = requiredChunk;
+        return chunk;
+    }
+
+    private void fetch(final long from, final long to) throws IOException {
+        final byte[][] chunks = new byte[(int) (to - from + 1)][];
+        jdbcDirectory.getJdbcTemplate().executeSelect(jdbcDirectory.getTable().sqlSelectChunksByNameRange(),
+                new JdbcTemplate.ExecuteSelectCallback() {
+                    public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                        ps.setFetchSize(chunks.length);
+                        ps.setString(1, name);
+                        ps.setLong(2, from);
+                        ps.setLong(3, to);
+                    }
+
+                    public Object execute(ResultSet rs) throws Exception {
+                        while (rs.next()) {
+                            long chunkNumber = rs.getLong(1);
+                            Blob blob = rs.getBlob(2);
+                            int blobLength = (int) blob.length();
+                            chunks[(int) (chunkNumber - from)] = (blobLength == 0) ? new byte[0] : blob.getBytes(1, blobLength);
+                        }
+                        return null;
+                    }
+                });
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] == null) {
+                throw new JdbcStoreException("No chunk [" + (from + i) + "] for [" + name + "] table " + jdbcDirectory.getTable());
+            }
+            if (chunkCache != null) {
+                chunkCache.put(name, length, from + i, chunks[i]);
+            }
+        }
+        fetchedChunks = chunks;
+        fetchedStart = from;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.store.jdbc.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.jdbc.JdbcDirectory;
+import org.apache.lucene.store.jdbc.JdbcFileEntrySettings;
+import org.apache.lucene.store.jdbc.JdbcStoreException;
+import org.apache.lucene.store.jdbc.support.InputStreamBlob;
+import org.apache.lucene.store.jdbc.support.JdbcTemplate;
+
+/**
+ * An <code>IndexOutput</code> implementation for the chunked table layout (see
+ * {@link org.apache.lucene.store.jdbc.support.JdbcTable#isChunked()}).
+ * <p/>
+ * Completed chunks are inserted using Jdbc batches (of
+ * {@link org.apache.lucene.store.jdbc.JdbcDirectorySettings#getChunkBatchSize()} chunks) while the file is being
+ * written, so only the last chunks are held in memory. Seeking back and writing to a chunk that was already inserted
+ * will load and update it on close. The first chunk (the file entry row) is inserted last, on close, so the file only
+ * exists once all its chunks are written.
+ *
+ * @author kimchy
+ */
+public class ChunkedJdbcIndexOutput extends IndexOutput implements JdbcIndexConfigurable {
+
+    private String name;
+
+    private JdbcDirectory jdbcDirectory;
+
+    private int chunkSize;
+
+    private int batchSize;
+
+    // chunks (by chunk number) that were not inserted yet, or that were loaded in order to be updated
+    private TreeMap pendingChunks = new TreeMap();
+
+    private Set updatedChunks = new HashSet();
+
+    // chunks 1 (inclusive) to flushedUpTo (exclusive) were already inserted
+    private long flushedUpTo = 1;
+
+    private long position;
+
+    private long length;
+
+    private byte[] chunk;
+
+    private long chunkNumber = -1;
+
+    public void configure(String name, JdbcDirectory jdbcDirectory, JdbcFileEntrySettings settings) throws IOException {
+        this.name = name;
+        this.jdbcDirectory = jdbcDirectory;
+        this.chunkSize = jdbcDirectory.getSettings().getChunkSize();
+        this.batchSize = jdbcDirectory.getSettings().getChunkBatchSize();
+    }
+
+    public void writeByte(byte b) throws IOException {
+        byte[] chunk = chunkFor(position);
+        chunk[(int) (position++ - chunkNumber * chunkSize)] = b;
+        if (position > length) {
+            length = position;
+            flushCompletedChunksIfNeeded();
+        }
+    }
+
+    public void writeBytes(byte[] b, int offset, int len) throws IOException {
+        while (len > 0) {
+            byte[] chunk = chunkFor(position);
+            int chunkOffset = (int) (position - chunkNumber * chunkSize);
+            int toCopy = Math.min(len, chunkSize - chunkOffset);
+            System.arraycopy(b, offset, chunk, chunkOffset, toCopy);
+            position += toCopy;
+            offset += toCopy;
+            len -= toCopy;
+        }
+        if (position > length) {
+            length = position;
+            flushCompletedChunksIfNeeded();
+        }
+    }
+
+    public void flush() throws IOException {
+        // chunks are flushed in batches, and the rest on close
+    }
+
+    public long getFilePointer() {
+        return position;
+    }
+
+    public void seek(long pos) throws IOException {
+        this.position = pos;
+    }
+
+    public long length() throws IOException {
+        return length;
+    }
+
+    public void close() throws IOException {
+        long chunksCount = (length + chunkSize - 1) / chunkSize;
+        insertChunks(flushedUpTo, chunksCount);
+        if (!updatedChunks.isEmpty()) {
+            jdbcDirectory.getJdbcTemplate().executeBatch(jdbcDirectory.getTable().sqlUpdateChunkValue(), new JdbcTemplate.PrepateStatementAwareCallback() {
+                public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                    for (Iterator it = updatedChunks.iterator(); it.hasNext();) {
+                        Long chunkNumber = (Long) it.next();
+                        setValue(ps, 1, (byte[]) pendingChunks.get(chunkNumber), chunkLength(chunkNumber.longValue()));
+                        ps.setString(2, name);
+                        ps.setLong(3, chunkNumber.longValue());
+                        ps.addBatch();
+                    }
+                }
+            });
+        }
+        // the first chunk is the file entry, insert it last
+        final byte[] firstChunk = pendingChunks.containsKey(new Long(0)) ? (byte[]) pendingChunks.get(new Long(0)) : new byte[0];
+        jdbcDirectory.getJdbcTemplate().executeUpdate(jdbcDirectory.getTable().sqlInsert(), new JdbcTemplate.PrepateStatementAwareCallback() {
+            public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                ps.setFetchSize(1);
+                ps.setString(1, name);
+                setValue(ps, 2, firstChunk, chunkLength(0));
+                ps.setLong(3, length);
+                ps.setBoolean(4, false);
+            }
+        });
+        pendingChunks.clear();
+        chunk = null;
+        chunkNumber = -1;
+    }
+
+    private byte[] chunkFor(long pos) throws IOException {
+        long requiredChunk = pos / chunkSize;
+        if (requiredChunk == chunkNumber) {
+            return chunk;
+        }
+        Long key = new Long(requiredChunk);
+        byte[] value = (byte[]) pendingChunks.get(key);
+        if (value == null) {
+            if (requiredChunk > 0 && requiredChunk < flushedUpTo) {
+                value = loadChunk(requiredChunk);
+                updatedChunks.add(key);
+            } else {
+                value = new byte[chunkSize];
+            }
+            pendingChunks.put(key, value);
+        }
+        chunk = value;
+        chunkNumber = requiredChunk;
+        return chunk;
+    }
+
+    /**
+     * Inserts (in batches) all the completed chunks once there are enough of them. The first chunk is never
+     * inserted here since it is the file entry row.
+     */
+    private void flushCompletedChunksIfNeeded() throws IOException {
+        long completedChunks = length / chunkSize;
+        if (completedChunks - flushedUpTo < batchSize) {
+            return;
+        }
+        insertChunks(flushedUpTo, completedChunks);
+        flushedUpTo = completedChunks;
+    }
+
+    /**
+     * Inserts chunks <code>from</code> (inclusive) to <code>to</code> (exclusive) using Jdbc batches.
+     */
+    private void insertChunks(long from, long to) throws IOException {
+        for (long batchStart = from; batchStart < to; batchStart += batchSize) {
+            final long start = batchStart;
+            final long end = Math.min(batchStart + batchSize, to);
+            jdbcDirectory.getJdbcTemplate().executeBatch(jdbcDirectory.getTable().sqlInsertChunk(), new JdbcTemplate.PrepateStatementAwareCallback() {
+                public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                    for (long i = start; i < end; i++) {
+                        byte[] value = (byte[]) pendingChunks.get(new Long(i));
+                        if (value == null) {
+                            value = new byte[chunkSize];
+                        }
+                        int valueLength = chunkLength(i);
+                        ps.setString(1, name);
+                        ps.setLong(2, i);
+                        setValue(ps, 3, value, valueLength);
+                        ps.setLong(4, valueLength);
+                        ps.setBoolean(5, false);
+                        ps.addBatch();
+                    }
+                }
+            });
+            for (long i = start; i < end; i++) {
+                pendingChunks.remove(new Long(i));
+            }
+            if (chunkNumber >= start && chunkNumber < end) {
+                chunk = null;
+                chunkNumber = -1;
+            }
+        }
+    }
+
+    private byte[] loadChunk(final long chunkNumber) throws IOException {
+        return (byte[]) jdbcDirectory.getJdbcTemplate().executeSelect(jdbcDirectory.getTable().sqlSelectChunksByNameRange(),
+                new JdbcTemplate.ExecuteSelectCallback() {
+                    public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                        ps.setFetchSize(1);
+                        ps.setString(1, name);
+                        ps.setLong(2, chunkNumber);
+                        ps.setLong(3, chunkNumber);
+                    }
+
+                    public Object execute(ResultSet rs) throws Exception {
+                        if (!rs.next()) {
+                            throw new JdbcStoreException("No chunk [" + chunkNumber + "] for [" + name + "] table " + jdbcDirectory.getTable());
+                        }
+                        Blob blob = rs.getBlob(2);
+                        byte[] value = new byte[chunkSize];
+                        byte[] stored = blob.getBytes(1, (int) blob.length());
+                        System.arraycopy(stored, 0, value, 0, stored.length);
+                        return value;
+                    }
+                });
+    }
+
+    private int chunkLength(long chunkNumber) {
+        return (int) Math.min(chunkSize, length - chunkNumber * chunkSize);
+    }
+
+    private void setValue(PreparedStatement ps, int index, byte[] value, int valueLength) throws Exception {
+        if (jdbcDirectory.getDialect().useInputStreamToInsertBlob()) {
+            ps.setBinaryStream(index, new ByteArrayInputStream(value, 0, valueLength), valueLength);
+        } else {
+            ps.setBlob(index, new InputStreamBlob(new ByteArrayInputStream(value, 0, valueLength), valueLength));
+        }
+    }
+}
@@ -23,6 +23,12 @@ import org.apache.lucene.store.jdbc.dialect.Dialect;
 /**
  * An internal representation of a database table used to store the {@link org.apache.lucene.store.jdbc.JdbcDirectory}
  * settings.
+ * <p/>
+ * When {@link org.apache.lucene.store.jdbc.JdbcDirectorySettings#isChunked()}, an additional chunk column is
+ * added and each file is stored as several rows of fixed size chunks, keyed by the name and the chunk number. The
+ * first chunk row (chunk <code>0</code>) acts as the file entry (its size column holds the file length, and it is used
+ * by the file entry level operations), while updates, marking as deleted, renames and deletes apply to all the rows
+ * of a file.
  *
  * @author kimchy
  */
@@ -58,12 +64,16 @@ public class JdbcTable {
     private String sqlDeletaAll;
     private String sqlDeletaMarkDeleteByDelta;
     private String sqlSelectNameForUpdateNoWait;
+    private String sqlInsertChunk;
+    private String sqlSelectChunksByNameRange;
+    private String sqlUpdateChunkValue;
 
     private JdbcColumn nameColumn;
     private JdbcColumn valueColumn;
     private JdbcColumn sizeColumn;
     private JdbcColumn lastModifiedColumn;
     private JdbcColumn deletedColumn;
+    private JdbcColumn chunkColumn;
 
     public JdbcTable(JdbcDirectorySettings settings, Dialect dialect, String name) {
         this(settings, dialect, name, settings.getTableCatalog(), settings.getTableSchema());
@@ -80,17 +90,28 @@ public class JdbcTable {
         sizeColumn = new JdbcColumn(dialect, settings.getSizeColumnName(), 3, dialect.getNumberType());
         lastModifiedColumn = new JdbcColumn(dialect, settings.getLastModifiedColumnName(), 4, dialect.getTimestampType());
         deletedColumn = new JdbcColumn(dialect, settings.getDeletedColumnName(), 5, dialect.getBitType());
+        if (settings.isChunked()) {
+            chunkColumn = new JdbcColumn(dialect, settings.getChunkColumnName(), 6, dialect.getNumberType());
+        }
+        // restricts file entry level selects to the first chunk row when using the chunked layout
+        String firstChunkOnly = settings.isChunked() ? " and " + chunkColumn.getQuotedName() + " = 0" : "";
 
         StringBuffer sb = new StringBuffer();
 
-        sqlCreate = sb.append("create table ").append(getQualifiedName()).append(" (")
-                .append(nameColumn.getName()).append(' ').append(nameColumn.getType()).append(" not null, ")
-                .append(valueColumn.getName()).append(' ').append(valueColumn.getType()).append(" , ")
+        sb.append("create table ").append(getQualifiedName()).append(" (")
+                .append(nameColumn.getName()).append(' ').append(nameColumn.getType()).append(" not null, ");
+        if (settings.isChunked()) {
+            sb.append(chunkColumn.getName()).append(' ').append(chunkColumn.getType()).append(" not null, ");
+        }
+        sb.append(valueColumn.getName()).append(' ').append(valueColumn.getType()).append(" , ")
                 .append(sizeColumn.getName()).append(' ').append(sizeColumn.getType()).append(" , ")
                 .append(lastModifiedColumn.getName()).append(' ').append(lastModifiedColumn.getType()).append(" , ")
                 .append(deletedColumn.getName()).append(' ').append(deletedColumn.getType())
-                .append(", " + "primary key (").append(nameColumn.getName()).append(") ) ")
-                .append(getTableTypeString(dialect)).toString();
+                .append(", " + "primary key (").append(nameColumn.getName());
+        if (settings.isChunked()) {
+            sb.append(", ").append(chunkColumn.getName());
+        }
+        sqlCreate = sb.append(") ) ").append(getTableTypeString(dialect)).toString();
 
         sb.setLength(0);
         sb.append("drop table ");
@@ -102,17 +123,18 @@ public class JdbcTable {
         sb.setLength(0);
         sqlSelectNames = sb.append("select ").append(nameColumn.getQuotedName())
                 .append(" from ").append(getQualifiedName())
-                .append(" where ").append(deletedColumn.getQuotedName()).append(" = ?").toString();
+                .append(" where ").append(deletedColumn.getQuotedName()).append(" = ?")
+                .append(firstChunkOnly).toString();
 
         sb.setLength(0);
         sqlSelectNameExists = sb.append("select ").append(deletedColumn.getQuotedName())
                 .append(" from ").append(getQualifiedName())
-                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").toString();
+                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").append(firstChunkOnly).toString();
 
         sb.setLength(0);
         sqlSelecltLastModifiedByName = sb.append("select ").append(lastModifiedColumn.getQuotedName())
                 .append(" from ").append(getQualifiedName())
-                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").toString();
+                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").append(firstChunkOnly).toString();
 
         sb.setLength(0);
         sqlUpdateLastModifiedByName = sb.append("update ").append(getQualifiedName())
@@ -137,22 +159,60 @@ public class JdbcTable {
         sqlSelectNameForUpdateNoWait = sb.append("select ").append(nameColumn.getQuotedName())
                 .append(" from ").append(getQualifiedName())
                 .append(" where ").append(nameColumn.getQuotedName()).append(" = ?")
+                .append(firstChunkOnly)
                 .append(dialect.getForUpdateNowaitString()).toString();
 
 
         sb.setLength(0);
         sqlSelectSizeByName = sb.append("select ").append(sizeColumn.getQuotedName())
                 .append(" from ").append(getQualifiedName())
-                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").toString();
+                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").append(firstChunkOnly).toString();
 
         sb.setLength(0);
-        sqlInsert = sb.append("insert into ").append(getQualifiedName())
-                .append(" (").append(nameColumn.getQuotedName()).append(", ")
-                .append(valueColumn.getQuotedName()).append(", ")
-                .append(sizeColumn.getQuotedName()).append(", ")
-                .append(lastModifiedColumn.getQuotedName()).append(", ")
-                .append(deletedColumn.getQuotedName())
-                .append(") values ( ?, ?, ?, ").append(dialect.getCurrentTimestampFunction()).append(", ?").append(" )").toString();
+        if (settings.isChunked()) {
+            // the file entry row is the first chunk, the parameters are the same as the non chunked layout
+            sqlInsert = sb.append("insert into ").append(getQualifiedName())
+                    .append(" (").append(nameColumn.getQuotedName()).append(", ")
+                    .append(chunkColumn.getQuotedName()).append(", ")
+                    .append(valueColumn.getQuotedName()).append(", ")
+                    .append(sizeColumn.getQuotedName()).append(", ")
+                    .append(lastModifiedColumn.getQuotedName()).append(", ")
+                    .append(deletedColumn.getQuotedName())
+                    .append(") values ( ?, 0, ?, ?, ").append(dialect.getCurrentTimestampFunction()).append(", ?").append(" )").toString();
+
+            sb.setLength(0);
+            sqlInsertChunk = sb.append("insert into ").append(getQualifiedName())
+                    .append(" (").append(nameColumn.getQuotedName()).append(", ")
+                    .append(chunkColumn.getQuotedName()).append(", ")
+                    .append(valueColumn.getQuotedName()).append(", ")
+                    .append(sizeColumn.getQuotedName()).append(", ")
+                    .append(lastModifiedColumn.getQuotedName()).append(", ")
+                    .append(deletedColumn.getQuotedName())
+                    .append(") values ( ?, ?, ?, ?, ").append(dialect.getCurrentTimestampFunction()).append(", ?").append(" )").toString();
+
+            sb.setLength(0);
+            sqlSelectChunksByNameRange = sb.append("select ").append(chunkColumn.getQuotedName()).append(", ")
+                    .append(dialect.openBlobSelectQuote()).append(valueColumn.getQuotedName()).append(dialect.closeBlobSelectQuote()).append(" as x")
+                    .append(" from ").append(getQualifiedName())
+                    .append(" where ").append(nameColumn.getQuotedName()).append(" = ?")
+                    .append(" and ").append(chunkColumn.getQuotedName()).append(" >= ?")
+                    .append(" and ").append(chunkColumn.getQuotedName()).append(" <= ?")
+                    .append(" order by ").append(chunkColumn.getQuotedName()).toString();
+
+            sb.setLength(0);
+            sqlUpdateChunkValue = sb.append("update ").append(getQualifiedName())
+                    .append(" set ").append(valueColumn.getQuotedName()).append(" = ?")
+                    .append(" where ").append(nameColumn.getQuotedName()).append(" = ?")
+                    .append(" and ").append(chunkColumn.getQuotedName()).append(" = ?").toString();
+        } else {
+            sqlInsert = sb.append("insert into ").append(getQualifiedName())
+                    .append(" (").append(nameColumn.getQuotedName()).append(", ")
+                    .append(valueColumn.getQuotedName()).append(", ")
+                    .append(sizeColumn.getQuotedName()).append(", ")
+                    .append(lastModifiedColumn.getQuotedName()).append(", ")
+                    .append(deletedColumn.getQuotedName())
+                    .append(") values ( ?, ?, ?, ").append(dialect.getCurrentTimestampFunction()).append(", ?").append(" )").toString();
+        }
 
         sb.setLength(0);
         sqlUpdateSizeLastModifiedByName = sb.append("update ").append(getQualifiedName())
@@ -171,7 +231,8 @@ public class JdbcTable {
                 .append(dialect.openBlobSelectQuote()).append(valueColumn.getQuotedName()).append(dialect.closeBlobSelectQuote()).append(" as x")
                 .append(", ").append(sizeColumn.getQuotedName())
                 .append(" from ").append(getQualifiedName())
-                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?").toString();
+                .append(" where ").append(nameColumn.getQuotedName()).append(" = ?")
+                .append(firstChunkOnly).toString();
 
         sb.setLength(0);
         sqlDeletaAll = sb.append("delete from ").append(getQualifiedName())
@@ -242,6 +303,20 @@ public class JdbcTable {
         return this.deletedColumn;
     }
 
+    /**
+     * Returns the chunk column, <code>null</code> if not using the chunked layout.
+     */
+    public JdbcColumn getChunkColumn() {
+        return this.chunkColumn;
+    }
+
+    /**
+     * Returns <code>true</code> if files are stored as several fixed size chunk rows.
+     */
+    public boolean isChunked() {
+        return chunkColumn != null;
+    }
+
     public String sqlSelectNames() {
         return sqlSelectNames;
     }
@@ -290,6 +365,18 @@ public class JdbcTable {
         return sqlSelectNameForUpdateNoWait;
     }
 
+    public String sqlInsertChunk() {
+        return sqlInsertChunk;
+    }
+
+    public String sqlSelectChunksByNameRange() {
+        return sqlSelectChunksByNameRange;
+    }
+
+    public String sqlUpdateChunkValue() {
+        return sqlUpdateChunkValue;
+    }
+
     public String sqlMarkDeleteByName() {
         return sqlMarkDeleteByName;
     }
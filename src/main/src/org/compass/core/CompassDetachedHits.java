@@ -61,4 +61,14 @@ public interface CompassDetachedHits extends CompassHitsOperations {
      */
     CompassHit[] getHits() throws CompassException;
 
+    /**
+     * Returns a cursor marking the last detached hit, which can be used with
+     * {@link CompassQuery#setSearchAfter(CompassHitsCursor)} in order to fetch the next page of hits.
+     * Returns <code>null</code> if there are no detached hits or the hits do not support cursors
+     * (for example, when the query is sorted).
+     *
+     * @return A cursor marking the last detached hit
+     */
+    CompassHitsCursor getCursor();
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core;
+
+/**
+ * The result of a facet computed over the documents matching a query. Holds the
+ * facet entries (a value and the number of matching documents it has).
+ *
+ * @author kimchy
+ * @see org.compass.core.CompassQuery#facets()
+ * @see org.compass.core.CompassFacetsBuilder
+ */
+public interface CompassFacet {
+
+    /**
+     * A value of the facet and the number of matching documents it has.
+     */
+    public static interface Entry {
+
+        /**
+         * Returns the value of the entry. The term for terms facets, the range (for example
+         * <code>10 TO 20</code>) for range facets, and the start {@link java.util.Date} of the
+         * interval for date histogram facets.
+         */
+        Object getValue();
+
+        /**
+         * Returns the number of documents matching the query that have this value.
+         */
+        long getCount();
+    }
+
+    /**
+     * Returns the name of the facet.
+     */
+    String getName();
+
+    /**
+     * Returns the property name the facet was computed on.
+     */
+    String getPropertyName();
+
+    /**
+     * Returns the facet entries. Terms facets entries are ordered by count (the highest first),
+     * range facets by the order of the ranges, and date histogram facets by date.
+     */
+    Entry[] getEntries();
+}
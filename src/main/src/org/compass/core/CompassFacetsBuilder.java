@@ -0,0 +1,71 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core;
+
+/**
+ * <p>A facets builder, allowing to count terms, ranges and date intervals of properties
+ * over the documents matching a query (and its filter), without executing extra
+ * <code>count</code> queries for each value.
+ *
+ * <p>Facets are computed using the values of the property loaded into the search engine
+ * cache (in Lucene, the field cache, similar to sorting), so the property must be stored
+ * <code>un_tokenized</code> and have a single value per resource.
+ *
+ * <p>Facets of a query spanning several sub indexes are computed on each sub index in parallel
+ * (when the executor manager is enabled).
+ *
+ * @author kimchy
+ * @see org.compass.core.CompassQuery#facets()
+ */
+public interface CompassFacetsBuilder {
+
+    public static enum Interval {
+        YEAR,
+        MONTH,
+        WEEK,
+        DAY,
+        HOUR,
+        MINUTE
+    }
+
+    /**
+     * Adds a facet counting the terms of the given property, returning the <code>size</code>
+     * terms with the highest counts.
+     */
+    CompassFacetsBuilder addTermsFacet(String facetName, String propertyName, int size);
+
+    /**
+     * Adds a facet counting consecutive ranges of values of the given property. Each two consecutive
+     * boundaries define a range, including the lower boundary and excluding the upper one. The first and last
+     * boundaries can be <code>null</code> for unbounded ranges. For example: <code>null, 10, 100, null</code>
+     * will count values lower than 10, values between 10 and 100 and values of 100 and higher.
+     *
+     * <p>Boundaries are converted the same way as query builder values are, so the property values must be
+     * comparable by their string representation (for example, using a padded number format).
+     */
+    CompassFacetsBuilder addRangeFacet(String facetName, String propertyName, Object... boundaries);
+
+    /**
+     * Adds a facet counting the values of a date property per interval.
+     */
+    CompassFacetsBuilder addDateHistogramFacet(String facetName, String propertyName, Interval interval);
+
+    /**
+     * Computes the facets over the documents matching the query, returning them in the order they were added.
+     */
+    CompassFacet[] toFacets() throws CompassException;
+}
@@ -53,6 +53,17 @@ public interface CompassHits extends CompassHitsOperations {
      */
     CompassDetachedHits detach(int from, int size) throws CompassException, IllegalArgumentException;
 
+    /**
+     * Returns a cursor marking the n'th hit, which can be used with
+     * {@link CompassQuery#setSearchAfter(CompassHitsCursor)} to fetch the hits ranked after it.
+     * Returns <code>null</code> if the hits do not support cursors (for example, when the
+     * query is sorted).
+     *
+     * @param n The n'th hit.
+     * @return A cursor marking the n'th hit, or <code>null</code> if not supported
+     */
+    CompassHitsCursor cursor(int n) throws CompassException;
+
     /**
      * Returns the highlighter that maps the n'th hit.
      * <p/>
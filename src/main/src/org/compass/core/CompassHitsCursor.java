@@ -0,0 +1,74 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core;
+
+import java.io.Serializable;
+
+/**
+ * A cursor marking the position of a hit within {@link CompassHits}. Can be used with
+ * {@link CompassQuery#setSearchAfter(CompassHitsCursor)} in order to fetch the hits ranked
+ * after it (deep paging) without collecting all the hits that come before it.
+ *
+ * <p>A cursor is only meaningful as long as the index has not changed, and is only supported
+ * for queries that are ordered by relevance (have no sort set).
+ *
+ * @author kimchy
+ * @see CompassHits#cursor(int)
+ * @see CompassDetachedHits#getCursor()
+ */
+public final class CompassHitsCursor implements Serializable {
+
+    private static final long serialVersionUID = 2951368475325146701L;
+
+    private final float score;
+
+    private final int doc;
+
+    private final float maxScore;
+
+    public CompassHitsCursor(float score, int doc, float maxScore) {
+        this.score = score;
+        this.doc = doc;
+        this.maxScore = maxScore;
+    }
+
+    /**
+     * The (non normalized) score of the hit.
+     */
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * The internal search engine document number of the hit.
+     */
+    public int getDoc() {
+        return doc;
+    }
+
+    /**
+     * The (non normalized) maximum score of the hits, used to normalize the
+     * scores of hits fetched after the cursor.
+     */
+    public float getMaxScore() {
+        return maxScore;
+    }
+
+    public String toString() {
+        return "cursor [" + doc + "] score [" + score + "]";
+    }
+}
@@ -310,6 +310,63 @@ public interface CompassQuery {
      */
     CompassQueryFilter getFilter();
 
+    /**
+     * Sets the number of hits that are expected to be accessed (for example, the size of a
+     * results page). The search will initially collect only the top <code>pageSize</code>
+     * hits, and will collect more only when hits beyond them are accessed.
+     *
+     * <p>Note, {@link CompassHits#detach(int, int)} automatically makes sure to collect
+     * the detached hits in a single search.
+     *
+     * @param pageSize The number of hits expected to be accessed
+     * @return the query
+     */
+    CompassQuery setPageSize(int pageSize);
+
+    /**
+     * Returns only the hits that are ranked after the given cursor (obtained using
+     * {@link CompassHits#cursor(int)} or {@link CompassDetachedHits#getCursor()}), allowing
+     * for deep paging without collecting all the hits ranked before it. Note, the first hit
+     * of the returned hits is the one ranked right after the cursor, and the hits length is
+     * the number of hits ranked after it.
+     *
+     * <p>Only supported for queries ordered by relevance (with no sort set).
+     *
+     * @param cursor The cursor to return hits after, <code>null</code> to return all hits
+     * @return the query
+     */
+    CompassQuery setSearchAfter(CompassHitsCursor cursor);
+
+    /**
+     * Loads only the given properties (by their resource property names) of the hits resources,
+     * instead of all of their stored properties. Compass will also load the internal properties
+     * required to identify the hits (alias and ids), and for class mappings, the internal properties
+     * required to unmarshall the class properties the given properties are mapped to.
+     *
+     * <p>{@link CompassHits#data(int)} will unmarshall only the loaded properties (other properties
+     * will not be set on the object). Objects and resources loaded using a projection are not kept in
+     * the session first level cache, and must not be saved back to the index.
+     *
+     * @param names The names of the properties to load, <code>null</code> to load all properties
+     * @return the query
+     * @see #setLazyProperties(String[])
+     */
+    CompassQuery setProperties(String... names);
+
+    /**
+     * Loads the given properties (by their resource property names) of the hits resources lazily, only
+     * when their values are first accessed. Useful for large stored properties that are not always used.
+     * If {@link #setProperties(String[])} is also set, the lazy properties are loaded in addition to the
+     * projected properties.
+     *
+     * <p>Note, lazy properties values can only be accessed while the session that executed the query
+     * is still open.
+     *
+     * @param names The names of the properties to load lazily
+     * @return the query
+     */
+    CompassQuery setLazyProperties(String... names);
+
     /**
      * Causes the query to be rewritten before executed to search.
      */
@@ -341,6 +398,12 @@ public interface CompassQuery {
      */
     void delete();
 
+    /**
+     * Returns a facets builder, counting terms, ranges and date intervals of properties
+     * over the documents matching this query.
+     */
+    CompassFacetsBuilder facets() throws CompassException;
+
     /**
      * Returns the count of hits that match this query. Note, this will be faster than
      * {@link CompassHitsOperations#length()}.
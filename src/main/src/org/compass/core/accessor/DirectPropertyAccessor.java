@@ -112,6 +112,10 @@ public class DirectPropertyAccessor implements PropertyAccessor, CompassConfigur
             return null;
         }
 
+        public Field getField() {
+            return this.field.getField();
+        }
+
         public String getMethodName() {
             return null;
         }
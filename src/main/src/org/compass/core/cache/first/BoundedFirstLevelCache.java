@@ -0,0 +1,214 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.cache.first;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.CompassException;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassConfigurable;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.config.ConfigurationException;
+import org.compass.core.spi.ResourceKey;
+
+/**
+ * A first level cache bounded by the number of keys it holds, allowing long running sessions (such as batch
+ * indexing ones) to load large number of objects without running out of memory.
+ *
+ * <p>Once {@link CompassEnvironment.Cache.FirstLevel#MAX_ENTRIES} is reached, the least recently used key is
+ * evicted. When {@link CompassEnvironment.Cache.FirstLevel#EVICTION} is set to <code>weak</code>, cached
+ * objects and resources are also weakly referenced, and are reclaimed by the garbage collector once they are
+ * no longer used by the application. The object and resource of a key are kept in a single entry, so a
+ * lookup is a single hash operation.
+ *
+ * <p>Hit and miss counts are kept so the cache can be sized per workload, and are logged (in debug level)
+ * when the cache is cleared (which also happens when the session is closed).
+ *
+ * @author kimchy
+ */
+public class BoundedFirstLevelCache implements FirstLevelCache, CompassConfigurable {
+
+    private static final Log log = LogFactory.getLog(BoundedFirstLevelCache.class);
+
+    private int maxEntries = 10000;
+
+    private boolean weakValues = false;
+
+    private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<Object>();
+
+    private final LinkedHashMap<ResourceKey, Entry> entries = new LinkedHashMap<ResourceKey, Entry>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<ResourceKey, Entry> eldest) {
+            if (maxEntries > 0 && size() > maxEntries) {
+                evictionCount++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    public void configure(CompassSettings settings) throws CompassException {
+        maxEntries = settings.getSettingAsInt(CompassEnvironment.Cache.FirstLevel.MAX_ENTRIES, 10000);
+        String eviction = settings.getSetting(CompassEnvironment.Cache.FirstLevel.EVICTION, "lru");
+        if ("weak".equalsIgnoreCase(eviction)) {
+            weakValues = true;
+        } else if ("lru".equalsIgnoreCase(eviction)) {
+            weakValues = false;
+        } else {
+            throw new ConfigurationException("First level cache eviction [" + eviction + "] is not supported, use either lru or weak");
+        }
+    }
+
+    public Object get(ResourceKey key) {
+        Entry entry = entries.get(key);
+        return countLookup(entry == null ? null : unwrap(entry.object));
+    }
+
+    public Resource getResource(ResourceKey key) {
+        Entry entry = entries.get(key);
+        return (Resource) countLookup(entry == null ? null : unwrap(entry.resource));
+    }
+
+    public void set(ResourceKey key, Object obj) {
+        entryFor(key).object = wrap(key, obj);
+    }
+
+    public void setResource(ResourceKey key, Resource resource) {
+        entryFor(key).resource = wrap(key, resource);
+    }
+
+    public void evict(ResourceKey key) {
+        entries.remove(key);
+    }
+
+    public void evictAll() {
+        if (log.isDebugEnabled() && (hitCount + missCount) > 0) {
+            log.debug("First level cache cleared with [" + entries.size() + "] entries, hits [" + hitCount
+                    + "], misses [" + missCount + "], hit rate [" + getHitRate() + "], evictions [" + evictionCount + "]");
+        }
+        entries.clear();
+        while (referenceQueue.poll() != null) {
+            // drain
+        }
+    }
+
+    /**
+     * Returns the number of keys currently cached.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of keys evicted since the max entries was reached.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the ratio of lookups that were found in the cache, or <code>0</code> if no lookups were made.
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hitCount / lookups;
+    }
+
+    private Object countLookup(Object value) {
+        if (value == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return value;
+    }
+
+    private Entry entryFor(ResourceKey key) {
+        if (weakValues) {
+            purgeReclaimed();
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private Object wrap(ResourceKey key, Object value) {
+        if (weakValues && value != null) {
+            return new KeyedWeakReference(key, value, referenceQueue);
+        }
+        return value;
+    }
+
+    private static Object unwrap(Object value) {
+        if (value instanceof KeyedWeakReference) {
+            return ((KeyedWeakReference) value).get();
+        }
+        return value;
+    }
+
+    private void purgeReclaimed() {
+        KeyedWeakReference ref;
+        while ((ref = (KeyedWeakReference) referenceQueue.poll()) != null) {
+            Entry entry = entries.get(ref.key);
+            if (entry != null && unwrap(entry.object) == null && unwrap(entry.resource) == null) {
+                entries.remove(ref.key);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        Object object;
+
+        Object resource;
+    }
+
+    private static final class KeyedWeakReference extends WeakReference<Object> {
+
+        private final ResourceKey key;
+
+        private KeyedWeakReference(ResourceKey key, Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+}
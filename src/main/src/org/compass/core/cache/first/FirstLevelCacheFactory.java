@@ -37,7 +37,10 @@ public class FirstLevelCacheFactory implements CompassConfigurable {
 
     private boolean nullFirstLevelCache;
 
+    private CompassSettings settings;
+
     public void configure(CompassSettings settings) throws CompassException {
+        this.settings = settings;
         String transactionProcessorName = settings.getSetting(LuceneEnvironment.Transaction.Processor.TYPE, null);
         if (transactionProcessorName != null
                 && (transactionProcessorName.equalsIgnoreCase(LuceneEnvironment.Transaction.Processor.Lucene.NAME))) {
@@ -61,10 +64,15 @@ public class FirstLevelCacheFactory implements CompassConfigurable {
         if (nullFirstLevelCache) {
             return NullFirstLevelCache.INSTANCE;
         }
+        FirstLevelCache firstLevelCache;
         try {
-            return (FirstLevelCache) firstLevelCacheClass.newInstance();
+            firstLevelCache = (FirstLevelCache) firstLevelCacheClass.newInstance();
         } catch (Exception e) {
             throw new CompassException("Failed to create first level cache", e);
         }
+        if (firstLevelCache instanceof CompassConfigurable) {
+            ((CompassConfigurable) firstLevelCache).configure(settings);
+        }
+        return firstLevelCache;
     }
 }
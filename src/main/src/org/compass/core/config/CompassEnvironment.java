@@ -685,6 +685,23 @@ public class CompassEnvironment {
              * Sets the first level cache class.
              */
             public static final String TYPE = "compass.cache.first";
+
+            /**
+             * The maximum number of keys held by the bounded first level cache before the least recently used
+             * ones are evicted. Defaults to <code>10000</code>, a value of <code>-1</code> means unbounded.
+             *
+             * @see org.compass.core.cache.first.BoundedFirstLevelCache
+             */
+            public static final String MAX_ENTRIES = "compass.cache.first.maxEntries";
+
+            /**
+             * The eviction used by the bounded first level cache, either <code>lru</code> (the default) or
+             * <code>weak</code> which also allows cached values to be garbage collected once they are no longer
+             * used by the application.
+             *
+             * @see org.compass.core.cache.first.BoundedFirstLevelCache
+             */
+            public static final String EVICTION = "compass.cache.first.eviction";
         }
     }
 
@@ -726,6 +743,15 @@ public class CompassEnvironment {
          * <code>false</code>.
          */
         public static final String FILTER_DUPLICATES = "compass.osem.filterDuplicates";
+
+        /**
+         * Should Compass generate (using ASM) a specialized marshaller for each root class mapping when
+         * it is built. Generated marshallers access the mapped fields and properties directly and marshall
+         * and unmarshall them without iterating over the mappings. Only root class mappings that map just
+         * properties, constants and dynamic meta data (no components, references, collections, cascading
+         * or dynamic properties) are compiled, others are marshalled as usual. Defaults to <code>false</code>.
+         */
+        public static final String COMPILE_MARSHALLERS = "compass.osem.compileMarshallers";
     }
 
     public abstract class Jsem {
@@ -737,6 +763,19 @@ public class CompassEnvironment {
 
             public static final String TYPE = "compass.jsem.contentConverter.type";
         }
+
+        /**
+         * Settings applicable to streaming marshalling of raw json objects.
+         */
+        public abstract class Streaming {
+
+            /**
+             * When enabled, raw json objects ({@link org.compass.core.json.RawJsonObject}) are marshalled
+             * while reading the json tokens, mapping the properties on the fly, without building a json object
+             * using the content converter first. Defaults to <code>false</code>.
+             */
+            public static final String ENABLED = "compass.jsem.streaming.enabled";
+        }
     }
 
     public abstract class Xsem {
@@ -843,6 +882,20 @@ public class CompassEnvironment {
                 public static final String OUTPUT_FORMAT = PREFIX + "jdom.outputFormat";
             }
         }
+
+        /**
+         * Settings applicable to streaming marshalling of raw xml objects.
+         */
+        public abstract class Streaming {
+
+            /**
+             * When enabled, raw xml objects ({@link org.compass.core.xml.RawXmlObject}) are marshalled using
+             * a single StAX pass over the xml, matching all the (streamable) xpath expressions of the xml object
+             * mapping at once, without building a DOM. Mappings using xpath expressions that can not be
+             * evaluated while streaming fall back to DOM based marshalling. Defaults to <code>false</code>.
+             */
+            public static final String ENABLED = "compass.xsem.streaming.enabled";
+        }
     }
 
     /**
@@ -375,6 +375,8 @@ public class SchemaConfigurationBuilder extends AbstractXmlConfigurationBuilder
         if (child.size() == 1) {
             Element firstLevelCacheEle = (Element) child.get(0);
             settings.setSetting(CompassEnvironment.Cache.FirstLevel.TYPE, getElementAttribute(firstLevelCacheEle, "type"));
+            settings.setSetting(CompassEnvironment.Cache.FirstLevel.MAX_ENTRIES, getElementAttribute(firstLevelCacheEle, "maxEntries"));
+            settings.setSetting(CompassEnvironment.Cache.FirstLevel.EVICTION, getElementAttribute(firstLevelCacheEle, "eviction"));
         }
     }
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.config.process;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.converter.ConverterLookup;
+import org.compass.core.engine.naming.PropertyNamingStrategy;
+import org.compass.core.mapping.CompassMapping;
+import org.compass.core.mapping.MappingException;
+import org.compass.core.mapping.ResourceMapping;
+import org.compass.core.mapping.osem.ClassMapping;
+import org.compass.core.util.reflection.asm.AsmClassMappingMarshallerGenerator;
+
+/**
+ * Generates a {@link org.compass.core.converter.mapping.osem.CompiledClassMappingMarshaller} for each
+ * root {@link org.compass.core.mapping.osem.ClassMapping} that can be compiled, in case
+ * {@link org.compass.core.config.CompassEnvironment.Osem#COMPILE_MARSHALLERS} is enabled.
+ *
+ * <p>Must run after all the mappings have been flattened and have their converters resolved. Class mappings
+ * that can not be compiled (or failed to be compiled) are marshalled using the inner mappings iteration.
+ *
+ * @author kimchy
+ */
+public class CompiledMarshallerMappingProcessor implements MappingProcessor {
+
+    private static final Log log = LogFactory.getLog(CompiledMarshallerMappingProcessor.class);
+
+    public CompassMapping process(CompassMapping compassMapping, PropertyNamingStrategy namingStrategy,
+                                  ConverterLookup converterLookup, CompassSettings settings) throws MappingException {
+        if (!settings.getSettingAsBoolean(CompassEnvironment.Osem.COMPILE_MARSHALLERS, false)) {
+            return compassMapping;
+        }
+        for (ResourceMapping resourceMapping : compassMapping.getRootMappings()) {
+            if (!(resourceMapping instanceof ClassMapping)) {
+                continue;
+            }
+            ClassMapping classMapping = (ClassMapping) resourceMapping;
+            if (!AsmClassMappingMarshallerGenerator.canGenerate(classMapping)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Class mapping [" + classMapping.getAlias() + "] can not be compiled, using mappings iteration");
+                }
+                continue;
+            }
+            try {
+                classMapping.setCompiledMarshaller(AsmClassMappingMarshallerGenerator.generateMarshaller(classMapping));
+                if (log.isDebugEnabled()) {
+                    log.debug("Compiled marshaller for class mapping [" + classMapping.getAlias() + "]");
+                }
+            } catch (Exception e) {
+                log.warn("Failed to compile marshaller for class mapping [" + classMapping.getAlias() + "], using mappings iteration", e);
+            }
+        }
+        return compassMapping;
+    }
+}
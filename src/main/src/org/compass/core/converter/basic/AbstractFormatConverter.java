@@ -20,12 +20,20 @@ import java.util.Locale;
 
 import org.compass.core.CompassException;
 import org.compass.core.Property;
+import org.compass.core.Resource;
 import org.compass.core.config.CompassConfigurable;
 import org.compass.core.config.CompassEnvironment;
 import org.compass.core.config.CompassSettings;
+import org.compass.core.converter.ConversionException;
 import org.compass.core.converter.basic.format.Formatter;
 import org.compass.core.converter.basic.format.FormatterFactory;
 import org.compass.core.converter.basic.format.ThreadSafeFormat;
+import org.compass.core.converter.basic.format.TrieFormatter;
+import org.compass.core.converter.basic.format.TrieUtils;
+import org.compass.core.converter.mapping.TrieConverter;
+import org.compass.core.mapping.Mapping;
+import org.compass.core.mapping.ResourcePropertyMapping;
+import org.compass.core.marshall.MarshallingContext;
 import org.compass.core.util.StringUtils;
 
 /**
@@ -39,9 +47,12 @@ import org.compass.core.util.StringUtils;
  *
  * <p>Allows to specify the default format if none is provided by overriding {@link #doGetDefaultFormat()}.
  *
+ * <p>If the first format is a trie format (see {@link TrieFormatter}), the lower precision terms are
+ * added as well when marshalling.
+ *
  * @author kimchy
  */
-public abstract class AbstractFormatConverter<T> extends AbstractBasicConverter<T> implements CompassConfigurable, FormatConverter<T> {
+public abstract class AbstractFormatConverter<T> extends AbstractBasicConverter<T> implements CompassConfigurable, FormatConverter<T>, TrieConverter<T> {
 
     protected Formatter[] formatters;
 
@@ -49,6 +60,8 @@ public abstract class AbstractFormatConverter<T> extends AbstractBasicConverter<
 
     protected Locale locale;
 
+    protected TrieFormatter trieFormatter;
+
     public void configure(CompassSettings settings) throws CompassException {
         String format = settings.getSetting(CompassEnvironment.Converter.Format.FORMAT);
         if (format == null) {
@@ -71,6 +84,37 @@ public abstract class AbstractFormatConverter<T> extends AbstractBasicConverter<
         createFormatters(format, null);
     }
 
+    public TrieFormatter getTrieFormatter() {
+        return trieFormatter;
+    }
+
+    /**
+     * Marshalls the value, and if using a trie format, adds its lower precision terms as an internal
+     * property (see {@link TrieUtils#getLowerPrecisionName(String)}).
+     */
+    public boolean marshall(Resource resource, T root, Mapping mapping, MarshallingContext context) throws ConversionException {
+        boolean stored = super.marshall(resource, root, mapping, context);
+        if (trieFormatter == null || root == null) {
+            return stored;
+        }
+        ResourcePropertyMapping resourcePropertyMapping = (ResourcePropertyMapping) mapping;
+        Object value = root;
+        if (root instanceof String) {
+            if (context.getResourceFactory().isNullValue((String) root)) {
+                return stored;
+            }
+            value = fromString((String) root, resourcePropertyMapping, context);
+        }
+        String name = TrieUtils.getLowerPrecisionName(resourcePropertyMapping.getPath().getPath());
+        for (String term : trieFormatter.lowerPrecisionTerms(value)) {
+            Property property = context.getResourceFactory().createProperty(name, term, Property.Store.NO, Property.Index.NOT_ANALYZED);
+            property.setOmitNorms(true);
+            property.setOmitTf(true);
+            resource.addProperty(property);
+        }
+        return stored;
+    }
+
     public FormatConverter copy() {
         try {
             AbstractFormatConverter copy = getClass().newInstance();
@@ -90,6 +134,7 @@ public abstract class AbstractFormatConverter<T> extends AbstractBasicConverter<
     private void createFormatters(String format, CompassSettings settings) {
         String[] formatStrings = StringUtils.delimitedListToStringArray(format, "||");
         formatters = new Formatter[formatStrings.length];
+        trieFormatter = null;
         for (int i = 0; i < formatters.length; i++) {
             String currentFromat = formatStrings[i];
             FormatterFactory formatterFactory = doCreateFormatterFactory();
@@ -106,6 +151,45 @@ public abstract class AbstractFormatConverter<T> extends AbstractBasicConverter<
                 formatters[i] = new ThreadSafeFormat(minPoolSize, maxPoolSize, formatterFactory);
             }
         }
+        if (formatters[0] instanceof TrieFormatter) {
+            trieFormatter = (TrieFormatter) formatters[0];
+        }
+    }
+
+    /**
+     * Returns the number of times no pooled formatter was available and a new one had to be created,
+     * summed over all the (non thread safe) formatters of this converter.
+     *
+     * @see ThreadSafeFormat#getPoolMissCount()
+     */
+    public long getPoolMissCount() {
+        long count = 0;
+        if (formatters != null) {
+            for (Formatter formatter : formatters) {
+                if (formatter instanceof ThreadSafeFormat) {
+                    count += ((ThreadSafeFormat) formatter).getPoolMissCount();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time (in nanoseconds) spent creating formatters because no pooled one was available,
+     * summed over all the (non thread safe) formatters of this converter.
+     *
+     * @see ThreadSafeFormat#getPoolMissTime()
+     */
+    public long getPoolMissTime() {
+        long time = 0;
+        if (formatters != null) {
+            for (Formatter formatter : formatters) {
+                if (formatter instanceof ThreadSafeFormat) {
+                    time += ((ThreadSafeFormat) formatter).getPoolMissTime();
+                }
+            }
+        }
+        return time;
     }
 
     /**
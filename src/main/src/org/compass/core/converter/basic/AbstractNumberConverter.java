@@ -26,6 +26,7 @@ import org.compass.core.converter.ConversionException;
 import org.compass.core.converter.basic.format.Formatter;
 import org.compass.core.converter.basic.format.FormatterFactory;
 import org.compass.core.converter.basic.format.TextFormatFormatter;
+import org.compass.core.converter.basic.format.TrieFormatter;
 import org.compass.core.mapping.ResourcePropertyMapping;
 import org.compass.core.marshall.MarshallingContext;
 
@@ -51,6 +52,13 @@ public abstract class AbstractNumberConverter<N extends Number> extends Abstract
         }
 
         public Formatter create() {
+            if (TrieFormatter.isTrieFormat(format)) {
+                Formatter formatter = createTrieFormatter(TrieFormatter.getPrecisionStep(format));
+                if (formatter == null) {
+                    throw new ConversionException("This converter [" + getClass().getName() + "] does not support trie format");
+                }
+                return formatter;
+            }
             if (SORTABLE_FORMAT.equalsIgnoreCase(format)) {
                 Formatter formatter = createSortableFormatter();
                 if (formatter == null) {
@@ -80,6 +88,14 @@ public abstract class AbstractNumberConverter<N extends Number> extends Abstract
 
     protected abstract Formatter createSortableFormatter();
 
+    /**
+     * Creates a trie formatter (see {@link org.compass.core.converter.basic.format.TrieUtils}) with the
+     * given precision step. Returns <code>null</code> by default, meaning trie format is not supported.
+     */
+    protected TrieFormatter createTrieFormatter(int precisionStep) {
+        return null;
+    }
+
     protected N doFromString(String str, ResourcePropertyMapping resourcePropertyMapping, MarshallingContext context) throws ConversionException {
         if (hasFormatter) {
             ParseException pe = null;
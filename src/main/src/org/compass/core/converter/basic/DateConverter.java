@@ -19,6 +19,7 @@ package org.compass.core.converter.basic;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -26,6 +27,7 @@ import org.compass.core.converter.ConversionException;
 import org.compass.core.converter.basic.format.Formatter;
 import org.compass.core.converter.basic.format.FormatterFactory;
 import org.compass.core.converter.basic.format.TextFormatFormatter;
+import org.compass.core.converter.basic.format.TrieFormatter;
 import org.compass.core.mapping.ResourcePropertyMapping;
 import org.compass.core.marshall.MarshallingContext;
 
@@ -33,6 +35,10 @@ import org.compass.core.marshall.MarshallingContext;
  * Converts dates to String and vice versa. Supports the notion of "now" using
  * {@link org.compass.core.converter.basic.DateMathParser}.
  *
+ * <p>Supports the <code>trie</code> format (see {@link org.compass.core.converter.basic.format.TrieFormatter})
+ * indexing the date millis. Since trie encoded values are not human readable, additional formats
+ * should be configured in order to parse dates used in queries (for example, <code>trie||yyyy-MM-dd</code>).
+ *
  * @author kimchy
  */
 public class DateConverter extends AbstractFormatConverter {
@@ -53,6 +59,22 @@ public class DateConverter extends AbstractFormatConverter {
         }
 
         public Formatter create() {
+            if (TrieFormatter.isTrieFormat(format)) {
+                return new TrieFormatter(TrieFormatter.getPrecisionStep(format)) {
+                    public long toLong(Object obj) {
+                        return ((Date) obj).getTime();
+                    }
+
+                    protected Object fromLong(long value) {
+                        return new Date(value);
+                    }
+
+                    protected Object parseValue(String str) throws ParseException {
+                        // let the other configured formats parse it
+                        throw new ParseException("Not a trie encoded date [" + str + "]", 0);
+                    }
+                };
+            }
             DateFormat dateFormat;
             if (locale != null) {
                 dateFormat = new SimpleDateFormat(format, locale);
@@ -20,6 +20,8 @@ import java.text.ParseException;
 
 import org.compass.core.converter.basic.format.Formatter;
 import org.compass.core.converter.basic.format.NumberUtils;
+import org.compass.core.converter.basic.format.TrieFormatter;
+import org.compass.core.converter.basic.format.TrieUtils;
 import org.compass.core.mapping.ResourcePropertyMapping;
 
 /**
@@ -51,4 +53,24 @@ public class DoubleConverter extends AbstractNumberConverter<Double> {
             }
         };
     }
+
+    protected TrieFormatter createTrieFormatter(int precisionStep) {
+        return new TrieFormatter(precisionStep) {
+            public long toLong(Object obj) {
+                return TrieUtils.doubleToSortableLong(((Number) obj).doubleValue());
+            }
+
+            protected Object fromLong(long value) {
+                return TrieUtils.sortableLongToDouble(value);
+            }
+
+            protected Object parseValue(String str) throws ParseException {
+                try {
+                    return Double.valueOf(str);
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Failed to parse double [" + str + "]", 0);
+                }
+            }
+        };
+    }
 }
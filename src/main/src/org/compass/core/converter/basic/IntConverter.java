@@ -20,6 +20,7 @@ import java.text.ParseException;
 
 import org.compass.core.converter.basic.format.Formatter;
 import org.compass.core.converter.basic.format.NumberUtils;
+import org.compass.core.converter.basic.format.TrieFormatter;
 import org.compass.core.mapping.ResourcePropertyMapping;
 
 /**
@@ -51,4 +52,24 @@ public class IntConverter extends AbstractNumberConverter<Integer> {
             }
         };
     }
+
+    protected TrieFormatter createTrieFormatter(int precisionStep) {
+        return new TrieFormatter(precisionStep) {
+            public long toLong(Object obj) {
+                return ((Number) obj).longValue();
+            }
+
+            protected Object fromLong(long value) {
+                return (int) value;
+            }
+
+            protected Object parseValue(String str) throws ParseException {
+                try {
+                    return Integer.valueOf(str);
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Failed to parse int [" + str + "]", 0);
+                }
+            }
+        };
+    }
 }
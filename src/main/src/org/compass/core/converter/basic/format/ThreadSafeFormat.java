@@ -18,40 +18,34 @@ package org.compass.core.converter.basic.format;
 
 import java.text.ParseException;
 
-import org.compass.core.converter.ConversionException;
+import org.compass.core.util.concurrent.StripedPool;
 
 /**
  * Wrapper around {@link Formatter} that can be called by multiple
  * threads concurrently.
  *
  * <p>Format has a high overhead in creating and is not thread safe. To make best
- * use of resources, the ThreadSafeFormat provides a dynamically sizing pool of
- * instances, each of which will only be called by a single thread at a time.
+ * use of resources, the ThreadSafeFormat provides a lock free pool of
+ * instances (see {@link StripedPool}), each of which will only be called by a single
+ * thread at a time.
  *
- * <p>The pool has a maximum capacity, to limit overhead. If all instances in the
- * pool are in use and another is required, it shall block until one becomes
- * available.
+ * <p>The pool holds up to a maximum number of free instances, to limit overhead. If all
+ * instances in the pool are in use and another is required, a new one is created instead
+ * of waiting for one to become available. {@link #getPoolMissCount()} and {@link #getPoolMissTime()}
+ * can be used to check how often that happens.
  *
  * @author kimchy
  */
 public class ThreadSafeFormat implements Formatter {
 
-    private final int initialPoolSize;
+    private final StripedPool<Formatter> pool;
 
-    private final int maxPoolSize;
-
-    private transient Formatter[] pool;
-
-    private int nextAvailable = 0;
-
-    private final Object mutex = new Object();
-
-    private final FormatterFactory formatterFactory;
-
-    public ThreadSafeFormat(int initialPoolSize, int maxPoolSize, FormatterFactory formatterFactory) {
-        this.initialPoolSize = initialPoolSize;
-        this.maxPoolSize = maxPoolSize;
-        this.formatterFactory = formatterFactory;
+    public ThreadSafeFormat(int initialPoolSize, int maxPoolSize, final FormatterFactory formatterFactory) {
+        this.pool = new StripedPool<Formatter>(initialPoolSize, maxPoolSize) {
+            protected Formatter create() {
+                return formatterFactory.create();
+            }
+        };
     }
 
     public boolean isThreadSafe() {
@@ -59,56 +53,34 @@ public class ThreadSafeFormat implements Formatter {
     }
 
     public String format(Object obj) {
-        Formatter format = fetchFromPool();
+        Formatter format = pool.fetch();
         try {
             return format.format(obj);
         } finally {
-            putInPool(format);
+            pool.release(format);
         }
     }
 
     public Object parse(String str) throws ParseException {
-        Formatter format = fetchFromPool();
+        Formatter format = pool.fetch();
         try {
             return format.parse(str);
         } finally {
-            putInPool(format);
+            pool.release(format);
         }
     }
 
-    private Formatter fetchFromPool() {
-        Formatter result;
-        synchronized (mutex) {
-            if (pool == null) {
-                nextAvailable = -1;
-                pool = new Formatter[maxPoolSize];
-                for (int i = 0; i < initialPoolSize; i++) {
-                    putInPool(formatterFactory.create());
-                }
-            }
-            while (nextAvailable < 0) {
-                try {
-                    mutex.wait();
-                } catch (InterruptedException e) {
-                    throw new ConversionException("Interrupted whilst waiting for a free item in the pool", e);
-                }
-            }
-            result = pool[nextAvailable];
-            nextAvailable--;
-        }
-        if (result == null) {
-            result = formatterFactory.create();
-            putInPool(result);
-        }
-        return result;
+    /**
+     * Returns the number of times no pooled formatter was available and a new one had to be created.
+     */
+    public long getPoolMissCount() {
+        return pool.getMissCount();
     }
 
-    private void putInPool(Formatter format) {
-        synchronized (mutex) {
-            nextAvailable++;
-            pool[nextAvailable] = format;
-            mutex.notify();
-        }
+    /**
+     * Returns the time (in nanoseconds) spent creating formatters because no pooled one was available.
+     */
+    public long getPoolMissTime() {
+        return pool.getMissTime();
     }
-
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.converter.basic.format;
+
+import java.text.ParseException;
+
+import org.compass.core.converter.ConversionException;
+
+/**
+ * A {@link Formatter} formatting values into full precision trie encoded terms (see {@link TrieUtils}).
+ * Used with a <code>trie</code> format, for example <code>format="trie"</code>, or <code>format="trie:8"</code>
+ * in order to set the precision step (defaults to {@link TrieUtils#DEFAULT_PRECISION_STEP}).
+ *
+ * <p>Sub classes convert the value to and from a <code>long</code> and parse non encoded (human readable)
+ * values.
+ *
+ * @author kimchy
+ */
+public abstract class TrieFormatter implements Formatter {
+
+    public static final String TRIE_FORMAT = "trie";
+
+    /**
+     * Returns <code>true</code> if the given format is a trie format.
+     */
+    public static boolean isTrieFormat(String format) {
+        return format != null && (format.equalsIgnoreCase(TRIE_FORMAT) ||
+                format.toLowerCase().startsWith(TRIE_FORMAT + ":"));
+    }
+
+    /**
+     * Returns the precision step of the given trie format.
+     */
+    public static int getPrecisionStep(String format) throws ConversionException {
+        if (format.length() == TRIE_FORMAT.length()) {
+            return TrieUtils.DEFAULT_PRECISION_STEP;
+        }
+        int precisionStep;
+        try {
+            precisionStep = Integer.parseInt(format.substring(TRIE_FORMAT.length() + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new ConversionException("Failed to parse precision step of trie format [" + format + "]", e);
+        }
+        if (precisionStep < 1 || precisionStep > 64) {
+            throw new ConversionException("Precision step of trie format [" + format + "] must be between 1 and 64");
+        }
+        return precisionStep;
+    }
+
+    private final int precisionStep;
+
+    protected TrieFormatter(int precisionStep) {
+        this.precisionStep = precisionStep;
+    }
+
+    /**
+     * Returns the precision step the lower precision terms are created with.
+     */
+    public int getPrecisionStep() {
+        return precisionStep;
+    }
+
+    public String format(Object obj) {
+        return TrieUtils.longToPrefixCoded(toLong(obj), 0);
+    }
+
+    /**
+     * Parses a full precision trie encoded term, or if the value is not encoded, delegates to
+     * {@link #parseValue(String)}.
+     */
+    public Object parse(String str) throws ParseException {
+        if (TrieUtils.isFullPrecisionPrefixCoded(str)) {
+            return fromLong(TrieUtils.prefixCodedToLong(str));
+        }
+        return parseValue(str);
+    }
+
+    /**
+     * Returns the lower precision terms for the given value.
+     */
+    public String[] lowerPrecisionTerms(Object obj) {
+        return TrieUtils.lowerPrecisionTerms(toLong(obj), precisionStep);
+    }
+
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Converts the value into the <code>long</code> it is encoded from.
+     */
+    public abstract long toLong(Object obj);
+
+    /**
+     * Converts the decoded <code>long</code> back into the value.
+     */
+    protected abstract Object fromLong(long value);
+
+    /**
+     * Parses a value that is not trie encoded (for example, when used in a query).
+     */
+    protected abstract Object parseValue(String str) throws ParseException;
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.converter.basic.format;
+
+/**
+ * Trie encoding of numeric values into prefix coded terms. A value is indexed as several terms, one
+ * for each precision level (the value shifted right by multiples of a precision step), allowing
+ * range queries to be rewritten into a small (logarithmic) number of term ranges instead of
+ * enumerating every term within the range.
+ *
+ * <p>Each term starts with a char marking its shift followed by the (shifted, sign flipped)
+ * value in 7 bit chars, so terms sort in the same order as the values they represent. The full
+ * precision term (shift 0) is stored under the property name itself, while the lower precision
+ * terms are indexed under an internal property (see {@link #getLowerPrecisionName(String)}).
+ *
+ * <p>Based on the trie range work of Uwe Schindler for Lucene.
+ *
+ * @author kimchy
+ */
+public final class TrieUtils {
+
+    /**
+     * The default precision step used when none is provided.
+     */
+    public static final int DEFAULT_PRECISION_STEP = 4;
+
+    /**
+     * The prefix of the internal property name that holds the lower precision terms.
+     */
+    public static final String LOWER_PRECISION_PREFIX = "$trie/";
+
+    /**
+     * The char the shift of a prefix coded term starts from.
+     */
+    public static final char SHIFT_START = 0x20;
+
+    /**
+     * The length of a full precision (shift 0) prefix coded term.
+     */
+    public static final int FULL_PRECISION_LENGTH = 63 / 7 + 2;
+
+    private TrieUtils() {
+
+    }
+
+    /**
+     * Returns the internal property name the lower precision terms of the given property are indexed under.
+     */
+    public static String getLowerPrecisionName(String name) {
+        return LOWER_PRECISION_PREFIX + name;
+    }
+
+    /**
+     * Encodes the given value, shifted right by the given shift, into a prefix coded term.
+     */
+    public static String longToPrefixCoded(long value, int shift) {
+        if (shift > 63 || shift < 0) {
+            throw new IllegalArgumentException("Illegal shift value, must be 0..63");
+        }
+        int nChars = (63 - shift) / 7 + 1;
+        char[] buffer = new char[nChars + 1];
+        buffer[0] = (char) (SHIFT_START + shift);
+        long sortableBits = (value ^ 0x8000000000000000L) >>> shift;
+        while (nChars >= 1) {
+            buffer[nChars--] = (char) (sortableBits & 0x7f);
+            sortableBits >>>= 7;
+        }
+        return new String(buffer);
+    }
+
+    /**
+     * Decodes a prefix coded term back into its value (with the lower bits of lower precision terms
+     * set to <code>0</code>).
+     *
+     * @throws NumberFormatException If the term is not a prefix coded term
+     */
+    public static long prefixCodedToLong(String prefixCoded) throws NumberFormatException {
+        if (prefixCoded.length() < 2) {
+            throw new NumberFormatException("Invalid prefix coded value [" + prefixCoded + "]");
+        }
+        int shift = prefixCoded.charAt(0) - SHIFT_START;
+        if (shift > 63 || shift < 0) {
+            throw new NumberFormatException("Invalid shift value in prefix coded value [" + prefixCoded + "]");
+        }
+        long sortableBits = 0;
+        for (int i = 1; i < prefixCoded.length(); i++) {
+            char ch = prefixCoded.charAt(i);
+            if (ch > 0x7f) {
+                throw new NumberFormatException("Invalid prefix coded value [" + prefixCoded + "]");
+            }
+            sortableBits = (sortableBits << 7) | ch;
+        }
+        return (sortableBits << shift) ^ 0x8000000000000000L;
+    }
+
+    /**
+     * Returns <code>true</code> if the given string is a full precision prefix coded term.
+     */
+    public static boolean isFullPrecisionPrefixCoded(String value) {
+        if (value.length() != FULL_PRECISION_LENGTH || value.charAt(0) != SHIFT_START) {
+            return false;
+        }
+        for (int i = 1; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the lower precision terms of the given value (excluding the full precision one).
+     */
+    public static String[] lowerPrecisionTerms(long value, int precisionStep) {
+        String[] terms = new String[(63 / precisionStep)];
+        int i = 0;
+        for (int shift = precisionStep; shift < 64; shift += precisionStep) {
+            terms[i++] = longToPrefixCoded(value, shift);
+        }
+        return terms;
+    }
+
+    /**
+     * Converts a double into a long that sorts the same way the double does (<code>NaN</code> sorts
+     * after positive infinity).
+     */
+    public static long doubleToSortableLong(double value) {
+        long bits = Double.doubleToLongBits(value);
+        if (bits < 0) {
+            bits ^= 0x7fffffffffffffffL;
+        }
+        return bits;
+    }
+
+    /**
+     * Converts a long created using {@link #doubleToSortableLong(double)} back into a double.
+     */
+    public static double sortableLongToDouble(long value) {
+        if (value < 0) {
+            value ^= 0x7fffffffffffffffL;
+        }
+        return Double.longBitsToDouble(value);
+    }
+
+    /**
+     * A callback receiving the term ranges a value range is split into.
+     */
+    public static interface RangeBuilder {
+
+        /**
+         * Adds an inclusive range of prefix coded terms, all encoded with the given shift.
+         */
+        void addRange(String minPrefixCoded, String maxPrefixCoded, int shift);
+    }
+
+    /**
+     * Splits the inclusive value range into the minimal set of prefix coded term ranges, using the
+     * highest precision levels only at the edges of the range.
+     */
+    public static void splitRange(long minBound, long maxBound, int precisionStep, RangeBuilder builder) {
+        if (precisionStep < 1) {
+            throw new IllegalArgumentException("precisionStep must be >= 1");
+        }
+        if (minBound > maxBound) {
+            return;
+        }
+        for (int shift = 0; ; shift += precisionStep) {
+            // calculate new bounds for inner precision
+            final long diff = 1L << (shift + precisionStep);
+            final long mask = ((1L << precisionStep) - 1L) << shift;
+            final boolean hasLower = (minBound & mask) != 0L;
+            final boolean hasUpper = (maxBound & mask) != mask;
+            final long nextMinBound = (hasLower ? (minBound + diff) : minBound) & ~mask;
+            final long nextMaxBound = (hasUpper ? (maxBound - diff) : maxBound) & ~mask;
+            final boolean lowerWrapped = nextMinBound < minBound;
+            final boolean upperWrapped = nextMaxBound > maxBound;
+
+            if (shift + precisionStep >= 64 || nextMinBound > nextMaxBound || lowerWrapped || upperWrapped) {
+                // we are in the lowest precision or the next precision is not available
+                addRange(builder, minBound, maxBound, shift);
+                break;
+            }
+            if (hasLower) {
+                addRange(builder, minBound, minBound | mask, shift);
+            }
+            if (hasUpper) {
+                addRange(builder, maxBound & ~mask, maxBound, shift);
+            }
+            minBound = nextMinBound;
+            maxBound = nextMaxBound;
+        }
+    }
+
+    private static void addRange(RangeBuilder builder, long minBound, long maxBound, int shift) {
+        // the max bound must have all lower bits set since it is inclusive
+        maxBound |= (1L << shift) - 1L;
+        builder.addRange(longToPrefixCoded(minBound, shift), longToPrefixCoded(maxBound, shift), shift);
+    }
+}
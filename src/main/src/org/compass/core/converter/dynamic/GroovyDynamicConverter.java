@@ -3,20 +3,31 @@ package org.compass.core.converter.dynamic;
 import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 import groovy.lang.Script;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.compass.core.converter.ConversionException;
 import org.compass.core.mapping.ResourcePropertyMapping;
 
 /**
+ * Groovy based dynamic converter. The expression is compiled once into a script class, and each
+ * pooled evaluator uses its own instance of the script (since the script binding is not thread safe).
+ *
  * @author kimchy
  */
 public class GroovyDynamicConverter extends AbstractDynamicConverter {
 
     private String expression;
 
+    private Class scriptClass;
+
     private ThreadSafeExpressionEvaluator expressionEvaluator;
 
     public void setExpression(final String expression) throws ConversionException {
         this.expression = expression;
+        try {
+            this.scriptClass = new GroovyShell().parse(expression).getClass();
+        } catch (Exception e) {
+            throw new ConversionException("Failed to compile expression [" + expression + "]", e);
+        }
         this.expressionEvaluator = new ThreadSafeExpressionEvaluator(10, 20,
                 new ExpressionEvaluatorFactory() {
                     public ExpressionEvaluator create() throws ConversionException {
@@ -30,12 +41,30 @@ public class GroovyDynamicConverter extends AbstractDynamicConverter {
         return expressionEvaluator.evaluate(o, resourcePropertyMapping);
     }
 
+    /**
+     * Returns the number of times no pooled evaluator was available and a new one had to be created.
+     *
+     * @see ThreadSafeExpressionEvaluator#getPoolMissCount()
+     */
+    public long getPoolMissCount() {
+        return expressionEvaluator == null ? 0 : expressionEvaluator.getPoolMissCount();
+    }
+
+    /**
+     * Returns the time (in nanoseconds) spent creating evaluators because no pooled one was available.
+     *
+     * @see ThreadSafeExpressionEvaluator#getPoolMissTime()
+     */
+    public long getPoolMissTime() {
+        return expressionEvaluator == null ? 0 : expressionEvaluator.getPoolMissTime();
+    }
+
     public class GroovyExpressionEvaluator implements ExpressionEvaluator {
 
         private Script script;
 
         public GroovyExpressionEvaluator() {
-            this.script = new GroovyShell().parse(expression);
+            this.script = InvokerHelper.createScript(scriptClass, new Binding());
         }
 
         public Object evaluate(Object o, ResourcePropertyMapping resourcePropertyMapping) throws ConversionException {
@@ -2,77 +2,51 @@ package org.compass.core.converter.dynamic;
 
 import org.compass.core.converter.ConversionException;
 import org.compass.core.mapping.ResourcePropertyMapping;
+import org.compass.core.util.concurrent.StripedPool;
 
 /**
  * A pool of {@link ExpressionEvaluator}s where the dynamic expression library
  * does not provide a high performance thread save evaluation.
  *
+ * <p>The pool is lock free (see {@link StripedPool}). If all the pooled evaluators are in use,
+ * a new one is created instead of waiting for one to become available.
+ *
  * @author kimchy
  */
 public class ThreadSafeExpressionEvaluator implements ExpressionEvaluator {
 
-    private final int initialPoolSize;
-
-    private final int maxPoolSize;
-
-    private transient ExpressionEvaluator[] pool;
-
-    private int nextAvailable = 0;
-
-    private final Object mutex = new Object();
-
-    private final ExpressionEvaluatorFactory expressionEvaluatorFactory;
+    private final StripedPool<ExpressionEvaluator> pool;
 
     public ThreadSafeExpressionEvaluator(int initialPoolSize, int maxPoolSize,
-                                         ExpressionEvaluatorFactory expressionEvaluatorFactory) {
-        this.initialPoolSize = initialPoolSize;
-        this.maxPoolSize = maxPoolSize;
-        this.expressionEvaluatorFactory = expressionEvaluatorFactory;
+                                         final ExpressionEvaluatorFactory expressionEvaluatorFactory) {
+        this.pool = new StripedPool<ExpressionEvaluator>(initialPoolSize, maxPoolSize) {
+            protected ExpressionEvaluator create() {
+                return expressionEvaluatorFactory.create();
+            }
+        };
     }
 
 
     public Object evaluate(Object o, ResourcePropertyMapping resourcePropertyMapping) throws ConversionException {
-        ExpressionEvaluator expressionEvaluator = fetchFromPool();
+        ExpressionEvaluator expressionEvaluator = pool.fetch();
         try {
             return expressionEvaluator.evaluate(o, resourcePropertyMapping);
         } finally {
-            putInPool(expressionEvaluator);
+            pool.release(expressionEvaluator);
         }
     }
 
-    private ExpressionEvaluator fetchFromPool() {
-        ExpressionEvaluator result;
-        synchronized (mutex) {
-            if (pool == null) {
-                nextAvailable = -1;
-                pool = new ExpressionEvaluator[maxPoolSize];
-                for (int i = 0; i < initialPoolSize; i++) {
-                    putInPool(expressionEvaluatorFactory.create());
-                }
-            }
-            while (nextAvailable < 0) {
-                try {
-                    mutex.wait();
-                } catch (InterruptedException e) {
-                    throw new ConversionException("Interrupted whilst waiting for a free item in the pool", e);
-                }
-            }
-            result = pool[nextAvailable];
-            nextAvailable--;
-        }
-        if (result == null) {
-            result = expressionEvaluatorFactory.create();
-            putInPool(result);
-        }
-        return result;
+    /**
+     * Returns the number of times no pooled evaluator was available and a new one had to be created.
+     */
+    public long getPoolMissCount() {
+        return pool.getMissCount();
     }
 
-    private void putInPool(ExpressionEvaluator expressionEvaluator) {
-        synchronized (mutex) {
-            nextAvailable++;
-            pool[nextAvailable] = expressionEvaluator;
-            mutex.notify();
-        }
+    /**
+     * Returns the time (in nanoseconds) spent creating evaluators because no pooled one was available.
+     */
+    public long getPoolMissTime() {
+        return pool.getMissTime();
     }
-
 }
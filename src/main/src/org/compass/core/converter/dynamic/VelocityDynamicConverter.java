@@ -16,19 +16,29 @@
 
 package org.compass.core.converter.dynamic;
 
+import java.io.StringReader;
+
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.Velocity;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.runtime.RuntimeSingleton;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.compass.core.converter.ConversionException;
 import org.compass.core.mapping.ResourcePropertyMapping;
 import org.compass.core.util.StringBuilderWriter;
 
 /**
+ * Velocity based dynamic converter. The expression is parsed once (the same way velocity
+ * handles cached templates), and only rendered for each evaluation.
+ *
  * @author kimchy
  */
 public class VelocityDynamicConverter extends AbstractDynamicConverter {
 
     private String vtl;
 
+    private SimpleNode nodeTree;
+
     public void setExpression(String expression) throws ConversionException {
         this.vtl = expression;
         try {
@@ -36,17 +46,33 @@ public class VelocityDynamicConverter extends AbstractDynamicConverter {
         } catch (Exception e) {
             throw new ConversionException("Failed to initialize velocity", e);
         }
+        try {
+            nodeTree = RuntimeSingleton.parse(new StringReader(expression), "");
+            InternalContextAdapterImpl ica = new InternalContextAdapterImpl(new VelocityContext());
+            ica.pushCurrentTemplateName("");
+            try {
+                nodeTree.init(ica, RuntimeSingleton.getRuntimeServices());
+            } finally {
+                ica.popCurrentTemplateName();
+            }
+        } catch (Exception e) {
+            throw new ConversionException("Failed to compile expression [" + expression + "]", e);
+        }
     }
 
     protected Object evaluate(Object o, ResourcePropertyMapping resourcePropertyMapping) throws ConversionException {
         VelocityContext ctx = new VelocityContext();
         ctx.put(DATA_CONTEXT_KEY, o);
+        InternalContextAdapterImpl ica = new InternalContextAdapterImpl(ctx);
 
         StringBuilderWriter sw = StringBuilderWriter.Cached.cached();
+        ica.pushCurrentTemplateName("");
         try {
-            Velocity.evaluate(ctx, sw, "", vtl);
+            nodeTree.render(ica, sw);
         } catch (Exception e) {
             throw new ConversionException("Failed to evaluate [" + o + "] with expression [" + vtl + "]", e);
+        } finally {
+            ica.popCurrentTemplateName();
         }
         return sw.toString();
     }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.converter.mapping;
+
+import org.compass.core.converter.basic.format.TrieFormatter;
+
+/**
+ * Allows for a converter to implement it and expose the trie formatter it indexes values
+ * with, so range queries and filters can be executed over the different precision levels.
+ *
+ * @author kimchy
+ * @see org.compass.core.converter.basic.format.TrieUtils
+ */
+public interface TrieConverter<T> extends ResourcePropertyConverter<T> {
+
+    /**
+     * Returns the trie formatter values are indexed with, or <code>null</code> if the
+     * converter is not configured with a trie format.
+     */
+    TrieFormatter getTrieFormatter();
+}
@@ -35,10 +35,15 @@ import org.compass.core.marshall.MarshallingContext;
 import org.compass.core.spi.InternalResource;
 
 /**
+ * When streaming is enabled ({@link CompassEnvironment.Jsem.Streaming#ENABLED}), {@link RawJsonObject}s
+ * are marshalled using a {@link StreamingJsonObjectMarshaller} without building a json object first.
+ *
  * @author kimchy
  */
 public class RootJsonObjectMappingConverter extends AbstractJsonObjectMappingConverter implements ResourceMappingConverter {
 
+    private final StreamingJsonObjectMarshaller streamingMarshaller = new StreamingJsonObjectMarshaller(this);
+
     public boolean marshall(Resource resource, Object root, Mapping mapping, MarshallingContext context) throws ConversionException {
         // no need to marshall if it is null
         if (root == null && !context.handleNulls()) {
@@ -53,6 +58,11 @@ public class RootJsonObjectMappingConverter extends AbstractJsonObjectMappingCon
         }
 
         RootJsonObjectMapping jsonObjectMapping = (RootJsonObjectMapping) mapping;
+
+        if (root instanceof RawJsonObject && isStreaming(context)) {
+            return marshallStreaming(resource, ((RawJsonObject) root).getJson(), jsonObjectMapping, context);
+        }
+
         JsonObject jsonObject = (JsonObject) root;
 
         jsonObject = getActualJsonObject(jsonObject, jsonObjectMapping, context, resource);
@@ -140,6 +150,26 @@ public class RootJsonObjectMappingConverter extends AbstractJsonObjectMappingCon
         throw new ConversionException("Not supported, please use json-content mapping");
     }
 
+    private boolean marshallStreaming(Resource resource, String json, RootJsonObjectMapping jsonObjectMapping, MarshallingContext context) {
+        // initialize full path
+        JsonFullPathHolder fullPathHolder = new JsonFullPathHolder();
+        context.setAttribute(JsonFullPathHolder.CONTEXT_KEY, fullPathHolder);
+
+        boolean store = streamingMarshaller.marshall(resource, json, jsonObjectMapping, context);
+
+        // store the raw json as is, no need to write the json object back
+        JsonContentMapping contentMapping = jsonObjectMapping.getContentMapping();
+        if (contentMapping != null) {
+            contentMapping.getConverter().marshall(resource, json, contentMapping, context);
+        }
+        ((InternalResource) resource).addUID();
+        return store;
+    }
+
+    private boolean isStreaming(MarshallingContext context) {
+        return context.getSession().getSettings().getSettingAsBoolean(CompassEnvironment.Jsem.Streaming.ENABLED, false);
+    }
+
     private JsonObject getActualJsonObject(JsonObject jsonObject, RootJsonObjectMapping jsonObjectMapping, MarshallingContext context, Resource resource) {
         // in case it is an xml string value, convert it into an xml object
         if (jsonObject instanceof RawJsonObject) {
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.converter.mapping.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.compass.core.Resource;
+import org.compass.core.converter.ConversionException;
+import org.compass.core.converter.json.JsonFullPathHolder;
+import org.compass.core.json.impl.DefaultJSONException;
+import org.compass.core.json.impl.DefaultJSONObject;
+import org.compass.core.json.impl.DefaultJSONStreamParser;
+import org.compass.core.mapping.Mapping;
+import org.compass.core.mapping.json.JsonArrayMapping;
+import org.compass.core.mapping.json.JsonObjectMapping;
+import org.compass.core.mapping.json.Naming;
+import org.compass.core.mapping.json.PlainJsonObjectMapping;
+import org.compass.core.marshall.MarshallingContext;
+
+/**
+ * Marshalls a raw json string directly from a {@link DefaultJSONStreamParser} token stream, without
+ * building a json object tree first. Json objects and arrays are streamed through when they are mapped
+ * using the default {@link PlainJsonObjectMappingConverter} and {@link JsonArrayMappingConverter} (or
+ * are dynamic), other mappings are handed the materialized value of the field.
+ *
+ * <p>The resulting resource holds the same values as the one created by the tree based converters, with
+ * the following differences: properties are added in the order the fields appear in the json document
+ * (and not in the order of the mappings, followed by the dynamic fields), mappings with no field in the
+ * json document are marshalled (with <code>null</code>) last, and a field that appears more than once
+ * is marshalled once per appearance (the tree based converters only keep its last value).
+ *
+ * @author kimchy
+ */
+public class StreamingJsonObjectMarshaller {
+
+    private final AbstractDynamicJsonMappingConverter dynamicConverter;
+
+    private final Map<JsonObjectMapping, Map<String, List<Mapping>>> mappingsByName =
+            new ConcurrentHashMap<JsonObjectMapping, Map<String, List<Mapping>>>();
+
+    private final PlainJsonObjectMapping dynamicObjectMapping;
+
+    private final JsonArrayMapping dynamicArrayMapping;
+
+    public StreamingJsonObjectMarshaller(AbstractDynamicJsonMappingConverter dynamicConverter) {
+        this.dynamicConverter = dynamicConverter;
+        this.dynamicObjectMapping = new PlainJsonObjectMapping();
+        this.dynamicObjectMapping.setDynamic(true);
+        this.dynamicArrayMapping = new JsonArrayMapping();
+        this.dynamicArrayMapping.setDynamic(true);
+    }
+
+    /**
+     * Marshalls the given json string (which must be a json object) against the given object mapping.
+     * Note, the {@link JsonFullPathHolder} should already be set on the context.
+     */
+    public boolean marshall(Resource resource, String json, JsonObjectMapping mapping, MarshallingContext context) throws ConversionException {
+        DefaultJSONStreamParser parser = new DefaultJSONStreamParser(json);
+        try {
+            if (parser.nextToken() != DefaultJSONStreamParser.Token.START_OBJECT) {
+                throw new ConversionException("Json text must start with a json object for alias [" + resource.getAlias() + "]");
+            }
+            return marshallObject(resource, parser, mapping, context);
+        } catch (DefaultJSONException e) {
+            throw new ConversionException("Failed to parse json for alias [" + resource.getAlias() + "]", e);
+        }
+    }
+
+    private boolean marshallObject(Resource resource, DefaultJSONStreamParser parser, JsonObjectMapping mapping, MarshallingContext context) {
+        Map<String, List<Mapping>> mappings = getMappingsByName(mapping);
+        Set<String> marshalledNames = new HashSet<String>();
+        boolean store = false;
+
+        while (parser.nextToken() == DefaultJSONStreamParser.Token.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            List<Mapping> namedMappings = mappings.get(name);
+            if (namedMappings != null) {
+                marshalledNames.add(name);
+                if (namedMappings.size() == 1) {
+                    store |= marshallValue(resource, parser, namedMappings.get(0), context);
+                } else {
+                    // several mappings for the same name, all of them need the same value
+                    Object value = normalizeNull(parser.readValue());
+                    for (Mapping m : namedMappings) {
+                        store |= m.getConverter().marshall(resource, value, m, context);
+                    }
+                }
+            } else if (mapping.isDynamic()) {
+                Naming oldNaming = null;
+                if (mapping.getDynamicNaming() != null) {
+                    oldNaming = (Naming) context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_NAMING, mapping.getDynamicNaming());
+                }
+                marshallDynamicValue(resource, name, parser, false, context);
+                if (mapping.getDynamicNaming() != null) {
+                    // set the original naming
+                    context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_NAMING, oldNaming);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        // mappings with no value in the json object are still marshalled (with null), same as the object tree case
+        for (Iterator<Mapping> it = mapping.mappingsIt(); it.hasNext();) {
+            Mapping m = it.next();
+            if (!marshalledNames.contains(m.getName())) {
+                store |= m.getConverter().marshall(resource, null, m, context);
+            }
+        }
+        return store;
+    }
+
+    private boolean marshallValue(Resource resource, DefaultJSONStreamParser parser, Mapping mapping, MarshallingContext context) {
+        DefaultJSONStreamParser.Token token = parser.getCurrentToken();
+        if (token == DefaultJSONStreamParser.Token.START_OBJECT && mapping instanceof PlainJsonObjectMapping
+                && mapping.getConverter().getClass() == PlainJsonObjectMappingConverter.class) {
+            return marshallPlainObject(resource, parser, (PlainJsonObjectMapping) mapping, context);
+        }
+        if (token == DefaultJSONStreamParser.Token.START_ARRAY && mapping instanceof JsonArrayMapping
+                && mapping.getConverter().getClass() == JsonArrayMappingConverter.class) {
+            return marshallArray(resource, parser, (JsonArrayMapping) mapping, context);
+        }
+        Object value = normalizeNull(parser.readValue());
+        return mapping.getConverter().marshall(resource, value, mapping, context);
+    }
+
+    private boolean marshallPlainObject(Resource resource, DefaultJSONStreamParser parser, PlainJsonObjectMapping mapping, MarshallingContext context) {
+        String name;
+        if (mapping.getName() == null) {
+            name = (String) context.getAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_PATH_CONTEXT_KEY);
+        } else {
+            name = mapping.getName();
+        }
+
+        JsonFullPathHolder fullPathHolder = (JsonFullPathHolder) context.getAttribute(JsonFullPathHolder.CONTEXT_KEY);
+        fullPathHolder.addPath(name);
+
+        boolean store = marshallObject(resource, parser, mapping, context);
+
+        fullPathHolder.removePath();
+
+        return store;
+    }
+
+    private boolean marshallArray(Resource resource, DefaultJSONStreamParser parser, JsonArrayMapping mapping, MarshallingContext context) {
+        String propertyName;
+        if (mapping.getPath() == null) {
+            propertyName = (String) context.getAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_PATH_CONTEXT_KEY);
+        } else {
+            propertyName = mapping.getPath().getPath();
+        }
+
+        boolean store = false;
+        while (parser.nextToken() != DefaultJSONStreamParser.Token.END_ARRAY) {
+            if (mapping.isDynamic()) {
+                Naming oldNaming = null;
+                if (mapping.getDynamicNaming() != null) {
+                    oldNaming = (Naming) context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_NAMING, mapping.getDynamicNaming());
+                }
+                store |= marshallDynamicValue(resource, propertyName, parser, true, context);
+                if (mapping.getDynamicNaming() != null) {
+                    // set the original naming
+                    context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_NAMING, oldNaming);
+                }
+            } else {
+                store |= marshallValue(resource, parser, mapping.getElementMapping(), context);
+            }
+        }
+        return store;
+    }
+
+    private boolean marshallDynamicValue(Resource resource, String name, DefaultJSONStreamParser parser, boolean normalizeNull,
+                                         MarshallingContext context) {
+        DefaultJSONStreamParser.Token token = parser.getCurrentToken();
+        if (token == DefaultJSONStreamParser.Token.START_ARRAY) {
+            Object oldValue = context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_PATH_CONTEXT_KEY, name);
+            boolean store = marshallArray(resource, parser, dynamicArrayMapping, context);
+            context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_PATH_CONTEXT_KEY, oldValue);
+            return store;
+        }
+        if (token == DefaultJSONStreamParser.Token.START_OBJECT) {
+            Object oldValue = context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_PATH_CONTEXT_KEY, name);
+            marshallPlainObject(resource, parser, dynamicObjectMapping, context);
+            context.setAttribute(AbstractDynamicJsonMappingConverter.DYNAMIC_PATH_CONTEXT_KEY, oldValue);
+            return false;
+        }
+        Object value = parser.getValue();
+        if (normalizeNull) {
+            value = normalizeNull(value);
+        }
+        return dynamicConverter.doConvertDynamicValue(resource, name, value, context);
+    }
+
+    private Object normalizeNull(Object value) {
+        if (value != null && DefaultJSONObject.NULL.equals(value)) {
+            return null;
+        }
+        return value;
+    }
+
+    private Map<String, List<Mapping>> getMappingsByName(JsonObjectMapping mapping) {
+        Map<String, List<Mapping>> mappings = mappingsByName.get(mapping);
+        if (mappings == null) {
+            mappings = new HashMap<String, List<Mapping>>();
+            for (Iterator<Mapping> it = mapping.mappingsIt(); it.hasNext();) {
+                Mapping m = it.next();
+                List<Mapping> namedMappings = mappings.get(m.getName());
+                if (namedMappings == null) {
+                    namedMappings = new ArrayList<Mapping>();
+                    mappings.put(m.getName(), namedMappings);
+                }
+                namedMappings.add(m);
+            }
+            mappingsByName.put(mapping, mappings);
+        }
+        return mappings;
+    }
+}
@@ -163,7 +163,11 @@ public class ClassMappingConverter implements ResourceMappingConverter, CompassC
 
         // When we *do not* support unmarshall, we don't care about ids. Therefore, we can also mark
         // marshalled based on object identity and support cyclic support for components without ids.
-        if (classMapping.getIdMappings().length > 0) {
+
+        // Compiled marshallers are only generated for class mappings without nested object mappings, so
+        // the object can not be reached again during the marshalling process and there is no need to mark it.
+        CompiledClassMappingMarshaller compiledMarshaller = classMapping.getCompiledMarshaller();
+        if (compiledMarshaller == null && classMapping.getIdMappings().length > 0) {
             IdsAliasesObjectKey idObjKey = new IdsAliasesObjectKey(classMapping, root);
             if (!idObjKey.hasNullId) {
                 Object marshalled = context.getMarshalled(idObjKey);
@@ -189,7 +193,7 @@ public class ClassMappingConverter implements ResourceMappingConverter, CompassC
                     }
                 }
             }
-        } else if (!classMapping.isSupportUnmarshall()) {
+        } else if (compiledMarshaller == null && !classMapping.isSupportUnmarshall()) {
             IdentityAliasedObjectKey key = new IdentityAliasedObjectKey(classMapping.getAlias(), root);
             Object marshalled = context.getMarshalled(key);
             if (marshalled != null) {
@@ -200,17 +204,22 @@ public class ClassMappingConverter implements ResourceMappingConverter, CompassC
 
         // perform full marshalling of the object into the resource
         boolean store = false;
-        for (Iterator mappingsIt = classMapping.mappingsIt(); mappingsIt.hasNext();) {
+        if (compiledMarshaller != null) {
             context.setAttribute(MarshallingEnvironment.ATTRIBUTE_CURRENT, root);
-            OsemMapping m = (OsemMapping) mappingsIt.next();
-            Object value;
-            if (m.hasAccessors()) {
-                Getter getter = ((ObjectMapping) m).getGetter();
-                value = getter.get(root);
-            } else {
-                value = root;
+            store = compiledMarshaller.marshall(resource, root, context);
+        } else {
+            for (Iterator mappingsIt = classMapping.mappingsIt(); mappingsIt.hasNext();) {
+                context.setAttribute(MarshallingEnvironment.ATTRIBUTE_CURRENT, root);
+                OsemMapping m = (OsemMapping) mappingsIt.next();
+                Object value;
+                if (m.hasAccessors()) {
+                    Getter getter = ((ObjectMapping) m).getGetter();
+                    value = getter.get(root);
+                } else {
+                    value = root;
+                }
+                store |= m.getConverter().marshall(resource, value, m, context);
             }
-            store |= m.getConverter().marshall(resource, value, m, context);
         }
 
         // marshall the uid last
@@ -297,30 +306,35 @@ public class ClassMappingConverter implements ResourceMappingConverter, CompassC
         // references or components with ids
         if (resourceKey != null) {
             context.setUnmarshalled(resourceKey, obj);
-            if (classMapping.isRoot()) {
+            if (classMapping.isRoot() && !((InternalResource) resource).isPartial()) {
                 context.getSession().getFirstLevelCache().set(resourceKey, obj);
             }
         }
 
         boolean isNullClass = true;
-        for (Iterator mappingsIt = classMapping.mappingsIt(); mappingsIt.hasNext();) {
-            context.setAttribute(MarshallingEnvironment.ATTRIBUTE_CURRENT, obj);
-            OsemMapping m = (OsemMapping) mappingsIt.next();
-            if (m.hasAccessors()) {
-                Setter setter = ((ObjectMapping) m).getSetter();
-                if (setter == null) {
-                    continue;
-                }
-                Object value = m.getConverter().unmarshall(resource, m, context);
-                if (value == null) {
-                    continue;
-                }
-                setter.set(obj, value);
-                if (m.controlsObjectNullability()) {
-                    isNullClass = false;
+        CompiledClassMappingMarshaller compiledMarshaller = classMapping.getCompiledMarshaller();
+        if (compiledMarshaller != null) {
+            isNullClass = !compiledMarshaller.unmarshall(resource, obj, context);
+        } else {
+            for (Iterator mappingsIt = classMapping.mappingsIt(); mappingsIt.hasNext();) {
+                context.setAttribute(MarshallingEnvironment.ATTRIBUTE_CURRENT, obj);
+                OsemMapping m = (OsemMapping) mappingsIt.next();
+                if (m.hasAccessors()) {
+                    Setter setter = ((ObjectMapping) m).getSetter();
+                    if (setter == null) {
+                        continue;
+                    }
+                    Object value = m.getConverter().unmarshall(resource, m, context);
+                    if (value == null) {
+                        continue;
+                    }
+                    setter.set(obj, value);
+                    if (m.controlsObjectNullability()) {
+                        isNullClass = false;
+                    }
+                } else {
+                    m.getConverter().unmarshall(resource, m, context);
                 }
-            } else {
-                m.getConverter().unmarshall(resource, m, context);
             }
         }
         if (isNullClass) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.converter.mapping.osem;
+
+import org.compass.core.Resource;
+import org.compass.core.converter.ConversionException;
+import org.compass.core.converter.Converter;
+import org.compass.core.mapping.Mapping;
+import org.compass.core.marshall.MarshallingContext;
+
+/**
+ * A base class for marshallers generated for a specific {@link org.compass.core.mapping.osem.ClassMapping}.
+ * Generated marshallers go over the class mapping inner mappings (in the order they are held in
+ * <code>mappings</code>) directly, accessing the object fields and properties without reflection.
+ *
+ * <p>The {@link ClassMappingConverter} takes care of everything besides the marshalling and unmarshalling
+ * of the inner mappings (boost, poly class, uid, object construction, caching).
+ *
+ * @author kimchy
+ * @see org.compass.core.util.reflection.asm.AsmClassMappingMarshallerGenerator
+ */
+public abstract class CompiledClassMappingMarshaller {
+
+    protected final Mapping[] mappings;
+
+    protected final Converter[] converters;
+
+    protected CompiledClassMappingMarshaller(Mapping[] mappings) {
+        this.mappings = mappings;
+        this.converters = new Converter[mappings.length];
+        for (int i = 0; i < mappings.length; i++) {
+            converters[i] = mappings[i].getConverter();
+        }
+    }
+
+    /**
+     * Marshalls all the inner mappings of the given root object into the resource.
+     *
+     * @return <code>true</code> if any of the inner mappings stored data in the resource
+     */
+    public abstract boolean marshall(Resource resource, Object root, MarshallingContext context) throws ConversionException;
+
+    /**
+     * Unmarshalls all the inner mappings from the resource into the given (already constructed) object.
+     *
+     * @return <code>true</code> if a value controlling the object nullability was set on the object
+     */
+    public abstract boolean unmarshall(Resource resource, Object obj, MarshallingContext context) throws ConversionException;
+}
@@ -22,7 +22,9 @@ import org.compass.core.converter.ConversionException;
 import org.compass.core.converter.Converter;
 import org.compass.core.converter.DelegateConverter;
 import org.compass.core.converter.basic.FormatConverter;
+import org.compass.core.converter.basic.format.TrieFormatter;
 import org.compass.core.converter.mapping.ResourcePropertyConverter;
+import org.compass.core.converter.mapping.TrieConverter;
 import org.compass.core.mapping.Mapping;
 import org.compass.core.mapping.ResourcePropertyMapping;
 import org.compass.core.marshall.MarshallingContext;
@@ -33,7 +35,7 @@ import org.compass.core.marshall.MarshallingContext;
  *
  * @author kimchy
  */
-public class FormatDelegateConverter implements DelegateConverter, ResourcePropertyConverter {
+public class FormatDelegateConverter implements DelegateConverter, ResourcePropertyConverter, TrieConverter {
 
     private FormatConverter delegatedConverter;
 
@@ -86,6 +88,13 @@ public class FormatDelegateConverter implements DelegateConverter, ResourcePrope
         return delegatedConverter.canNormalize();
     }
 
+    public TrieFormatter getTrieFormatter() {
+        if (delegatedConverter instanceof TrieConverter) {
+            return ((TrieConverter) delegatedConverter).getTrieFormatter();
+        }
+        return null;
+    }
+
     public Property.Index suggestIndex() {
         return delegatedConverter.suggestIndex();
     }
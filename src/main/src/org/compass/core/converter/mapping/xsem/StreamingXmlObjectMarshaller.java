@@ -0,0 +1,258 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.converter.mapping.xsem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.Property;
+import org.compass.core.Resource;
+import org.compass.core.converter.ConversionException;
+import org.compass.core.converter.Converter;
+import org.compass.core.converter.xsem.SimpleXmlValueConverter;
+import org.compass.core.mapping.Mapping;
+import org.compass.core.mapping.xsem.XmlContentMapping;
+import org.compass.core.mapping.xsem.XmlObjectMapping;
+import org.compass.core.mapping.xsem.XmlPropertyMapping;
+import org.compass.core.marshall.MarshallingContext;
+import org.compass.core.spi.InternalResource;
+import org.compass.core.spi.MultiResource;
+import org.compass.core.util.CopyUtils;
+import org.compass.core.xml.RawXmlObject;
+import org.compass.core.xml.XmlObject;
+import org.compass.core.xml.stream.StreamingXPath;
+import org.compass.core.xml.stream.StreamingXPathMatcher;
+
+/**
+ * Marshalls raw xml into resources based on an {@link XmlObjectMapping} using a single StAX pass over
+ * the xml. All the xpath expressions of the mapping that can be streamed (see {@link StreamingXPath})
+ * are compiled into one {@link StreamingXPathMatcher}, and the matched values are passed to the
+ * xml property value converters as {@link org.compass.core.xml.stream.StreamedXmlObject}s.
+ *
+ * <p>If the xml object mapping has no xpath, mappings that can not be streamed (non streamable xpath
+ * expressions, relative xpath expressions, custom converters) are marshalled using a DOM built from the
+ * xml. An xml content mapping stores the raw xml. If the xml object mapping has an xpath, the mapping is
+ * only streamable when all its mappings are ({@link #isStreamable()}).
+ *
+ * <p>Properties are added to the resource in the same order as the DOM based marshalling.
+ *
+ * @author kimchy
+ */
+public class StreamingXmlObjectMarshaller {
+
+    private static final Log log = LogFactory.getLog(StreamingXmlObjectMarshaller.class);
+
+    private static final int DOM = 0;
+
+    private static final int ID = 1;
+
+    private static final int PROPERTY = 2;
+
+    private static final int CONTENT = 3;
+
+    private final XmlObjectMapping xmlObjectMapping;
+
+    private final Map<String, String> namespaces;
+
+    private final Mapping[] mappings;
+
+    private final int[] types;
+
+    private final StreamingXPathMatcher matcher;
+
+    private boolean requiresDom;
+
+    private boolean requiresXml;
+
+    private XMLInputFactory inputFactory;
+
+    public StreamingXmlObjectMarshaller(XmlObjectMapping xmlObjectMapping, Map<String, String> namespaces) {
+        this.xmlObjectMapping = xmlObjectMapping;
+        this.namespaces = namespaces;
+
+        boolean streamable = true;
+        StreamingXPath rootXPath = null;
+        if (xmlObjectMapping.getXPath() != null) {
+            rootXPath = StreamingXPath.compile(xmlObjectMapping.getXPath(), namespaces);
+            if (rootXPath == null || !rootXPath.isAbsolute() || rootXPath.isAttribute()) {
+                streamable = false;
+            }
+        }
+
+        List<Mapping> mappingsList = new ArrayList<Mapping>();
+        for (Iterator it = xmlObjectMapping.mappingsIt(); it.hasNext();) {
+            mappingsList.add((Mapping) it.next());
+        }
+        mappings = mappingsList.toArray(new Mapping[mappingsList.size()]);
+        types = new int[mappings.length];
+        StreamingXPath[] xpaths = new StreamingXPath[mappings.length];
+        for (int i = 0; i < mappings.length; i++) {
+            Mapping mapping = mappings[i];
+            Converter converter = mapping.getConverter();
+            if (mapping instanceof XmlPropertyMapping && converter != null
+                    && (converter.getClass() == XmlPropertyMappingConverter.class || converter.getClass() == XmlIdMappingConverter.class)
+                    && ((XmlPropertyMapping) mapping).getValueConverter() instanceof SimpleXmlValueConverter) {
+                StreamingXPath xpath = StreamingXPath.compile(((XmlPropertyMapping) mapping).getXPath(), namespaces);
+                // relative expressions are evaluated against the root element by some xml implementations, and
+                // against the document by others, so only stream them relative to the xml object mapping xpath
+                if (xpath != null && xpath.isAbsolute() == (xmlObjectMapping.getXPath() == null)) {
+                    xpaths[i] = xpath;
+                    types[i] = converter.getClass() == XmlIdMappingConverter.class ? ID : PROPERTY;
+                    continue;
+                }
+            } else if (mapping instanceof XmlContentMapping && converter != null
+                    && converter.getClass() == XmlContentMappingConverter.class && xmlObjectMapping.getXPath() == null) {
+                types[i] = CONTENT;
+                requiresXml = true;
+                continue;
+            }
+            types[i] = DOM;
+            requiresDom = true;
+        }
+        if (xmlObjectMapping.getXPath() != null && requiresDom) {
+            streamable = false;
+        }
+
+        if (streamable) {
+            matcher = new StreamingXPathMatcher(rootXPath, xpaths);
+            inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        } else {
+            matcher = null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Alias [" + xmlObjectMapping.getAlias() + "] is " + (streamable ? "" : "not ") + "streamable" +
+                    (streamable && requiresDom ? ", some mappings will be marshalled using DOM" : ""));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the xml object mapping can be marshalled by streaming.
+     */
+    public boolean isStreamable() {
+        return matcher != null;
+    }
+
+    /**
+     * Marshalls the given raw xml into the resource (or resources if the xml object mapping has an xpath
+     * expression).
+     */
+    public boolean marshall(Resource resource, Reader xml, XmlObjectMappingConverter converter, MarshallingContext context)
+            throws ConversionException {
+        String xmlContent = null;
+        Reader reader = xml;
+        if (requiresXml || requiresDom) {
+            try {
+                xmlContent = CopyUtils.copyToString(xml);
+            } catch (IOException e) {
+                throw new ConversionException("Failed to read xml for alias [" + xmlObjectMapping.getAlias() + "]", e);
+            }
+            reader = new StringReader(xmlContent);
+        }
+
+        List<StreamingXPathMatcher.Scope> scopes;
+        try {
+            XMLStreamReader streamReader = inputFactory.createXMLStreamReader(reader);
+            try {
+                scopes = matcher.match(streamReader);
+            } finally {
+                streamReader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new ConversionException("Failed to stream xml for alias [" + xmlObjectMapping.getAlias() + "]", e);
+        }
+
+        if (xmlObjectMapping.getXPath() == null) {
+            XmlObject dom = null;
+            if (requiresDom) {
+                dom = converter.getActualXmlObject(new RawXmlObject(xmlContent), xmlObjectMapping, context, resource);
+                dom.setNamespaces(namespaces);
+            }
+            boolean store = marshall(resource, scopes.get(0), dom, xmlContent, context);
+            ((InternalResource) resource).addUID();
+            return store;
+        }
+
+        if (scopes.isEmpty()) {
+            throw new ConversionException("xpath [" + xmlObjectMapping.getXPath() + "] returned no value for alias [" +
+                    xmlObjectMapping.getAlias() + "]");
+        }
+        boolean store = false;
+        MultiResource multiResource = (MultiResource) resource;
+        multiResource.clear();
+        for (StreamingXPathMatcher.Scope scope : scopes) {
+            multiResource.addResource();
+            InternalResource currentResource = (InternalResource) multiResource.currentResource();
+            store |= marshall(currentResource, scope, null, null, context);
+            currentResource.addUID();
+        }
+        return store;
+    }
+
+    private boolean marshall(Resource resource, StreamingXPathMatcher.Scope scope, XmlObject dom, String xmlContent,
+                             MarshallingContext context) throws ConversionException {
+        boolean store = false;
+        for (int i = 0; i < mappings.length; i++) {
+            switch (types[i]) {
+                case ID: {
+                    XmlPropertyMapping xmlPropertyMapping = (XmlPropertyMapping) mappings[i];
+                    List<XmlObject> values = scope.getValues(i);
+                    if (values.isEmpty()) {
+                        throw new ConversionException("Id with xpath [" + xmlPropertyMapping.getXPath() + "] returned no values");
+                    }
+                    XmlObject xmlObject = values.get(0);
+                    xmlObject.setNamespaces(namespaces);
+                    if (!xmlPropertyMapping.getValueConverter().marshall(resource, xmlObject, xmlPropertyMapping, context)) {
+                        throw new ConversionException("No id value for xpath expression [" + xmlPropertyMapping.getXPath() + "]");
+                    }
+                    store = true;
+                    break;
+                }
+                case PROPERTY: {
+                    XmlPropertyMapping xmlPropertyMapping = (XmlPropertyMapping) mappings[i];
+                    for (XmlObject xmlObject : scope.getValues(i)) {
+                        xmlObject.setNamespaces(namespaces);
+                        store |= xmlPropertyMapping.getValueConverter().marshall(resource, xmlObject, xmlPropertyMapping, context);
+                    }
+                    break;
+                }
+                case CONTENT: {
+                    XmlContentMapping xmlContentMapping = (XmlContentMapping) mappings[i];
+                    Property p = context.getResourceFactory().createProperty(xmlContentMapping.getPath().getPath(),
+                            xmlContent, xmlContentMapping);
+                    resource.addProperty(p);
+                    store |= xmlContentMapping.getStore() != Property.Store.NO;
+                    break;
+                }
+                default:
+                    store |= mappings[i].getConverter().marshall(resource, dom, mappings[i], context);
+            }
+        }
+        return store;
+    }
+}
@@ -21,6 +21,7 @@ import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.compass.core.CompassException;
 import org.compass.core.Property;
@@ -46,6 +47,9 @@ import org.compass.core.xml.XmlObject;
  * Note, that marshalls might create several resources, if the {@link XmlObjectMapping} has
  * an xpath expression associated with it.
  * <p/>
+ * When streaming is enabled ({@link CompassEnvironment.Xsem.Streaming#ENABLED}), {@link RawXmlObject}s
+ * are marshalled using a {@link StreamingXmlObjectMarshaller} without building a DOM (if the mapping allows it).
+ * <p/>
  *
  * @author kimchy
  */
@@ -53,6 +57,9 @@ public class XmlObjectMappingConverter implements ResourceMappingConverter {
 
     private Map<String, String> namespace;
 
+    private final Map<XmlObjectMapping, StreamingXmlObjectMarshaller> streamingMarshallers =
+            new ConcurrentHashMap<XmlObjectMapping, StreamingXmlObjectMarshaller>();
+
     public boolean marshall(Resource resource, Object root, Mapping mapping, MarshallingContext context) throws ConversionException {
         extractNamespace(context);
         // no need to marshall if it is null
@@ -70,6 +77,13 @@ public class XmlObjectMappingConverter implements ResourceMappingConverter {
         XmlObjectMapping xmlObjectMapping = (XmlObjectMapping) mapping;
         XmlObject rootXmlObject = (XmlObject) root;
 
+        if (rootXmlObject instanceof RawXmlObject && isStreaming(context)) {
+            StreamingXmlObjectMarshaller streamingMarshaller = getStreamingMarshaller(xmlObjectMapping);
+            if (streamingMarshaller.isStreamable()) {
+                return streamingMarshaller.marshall(resource, ((RawXmlObject) rootXmlObject).getXml(), this, context);
+            }
+        }
+
         rootXmlObject = getActualXmlObject(rootXmlObject, xmlObjectMapping, context, resource);
         rootXmlObject.setNamespaces(namespace);
 
@@ -185,7 +199,7 @@ public class XmlObjectMappingConverter implements ResourceMappingConverter {
         throw new ConversionException("Not supported, please use xml-content mapping");
     }
 
-    private XmlObject getActualXmlObject(XmlObject rootXmlObject, XmlObjectMapping xmlObjectMapping, MarshallingContext context, Resource resource) {
+    XmlObject getActualXmlObject(XmlObject rootXmlObject, XmlObjectMapping xmlObjectMapping, MarshallingContext context, Resource resource) {
         // in case it is an xml string value, convert it into an xml object
         if (rootXmlObject instanceof RawXmlObject) {
             Reader xml = ((RawXmlObject) rootXmlObject).getXml();
@@ -202,6 +216,18 @@ public class XmlObjectMappingConverter implements ResourceMappingConverter {
         return rootXmlObject;
     }
 
+    private boolean isStreaming(MarshallingContext context) {
+        return context.getSession().getSettings().getSettingAsBoolean(CompassEnvironment.Xsem.Streaming.ENABLED, false);
+    }
+
+    private StreamingXmlObjectMarshaller getStreamingMarshaller(XmlObjectMapping xmlObjectMapping) {
+        StreamingXmlObjectMarshaller streamingMarshaller = streamingMarshallers.get(xmlObjectMapping);
+        if (streamingMarshaller == null) {
+            streamingMarshaller = new StreamingXmlObjectMarshaller(xmlObjectMapping, namespace);
+            streamingMarshallers.put(xmlObjectMapping, streamingMarshaller);
+        }
+        return streamingMarshaller;
+    }
 
     private void extractNamespace(MarshallingContext context) throws CompassException {
         if (namespace != null) {
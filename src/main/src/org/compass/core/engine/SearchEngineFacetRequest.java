@@ -0,0 +1,132 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.engine;
+
+/**
+ * A request to compute a facet over the documents matching a {@link SearchEngineQuery}.
+ * All the values are the search engine (string) representation of the property values.
+ *
+ * @author kimchy
+ * @see SearchEngineQuery#facets(SearchEngine, SearchEngineFacetRequest[])
+ */
+public class SearchEngineFacetRequest {
+
+    public static enum Type {
+        TERMS,
+        RANGE,
+        HISTOGRAM
+    }
+
+    /**
+     * Resolves the bucket a term belongs to for histogram facets.
+     */
+    public static interface TermBucketResolver {
+
+        /**
+         * Returns the (comparable) bucket the given term belongs to, or <code>null</code> if it
+         * should not be counted.
+         */
+        Comparable bucket(String term);
+    }
+
+    /**
+     * Creates a facet counting the <code>size</code> terms with the highest counts.
+     */
+    public static SearchEngineFacetRequest terms(String name, String propertyName, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Terms facet [" + name + "] size must be greater than 0");
+        }
+        SearchEngineFacetRequest request = new SearchEngineFacetRequest(name, propertyName, Type.TERMS);
+        request.size = size;
+        return request;
+    }
+
+    /**
+     * Creates a facet counting consecutive ranges. Each two consecutive boundaries define a range,
+     * including the lower and excluding the upper boundary. The first and last boundaries can be
+     * <code>null</code> for unbounded ranges. The labels are the values of the ranges entries.
+     */
+    public static SearchEngineFacetRequest range(String name, String propertyName, String[] boundaries, Object[] labels) {
+        if (boundaries.length < 2) {
+            throw new IllegalArgumentException("Range facet [" + name + "] must have at least two boundaries");
+        }
+        if (labels.length != boundaries.length - 1) {
+            throw new IllegalArgumentException("Range facet [" + name + "] must have a label for each range");
+        }
+        SearchEngineFacetRequest request = new SearchEngineFacetRequest(name, propertyName, Type.RANGE);
+        request.boundaries = boundaries;
+        request.labels = labels;
+        return request;
+    }
+
+    /**
+     * Creates a facet counting the buckets the matching terms belong to.
+     */
+    public static SearchEngineFacetRequest histogram(String name, String propertyName, TermBucketResolver bucketResolver) {
+        SearchEngineFacetRequest request = new SearchEngineFacetRequest(name, propertyName, Type.HISTOGRAM);
+        request.bucketResolver = bucketResolver;
+        return request;
+    }
+
+    private final String name;
+
+    private final String propertyName;
+
+    private final Type type;
+
+    private int size;
+
+    private String[] boundaries;
+
+    private Object[] labels;
+
+    private TermBucketResolver bucketResolver;
+
+    private SearchEngineFacetRequest(String name, String propertyName, Type type) {
+        this.name = name;
+        this.propertyName = propertyName;
+        this.type = type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String[] getBoundaries() {
+        return boundaries;
+    }
+
+    public Object[] getLabels() {
+        return labels;
+    }
+
+    public TermBucketResolver getBucketResolver() {
+        return bucketResolver;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.compass.core.engine;
 
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.Resource;
 
 /**
@@ -43,6 +44,18 @@ public interface SearchEngineHits {
      */
     float score(int i) throws SearchEngineException;
 
+    /**
+     * Hints that the first <code>n</code> hits are about to be accessed, allowing to collect
+     * all of them in a single search.
+     */
+    void prefetch(int n) throws SearchEngineException;
+
+    /**
+     * Returns a cursor marking the n'th hit, or <code>null</code> if cursors are not supported
+     * for these hits.
+     */
+    CompassHitsCursor cursor(int n) throws SearchEngineException;
+
     /**
      * Returns an highlighter for the hits.
      */
@@ -18,6 +18,8 @@ package org.compass.core.engine;
 
 import java.util.Locale;
 
+import org.compass.core.CompassFacet;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.CompassQuery.SortDirection;
 import org.compass.core.CompassQuery.SortImplicitType;
 import org.compass.core.CompassQuery.SortPropertyType;
@@ -55,6 +57,14 @@ public interface SearchEngineQuery {
 
     SearchEngineQuery setFilter(SearchEngineQueryFilter filter);
 
+    SearchEngineQuery setPageSize(int pageSize);
+
+    SearchEngineQuery setSearchAfter(CompassHitsCursor cursor);
+
+    SearchEngineQuery setProperties(String[] names);
+
+    SearchEngineQuery setLazyProperties(String[] names);
+
     SearchEngineQuery rewrite();
 
     boolean isSuggested();
@@ -65,5 +75,10 @@ public interface SearchEngineQuery {
 
     long count(SearchEngine searchEngine, float minimumScore);
 
+    /**
+     * Computes the given facets over the documents matching the query.
+     */
+    CompassFacet[] facets(SearchEngine searchEngine, SearchEngineFacetRequest[] requests) throws SearchEngineException;
+
     Object clone() throws CloneNotSupportedException;
 }
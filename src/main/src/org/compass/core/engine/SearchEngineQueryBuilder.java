@@ -173,6 +173,13 @@ public interface SearchEngineQueryBuilder {
 
     SearchEngineQuery ge(String resourcePropertyName, String value);
 
+    /**
+     * A constant score range query over a trie encoded property, low and high are full precision
+     * trie encoded values (<code>null</code> for an open range).
+     */
+    SearchEngineQuery trieBetween(String resourcePropertyName, String low, String high, boolean includeLow,
+                                  boolean includeHigh, int precisionStep);
+
     SearchEngineQuery prefix(String resourcePropertyName, String prefix);
 
     SearchEngineQuery fuzzy(String resourcePropertyName, String value);
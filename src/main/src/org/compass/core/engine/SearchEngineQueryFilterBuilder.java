@@ -47,6 +47,13 @@ public interface SearchEngineQueryFilterBuilder {
 
     SearchEngineQueryFilter ge(String resourcePropertyName, String value);
 
+    /**
+     * A range filter over a trie encoded property, low and high are full precision trie encoded
+     * values (<code>null</code> for an open range).
+     */
+    SearchEngineQueryFilter trieBetween(String resourcePropertyName, String low, String high, boolean includeLow,
+                                        boolean includeHigh, int precisionStep);
+
     SearchEngineQueryFilter query(SearchEngineQuery query);
 
     SearchEngineBooleanQueryFilterBuilder bool();
@@ -20,6 +20,7 @@ import org.compass.core.CompassDetachedHits;
 import org.compass.core.CompassException;
 import org.compass.core.CompassHighlightedText;
 import org.compass.core.CompassHit;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.CompassQuery;
 import org.compass.core.Resource;
 import org.compass.core.mapping.AliasMapping;
@@ -50,6 +51,8 @@ public class DefaultCompassDetachedHits extends AbstractCompassHits implements C
 
     private CompassQuery suggestedQuery;
 
+    private CompassHitsCursor cursor;
+
     public DefaultCompassDetachedHits(InternalCompassHits hits, InternalCompassSession session, int from, int size,
                                       CompassQuery query, CompassQuery suggestedQuery)
             throws CompassException, IllegalArgumentException {
@@ -82,6 +85,9 @@ public class DefaultCompassDetachedHits extends AbstractCompassHits implements C
                 datas[i] = session.getByResource(resources[i]);
             }
         }
+        if (this.length > 0) {
+            cursor = hits.cursor(from + this.length - 1);
+        }
     }
 
     public CompassQuery getQuery() {
@@ -136,4 +142,8 @@ public class DefaultCompassDetachedHits extends AbstractCompassHits implements C
         return hits;
     }
 
+    public CompassHitsCursor getCursor() {
+        return cursor;
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.impl;
+
+import org.compass.core.CompassFacet;
+
+/**
+ * @author kimchy
+ */
+public class DefaultCompassFacet implements CompassFacet {
+
+    public static class DefaultEntry implements Entry {
+
+        private final Object value;
+
+        private final long count;
+
+        public DefaultEntry(Object value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public String toString() {
+            return value + ":" + count;
+        }
+    }
+
+    private final String name;
+
+    private final String propertyName;
+
+    private final Entry[] entries;
+
+    public DefaultCompassFacet(String name, String propertyName, Entry[] entries) {
+        this.name = name;
+        this.propertyName = propertyName;
+        this.entries = entries;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Entry[] getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.impl;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.compass.core.CompassException;
+import org.compass.core.CompassFacet;
+import org.compass.core.CompassFacetsBuilder;
+import org.compass.core.engine.SearchEngineFacetRequest;
+import org.compass.core.engine.SearchEngineQuery;
+import org.compass.core.mapping.ResourcePropertyLookup;
+import org.compass.core.spi.InternalCompassSession;
+
+/**
+ * @author kimchy
+ */
+public class DefaultCompassFacetsBuilder implements CompassFacetsBuilder {
+
+    private final InternalCompassSession session;
+
+    private final SearchEngineQuery searchEngineQuery;
+
+    private final List<SearchEngineFacetRequest> requests = new ArrayList<SearchEngineFacetRequest>();
+
+    public DefaultCompassFacetsBuilder(InternalCompassSession session, SearchEngineQuery searchEngineQuery) {
+        this.session = session;
+        this.searchEngineQuery = searchEngineQuery;
+    }
+
+    public CompassFacetsBuilder addTermsFacet(String facetName, String propertyName, int size) {
+        ResourcePropertyLookup lookup = session.getMapping().getResourcePropertyLookup(propertyName);
+        requests.add(SearchEngineFacetRequest.terms(facetName, lookup.getPath(), size));
+        return this;
+    }
+
+    public CompassFacetsBuilder addRangeFacet(String facetName, String propertyName, Object... boundaries) {
+        ResourcePropertyLookup lookup = getConvertingLookup(propertyName);
+        String[] values = new String[boundaries.length];
+        for (int i = 0; i < boundaries.length; i++) {
+            values[i] = boundaries[i] == null ? null : lookup.getValue(boundaries[i]);
+        }
+        Object[] labels = new Object[Math.max(0, boundaries.length - 1)];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = (boundaries[i] == null ? "*" : boundaries[i]) + " TO " + (boundaries[i + 1] == null ? "*" : boundaries[i + 1]);
+        }
+        requests.add(SearchEngineFacetRequest.range(facetName, lookup.getPath(), values, labels));
+        return this;
+    }
+
+    public CompassFacetsBuilder addDateHistogramFacet(String facetName, String propertyName, Interval interval) {
+        ResourcePropertyLookup lookup = getConvertingLookup(propertyName);
+        requests.add(SearchEngineFacetRequest.histogram(facetName, lookup.getPath(), new DateIntervalBucketResolver(lookup, interval)));
+        return this;
+    }
+
+    public CompassFacet[] toFacets() throws CompassException {
+        return searchEngineQuery.facets(session.getSearchEngine(), requests.toArray(new SearchEngineFacetRequest[requests.size()]));
+    }
+
+    /**
+     * Facet values are all converted using the property mapping converter (even without dot path notation),
+     * since the facet counts the values of a single property.
+     */
+    private ResourcePropertyLookup getConvertingLookup(String propertyName) {
+        ResourcePropertyLookup lookup = session.getMapping().getResourcePropertyLookup(propertyName);
+        lookup.setConvertOnlyWithDotPath(false);
+        return lookup;
+    }
+
+    /**
+     * Converts a term into a date (using the property converter) and truncates it to the start of its interval.
+     */
+    private static class DateIntervalBucketResolver implements SearchEngineFacetRequest.TermBucketResolver {
+
+        private final ResourcePropertyLookup lookup;
+
+        private final Interval interval;
+
+        private DateIntervalBucketResolver(ResourcePropertyLookup lookup, Interval interval) {
+            this.lookup = lookup;
+            this.interval = interval;
+        }
+
+        public Comparable bucket(String term) {
+            Object value = lookup.fromString(term);
+            if (!(value instanceof Date)) {
+                throw new CompassException("Date histogram facet on property [" + lookup.getLookupName() + "] requires a date property, value [" + value + "] is not a date");
+            }
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime((Date) value);
+            switch (interval) {
+                case YEAR:
+                    calendar.set(Calendar.MONTH, Calendar.JANUARY);
+                case MONTH:
+                    calendar.set(Calendar.DAY_OF_MONTH, 1);
+                case DAY:
+                    calendar.set(Calendar.HOUR_OF_DAY, 0);
+                case HOUR:
+                    calendar.set(Calendar.MINUTE, 0);
+                case MINUTE:
+                    calendar.set(Calendar.SECOND, 0);
+                    calendar.set(Calendar.MILLISECOND, 0);
+                    break;
+                case WEEK:
+                    calendar.set(Calendar.DAY_OF_WEEK, calendar.getFirstDayOfWeek());
+                    calendar.set(Calendar.HOUR_OF_DAY, 0);
+                    calendar.set(Calendar.MINUTE, 0);
+                    calendar.set(Calendar.SECOND, 0);
+                    calendar.set(Calendar.MILLISECOND, 0);
+                    break;
+            }
+            return calendar.getTime();
+        }
+    }
+}
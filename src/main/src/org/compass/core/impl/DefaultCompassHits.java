@@ -23,6 +23,7 @@ import org.compass.core.CompassException;
 import org.compass.core.CompassHighlightedText;
 import org.compass.core.CompassHighlighter;
 import org.compass.core.CompassHit;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.CompassQuery;
 import org.compass.core.Resource;
 import org.compass.core.engine.SearchEngineHits;
@@ -73,6 +74,9 @@ public class DefaultCompassHits extends AbstractCompassHits implements InternalC
         if (cachedResource != null) {
             return cachedResource;
         }
+        if (((InternalResource) resource).isPartial()) {
+            return resource;
+        }
         session.getFirstLevelCache().setResource(key, resource);
         return resource;
     }
@@ -96,6 +100,10 @@ public class DefaultCompassHits extends AbstractCompassHits implements InternalC
         return hits.score(n);
     }
 
+    public CompassHitsCursor cursor(int n) throws CompassException {
+        return hits.cursor(n);
+    }
+
     public CompassHighlighter highlighter(int n) throws CompassException {
         return new DefaultCompassHighlighter(session, this, n);
     }
@@ -105,6 +113,8 @@ public class DefaultCompassHits extends AbstractCompassHits implements InternalC
     }
 
     public CompassDetachedHits detach(int from, int size) throws CompassException, IllegalArgumentException {
+        // make sure all the detached hits are collected in a single search
+        hits.prefetch(from + size);
         return new DefaultCompassDetachedHits(this, session, from, size, getQuery(), getSuggestedQuery());
     }
 
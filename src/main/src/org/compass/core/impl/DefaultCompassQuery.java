@@ -19,7 +19,9 @@ package org.compass.core.impl;
 import java.util.Locale;
 
 import org.compass.core.CompassException;
+import org.compass.core.CompassFacetsBuilder;
 import org.compass.core.CompassHits;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.CompassQuery;
 import org.compass.core.CompassQueryFilter;
 import org.compass.core.CompassSearchSession;
@@ -170,6 +172,26 @@ public class DefaultCompassQuery implements InternalCompassQuery, Cloneable {
         return this.filter;
     }
 
+    public CompassQuery setPageSize(int pageSize) {
+        searchEngineQuery.setPageSize(pageSize);
+        return this;
+    }
+
+    public CompassQuery setSearchAfter(CompassHitsCursor cursor) {
+        searchEngineQuery.setSearchAfter(cursor);
+        return this;
+    }
+
+    public CompassQuery setProperties(String... names) {
+        searchEngineQuery.setProperties(names);
+        return this;
+    }
+
+    public CompassQuery setLazyProperties(String... names) {
+        searchEngineQuery.setLazyProperties(names);
+        return this;
+    }
+
     public CompassQuery rewrite() {
         searchEngineQuery.rewrite();
         return this;
@@ -200,6 +222,10 @@ public class DefaultCompassQuery implements InternalCompassQuery, Cloneable {
         return new DefaultCompassHits(searchEngineHits, session, this);
     }
 
+    public CompassFacetsBuilder facets() throws CompassException {
+        return new DefaultCompassFacetsBuilder(session(), searchEngineQuery);
+    }
+
     public void delete() throws CompassException {
         InternalCompassSession session = session();
         session.getFirstLevelCache().evictAll();
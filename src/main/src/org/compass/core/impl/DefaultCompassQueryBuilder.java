@@ -468,6 +468,9 @@ public class DefaultCompassQueryBuilder implements CompassQueryBuilder {
 
     public CompassQuery between(String name, Object low, Object high, boolean inclusive, boolean constantScore) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, low, high, inclusive, inclusive);
+        }
         SearchEngineQuery query = queryBuilder.between(lookup.getPath(), lookup.getValue(low), lookup.getValue(high),
                 inclusive, constantScore);
         return buildCompassQuery(query, lookup);
@@ -475,6 +478,9 @@ public class DefaultCompassQueryBuilder implements CompassQueryBuilder {
 
     public CompassQuery between(String name, Object low, Object high, boolean inclusive) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, low, high, inclusive, inclusive);
+        }
         SearchEngineQuery query = queryBuilder.between(lookup.getPath(), lookup.getValue(low), lookup.getValue(high),
                 inclusive);
         return buildCompassQuery(query, lookup);
@@ -482,28 +488,50 @@ public class DefaultCompassQueryBuilder implements CompassQueryBuilder {
 
     public CompassQuery lt(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, null, value, false, false);
+        }
         SearchEngineQuery query = queryBuilder.lt(lookup.getPath(), lookup.getValue(value));
         return buildCompassQuery(query, lookup);
     }
 
     public CompassQuery le(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, null, value, false, true);
+        }
         SearchEngineQuery query = queryBuilder.le(lookup.getPath(), lookup.getValue(value));
         return buildCompassQuery(query, lookup);
     }
 
     public CompassQuery gt(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, value, null, false, false);
+        }
         SearchEngineQuery query = queryBuilder.gt(lookup.getPath(), lookup.getValue(value));
         return buildCompassQuery(query, lookup);
     }
 
     public CompassQuery ge(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, value, null, true, false);
+        }
         SearchEngineQuery query = queryBuilder.ge(lookup.getPath(), lookup.getValue(value));
         return buildCompassQuery(query, lookup);
     }
 
+    /**
+     * Trie encoded properties are queried using the different precision levels they are indexed with.
+     */
+    private CompassQuery trieBetween(ResourcePropertyLookup lookup, Object low, Object high, boolean includeLow, boolean includeHigh) {
+        SearchEngineQuery query = queryBuilder.trieBetween(lookup.getPath(),
+                low == null ? null : lookup.getValue(low), high == null ? null : lookup.getValue(high),
+                includeLow, includeHigh, lookup.getTrieFormatter().getPrecisionStep());
+        return buildCompassQuery(query, lookup);
+    }
+
     public CompassQuery prefix(String name, String prefix) {
         ResourcePropertyLookup lookup = getLookup(name);
         SearchEngineQuery query = queryBuilder.prefix(lookup.getPath(), prefix);
@@ -64,34 +64,55 @@ public class DefaultCompassQueryFilterBuilder implements CompassQueryFilterBuild
 
     public CompassQueryFilter between(String name, Object low, Object high, boolean includeLow, boolean includeHigh) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, low, high, includeLow, includeHigh);
+        }
         return new DefaultCompassQueryFilter(
                 filterBuilder.between(lookup.getPath(), lookup.getValue(low), lookup.getValue(high), includeLow, includeHigh));
     }
 
     public CompassQueryFilter lt(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, null, value, false, false);
+        }
         return new DefaultCompassQueryFilter(
                 filterBuilder.lt(lookup.getPath(), lookup.getValue(value)));
     }
 
     public CompassQueryFilter le(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, null, value, false, true);
+        }
         return new DefaultCompassQueryFilter(
                 filterBuilder.le(lookup.getPath(), lookup.getValue(value)));
     }
 
     public CompassQueryFilter gt(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, value, null, false, false);
+        }
         return new DefaultCompassQueryFilter(
                 filterBuilder.gt(lookup.getPath(), lookup.getValue(value)));
     }
 
     public CompassQueryFilter ge(String name, Object value) {
         ResourcePropertyLookup lookup = getLookup(name);
+        if (lookup.getTrieFormatter() != null) {
+            return trieBetween(lookup, value, null, true, false);
+        }
         return new DefaultCompassQueryFilter(
                 filterBuilder.ge(lookup.getPath(), lookup.getValue(value)));
     }
 
+    private CompassQueryFilter trieBetween(ResourcePropertyLookup lookup, Object low, Object high, boolean includeLow, boolean includeHigh) {
+        return new DefaultCompassQueryFilter(filterBuilder.trieBetween(lookup.getPath(),
+                low == null ? null : lookup.getValue(low), high == null ? null : lookup.getValue(high),
+                includeLow, includeHigh, lookup.getTrieFormatter().getPrecisionStep()));
+    }
+
     public CompassQueryFilter query(CompassQuery query) {
         return new DefaultCompassQueryFilter(
                 filterBuilder.query(((DefaultCompassQuery) query).getSearchEngineQuery()));
@@ -289,7 +289,9 @@ public class DefaultCompassSession implements InternalCompassSession {
         } else {
             value = marshallingStrategy.unmarshall(resource, context);
         }
-        firstLevelCache.set(key, value);
+        if (!((InternalResource) resource).isPartial()) {
+            firstLevelCache.set(key, value);
+        }
         return value;
     }
 
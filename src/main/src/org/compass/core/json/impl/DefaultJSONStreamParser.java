@@ -0,0 +1,270 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.json.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pull (token stream) parser over a json string, similar in spirit to Jackson <code>JsonParser</code>.
+ * Tokens are read on demand using {@link DefaultJSONTokener}, so values (and the syntax leniency) are
+ * exactly the ones {@link DefaultJSONObject} and {@link DefaultJSONArray} would produce, without
+ * building the whole json tree first.
+ * <p/>
+ * Once positioned on {@link Token#START_OBJECT} or {@link Token#START_ARRAY}, the whole structure can
+ * still be materialized using {@link #readValue()}.
+ *
+ * @author kimchy
+ */
+public class DefaultJSONStreamParser {
+
+    public static enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        VALUE
+    }
+
+    private static final int STATE_START = 0;
+
+    private static final int STATE_VALUE = 1;
+
+    private static final int STATE_AFTER_VALUE = 2;
+
+    private final DefaultJSONTokener tokener;
+
+    private final List<Container> containers = new ArrayList<Container>();
+
+    private boolean started;
+
+    private Token currentToken;
+
+    private String currentName;
+
+    private Object value;
+
+    public DefaultJSONStreamParser(String json) {
+        this.tokener = new DefaultJSONTokener(json);
+    }
+
+    /**
+     * Moves to the next token, returning <code>null</code> once the root object or array has ended.
+     */
+    public Token nextToken() throws DefaultJSONException {
+        value = null;
+        if (containers.isEmpty()) {
+            if (started) {
+                currentToken = null;
+                return null;
+            }
+            started = true;
+            char c = tokener.nextClean();
+            if (c == '{' || c == '[' || c == '(') {
+                return currentToken = startContainer(c);
+            }
+            throw tokener.syntaxError("A json text must start with '{' or '['");
+        }
+        Container container = containers.get(containers.size() - 1);
+        if (container.object) {
+            return currentToken = nextInObject(container);
+        }
+        return currentToken = nextInArray(container);
+    }
+
+    /**
+     * Returns the current token (the one last returned from {@link #nextToken()}).
+     */
+    public Token getCurrentToken() {
+        return currentToken;
+    }
+
+    /**
+     * Returns the last field name read within the current object.
+     */
+    public String getCurrentName() {
+        return currentName;
+    }
+
+    /**
+     * Returns the value of a {@link Token#VALUE} token. Can be a <code>Boolean</code>, <code>Number</code>,
+     * <code>String</code>, {@link DefaultJSONObject#NULL}, or <code>null</code> for an empty array element.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Reads the current value as an object. For {@link Token#START_OBJECT} and {@link Token#START_ARRAY}
+     * reads the whole structure (moving to its end) and returns a {@link DefaultJSONObject} or a
+     * {@link DefaultJSONArray}. For {@link Token#VALUE} returns {@link #getValue()}.
+     */
+    public Object readValue() throws DefaultJSONException {
+        if (currentToken == Token.START_OBJECT || currentToken == Token.START_ARRAY) {
+            // we are right after the opening char, go back and let the tree constructors parse it
+            tokener.back();
+            Object structure;
+            if (currentToken == Token.START_OBJECT) {
+                structure = new DefaultJSONObject(tokener);
+                currentToken = Token.END_OBJECT;
+            } else {
+                structure = new DefaultJSONArray(tokener);
+                currentToken = Token.END_ARRAY;
+            }
+            containers.remove(containers.size() - 1);
+            return structure;
+        }
+        if (currentToken == Token.VALUE) {
+            return value;
+        }
+        throw new DefaultJSONException("Can not read a value when positioned on [" + currentToken + "]");
+    }
+
+    /**
+     * Skips the current object or array (if positioned on its start).
+     */
+    public void skipChildren() throws DefaultJSONException {
+        if (currentToken == Token.START_OBJECT || currentToken == Token.START_ARRAY) {
+            readValue();
+        }
+    }
+
+    private Token nextInObject(Container container) {
+        char c;
+        switch (container.state) {
+            case STATE_START:
+                c = tokener.nextClean();
+                switch (c) {
+                    case 0:
+                        throw tokener.syntaxError("A DefaultJSONObject text must end with '}'");
+                    case '}':
+                        return endContainer(Token.END_OBJECT);
+                    default:
+                        tokener.back();
+                        return readFieldName(container);
+                }
+            case STATE_VALUE:
+                container.state = STATE_AFTER_VALUE;
+                return readValueToken();
+            default:
+                switch (tokener.nextClean()) {
+                    case ';':
+                    case ',':
+                        if (tokener.nextClean() == '}') {
+                            return endContainer(Token.END_OBJECT);
+                        }
+                        tokener.back();
+                        return readFieldName(container);
+                    case '}':
+                        return endContainer(Token.END_OBJECT);
+                    default:
+                        throw tokener.syntaxError("Expected a ',' or '}'");
+                }
+        }
+    }
+
+    private Token nextInArray(Container container) {
+        char c;
+        if (container.state == STATE_START) {
+            if (tokener.nextClean() == ']') {
+                return endContainer(Token.END_ARRAY);
+            }
+            tokener.back();
+        } else {
+            c = tokener.nextClean();
+            switch (c) {
+                case ';':
+                case ',':
+                    if (tokener.nextClean() == ']') {
+                        return endContainer(Token.END_ARRAY);
+                    }
+                    tokener.back();
+                    break;
+                case ']':
+                case ')':
+                    if (container.close != c) {
+                        throw tokener.syntaxError("Expected a '" + container.close + "'");
+                    }
+                    return endContainer(Token.END_ARRAY);
+                default:
+                    throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+        }
+        container.state = STATE_AFTER_VALUE;
+        if (tokener.nextClean() == ',') {
+            // an empty element, same as DefaultJSONArray
+            tokener.back();
+            return Token.VALUE;
+        }
+        tokener.back();
+        return readValueToken();
+    }
+
+    private Token readFieldName(Container container) {
+        currentName = tokener.nextValue().toString();
+        // the key is followed by ':', we will also tolerate '=' or '=>'
+        char c = tokener.nextClean();
+        if (c == '=') {
+            if (tokener.next() != '>') {
+                tokener.back();
+            }
+        } else if (c != ':') {
+            throw tokener.syntaxError("Expected a ':' after a key");
+        }
+        container.state = STATE_VALUE;
+        return Token.FIELD_NAME;
+    }
+
+    private Token readValueToken() {
+        char c = tokener.nextClean();
+        if (c == '{' || c == '[' || c == '(') {
+            return startContainer(c);
+        }
+        tokener.back();
+        value = tokener.nextValue();
+        return Token.VALUE;
+    }
+
+    private Token startContainer(char c) {
+        if (c == '{') {
+            containers.add(new Container(true, '}'));
+            return Token.START_OBJECT;
+        }
+        containers.add(new Container(false, c == '[' ? ']' : ')'));
+        return Token.START_ARRAY;
+    }
+
+    private Token endContainer(Token token) {
+        containers.remove(containers.size() - 1);
+        return token;
+    }
+
+    private static class Container {
+
+        final boolean object;
+
+        final char close;
+
+        int state = STATE_START;
+
+        Container(boolean object, char close) {
+            this.object = object;
+            this.close = close;
+        }
+    }
+}
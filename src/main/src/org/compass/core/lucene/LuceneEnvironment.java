@@ -347,6 +347,25 @@ public class LuceneEnvironment {
          */
         public static final String TEXT_TOKENIZER = "textTokenizer";
 
+        /**
+         * The highlighter implementation that will be used. Either {@link #TYPE_DEFAULT} (the default) or
+         * {@link #TYPE_TERM_VECTOR}.
+         */
+        public static final String TYPE = "type";
+
+        /**
+         * The default Lucene highlighter, tokenizing the text based on the {@link #TEXT_TOKENIZER} setting.
+         */
+        public static final String TYPE_DEFAULT = "default";
+
+        /**
+         * A highlighter that locates query terms using term vectors stored with positions and offsets, without
+         * re-analyzing the text, and scores fixed size fragments (see {@link Fragmenter#SIMPLE_SIZE}) by term
+         * density. Falls back to the default highlighter for properties that have no such term vectors, or when
+         * the text tokenizer is set to <code>analyzer</code>.
+         */
+        public static final String TYPE_TERM_VECTOR = "termVector";
+
         /**
          * Low level. A boolean setting (<code>true</code>, or
          * <code>false</code>). If the query will be rewritten befored it is
@@ -589,7 +608,8 @@ public class LuceneEnvironment {
                 /**
                  * The number of threads used to process dirty operations asynchronously. Defaults to <code>5</code>.
                  *
-                 * <p>Note, this is the number of threads used per transaction and threads are pooled.
+                 * <p>Note, this is the number of threads shared by all the transactions (started on first use), and
+                 * can not be overridden per transaction.
                  */
                 public static final String CONCURRENCY_LEVEL = "compass.transaction.processor.read_committed.concurrencyLevel";
 
@@ -602,6 +622,8 @@ public class LuceneEnvironment {
                 /**
                  * The backlog size of the current ongoing dirty operations. If full, will block the dirty operation
                  * until it is emptied by the running async processor threads. Defaults to <code>100</code>.
+                 *
+                 * <p>Note, this is the backlog of each shared processor thread.
                  */
                 public static final String BACKLOG = "compass.transaction.processor.read_committed.backlog";
 
@@ -617,11 +639,19 @@ public class LuceneEnvironment {
                 public static final class TransLog {
 
                     /**
-                     * The connection type for the read committed transactional log. Can be either <code>ram://</code>
-                     * or <code>file://</code>.
+                     * The connection type for the read committed transactional log. Can be either <code>ram://</code>,
+                     * <code>file://</code>, or <code>hybrid://</code> (optionally followed by the file system location
+                     * to spill to) which starts in memory and spills to the file system once {@link #RAM_THRESHOLD}
+                     * is reached.
                      */
                     public static final String CONNECTION = "compass.transaction.processor.read_committed.translog.connection";
 
+                    /**
+                     * The amount of memory a <code>hybrid://</code> transactional log will use before new data is
+                     * stored on the file system. Defaults to <code>16mb</code>.
+                     */
+                    public static final String RAM_THRESHOLD = "compass.transaction.processor.read_committed.translog.ramThreshold";
+
                     /**
                      * Should the transactional index be optimized before it is added to the actual index. Defaults to
                      * <code>true</code>.
@@ -643,6 +673,27 @@ public class LuceneEnvironment {
                 public static final String NAME = "mt";
             }
 
+            /**
+             * Settings for the <code>shared</code> transaction processor.
+             *
+             * @see org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessorFactory
+             * @see org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessor
+             */
+            public static final class Shared {
+
+                /**
+                 * The name of the shared transaction processor.
+                 */
+                public static final String NAME = "shared";
+
+                /**
+                 * The time a transaction leading a group commit waits before committing, allowing more
+                 * concurrent transactions to join the same Lucene commit. Defaults to <code>0</code> (no wait).
+                 * Accepts Compass time format settings.
+                 */
+                public static final String COMMIT_DELAY = "compass.transaction.processor.shared.commitDelay";
+            }
+
             /**
              * Settings for <code>lucene</code> transaction procssor.
              *
@@ -664,7 +715,8 @@ public class LuceneEnvironment {
                 /**
                  * The number of threads used to process dirty operations asynchronously. Defaults to <code>5</code>.
                  *
-                 * <p>Note, this is the number of threads used per transaction and threads are pooled.
+                 * <p>Note, this is the number of threads shared by all the transactions (started on first use), and
+                 * can not be overridden per transaction.
                  */
                 public static final String CONCURRENCY_LEVEL = "compass.transaction.processor.lucene.concurrencyLevel";
 
@@ -677,6 +729,8 @@ public class LuceneEnvironment {
                 /**
                  * The backlog size of the current ongoing dirty operations. If full, will block the dirty operation
                  * until it is emptied by the running async processor threads. Defaults to <code>100</code>.
+                 *
+                 * <p>Note, this is the backlog of each shared processor thread.
                  */
                 public static final String BACKLOG = "compass.transaction.processor.lucene.backlog";
 
@@ -785,6 +839,35 @@ public class LuceneEnvironment {
                  * Defuats to <code>uid</code>.
                  */
                 public static final String HASHING = "compass.transaction.processor.async.hashing";
+
+                /**
+                 * The location (directory) of an on disk journal of committed transactions. When set, each
+                 * committed transaction is appended to the journal before the commit returns, and transactions
+                 * that were not processed (for example, when the JVM crashed) are replayed when Compass starts.
+                 * No journal is used by default.
+                 */
+                public static final String JOURNAL_LOCATION = "compass.transaction.processor.async.journalLocation";
+
+                /**
+                 * The size of each journal segment file. Once a segment reaches this size, a new segment is
+                 * started, and older segments are deleted once all their transactions have been processed.
+                 * Defaults to <code>16mb</code>.
+                 */
+                public static final String JOURNAL_SEGMENT_SIZE = "compass.transaction.processor.async.journalSegmentSize";
+
+                /**
+                 * Should the journal be synced (fsync) to disk before a commit returns. Concurrent commits are
+                 * synced together using a single sync. Defaults to <code>true</code>.
+                 */
+                public static final String JOURNAL_SYNC = "compass.transaction.processor.async.journalSync";
+
+                /**
+                 * The number of times a journaled transaction that failed to be processed is retried (on its own,
+                 * and not batched with other transactions) before it is moved out of the journal into a dead letter
+                 * file (<code>dead-letter-[id].ser</code>, holding the serialized transaction) within the journal
+                 * location. Defaults to <code>3</code>.
+                 */
+                public static final String JOURNAL_MAX_RETRIES = "compass.transaction.processor.async.journalMaxRetries";
             }
         }
     }
@@ -887,6 +970,27 @@ public class LuceneEnvironment {
          */
         public static final String SCHEDULE_INTERVAL = PREFIX + "scheduleInterval";
 
+        /**
+         * Set to <code>true</code> in order to update the spell index incrementally instead of rebuilding it.
+         * The document frequencies of the spell check properties terms are kept per segment, and on rebuild
+         * only the words that were added to or removed from the dictionary (based on the dictionary threshold)
+         * are added to or deleted from the spell index. Defaults to <code>false</code>.
+         */
+        public static final String INCREMENTAL = PREFIX + "incremental";
+
+        /**
+         * Set to <code>true</code> in order to serve suggestions from an in memory (symmetric delete) index that
+         * is kept in sync with the spell index instead of running n-gram queries against it. Defaults to
+         * <code>false</code>.
+         */
+        public static final String IN_MEMORY = PREFIX + "inMemory";
+
+        /**
+         * The maximum number of edits (deletes on both the word and the suggestion) covered by the in memory
+         * spell index. Higher values find more distant suggestions at the cost of memory. Defaults to <code>2</code>.
+         */
+        public static final String IN_MEMORY_MAX_EDITS = PREFIX + "inMemory.maxEdits";
+
         /**
          * The FQN of the spell check class.
          */
@@ -1043,6 +1147,15 @@ public class LuceneEnvironment {
          */
         public static final String CACHE_ASYNC_INVALIDATION = "compass.engine.cacheAsyncInvalidation";
 
+        /**
+         * Sets if an invalidated index holder will be refreshed in the background. When enabled, searches
+         * keep using the current (stale) index holder while a new one is reopened and warmed up (see
+         * {@link org.compass.core.lucene.LuceneEnvironment.CacheWarmer}), and then atomically replaces it.
+         * Applies only when {@link #CACHE_ASYNC_INVALIDATION} is enabled and the executor manager is not
+         * disabled. Defaults to <code>false</code>.
+         */
+        public static final String CACHE_BACKGROUND_REFRESH = "compass.engine.cacheBackgroundRefresh";
+
         /**
          * The default cache interval invalidation.
          *
@@ -1068,6 +1181,33 @@ public class LuceneEnvironment {
          * Tracks opened index writers. Will make sure to rollback any open index writer when Compass closes.
          */
         public static final String TRACK_OPENED_INDEX_WRITERS = "compass.engine.trackOpenedIndexWriters";
+
+        /**
+         * Controls how a file system based index is replaced with another file system based index (for example,
+         * at the end of a Compass Gps index operation). Can be {@link #REPLACE_STRATEGY_COPY},
+         * {@link #REPLACE_STRATEGY_LINK} or {@link #REPLACE_STRATEGY_MOVE}. Defaults to
+         * {@link #REPLACE_STRATEGY_LINK}.
+         */
+        public static final String REPLACE_STRATEGY = "compass.engine.replaceStrategy";
+
+        /**
+         * Copies the content of every file of the replacing index.
+         */
+        public static final String REPLACE_STRATEGY_COPY = "copy";
+
+        /**
+         * Creates hard links to the files of the replacing index, and then swaps the sub index directory with a
+         * single rename. Falls back to {@link #REPLACE_STRATEGY_COPY} when hard links are not supported (by the JVM,
+         * which requires Java 7, or by the file system).
+         */
+        public static final String REPLACE_STRATEGY_LINK = "link";
+
+        /**
+         * Moves (renames) the files of the replacing index, and then swaps the sub index directory with a single
+         * rename. The replacing index is left unusable, which is fine when it is discarded after the replace
+         * operation (as Compass Gps does). Falls back to {@link #REPLACE_STRATEGY_COPY} if a file can not be moved.
+         */
+        public static final String REPLACE_STRATEGY_MOVE = "move";
     }
 
     /**
@@ -1109,6 +1249,28 @@ public class LuceneEnvironment {
          */
         public static final String DISABLE_SCHEMA_OPERATIONS = "compass.engine.store.jdbc.disableSchemaOperations";
 
+        /**
+         * The size (in bytes) of each chunk row when storing files as several fixed size rows. Defaults to
+         * <code>0</code>, which stores each file in a single row. Note, the table layout changes when using
+         * chunks, so an existing index will need to be recreated.
+         */
+        public static final String CHUNK_SIZE = "compass.engine.store.jdbc.chunk.size";
+
+        /**
+         * The number of chunks inserted in a single Jdbc batch. Defaults to <code>20</code>.
+         */
+        public static final String CHUNK_BATCH_SIZE = "compass.engine.store.jdbc.chunk.batchSize";
+
+        /**
+         * The maximum number of chunks read ahead when a file is read sequentially. Defaults to <code>8</code>.
+         */
+        public static final String CHUNK_READ_AHEAD_MAX = "compass.engine.store.jdbc.chunk.readAheadMax";
+
+        /**
+         * The number of chunks cached for each sub index. Defaults to <code>256</code>.
+         */
+        public static final String CHUNK_CACHE_SIZE = "compass.engine.store.jdbc.chunk.cacheSize";
+
         public abstract class Connection {
             /**
              * The jdbc driver class
@@ -1229,6 +1391,11 @@ public class LuceneEnvironment {
              */
             public static final String DELETED_NAME = "compass.engine.store.jdbc.ddl.deleted.name";
 
+            /**
+             * The name of the chunk column (used when storing files in chunks). Defaults to chunk_.
+             */
+            public static final String CHUNK_NAME = "compass.engine.store.jdbc.ddl.chunk.name";
+
             /**
              * The name of the database catalog. Defaults to null.
              */
@@ -1581,6 +1748,88 @@ public class LuceneEnvironment {
         public static final String DEFAULT_PARSER_DEFAULT_OPERATOR = "defaultOperator";
     }
 
+    /**
+     * Settings for warming up newly opened index holders before they are used for searching. Each
+     * warmer is registered under its own group, for example: <code>compass.engine.cacheWarmer.byDate.query</code>
+     * and <code>compass.engine.cacheWarmer.byDate.sort</code>.
+     *
+     * @see org.compass.core.lucene.engine.manager.IndexHolderWarmer
+     */
+    public static abstract class CacheWarmer {
+
+        /**
+         * The prefix used for cache warmer groups.
+         */
+        public static final String PREFIX = "compass.engine.cacheWarmer";
+
+        /**
+         * The type of a custom warmer. A fully qualified class name or an actual instance, must
+         * implement {@link org.compass.core.lucene.engine.manager.IndexHolderWarmer}.
+         */
+        public static final String TYPE = "type";
+
+        /**
+         * The query string (parsed using the default query parser) that will be executed
+         * against the new index searcher. Defaults to matching all documents if only a sort is set.
+         */
+        public static final String QUERY = "query";
+
+        /**
+         * A comma separated list of properties to sort the query by, loading their field cache.
+         * Each property can have a sort type and a reverse flag appended, for example:
+         * <code>title, price:float, date:long:reverse</code>.
+         */
+        public static final String SORT = "sort";
+    }
+
+    /**
+     * Settings controlling how a search spanning several sub indexes is executed.
+     */
+    public static abstract class Search {
+
+        /**
+         * If set to <code>true</code>, a search spanning more than one sub index will search each sub index
+         * in parallel using the executor manager, and merge the top results. Defaults to <code>false</code>.
+         */
+        public static final String PARALLEL = "compass.engine.search.parallel";
+
+        /**
+         * The time to wait for all the sub indexes to return their results when searching in parallel.
+         * Sub indexes that did not return within the timeout are ignored and partial results are
+         * returned. Accepts time setting (<code>500millis</code>, <code>2s</code>, and so on).
+         * Defaults to <code>-1</code> (wait forever).
+         */
+        public static final String PARALLEL_TIMEOUT = "compass.engine.search.parallelTimeout";
+
+        /**
+         * The number of top hits collected by the first search of a query (when the query does not
+         * set its own page size). More hits are collected only when hits beyond the first ones are
+         * accessed, each time doubling the number of hits collected. Defaults to <code>100</code>.
+         */
+        public static final String PAGE_SIZE = "compass.engine.search.pageSize";
+    }
+
+    /**
+     * Settings for the filter cache, which caches the documents matching the alias restriction of queries
+     * and query filters per sub index reader. The cached documents of a sub index reader are discarded once
+     * the sub index cache reopens it (and the previous reader is closed).
+     *
+     * @see org.compass.core.lucene.search.FilterCache
+     */
+    public static abstract class FilterCache {
+
+        /**
+         * Should alias restrictions and query filters be cached. Defaults to <code>true</code>.
+         */
+        public static final String ENABLED = "compass.engine.filterCache.enabled";
+
+        /**
+         * The maximum number of filters cached per sub index reader. Once reached, the least recently
+         * used filter is evicted. Defaults to <code>64</code>.
+         */
+        public static final String MAX_ENTRIES = "compass.engine.filterCache.maxEntries";
+    }
+
     public static abstract class LocalCache {
 
         public static final String DISABLE_LOCAL_CACHE = "compass.engine.disableLocalCache";
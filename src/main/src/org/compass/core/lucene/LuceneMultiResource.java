@@ -75,6 +75,10 @@ public class LuceneMultiResource implements MultiResource, Map<String, Property[
         return currentResource.getSubIndex();
     }
 
+    public boolean isPartial() {
+        return currentResource.isPartial();
+    }
+
     public void addResource() {
         currentResource = new LuceneResource(alias, searchEngineFactory);
         resources.add(currentResource);
@@ -64,6 +64,8 @@ public class LuceneResource implements AliasedObject, InternalResource, Map<Stri
 
     private String alias;
 
+    private boolean partial;
+
     public LuceneResource(String alias, LuceneSearchEngineFactory searchEngineFactory) {
         this(alias, new Document(), -1, searchEngineFactory);
     }
@@ -117,6 +119,7 @@ public class LuceneResource implements AliasedObject, InternalResource, Map<Stri
         this.docNum = luceneResource.docNum;
         this.properties = luceneResource.properties;
         this.alias = luceneResource.alias;
+        this.partial = luceneResource.partial;
         if (luceneResource.searchEngineFactory != null) {
             this.searchEngineFactory = luceneResource.searchEngineFactory;
         }
@@ -145,6 +148,14 @@ public class LuceneResource implements AliasedObject, InternalResource, Map<Stri
         return this.resourceMapping;
     }
 
+    public boolean isPartial() {
+        return this.partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
     public String getSubIndex() {
         return getResourceKey().getSubIndex();
     }
@@ -17,70 +17,171 @@
 package org.compass.core.lucene.engine;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.Resource;
 import org.compass.core.engine.SearchEngineException;
 import org.compass.core.engine.SearchEngineHighlighter;
 import org.compass.core.lucene.LuceneResource;
+import org.compass.core.lucene.search.PropertiesFieldSelector;
+import org.compass.core.lucene.search.SearchAfterHitCollector;
+import org.compass.core.mapping.Mapping;
+import org.compass.core.mapping.ResourceMapping;
+import org.compass.core.mapping.ResourcePropertyMapping;
+import org.compass.core.mapping.osem.ClassMapping;
+import org.compass.core.mapping.osem.ClassPropertyMapping;
 
 /**
+ * Lucene search engine hits that collect only the top hits of the query (starting with the
+ * query page size), and collect more (doubling the number of hits collected) only when hits
+ * beyond the ones collected are accessed.
+ *
+ * <p>When the query has a {@link LuceneSearchEngineQuery#getSearchAfter()} cursor set, only
+ * hits ranked after the cursor are collected (hits ranked before it are just counted).
+ *
+ * <p>When the query has {@link LuceneSearchEngineQuery#getProperties()} or
+ * {@link LuceneSearchEngineQuery#getLazyProperties()} set, hits documents are loaded using a
+ * {@link PropertiesFieldSelector} and resources loaded with a projection are marked as partial.
+ *
  * @author kimchy
  */
-
 public class DefaultLuceneSearchEngineHits implements LuceneSearchEngineHits {
 
     private final LuceneSearchEngine searchEngine;
 
-    private final LuceneSearchEngineQuery query;
+    private final LuceneSearchEngineQuery searchEngineQuery;
+
+    private final Query query;
+
+    private final Filter filter;
+
+    private final Sort sort;
+
+    private final CompassHitsCursor searchAfter;
+
+    private final FieldSelector fieldSelector;
+
+    private final boolean partial;
 
     private LuceneSearchEngineInternalSearch internalSearch;
 
     private SearchEngineHighlighter highlighter;
 
-    private final Hits hits;
+    private ScoreDoc[] scoreDocs;
 
-    public DefaultLuceneSearchEngineHits(Hits hits, LuceneSearchEngine searchEngine,
-                                         LuceneSearchEngineQuery query, LuceneSearchEngineInternalSearch internalSearch) {
-        this.hits = hits;
-        this.searchEngine = searchEngine;
+    private Document[] docs;
+
+    private int length;
+
+    private float maxScore;
+
+    private float scoreNorm;
+
+    private Hits hits;
+
+    public DefaultLuceneSearchEngineHits(Query query, Filter filter, LuceneSearchEngine searchEngine,
+                                         LuceneSearchEngineQuery searchEngineQuery,
+                                         LuceneSearchEngineInternalSearch internalSearch) throws SearchEngineException {
         this.query = query;
+        this.filter = filter;
+        this.searchEngine = searchEngine;
+        this.searchEngineQuery = searchEngineQuery;
         this.internalSearch = internalSearch;
+        this.sort = searchEngineQuery.getSort();
+        this.searchAfter = searchEngineQuery.getSearchAfter();
+        if (searchAfter != null && sort != null) {
+            throw new SearchEngineException("Search after cursor is only supported for relevance ordered queries, " +
+                    "query [" + searchEngineQuery + "] has sort [" + sort + "]");
+        }
+        this.fieldSelector = createFieldSelector();
+        this.partial = searchEngineQuery.getProperties() != null;
+        int pageSize = searchEngineQuery.getPageSize();
+        if (pageSize <= 0) {
+            pageSize = searchEngine.getSearchEngineFactory().getLuceneSettings().getSearchPageSize();
+        }
+        fetch(pageSize);
     }
 
     public Resource getResource(int i) throws SearchEngineException {
         verifyWithinTransaction();
-        try {
-            Document doc = hits.doc(i);
-            return new LuceneResource(doc, hits.id(i), searchEngine.getSearchEngineFactory());
-        } catch (IOException ioe) {
-            throw new SearchEngineException("Failed to find hit [" + i + "]", ioe);
+        ScoreDoc scoreDoc = scoreDoc(i);
+        if (docs[i] == null) {
+            try {
+                if (fieldSelector == null) {
+                    docs[i] = internalSearch.getSearcher().doc(scoreDoc.doc);
+                } else {
+                    docs[i] = internalSearch.getSearcher().doc(scoreDoc.doc, fieldSelector);
+                }
+            } catch (IOException ioe) {
+                throw new SearchEngineException("Failed to find hit [" + i + "]", ioe);
+            }
         }
+        LuceneResource resource = new LuceneResource(docs[i], scoreDoc.doc, searchEngine.getSearchEngineFactory());
+        resource.setPartial(partial);
+        return resource;
     }
 
     public int getLength() {
-        return hits.length();
+        return length;
     }
 
     public float score(int i) throws SearchEngineException {
         verifyWithinTransaction();
-        try {
-            return hits.score(i);
-        } catch (IOException ioe) {
-            throw new SearchEngineException("Failed to fetch score for hit [" + i + "]", ioe);
+        return scoreDoc(i).score * scoreNorm;
+    }
+
+    public void prefetch(int n) throws SearchEngineException {
+        if (n > scoreDocs.length && scoreDocs.length < length) {
+            verifyWithinTransaction();
+            fetch(Math.min(n, length));
         }
     }
 
+    public CompassHitsCursor cursor(int n) throws SearchEngineException {
+        if (sort != null) {
+            return null;
+        }
+        verifyWithinTransaction();
+        ScoreDoc scoreDoc = scoreDoc(n);
+        return new CompassHitsCursor(scoreDoc.score, scoreDoc.doc, maxScore);
+    }
+
+    /**
+     * Returns Lucene {@link Hits} for the query. The query is executed again the first time
+     * this method is called, and the created hits are cached for later calls.
+     *
+     * @deprecated Hits are no longer used to execute the query. Use the search engine hits instead.
+     */
+    @Deprecated
     public Hits getHits() {
+        if (hits == null) {
+            try {
+                hits = internalSearch.getSearcher().search(query, filter, sort);
+            } catch (IOException e) {
+                throw new SearchEngineException("Failed to search with query [" + query + "]", e);
+            }
+        }
         return this.hits;
     }
 
     public SearchEngineHighlighter getHighlighter() throws SearchEngineException {
         verifyWithinTransaction();
         if (highlighter == null) {
-            highlighter = new LuceneSearchEngineHighlighter(query.getOriginalQuery(), internalSearch.getReader(), searchEngine);
+            highlighter = new LuceneSearchEngineHighlighter(searchEngineQuery.getOriginalQuery(), internalSearch.getReader(), searchEngine);
         }
         return highlighter.clear();
     }
@@ -88,7 +189,7 @@ public class DefaultLuceneSearchEngineHits implements LuceneSearchEngineHits {
     public Explanation explain(int i) throws SearchEngineException {
         verifyWithinTransaction();
         try {
-            return internalSearch.getSearcher().explain(query.getQuery(), hits.id(i));
+            return internalSearch.getSearcher().explain(searchEngineQuery.getQuery(), scoreDoc(i).doc);
         } catch (IOException e) {
             throw new SearchEngineException("Failed to explain hit [" + i + "]", e);
         }
@@ -115,6 +216,97 @@ public class DefaultLuceneSearchEngineHits implements LuceneSearchEngineHits {
         }
     }
 
+    private ScoreDoc scoreDoc(int i) throws SearchEngineException {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("Not a valid hit number: " + i);
+        }
+        if (i >= scoreDocs.length) {
+            // double the number of hits collected, or collect up to the requested hit
+            fetch(Math.min(Math.max(i + 1, scoreDocs.length * 2), length));
+        }
+        return scoreDocs[i];
+    }
+
+    private void fetch(int n) throws SearchEngineException {
+        TopDocs topDocs;
+        try {
+            if (searchAfter != null) {
+                SearchAfterHitCollector collector = new SearchAfterHitCollector(searchAfter.getScore(), searchAfter.getDoc(), n);
+                internalSearch.getSearcher().search(query, filter, collector);
+                topDocs = collector.topDocs();
+            } else if (sort != null) {
+                topDocs = internalSearch.getSearcher().search(query, filter, n, sort);
+            } else {
+                topDocs = internalSearch.getSearcher().search(query, filter, n);
+            }
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to search with query [" + query + "]", e);
+        }
+        Document[] prevDocs = docs;
+        scoreDocs = topDocs.scoreDocs;
+        docs = new Document[scoreDocs.length];
+        if (prevDocs != null) {
+            System.arraycopy(prevDocs, 0, docs, 0, Math.min(prevDocs.length, docs.length));
+        }
+        length = topDocs.totalHits;
+        // normalize scores the same way Lucene Hits do, using the max score of the first
+        // page when searching after a cursor so scores are consistent across pages
+        maxScore = searchAfter != null ? searchAfter.getMaxScore() : topDocs.getMaxScore();
+        scoreNorm = (length > 0 && maxScore > 1.0f) ? 1.0f / maxScore : 1.0f;
+    }
+
+    /**
+     * Creates the field selector used to load the hits documents based on the query projected and lazy
+     * properties, <code>null</code> if all the properties should be loaded.
+     */
+    private FieldSelector createFieldSelector() {
+        String[] properties = searchEngineQuery.getProperties();
+        String[] lazyProperties = searchEngineQuery.getLazyProperties();
+        if (properties == null && lazyProperties == null) {
+            return null;
+        }
+        // the properties required in order to identify and unmarshall the hits are always (eagerly) loaded
+        Set<String> required = new HashSet<String>();
+        required.add(searchEngine.getSearchEngineFactory().getAliasProperty());
+        Set<String> projected = properties == null ? Collections.<String>emptySet() : new HashSet<String>(Arrays.asList(properties));
+        // go over all the root mappings, since hits of extending aliases can be returned as well
+        for (ResourceMapping resourceMapping : searchEngine.getSearchEngineFactory().getMapping().getRootMappings()) {
+            for (ResourcePropertyMapping idMapping : resourceMapping.getResourceIdMappings()) {
+                required.add(idMapping.getPath().getPath());
+            }
+            if (resourceMapping instanceof ClassMapping) {
+                addRequiredClassProperties((ClassMapping) resourceMapping, projected, required);
+            }
+        }
+        Set<String> load = new HashSet<String>(projected);
+        load.addAll(required);
+        Set<String> lazy = lazyProperties == null ? new HashSet<String>() : new HashSet<String>(Arrays.asList(lazyProperties));
+        lazy.removeAll(required);
+        return new PropertiesFieldSelector(load, lazy, properties == null);
+    }
+
+    private void addRequiredClassProperties(ClassMapping classMapping, Set<String> projected, Set<String> required) {
+        if (classMapping.getClassPath() != null) {
+            required.add(classMapping.getClassPath().getPath());
+        }
+        if (classMapping.getEnumNamePath() != null && classMapping.getClazz() != null && classMapping.getClazz().isEnum()) {
+            required.add(classMapping.getEnumNamePath().getPath());
+        }
+        // class properties are unmarshalled from their id (possibly internal) meta data, so load it
+        // if any of the class property meta data is projected
+        for (ClassPropertyMapping classPropertyMapping : classMapping.getClassPropertyMappings()) {
+            if (!classPropertyMapping.isIdPropertySet()) {
+                continue;
+            }
+            for (Iterator it = classPropertyMapping.mappingsIt(); it.hasNext();) {
+                if (projected.contains(((Mapping) it.next()).getPath().getPath())) {
+                    required.add(classPropertyMapping.getIdMapping().getPath().getPath());
+                    break;
+                }
+            }
+        }
+    }
+
     private void verifyWithinTransaction() throws SearchEngineException {
         if (!searchEngine.isWithinTransaction()) {
             throw new SearchEngineException("Accessing hits outside of a running transaction, either expand the " +
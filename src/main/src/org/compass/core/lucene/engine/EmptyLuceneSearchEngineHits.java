@@ -18,6 +18,7 @@ package org.compass.core.lucene.engine;
 
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.Hits;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.Resource;
 import org.compass.core.engine.SearchEngineException;
 import org.compass.core.engine.SearchEngineHighlighter;
@@ -75,6 +76,14 @@ public class EmptyLuceneSearchEngineHits implements LuceneSearchEngineHits {
     }
 
 
+    public void prefetch(int n) throws SearchEngineException {
+    }
+
+    public CompassHitsCursor cursor(int n) throws SearchEngineException {
+        throw new IndexOutOfBoundsException("No cursor for hit [" + n + "], length is [0]");
+    }
+
+    @Deprecated
     public Hits getHits() {
         throw new IndexOutOfBoundsException("No Lucenen hits for empty hits");
     }
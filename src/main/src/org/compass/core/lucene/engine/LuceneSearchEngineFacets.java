@@ -0,0 +1,313 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.HitCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Searchable;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.util.PriorityQueue;
+import org.compass.core.CompassFacet;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.engine.SearchEngineFacetRequest;
+import org.compass.core.executor.ExecutorManager;
+import org.compass.core.impl.DefaultCompassFacet;
+import org.compass.core.transaction.context.TransactionalCallable;
+
+/**
+ * Computes facets over the documents matching a query. The values of each facet property are loaded
+ * using the field cache string index of each sub index reader, and the matching documents are counted
+ * per value ordinal. Terms facets then select the top values using a bounded priority queue, range facets
+ * sum the ordinals within each range, and histogram facets sum the ordinals of each bucket.
+ *
+ * <p>When the query spans several sub indexes, each sub index is counted in parallel using the
+ * executor manager (unless it is disabled).
+ *
+ * @author kimchy
+ */
+public class LuceneSearchEngineFacets {
+
+    private final CompassFacet[] facets;
+
+    public LuceneSearchEngineFacets(LuceneSearchEngineFactory searchEngineFactory, SearchEngineFacetRequest[] requests,
+                                    LuceneSearchEngineInternalSearch internalSearch, Query query, Filter filter) throws SearchEngineException {
+        // the distinct properties the facets are computed on
+        Map<String, Integer> propertyIndexes = new LinkedHashMap<String, Integer>();
+        for (SearchEngineFacetRequest request : requests) {
+            if (!propertyIndexes.containsKey(request.getPropertyName())) {
+                propertyIndexes.put(request.getPropertyName(), propertyIndexes.size());
+            }
+        }
+        String[] propertyNames = propertyIndexes.keySet().toArray(new String[propertyIndexes.size()]);
+
+        List<ReaderCounts> readersCounts;
+        if (internalSearch.isEmpty() || propertyNames.length == 0) {
+            readersCounts = new ArrayList<ReaderCounts>(0);
+        } else {
+            readersCounts = count(searchEngineFactory, internalSearch.getSearcher(), query, filter, propertyNames);
+        }
+
+        facets = new CompassFacet[requests.length];
+        for (int i = 0; i < requests.length; i++) {
+            SearchEngineFacetRequest request = requests[i];
+            int propertyIndex = propertyIndexes.get(request.getPropertyName());
+            CompassFacet.Entry[] entries;
+            switch (request.getType()) {
+                case TERMS:
+                    entries = termsEntries(request, propertyIndex, readersCounts);
+                    break;
+                case RANGE:
+                    entries = rangeEntries(request, propertyIndex, readersCounts);
+                    break;
+                case HISTOGRAM:
+                    entries = histogramEntries(request, propertyIndex, readersCounts);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported facet type [" + request.getType() + "]");
+            }
+            facets[i] = new DefaultCompassFacet(request.getName(), request.getPropertyName(), entries);
+        }
+    }
+
+    public CompassFacet[] getFacets() {
+        return facets;
+    }
+
+    private List<ReaderCounts> count(LuceneSearchEngineFactory searchEngineFactory, Searcher searcher, final Query query,
+                                     final Filter filter, final String[] propertyNames) throws SearchEngineException {
+        List<IndexSearcher> searchers = new ArrayList<IndexSearcher>();
+        if (searcher instanceof MultiSearcher) {
+            for (Searchable searchable : ((MultiSearcher) searcher).getSearchables()) {
+                searchers.add((IndexSearcher) searchable);
+            }
+        } else {
+            searchers.add((IndexSearcher) searcher);
+        }
+        List<ReaderCounts> readersCounts = new ArrayList<ReaderCounts>(searchers.size());
+        ExecutorManager executorManager = searchEngineFactory.getExecutorManager();
+        if (searchers.size() == 1 || executorManager.isDisabled()) {
+            for (IndexSearcher indexSearcher : searchers) {
+                try {
+                    readersCounts.add(count(indexSearcher, query, filter, propertyNames));
+                } catch (IOException e) {
+                    throw new SearchEngineException("Failed to compute facets for query [" + query + "]", e);
+                }
+            }
+            return readersCounts;
+        }
+        List<Callable<ReaderCounts>> tasks = new ArrayList<Callable<ReaderCounts>>(searchers.size());
+        for (final IndexSearcher indexSearcher : searchers) {
+            tasks.add(new TransactionalCallable<ReaderCounts>(searchEngineFactory.getTransactionContext(), new Callable<ReaderCounts>() {
+                public ReaderCounts call() throws Exception {
+                    return count(indexSearcher, query, filter, propertyNames);
+                }
+            }));
+        }
+        List<Future<ReaderCounts>> futures = executorManager.invokeAllWithLimitBailOnException(tasks, 1);
+        for (Future<ReaderCounts> future : futures) {
+            try {
+                readersCounts.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SearchEngineException("Interrupted while computing facets for query [" + query + "]", e);
+            } catch (ExecutionException e) {
+                throw new SearchEngineException("Failed to compute facets for query [" + query + "]", e.getCause());
+            }
+        }
+        return readersCounts;
+    }
+
+    private static ReaderCounts count(IndexSearcher searcher, Query query, Filter filter, String[] propertyNames) throws IOException {
+        IndexReader reader = searcher.getIndexReader();
+        final FieldCache.StringIndex[] indexes = new FieldCache.StringIndex[propertyNames.length];
+        final int[][] counts = new int[propertyNames.length][];
+        for (int i = 0; i < propertyNames.length; i++) {
+            indexes[i] = FieldCache.DEFAULT.getStringIndex(reader, propertyNames[i]);
+            counts[i] = new int[indexes[i].lookup.length];
+        }
+        searcher.search(query, filter, new HitCollector() {
+            public void collect(int doc, float score) {
+                for (int i = 0; i < indexes.length; i++) {
+                    counts[i][indexes[i].order[doc]]++;
+                }
+            }
+        });
+        return new ReaderCounts(indexes, counts);
+    }
+
+    private CompassFacet.Entry[] termsEntries(SearchEngineFacetRequest request, int propertyIndex, List<ReaderCounts> readersCounts) {
+        EntryQueue queue = new EntryQueue(request.getSize());
+        if (readersCounts.size() == 1) {
+            // select the top terms directly from the ordinals counts
+            ReaderCounts readerCounts = readersCounts.get(0);
+            String[] lookup = readerCounts.indexes[propertyIndex].lookup;
+            int[] counts = readerCounts.counts[propertyIndex];
+            // ordinal 0 represents documents without a value
+            for (int ord = 1; ord < counts.length; ord++) {
+                if (counts[ord] > 0) {
+                    queue.offer(lookup[ord], counts[ord]);
+                }
+            }
+        } else {
+            // terms ordinals are per sub index, so merge the counts of the matching terms
+            Map<String, long[]> merged = new HashMap<String, long[]>();
+            for (ReaderCounts readerCounts : readersCounts) {
+                String[] lookup = readerCounts.indexes[propertyIndex].lookup;
+                int[] counts = readerCounts.counts[propertyIndex];
+                for (int ord = 1; ord < counts.length; ord++) {
+                    if (counts[ord] > 0) {
+                        long[] count = merged.get(lookup[ord]);
+                        if (count == null) {
+                            merged.put(lookup[ord], new long[]{counts[ord]});
+                        } else {
+                            count[0] += counts[ord];
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+                queue.offer(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+        CompassFacet.Entry[] entries = new CompassFacet.Entry[queue.size()];
+        for (int i = entries.length - 1; i >= 0; i--) {
+            entries[i] = (CompassFacet.Entry) queue.pop();
+        }
+        return entries;
+    }
+
+    private CompassFacet.Entry[] rangeEntries(SearchEngineFacetRequest request, int propertyIndex, List<ReaderCounts> readersCounts) {
+        String[] boundaries = request.getBoundaries();
+        long[] rangeCounts = new long[boundaries.length - 1];
+        for (ReaderCounts readerCounts : readersCounts) {
+            String[] lookup = readerCounts.indexes[propertyIndex].lookup;
+            int[] counts = readerCounts.counts[propertyIndex];
+            for (int i = 0; i < rangeCounts.length; i++) {
+                int from = boundaries[i] == null ? 1 : firstOrdAtLeast(lookup, boundaries[i]);
+                int to = boundaries[i + 1] == null ? lookup.length : firstOrdAtLeast(lookup, boundaries[i + 1]);
+                for (int ord = from; ord < to; ord++) {
+                    rangeCounts[i] += counts[ord];
+                }
+            }
+        }
+        CompassFacet.Entry[] entries = new CompassFacet.Entry[rangeCounts.length];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new DefaultCompassFacet.DefaultEntry(request.getLabels()[i], rangeCounts[i]);
+        }
+        return entries;
+    }
+
+    private CompassFacet.Entry[] histogramEntries(SearchEngineFacetRequest request, int propertyIndex, List<ReaderCounts> readersCounts) {
+        SearchEngineFacetRequest.TermBucketResolver bucketResolver = request.getBucketResolver();
+        TreeMap<Comparable, long[]> buckets = new TreeMap<Comparable, long[]>();
+        for (ReaderCounts readerCounts : readersCounts) {
+            String[] lookup = readerCounts.indexes[propertyIndex].lookup;
+            int[] counts = readerCounts.counts[propertyIndex];
+            for (int ord = 1; ord < counts.length; ord++) {
+                if (counts[ord] == 0) {
+                    continue;
+                }
+                Comparable bucket = bucketResolver.bucket(lookup[ord]);
+                if (bucket == null) {
+                    continue;
+                }
+                long[] count = buckets.get(bucket);
+                if (count == null) {
+                    buckets.put(bucket, new long[]{counts[ord]});
+                } else {
+                    count[0] += counts[ord];
+                }
+            }
+        }
+        CompassFacet.Entry[] entries = new CompassFacet.Entry[buckets.size()];
+        int i = 0;
+        for (Map.Entry<Comparable, long[]> bucket : buckets.entrySet()) {
+            entries[i++] = new DefaultCompassFacet.DefaultEntry(bucket.getKey(), bucket.getValue()[0]);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the first ordinal (ignoring ordinal 0, which represents no value) whose term is greater than
+     * or equal to the given value, or <code>lookup.length</code> if there is none.
+     */
+    private static int firstOrdAtLeast(String[] lookup, String value) {
+        int index = Arrays.binarySearch(lookup, 1, lookup.length, value);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private static class ReaderCounts {
+
+        final FieldCache.StringIndex[] indexes;
+
+        final int[][] counts;
+
+        ReaderCounts(FieldCache.StringIndex[] indexes, int[][] counts) {
+            this.indexes = indexes;
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * A bounded queue holding the entries with the highest counts (breaking ties by term order).
+     */
+    private static class EntryQueue extends PriorityQueue {
+
+        private final int size;
+
+        EntryQueue(int size) {
+            this.size = size;
+            initialize(size);
+        }
+
+        void offer(String term, long count) {
+            if (size() == size) {
+                DefaultCompassFacet.DefaultEntry top = (DefaultCompassFacet.DefaultEntry) top();
+                if (count < top.getCount() || (count == top.getCount() && term.compareTo((String) top.getValue()) > 0)) {
+                    return;
+                }
+            }
+            insertWithOverflow(new DefaultCompassFacet.DefaultEntry(term, count));
+        }
+
+        protected boolean lessThan(Object a, Object b) {
+            DefaultCompassFacet.DefaultEntry entryA = (DefaultCompassFacet.DefaultEntry) a;
+            DefaultCompassFacet.DefaultEntry entryB = (DefaultCompassFacet.DefaultEntry) b;
+            if (entryA.getCount() != entryB.getCount()) {
+                return entryA.getCount() < entryB.getCount();
+            }
+            return ((String) entryA.getValue()).compareTo((String) entryB.getValue()) > 0;
+        }
+    }
+}
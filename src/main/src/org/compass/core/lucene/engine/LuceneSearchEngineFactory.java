@@ -52,6 +52,7 @@ import org.compass.core.lucene.engine.spellcheck.InternalLuceneSearchEngineSpell
 import org.compass.core.lucene.engine.store.DefaultLuceneSearchEngineStore;
 import org.compass.core.lucene.engine.store.LuceneSearchEngineStore;
 import org.compass.core.lucene.engine.transaction.TransactionProcessorManager;
+import org.compass.core.lucene.search.FilterCache;
 import org.compass.core.mapping.CompassMapping;
 import org.compass.core.transaction.context.TransactionContext;
 import org.compass.core.util.ClassUtils;
@@ -95,6 +96,8 @@ public class LuceneSearchEngineFactory implements InternalSearchEngineFactory {
 
     private final AllTermsCache allTermsCache;
 
+    private final FilterCache filterCache;
+
     private CompassSettings settings;
 
     private SearchEngineEventManager eventManager = new SearchEngineEventManager();
@@ -115,6 +118,8 @@ public class LuceneSearchEngineFactory implements InternalSearchEngineFactory {
 
         resourceFactory = new LuceneResourceFactory(this);
 
+        filterCache = new FilterCache(settings);
+
         // build the analyzers
         analyzerManager = new LuceneAnalyzerManager(settings, mapping);
 
@@ -163,6 +168,7 @@ public class LuceneSearchEngineFactory implements InternalSearchEngineFactory {
             spellCheckManager.close();
         }
         indexManager.close();
+        filterCache.clear();
     }
 
     public boolean isDebug() {
@@ -178,7 +184,7 @@ public class LuceneSearchEngineFactory implements InternalSearchEngineFactory {
     }
 
     public SearchEngineQueryFilterBuilder queryFilterBuilder() throws SearchEngineException {
-        return new LuceneSearchEngineQueryFilterBuilder();
+        return new LuceneSearchEngineQueryFilterBuilder(this);
     }
 
     public TransactionContext getTransactionContext() {
@@ -288,6 +294,10 @@ public class LuceneSearchEngineFactory implements InternalSearchEngineFactory {
         return indexDeletionPolicyManager;
     }
 
+    public FilterCache getFilterCache() {
+        return filterCache;
+    }
+
     public AllTermsCache getAllTermsCache() {
         return allTermsCache;
     }
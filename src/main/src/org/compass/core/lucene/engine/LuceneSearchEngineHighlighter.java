@@ -30,8 +30,11 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.highlight.Fragmenter;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.QueryTermExtractor;
 import org.apache.lucene.search.highlight.Scorer;
+import org.apache.lucene.search.highlight.TermVectorHighlighter;
 import org.apache.lucene.search.highlight.TokenSources;
+import org.apache.lucene.search.highlight.WeightedTerm;
 import org.compass.core.CompassHighlighter;
 import org.compass.core.Resource;
 import org.compass.core.engine.SearchEngineException;
@@ -39,11 +42,16 @@ import org.compass.core.engine.SearchEngineHighlighter;
 import org.compass.core.lucene.LuceneEnvironment;
 import org.compass.core.lucene.LuceneResource;
 import org.compass.core.lucene.engine.analyzer.LuceneAnalyzerManager;
+import org.compass.core.lucene.engine.highlighter.ExtendedLuceneHighlighterSettings;
 import org.compass.core.lucene.engine.highlighter.LuceneHighlighterManager;
 import org.compass.core.lucene.engine.highlighter.LuceneHighlighterSettings;
 import org.compass.core.lucene.engine.highlighter.support.TokenOrderingFilter;
 
 /**
+ * Highlights resource properties using the Lucene highlighter. When the highlighter settings type is
+ * {@link LuceneEnvironment.Highlighter#TYPE_TERM_VECTOR}, properties stored with term vectors with positions
+ * and offsets are highlighted using {@link TermVectorHighlighter}, without re-analyzing the text.
+ *
  * @author kimchy
  */
 public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, LuceneDelegatedClose {
@@ -83,6 +91,8 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
             } catch (IOException e) {
                 throw new SearchEngineException("Failed to rewrite query [" + query + "] for highlighter", e);
             }
+        } else {
+            this.query = query;
         }
 
         clear();
@@ -137,6 +147,10 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
     }
 
     public String fragment(Resource resource, String propertyName, String text) throws SearchEngineException {
+        String[] termVectorFragments = termVectorFragments(resource, propertyName, text, 1);
+        if (termVectorFragments != null) {
+            return termVectorFragments.length == 0 ? null : termVectorFragments[0];
+        }
 
         Highlighter highlighter = createHighlighter(propertyName);
         TokenStream tokenStream = createTokenStream(resource, propertyName, text);
@@ -154,6 +168,10 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
     }
 
     public String[] fragments(Resource resource, String propertyName, String text) throws SearchEngineException {
+        String[] termVectorFragments = termVectorFragments(resource, propertyName, text, getMaxNumFragments());
+        if (termVectorFragments != null) {
+            return termVectorFragments;
+        }
         Highlighter highlighter = createHighlighter(propertyName);
         TokenStream tokenStream = createTokenStream(resource, propertyName, text);
         try {
@@ -170,6 +188,10 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
 
     public String fragmentsWithSeparator(Resource resource, String propertyName, String text)
             throws SearchEngineException {
+        String[] termVectorFragments = termVectorFragments(resource, propertyName, text, getMaxNumFragments());
+        if (termVectorFragments != null) {
+            return join(termVectorFragments);
+        }
         Highlighter highlighter = createHighlighter(propertyName);
         TokenStream tokenStream = createTokenStream(resource, propertyName, text);
         try {
@@ -188,6 +210,10 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
 
     public String[] multiValueFragment(Resource resource, String propertyName, String[] texts)
             throws SearchEngineException {
+        String[] termVectorFragments = termVectorMultiValueFragments(resource, propertyName, texts);
+        if (termVectorFragments != null) {
+            return termVectorFragments;
+        }
         List fragmentList = new ArrayList();
         Highlighter highlighter = createHighlighter(propertyName);
         for (int i = 0; i < texts.length; i++) {
@@ -217,7 +243,10 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
 
     public String multiValueFragmentWithSeparator(Resource resource, String propertyName, String[] texts)
             throws SearchEngineException {
-        String[] fragments = multiValueFragment(resource, propertyName, texts);
+        return join(multiValueFragment(resource, propertyName, texts));
+    }
+
+    private String join(String[] fragments) {
         String actualSeparator = getActualSeparator();
         StringBuffer fragment = new StringBuffer();
         if (fragments.length > 0) {
@@ -230,6 +259,96 @@ public class LuceneSearchEngineHighlighter implements SearchEngineHighlighter, L
         return fragment.toString();
     }
 
+    /**
+     * Returns the best fragments using the term vector highlighter, or <code>null</code> if it is not configured
+     * or there is no term vector with offsets for the property.
+     */
+    protected String[] termVectorFragments(Resource resource, String propertyName, String text, int maxNumFragments)
+            throws SearchEngineException {
+        TermPositionVector termVector = getTermVectorForHighlighting(resource, propertyName);
+        if (termVector == null) {
+            return null;
+        }
+        TermVectorHighlighter highlighter = createTermVectorHighlighter(propertyName);
+        TermVectorHighlighter.Hit[] hits = highlighter.getHits(termVector);
+        if (hits == null) {
+            return null;
+        }
+        return highlighter.getBestFragments(text, hits, 0, maxNumFragments);
+    }
+
+    /**
+     * Returns the best fragment of each value using the term vector highlighter, or <code>null</code> if it is not
+     * configured, there is no term vector with offsets for the property, or the values can not be located in it.
+     */
+    protected String[] termVectorMultiValueFragments(Resource resource, String propertyName, String[] texts)
+            throws SearchEngineException {
+        TermPositionVector termVector = getTermVectorForHighlighting(resource, propertyName);
+        if (termVector == null) {
+            return null;
+        }
+        TermVectorHighlighter highlighter = createTermVectorHighlighter(propertyName);
+        TermVectorHighlighter.Hit[] hits = highlighter.getHits(termVector);
+        if (hits == null) {
+            return null;
+        }
+        int[] valueOffsets = TermVectorHighlighter.valueOffsets(termVector, texts);
+        if (valueOffsets == null) {
+            return null;
+        }
+        List<String> fragmentList = new ArrayList<String>();
+        for (int i = 0; i < texts.length; i++) {
+            String text = texts[i];
+            if (text != null && text.length() > 0) {
+                String[] fragments = highlighter.getBestFragments(text, hits, valueOffsets[i], 1);
+                if (fragments.length > 0 && fragments[0].length() > 0) {
+                    fragmentList.add(fragments[0]);
+                }
+            }
+        }
+        return fragmentList.toArray(new String[fragmentList.size()]);
+    }
+
+    private TermPositionVector getTermVectorForHighlighting(Resource resource, String propertyName) {
+        if (!(highlighterSettings instanceof ExtendedLuceneHighlighterSettings)
+                || !LuceneEnvironment.Highlighter.TYPE_TERM_VECTOR.equals(((ExtendedLuceneHighlighterSettings) highlighterSettings).getType())) {
+            return null;
+        }
+        CompassHighlighter.TextTokenizer actualTextTokenizer = highlighterSettings.getTextTokenizer();
+        if (textTokenizer != null) {
+            actualTextTokenizer = textTokenizer;
+        }
+        if (actualTextTokenizer == CompassHighlighter.TextTokenizer.ANALYZER) {
+            return null;
+        }
+        TermFreqVector tfv;
+        try {
+            tfv = indexReader.getTermFreqVector(((LuceneResource) resource).getDocNum(), propertyName);
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to read term vector info", e);
+        }
+        if (tfv instanceof TermPositionVector) {
+            return (TermPositionVector) tfv;
+        }
+        return null;
+    }
+
+    protected TermVectorHighlighter createTermVectorHighlighter(String propertyName) throws SearchEngineException {
+        WeightedTerm[] weightedTerms;
+        if (highlighterSettings.isComputeIdf()) {
+            if (propertyName == null) {
+                throw new SearchEngineException("When using a formatter that requires idf or setting the ["
+                        + LuceneEnvironment.Highlighter.COMPUTE_IDF
+                        + "] setting, a resource property name must be provided");
+            }
+            weightedTerms = QueryTermExtractor.getIdfWeightedTerms(query, indexReader, propertyName);
+        } else {
+            weightedTerms = QueryTermExtractor.getTerms(query, false);
+        }
+        return new TermVectorHighlighter(highlighterSettings.getFormatter(), highlighterSettings.getEncoder(),
+                weightedTerms, ((ExtendedLuceneHighlighterSettings) highlighterSettings).getFragmentSize());
+    }
+
     protected TokenStream createTokenStream(Resource resource, String propertyName, String text)
             throws SearchEngineException {
         CompassHighlighter.TextTokenizer actualTextTokenizer = highlighterSettings.getTextTokenizer();
@@ -30,8 +30,12 @@ import org.compass.core.engine.SearchEngineHits;
 public interface LuceneSearchEngineHits extends SearchEngineHits, LuceneDelegatedClose {
 
     /**
-     * Returns the actual Lucene hits.
+     * Returns Lucene hits for the query. Note, the query is executed again (the first time this
+     * method is called) in order to create the Lucene hits, the created hits are then cached.
+     *
+     * @deprecated Lucene hits are no longer used to execute the query, use the search engine hits instead.
      */
+    @Deprecated
     Hits getHits();
 
     /**
@@ -20,25 +20,26 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Locale;
 
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.HitCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
-import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.spans.SpanQuery;
+import org.compass.core.CompassFacet;
+import org.compass.core.CompassHitsCursor;
 import org.compass.core.CompassQuery.SortDirection;
 import org.compass.core.CompassQuery.SortImplicitType;
 import org.compass.core.CompassQuery.SortPropertyType;
 import org.compass.core.engine.SearchEngine;
 import org.compass.core.engine.SearchEngineException;
+import org.compass.core.engine.SearchEngineFacetRequest;
 import org.compass.core.engine.SearchEngineHits;
 import org.compass.core.engine.SearchEngineQuery;
 import org.compass.core.engine.SearchEngineQueryFilter;
 import org.compass.core.lucene.engine.queryparser.QueryHolder;
+import org.compass.core.lucene.search.AliasFilter;
 import org.compass.core.lucene.search.CountHitCollector;
 
 /**
@@ -80,6 +81,14 @@ public class LuceneSearchEngineQuery implements SearchEngineQuery, Cloneable {
 
     private boolean suggested;
 
+    private int pageSize = -1;
+
+    private CompassHitsCursor searchAfter;
+
+    private String[] properties;
+
+    private String[] lazyProperties;
+
     public LuceneSearchEngineQuery(LuceneSearchEngineFactory searchEngineFactory, Query query) {
         this(searchEngineFactory, new QueryHolder(query));
     }
@@ -164,7 +173,7 @@ public class LuceneSearchEngineQuery implements SearchEngineQuery, Cloneable {
         return direction == SortDirection.REVERSE;
     }
 
-    private int getSortType(SortPropertyType type) {
+    public static int getSortType(SortPropertyType type) {
         switch (type) {
             case AUTO:
                 return SortField.AUTO;
@@ -217,6 +226,11 @@ public class LuceneSearchEngineQuery implements SearchEngineQuery, Cloneable {
         }
     }
     
+    public CompassFacet[] facets(SearchEngine searchEngine, SearchEngineFacetRequest[] requests) throws SearchEngineException {
+        LuceneSearchEngineInternalSearch internalSearch = (LuceneSearchEngineInternalSearch) searchEngine.internalSearch(getSubIndexes(), getAliases());
+        return new LuceneSearchEngineFacets(searchEngineFactory, requests, internalSearch, getQuery(), getLuceneFilter()).getFacets();
+    }
+
     public SearchEngineQuery setBoost(float boost) {
         query.setBoost(boost);
         return this;
@@ -237,16 +251,10 @@ public class LuceneSearchEngineQuery implements SearchEngineQuery, Cloneable {
             return this;
         }
 
+        // restrict the aliases using a (cached) filter, so they do not take part in the scoring
         String aliasProperty = searchEngineFactory.getLuceneSettings().getAliasProperty();
-        BooleanQuery boolQuery2 = new BooleanQuery();
-        for (String alias : aliases) {
-            boolQuery2.add(new TermQuery(new Term(aliasProperty, alias)), BooleanClause.Occur.SHOULD);
-        }
-
-        BooleanQuery boolQuery = new BooleanQuery();
-        boolQuery.add(origQuery, BooleanClause.Occur.MUST);
-        boolQuery.add(boolQuery2, BooleanClause.Occur.MUST);
-        this.query = boolQuery;
+        Filter aliasFilter = searchEngineFactory.getFilterCache().cache(new AliasFilter(aliasProperty, aliases));
+        this.query = new FilteredQuery(origQuery, aliasFilter);
 
         this.aliases = aliases;
 
@@ -273,6 +281,52 @@ public class LuceneSearchEngineQuery implements SearchEngineQuery, Cloneable {
         return filter.getFilter();
     }
 
+    public SearchEngineQuery setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Returns the page size set on the query, or <code>-1</code> if not set.
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public SearchEngineQuery setSearchAfter(CompassHitsCursor cursor) {
+        this.searchAfter = cursor;
+        return this;
+    }
+
+    public CompassHitsCursor getSearchAfter() {
+        return this.searchAfter;
+    }
+
+    public SearchEngineQuery setProperties(String[] names) {
+        this.properties = names;
+        return this;
+    }
+
+    /**
+     * Returns the names of the properties the hits should load, <code>null</code> if all
+     * the properties should be loaded.
+     */
+    public String[] getProperties() {
+        return this.properties;
+    }
+
+    public SearchEngineQuery setLazyProperties(String[] names) {
+        this.lazyProperties = names;
+        return this;
+    }
+
+    /**
+     * Returns the names of the properties the hits should load lazily, <code>null</code> if none.
+     */
+    public String[] getLazyProperties() {
+        return this.lazyProperties;
+    }
+
     public SearchEngineQuery rewrite() {
         this.rewrite = true;
         return this;
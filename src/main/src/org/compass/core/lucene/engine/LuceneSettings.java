@@ -75,6 +75,12 @@ public class LuceneSettings {
 
     private boolean waitForCacheInvalidationOnIndexOperation;
 
+    private boolean parallelSearch;
+
+    private long parallelSearchTimeout;
+
+    private int searchPageSize;
+
     private String lockDir;
 
     public void configure(CompassSettings settings) throws SearchEngineException {
@@ -171,6 +177,13 @@ public class LuceneSettings {
             log.debug("Wait for cahce invalidation on index operatrion is set to [" + waitForCacheInvalidationOnIndexOperation + "]");
         }
 
+        parallelSearch = settings.getSettingAsBoolean(LuceneEnvironment.Search.PARALLEL, false);
+        parallelSearchTimeout = settings.getSettingAsTimeInMillis(LuceneEnvironment.Search.PARALLEL_TIMEOUT, -1);
+        searchPageSize = settings.getSettingAsInt(LuceneEnvironment.Search.PAGE_SIZE, 100);
+        if (log.isDebugEnabled()) {
+            log.debug("Using parallel search [" + parallelSearch + "] with timeout [" + parallelSearchTimeout + "ms]");
+        }
+
         BooleanQuery.setMaxClauseCount(settings.getSettingAsInt(LuceneEnvironment.Query.MAX_CLAUSE_COUNT, BooleanQuery.getMaxClauseCount()));
         if (log.isDebugEnabled()) {
             log.debug("Setting *static* Lucene BooleanQuery maxClauseCount to [" + BooleanQuery.getMaxClauseCount() + "]");
@@ -253,6 +266,18 @@ public class LuceneSettings {
         return waitForCacheInvalidationOnIndexOperation;
     }
 
+    public boolean isParallelSearch() {
+        return parallelSearch;
+    }
+
+    public long getParallelSearchTimeout() {
+        return parallelSearchTimeout;
+    }
+
+    public int getSearchPageSize() {
+        return searchPageSize;
+    }
+
     public String getSubContext() {
         return subContext;
     }
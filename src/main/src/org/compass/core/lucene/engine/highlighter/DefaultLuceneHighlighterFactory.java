@@ -62,6 +62,13 @@ public class DefaultLuceneHighlighterFactory implements LuceneHighlighterFactory
                 CompassHighlighter.TextTokenizer.toString(CompassHighlighter.TextTokenizer.AUTO));
         CompassHighlighter.TextTokenizer textTokenizer = CompassHighlighter.TextTokenizer
                 .fromString(textTokenizerSetting);
+        String type = settings.getSetting(LuceneEnvironment.Highlighter.TYPE, LuceneEnvironment.Highlighter.TYPE_DEFAULT);
+        if (!LuceneEnvironment.Highlighter.TYPE_DEFAULT.equals(type) && !LuceneEnvironment.Highlighter.TYPE_TERM_VECTOR.equals(type)) {
+            throw new SearchEngineException("Highlighter [" + highlighterName + "] has an unknown type [" + type + "]");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Highlighter [" + highlighterName + "] uses type [" + type + "]");
+        }
 
         DefaultLuceneHighlighterSettings highlighterSettings = new DefaultLuceneHighlighterSettings(formatter,
                 fragmenterSetting, encoder);
@@ -72,6 +79,7 @@ public class DefaultLuceneHighlighterFactory implements LuceneHighlighterFactory
         highlighterSettings.setSeparator(separator);
         highlighterSettings.setMaxBytesToAnalyze(maxBytesToAnalyze);
         highlighterSettings.setTextTokenizer(textTokenizer);
+        highlighterSettings.setType(type);
 
         return highlighterSettings;
     }
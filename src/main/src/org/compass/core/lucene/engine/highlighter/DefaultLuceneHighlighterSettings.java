@@ -31,7 +31,7 @@ import org.compass.core.util.ClassUtils;
 /**
  * @author kimchy
  */
-public class DefaultLuceneHighlighterSettings implements LuceneHighlighterSettings {
+public class DefaultLuceneHighlighterSettings implements ExtendedLuceneHighlighterSettings {
 
     private CompassSettings settings;
 
@@ -53,6 +53,8 @@ public class DefaultLuceneHighlighterSettings implements LuceneHighlighterSettin
     
     private CompassHighlighter.TextTokenizer textTokenizer;
 
+    private String type = LuceneEnvironment.Highlighter.TYPE_DEFAULT;
+
     public DefaultLuceneHighlighterSettings(Formatter formatter, String fragmenterSetting, Encoder encoder) {
         this.formatter = formatter;
         this.fragmenterSetting = fragmenterSetting;
@@ -141,4 +143,16 @@ public class DefaultLuceneHighlighterSettings implements LuceneHighlighterSettin
     public void setTextTokenizer(CompassHighlighter.TextTokenizer textTokenizer) {
         this.textTokenizer = textTokenizer;
     }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getFragmentSize() {
+        return settings.getSettingAsInt(LuceneEnvironment.Highlighter.Fragmenter.SIMPLE_SIZE, 100);
+    }
 }
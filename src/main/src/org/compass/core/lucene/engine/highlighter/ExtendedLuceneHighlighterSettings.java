@@ -0,0 +1,37 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.highlighter;
+
+/**
+ * Extended {@link LuceneHighlighterSettings} allowing to select the highlighter implementation. Kept separate
+ * so custom {@link LuceneHighlighterSettings} implementations do not have to implement it, in which case the
+ * default highlighter is used.
+ *
+ * @author kimchy
+ */
+public interface ExtendedLuceneHighlighterSettings extends LuceneHighlighterSettings {
+
+    /**
+     * Returns the highlighter implementation type (see {@link org.compass.core.lucene.LuceneEnvironment.Highlighter#TYPE}).
+     */
+    String getType();
+
+    /**
+     * Returns the size of fragments used by highlighters that do not use a <code>Fragmenter</code>.
+     */
+    int getFragmentSize();
+}
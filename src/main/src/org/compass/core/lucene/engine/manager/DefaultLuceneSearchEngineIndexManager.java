@@ -25,6 +25,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LuceneUtils;
+import org.apache.lucene.search.ExecutorParallelMultiSearcher;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiSearcher;
 import org.apache.lucene.search.Searchable;
@@ -122,6 +123,7 @@ public class DefaultLuceneSearchEngineIndexManager implements LuceneSearchEngine
         }
         searchEngineFactory.getTransactionContext().execute(new TransactionContextCallback<Object>() {
             public Object doInTransaction() throws CompassException {
+                releaseIndexWriters();
                 clearCache();
                 searchEngineStore.createIndex();
                 return null;
@@ -135,6 +137,7 @@ public class DefaultLuceneSearchEngineIndexManager implements LuceneSearchEngine
         }
         searchEngineFactory.getTransactionContext().execute(new TransactionContextCallback<Object>() {
             public Object doInTransaction() throws CompassException {
+                releaseIndexWriters();
                 clearCache();
                 searchEngineStore.deleteIndex();
                 return null;
@@ -153,6 +156,7 @@ public class DefaultLuceneSearchEngineIndexManager implements LuceneSearchEngine
             public Boolean doInTransaction() throws CompassException {
                 indexHoldersCache.doUnderCacheLock(subIndex, new Runnable() {
                     public void run() {
+                        releaseIndexWriters(subIndex);
                         clearCache(subIndex);
                         searchEngineStore.cleanIndex(subIndex);
                     }
@@ -192,6 +196,9 @@ public class DefaultLuceneSearchEngineIndexManager implements LuceneSearchEngine
         }
         final Lock[] writerLocks = new Lock[subIndexes.length];
 
+        // index writers kept open across transactions hold the write locks, release them
+        releaseIndexWriters(subIndexes);
+
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Trying to obtain write locks");
@@ -350,6 +357,16 @@ public class DefaultLuceneSearchEngineIndexManager implements LuceneSearchEngine
         return indexHoldersCache.isCached();
     }
 
+    /**
+     * Releases index writers kept open across transactions by transaction processors (if there are any) for
+     * the given sub indexes, or all of them if none are provided.
+     */
+    protected void releaseIndexWriters(String... subIndexes) throws SearchEngineException {
+        if (searchEngineFactory.getTransactionProcessorManager() != null) {
+            searchEngineFactory.getTransactionProcessorManager().releaseIndexWriters(subIndexes);
+        }
+    }
+
     public void clearCache(String subIndex) throws SearchEngineException {
         indexHoldersCache.clearCache(subIndex);
     }
@@ -404,7 +421,13 @@ public class DefaultLuceneSearchEngineIndexManager implements LuceneSearchEngine
     }
 
     public MultiSearcher openMultiSearcher(Searchable[] searchers) throws IOException {
-        MultiSearcher searcher = new MultiSearcher(searchers);
+        MultiSearcher searcher;
+        if (searchEngineFactory.getLuceneSettings().isParallelSearch() && !searchEngineFactory.getExecutorManager().isDisabled()) {
+            searcher = new ExecutorParallelMultiSearcher(searchers, searchEngineFactory.getExecutorManager(),
+                    searchEngineFactory.getTransactionContext(), searchEngineFactory.getLuceneSettings().getParallelSearchTimeout());
+        } else {
+            searcher = new MultiSearcher(searchers);
+        }
         searcher.setSimilarity(searchEngineFactory.getSimilarityManager().getSearchSimilarity());
         return searcher;
     }
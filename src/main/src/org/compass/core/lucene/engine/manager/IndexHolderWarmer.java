@@ -0,0 +1,41 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.manager;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Warms up a newly opened index searcher before the {@link org.compass.core.lucene.engine.manager.IndexHoldersCache}
+ * publishes it to searching threads (for example, by executing common queries and sorts so the
+ * relevant field caches are loaded).
+ *
+ * <p>Warmers can be registered using the {@link org.compass.core.lucene.LuceneEnvironment.CacheWarmer}
+ * settings. Implementations can optionally implement {@link org.compass.core.config.CompassConfigurable}
+ * and {@link org.compass.core.config.SearchEngineFactoryAware}.
+ *
+ * @author kimchy
+ */
+public interface IndexHolderWarmer {
+
+    /**
+     * Warms the given index searcher opened for the given sub index. Note, the searcher
+     * has not been published yet, and should not be closed by the warmer.
+     */
+    void warm(String subIndex, IndexSearcher indexSearcher) throws IOException;
+}
@@ -18,13 +18,16 @@ package org.compass.core.lucene.engine.manager;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -32,14 +35,24 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.compass.core.CompassException;
+import org.compass.core.config.CompassConfigurable;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.config.ConfigurationException;
+import org.compass.core.config.SearchEngineFactoryAware;
 import org.compass.core.engine.SearchEngineException;
 import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.search.FilterCache;
 import org.compass.core.transaction.context.TransactionContextCallback;
+import org.compass.core.util.ClassUtils;
 
 /**
  * A cache of {@link org.compass.core.lucene.engine.manager.LuceneIndexHolder}. Provides APIs to get an
  * index holder, manage its cache invalidation (either async or sync).
  *
+ * <p>When {@link org.compass.core.lucene.LuceneEnvironment.SearchEngineIndex#CACHE_BACKGROUND_REFRESH} is enabled,
+ * an invalidated index holder is reopened and warmed up (using the registered {@link IndexHolderWarmer}s) in the
+ * background, and searches keep on using the current index holder until the new one replaces it.
+ *
  * <p>NOTE: All operations are not perfomed within a transactional context. The {@link org.compass.core.lucene.engine.manager.LuceneSearchEngineIndexManager}
  * provides transactionaly context for some of the operations.
  *
@@ -59,6 +72,14 @@ public class IndexHoldersCache {
 
     private boolean cacheAsyncInvalidation;
 
+    private boolean backgroundRefresh;
+
+    private IndexHolderWarmer[] warmers = new IndexHolderWarmer[0];
+
+    private final ConcurrentMap<String, Boolean> backgroundRefreshInProgress = new ConcurrentHashMap<String, Boolean>();
+
+    private final Map<String, AtomicLong> invalidationCounters = new HashMap<String, AtomicLong>();
+
     private long[] lastModifiled;
 
     private Map<String, IndexHolderCacheLock> subIndexCacheLocks = new HashMap<String, IndexHolderCacheLock>();
@@ -71,6 +92,7 @@ public class IndexHoldersCache {
         this.indexManager = indexManager;
         for (String subIndex : indexManager.getSubIndexes()) {
             subIndexCacheLocks.put(subIndex, new IndexHolderCacheLock());
+            invalidationCounters.put(subIndex, new AtomicLong());
         }
 
         // init debug
@@ -85,6 +107,13 @@ public class IndexHoldersCache {
     public void start() {
         if (!indexManager.getExecutorManager().isDisabled()) {
             cacheAsyncInvalidation = indexManager.getSettings().getSettings().getSettingAsBoolean(LuceneEnvironment.SearchEngineIndex.CACHE_ASYNC_INVALIDATION, true);
+            backgroundRefresh = cacheAsyncInvalidation && indexManager.getSettings().getSettings().getSettingAsBoolean(LuceneEnvironment.SearchEngineIndex.CACHE_BACKGROUND_REFRESH, false);
+            if (backgroundRefresh) {
+                warmers = buildWarmers(indexManager.getSettings().getSettings());
+                if (logger.isInfoEnabled()) {
+                    logger.info("Background refresh cache is enabled with [" + warmers.length + "] warmer(s)");
+                }
+            }
             long cacheInvalidationInterval = indexManager.getSettings().getCacheInvalidationInterval();
             if (cacheInvalidationInterval > 0 && cacheAsyncInvalidation) {
                 if (logger.isInfoEnabled()) {
@@ -121,6 +150,13 @@ public class IndexHoldersCache {
         return debug;
     }
 
+    /**
+     * Returns the filter cache the index holders register their readers with.
+     */
+    public FilterCache getFilterCache() {
+        return indexManager.getSearchEngineFactory().getFilterCache();
+    }
+
     public ConcurrentMap<String, AtomicInteger> getDebugHoldersCount() {
         return debugOpenHoldersCount;
     }
@@ -179,6 +215,7 @@ public class IndexHoldersCache {
     }
 
     public void invalidateCache(String subIndex) throws SearchEngineException {
+        invalidationCounters.get(subIndex).incrementAndGet();
         LuceneIndexHolder indexHolder = indexHolders.get(subIndex);
         if (indexHolder != null) {
             indexHolder.setInvalidated(true);
@@ -258,7 +295,12 @@ public class IndexHoldersCache {
     public LuceneIndexHolder getHolder(String subIndex) throws SearchEngineException {
         try {
             LuceneIndexHolder indexHolder = indexHolders.get(subIndex);
-            if (cacheAsyncInvalidation) {
+            if (backgroundRefresh && indexHolder != null) {
+                // keep on using the current holder, it will be replaced once the new one is warmed up
+                if (indexHolder.isInvalidated()) {
+                    scheduleBackgroundRefresh(subIndex);
+                }
+            } else if (cacheAsyncInvalidation) {
                 if (indexHolder == null || indexHolder.isInvalidated()) {
                     synchronized (subIndexCacheLocks.get(subIndex)) {
                         indexHolder = indexHolders.get(subIndex);
@@ -293,6 +335,10 @@ public class IndexHoldersCache {
     }
 
     private LuceneIndexHolder internalRefreshCache(String subIndex) throws SearchEngineException {
+        return internalRefreshCache(subIndex, false);
+    }
+
+    private LuceneIndexHolder internalRefreshCache(String subIndex, boolean warm) throws SearchEngineException {
         if (logger.isTraceEnabled()) {
             logger.trace("Refreshing cache for sub index [" + subIndex + "]");
         }
@@ -307,6 +353,9 @@ public class IndexHoldersCache {
             if (reader != indexHolder.getIndexReader()) {
                 LuceneIndexHolder origHolder = indexHolder;
                 indexHolder = new LuceneIndexHolder(this, subIndex, indexManager.openIndexSearcher(reader));
+                if (warm) {
+                    warm(indexHolder);
+                }
                 // since not synchronized, we need to mark the one we replaced as closed
                 LuceneIndexHolder oldHolder = indexHolders.put(subIndex, indexHolder);
                 if (oldHolder != null) {
@@ -323,6 +372,9 @@ public class IndexHoldersCache {
             try {
                 IndexReader reader = IndexReader.open(indexManager.getDirectory(subIndex), true);
                 indexHolder = new LuceneIndexHolder(this, subIndex, indexManager.openIndexSearcher(reader));
+                if (warm) {
+                    warm(indexHolder);
+                }
             } catch (IOException e) {
                 throw new SearchEngineException("Failed to open sub index cache [" + subIndex + "]", e);
             }
@@ -335,6 +387,84 @@ public class IndexHoldersCache {
         return indexHolder;
     }
 
+    /**
+     * Submits a background refresh of the given sub index, unless one is already in progress.
+     */
+    private void scheduleBackgroundRefresh(final String subIndex) {
+        if (backgroundRefreshInProgress.putIfAbsent(subIndex, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            indexManager.getExecutorManager().submit(new BackgroundRefreshCacheRunnable(subIndex));
+        } catch (RuntimeException e) {
+            backgroundRefreshInProgress.remove(subIndex);
+            throw e;
+        }
+    }
+
+    /**
+     * Reopens and warms up a new index holder for the given sub index and only then publishes it. Searches
+     * do not wait on the sub index cache lock while this happens, since they keep on using the current holder.
+     */
+    private void backgroundRefreshCache(String subIndex) throws SearchEngineException {
+        synchronized (subIndexCacheLocks.get(subIndex)) {
+            long invalidationCount = invalidationCounters.get(subIndex).get();
+            LuceneIndexHolder indexHolder = internalRefreshCache(subIndex, true);
+            if (invalidationCounters.get(subIndex).get() != invalidationCount) {
+                // the index was changed while we were refreshing, make sure we will refresh again
+                indexHolder.setInvalidated(true);
+            }
+        }
+    }
+
+    private void warm(LuceneIndexHolder indexHolder) {
+        for (IndexHolderWarmer warmer : warmers) {
+            long time = System.currentTimeMillis();
+            try {
+                warmer.warm(indexHolder.getSubIndex(), indexHolder.getIndexSearcher());
+            } catch (Exception e) {
+                logger.warn("Failed to warm sub index [" + indexHolder.getSubIndex() + "] using warmer [" + warmer + "]", e);
+            }
+            if (logger.isTraceEnabled()) {
+                logger.trace("Warmed sub index [" + indexHolder.getSubIndex() + "] using warmer [" + warmer + "] took [" + (System.currentTimeMillis() - time) + "ms]");
+            }
+        }
+    }
+
+    private IndexHolderWarmer[] buildWarmers(CompassSettings settings) {
+        List<IndexHolderWarmer> warmers = new ArrayList<IndexHolderWarmer>();
+        Map<String, CompassSettings> warmerSettingGroups = settings.getSettingGroups(LuceneEnvironment.CacheWarmer.PREFIX);
+        for (Map.Entry<String, CompassSettings> entry : warmerSettingGroups.entrySet()) {
+            CompassSettings warmerSettings = entry.getValue();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Building cache warmer [" + entry.getKey() + "] with settings " + warmerSettings);
+            }
+            IndexHolderWarmer warmer;
+            Object warmerType = warmerSettings.getSettingAsObject(LuceneEnvironment.CacheWarmer.TYPE);
+            if (warmerType == null) {
+                warmer = new QueryIndexHolderWarmer(indexManager.getSearchEngineFactory(),
+                        warmerSettings.getSetting(LuceneEnvironment.CacheWarmer.QUERY),
+                        warmerSettings.getSetting(LuceneEnvironment.CacheWarmer.SORT));
+            } else if (warmerType instanceof IndexHolderWarmer) {
+                warmer = (IndexHolderWarmer) warmerType;
+            } else {
+                try {
+                    warmer = (IndexHolderWarmer) ClassUtils.forName((String) warmerType, settings.getClassLoader()).newInstance();
+                } catch (Exception e) {
+                    throw new ConfigurationException("Failed to create cache warmer class [" + warmerType + "]", e);
+                }
+            }
+            if (warmer instanceof CompassConfigurable) {
+                ((CompassConfigurable) warmer).configure(warmerSettings);
+            }
+            if (warmer instanceof SearchEngineFactoryAware) {
+                ((SearchEngineFactoryAware) warmer).setSearchEngineFactory(indexManager.getSearchEngineFactory());
+            }
+            warmers.add(warmer);
+        }
+        return warmers.toArray(new IndexHolderWarmer[warmers.size()]);
+    }
+
     /**
      * Checks if a an index holder should be invalidated.
      */
@@ -381,8 +511,12 @@ public class IndexHoldersCache {
                             if (indexManager.getStore().indexExists(subIndex)) {
                                 LuceneIndexHolder indexHolder = indexHolders.get(subIndex);
                                 if (shouldInvalidateCache(indexHolder)) {
-                                    synchronized (subIndexCacheLocks.get(subIndex)) {
-                                        internalRefreshCache(subIndex);
+                                    if (backgroundRefresh) {
+                                        backgroundRefreshCache(subIndex);
+                                    } else {
+                                        synchronized (subIndexCacheLocks.get(subIndex)) {
+                                            internalRefreshCache(subIndex);
+                                        }
                                     }
                                 }
                             } else {
@@ -398,6 +532,37 @@ public class IndexHoldersCache {
         }
     }
 
+    /**
+     * A task that refreshes (and warms up) a single sub index cache in the background.
+     */
+    private class BackgroundRefreshCacheRunnable implements Runnable {
+
+        private final String subIndex;
+
+        private BackgroundRefreshCacheRunnable(String subIndex) {
+            this.subIndex = subIndex;
+        }
+
+        public void run() {
+            if (!indexManager.isRunning()) {
+                backgroundRefreshInProgress.remove(subIndex);
+                return;
+            }
+            try {
+                indexManager.getTransactionContext().execute(new TransactionContextCallback<Object>() {
+                    public Object doInTransaction() throws CompassException {
+                        backgroundRefreshCache(subIndex);
+                        return null;
+                    }
+                });
+            } catch (Exception e) {
+                logger.warn("Failed to perform background refresh of cache for sub-index [" + subIndex + "]", e);
+            } finally {
+                backgroundRefreshInProgress.remove(subIndex);
+            }
+        }
+    }
+
     private static class IndexHolderCacheLock {
 
     }
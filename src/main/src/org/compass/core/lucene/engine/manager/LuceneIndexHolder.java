@@ -49,6 +49,7 @@ public class LuceneIndexHolder {
         this.subIndex = subIndex;
         this.indexSearcher = indexSearcher;
         this.indexReader = indexSearcher.getIndexReader();
+        indexHoldersCache.getFilterCache().register(indexReader);
         if (indexHoldersCache.isDebug()) {
             AtomicInteger count = indexHoldersCache.getDebugHoldersCount().get(subIndex);
             if (count == null) {
@@ -106,6 +107,7 @@ public class LuceneIndexHolder {
                 indexHoldersCache.getDebugHoldersCount().get(subIndex).decrementAndGet();
             }
             closed = true;
+            indexHoldersCache.getFilterCache().invalidate(indexReader);
             try {
                 indexSearcher.close();
             } catch (Exception e) {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.manager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.compass.core.CompassQuery;
+import org.compass.core.config.ConfigurationException;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.LuceneSearchEngineQuery;
+import org.compass.core.util.StringUtils;
+
+/**
+ * An index holder warmer that executes a query string (parsed using the default query parser)
+ * and optionally sorts it by a set of properties, causing Lucene to load the field cache
+ * for them.
+ *
+ * <p>The sort definition is a comma separated list of properties, each can optionally have
+ * a {@link org.compass.core.CompassQuery.SortPropertyType} and a <code>reverse</code> flag
+ * appended with a colon, for example: <code>title, price:float, date:long:reverse</code>.
+ *
+ * @author kimchy
+ */
+public class QueryIndexHolderWarmer implements IndexHolderWarmer {
+
+    private final LuceneSearchEngineFactory searchEngineFactory;
+
+    private final String queryString;
+
+    private final Sort sort;
+
+    private volatile Query query;
+
+    public QueryIndexHolderWarmer(LuceneSearchEngineFactory searchEngineFactory, String queryString, String sortDefinition) {
+        this.searchEngineFactory = searchEngineFactory;
+        this.queryString = queryString;
+        this.sort = parseSort(sortDefinition);
+    }
+
+    public void warm(String subIndex, IndexSearcher indexSearcher) throws IOException {
+        if (sort == null) {
+            indexSearcher.search(getQuery(), null, 10);
+        } else {
+            indexSearcher.search(getQuery(), null, 10, sort);
+        }
+    }
+
+    private Query getQuery() {
+        if (query == null) {
+            if (queryString == null) {
+                query = new MatchAllDocsQuery();
+            } else {
+                query = searchEngineFactory.getQueryParserManager().getDefaultQueryParser().parse(
+                        searchEngineFactory.getLuceneSettings().getDefaultSearchPropery(), null,
+                        searchEngineFactory.getAnalyzerManager().getSearchAnalyzer(), false, queryString).getQuery();
+            }
+        }
+        return query;
+    }
+
+    private static Sort parseSort(String sortDefinition) {
+        if (!StringUtils.hasText(sortDefinition)) {
+            return null;
+        }
+        ArrayList<SortField> sortFields = new ArrayList<SortField>();
+        for (String sortProperty : StringUtils.commaDelimitedListToStringArray(sortDefinition)) {
+            String[] parts = StringUtils.delimitedListToStringArray(sortProperty.trim(), ":");
+            String propertyName = parts[0].trim();
+            int type = SortField.AUTO;
+            boolean reverse = false;
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i].trim();
+                if ("reverse".equalsIgnoreCase(part)) {
+                    reverse = true;
+                } else {
+                    try {
+                        type = LuceneSearchEngineQuery.getSortType(CompassQuery.SortPropertyType.valueOf(part.toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        throw new ConfigurationException("Failed to parse sort type [" + part + "] for warmer sort property [" + propertyName + "]");
+                    }
+                }
+            }
+            sortFields.add(new SortField(propertyName, type, reverse));
+        }
+        return new Sort(sortFields.toArray(new SortField[sortFields.size()]));
+    }
+}
@@ -94,6 +94,8 @@ public class DefaultLuceneSearchEngineOptimizer implements LuceneSearchEngineOpt
             logger.debug("Optimizing sub-index [" + subIndex + "] with maxNumberOfSegments [" + maxNumberOfSegments + "] and currentNumberOfSegments[" + indexInfo.size() + "]");
         }
         long time = System.currentTimeMillis();
+        // index writers kept open across transactions hold the write lock, release them
+        searchEngineFactory.getTransactionProcessorManager().releaseIndexWriters(subIndex);
         IndexWriter indexWriter;
         try {
             indexWriter = searchEngineFactory.getLuceneIndexManager().getIndexWritersManager().openIndexWriter(settings, subIndex);
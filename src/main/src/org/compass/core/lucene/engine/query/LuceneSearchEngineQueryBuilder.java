@@ -19,6 +19,7 @@ package org.compass.core.lucene.engine.query;
 import java.io.Reader;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.ConstantScoreRangeQuery;
 import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -40,6 +41,7 @@ import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
 import org.compass.core.lucene.engine.LuceneSearchEngineQuery;
 import org.compass.core.lucene.engine.LuceneSearchEngineQuery.LuceneSearchEngineSpanQuery;
 import org.compass.core.lucene.search.ConstantScorePrefixQuery;
+import org.compass.core.lucene.search.TrieRangeFilter;
 
 /**
  * @author kimchy
@@ -108,6 +110,12 @@ public class LuceneSearchEngineQueryBuilder implements SearchEngineQueryBuilder
         return between(resourcePropertyName, null, value, false);
     }
 
+    public SearchEngineQuery trieBetween(String resourcePropertyName, String low, String high, boolean includeLow,
+                                         boolean includeHigh, int precisionStep) {
+        Query query = new ConstantScoreQuery(new TrieRangeFilter(resourcePropertyName, low, high, includeLow, includeHigh, precisionStep));
+        return new LuceneSearchEngineQuery(searchEngineFactory, query);
+    }
+
     public SearchEngineQuery prefix(String resourcePropertyName, String prefix) {
         Query query = new ConstantScorePrefixQuery(new Term(resourcePropertyName, prefix));
         return new LuceneSearchEngineQuery(searchEngineFactory, query);
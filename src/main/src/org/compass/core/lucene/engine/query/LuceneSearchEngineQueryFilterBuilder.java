@@ -16,21 +16,30 @@
 
 package org.compass.core.lucene.engine.query;
 
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.RangeFilter;
 import org.compass.core.engine.SearchEngineQuery;
 import org.compass.core.engine.SearchEngineQueryFilter;
 import org.compass.core.engine.SearchEngineQueryFilterBuilder;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
 import org.compass.core.lucene.engine.LuceneSearchEngineQuery;
 import org.compass.core.lucene.engine.LuceneSearchEngineQueryFilter;
+import org.compass.core.lucene.search.TrieRangeFilter;
 
 /**
+ * Builds Lucene based query filters. Query filters are cached (per sub index reader) using the
+ * {@link org.compass.core.lucene.search.FilterCache}, so reusing the same filter (or building an equal
+ * one) across searches does not recompute it.
+ *
  * @author kimchy
  */
-// TODO add makeCacheable to filters. Will have to hook into index change events to invalidate the filter cache.
 public class LuceneSearchEngineQueryFilterBuilder implements SearchEngineQueryFilterBuilder {
 
-    public LuceneSearchEngineQueryFilterBuilder() {
+    private final LuceneSearchEngineFactory searchEngineFactory;
+
+    public LuceneSearchEngineQueryFilterBuilder(LuceneSearchEngineFactory searchEngineFactory) {
+        this.searchEngineFactory = searchEngineFactory;
     }
 
     public SearchEngineQueryFilter between(String resourcePropertyName, String low, String high, boolean includeLow, boolean includeHigh) {
@@ -53,8 +62,14 @@ public class LuceneSearchEngineQueryFilterBuilder implements SearchEngineQueryFi
         return between(resourcePropertyName, value, null, true, false);
     }
 
+    public SearchEngineQueryFilter trieBetween(String resourcePropertyName, String low, String high, boolean includeLow,
+                                               boolean includeHigh, int precisionStep) {
+        return new LuceneSearchEngineQueryFilter(new TrieRangeFilter(resourcePropertyName, low, high, includeLow, includeHigh, precisionStep));
+    }
+
     public SearchEngineQueryFilter query(SearchEngineQuery query) {
-        return new LuceneSearchEngineQueryFilter(new QueryWrapperFilter(((LuceneSearchEngineQuery) query).getQuery()));
+        Filter filter = new QueryWrapperFilter(((LuceneSearchEngineQuery) query).getQuery());
+        return new LuceneSearchEngineQueryFilter(searchEngineFactory.getFilterCache().cache(filter));
     }
 
     public SearchEngineBooleanQueryFilterBuilder bool() {
@@ -3,14 +3,19 @@ package org.compass.core.lucene.engine.queryparser;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.ConstantScoreRangeQuery;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.payloads.BoostingTermQuery;
 import org.apache.lucene.search.spans.SpanTermQuery;
+import org.compass.core.converter.basic.format.TrieFormatter;
 import org.compass.core.engine.SearchEngineException;
 import org.compass.core.engine.SearchEngineFactory;
 import org.compass.core.lucene.engine.all.AllBoostingTermQuery;
+import org.compass.core.lucene.search.TrieRangeFilter;
 import org.compass.core.mapping.ResourcePropertyLookup;
 
 /**
@@ -63,6 +68,25 @@ public abstract class QueryParserUtils {
         return booleanQuery;
     }
 
+    /**
+     * Creates a constant score range query over the (normalized) values. If the property is trie encoded,
+     * the query uses a {@link TrieRangeFilter} over its precision levels.
+     */
+    public static Query createRangeQuery(ResourcePropertyLookup lookup, String low, String high, boolean inclusive)
+            throws SearchEngineException {
+        TrieFormatter trieFormatter = lookup.getTrieFormatter();
+        if (trieFormatter == null) {
+            return new ConstantScoreRangeQuery(lookup.getPath(), low, high, inclusive, inclusive);
+        }
+        try {
+            return new ConstantScoreQuery(new TrieRangeFilter(lookup.getPath(), low, high, inclusive, inclusive,
+                    trieFormatter.getPrecisionStep()));
+        } catch (NumberFormatException e) {
+            throw new SearchEngineException("Failed to parse range [" + low + "] to [" + high + "] of trie property ["
+                    + lookup.getPath() + "]", e);
+        }
+    }
+
     public static interface QueryTermVisitor {
 
         Term replaceTerm(Term term) throws SearchEngineException;
@@ -101,6 +125,12 @@ public abstract class QueryParserUtils {
             }
             return replaced;
         }
+        if (query instanceof FilteredQuery) {
+            FilteredQuery original = (FilteredQuery) query;
+            FilteredQuery replaced = new FilteredQuery(visit(original.getQuery(), visitor), original.getFilter());
+            replaced.setBoost(original.getBoost());
+            return replaced;
+        }
         if (query instanceof BooleanQuery) {
             BooleanQuery original = (BooleanQuery) query;
             BooleanQuery replaced = new BooleanQuery(original.isCoordDisabled());
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -38,12 +39,14 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LuceneSubIndexInfo;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Searchable;
 import org.apache.lucene.search.spell.CompassSpellChecker;
 import org.apache.lucene.search.spell.HighFrequencyDictionary;
+import org.apache.lucene.search.spell.SymmetricDeleteSpellIndex;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
@@ -77,6 +80,12 @@ import org.compass.core.util.StringUtils;
  * The default implementation of the search engine spell check manager. Uses Lucene (modified) spell check
  * support. Only activated if the spell jar exists.
  *
+ * <p>When working in incremental mode ({@link LuceneEnvironment.SpellCheck#INCREMENTAL}), the spell index is not
+ * cleared and rebuilt when a sub index changes. Term document frequencies are kept per segment (see
+ * {@link SubIndexTermFrequencies}) and only the words that crossed the dictionary threshold are added to or
+ * removed from the spell index. When {@link LuceneEnvironment.SpellCheck#IN_MEMORY} is enabled, suggestions are
+ * served from a {@link SymmetricDeleteSpellIndex} kept in sync with the spell index on refresh.
+ *
  * @author kimchy
  */
 public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngineSpellCheckManager {
@@ -111,6 +120,14 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
 
     private float defaultDictionaryThreshold;
 
+    private boolean incremental;
+
+    private boolean inMemory;
+
+    private Map<String, SubIndexTermFrequencies> termFrequencies = new ConcurrentHashMap<String, SubIndexTermFrequencies>();
+
+    private Map<String, SymmetricDeleteSpellIndex> memoryIndexes = new HashMap<String, SymmetricDeleteSpellIndex>();
+
     private volatile boolean started = false;
 
     private boolean closeStore;
@@ -206,8 +223,18 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
         this.defaultNumberOfSuggestions = spellCheckSettings.getSettingAsInt(LuceneEnvironment.SpellCheck.NUMBER_OF_SUGGESTIONS, 1);
         this.defaultDictionaryThreshold = spellCheckSettings.getSettingAsFloat(LuceneEnvironment.SpellCheck.DICTIONARY_THRESHOLD, 0.0f);
 
+        this.incremental = spellCheckSettings.getSettingAsBoolean(LuceneEnvironment.SpellCheck.INCREMENTAL, false);
+        this.inMemory = spellCheckSettings.getSettingAsBoolean(LuceneEnvironment.SpellCheck.IN_MEMORY, false);
+        int inMemoryMaxEdits = spellCheckSettings.getSettingAsInt(LuceneEnvironment.SpellCheck.IN_MEMORY_MAX_EDITS, 2);
+
         for (final String subIndex : indexStore.getSubIndexes()) {
             indexLocks.put(subIndex, new Object());
+            if (inMemory) {
+                memoryIndexes.put(subIndex, new SymmetricDeleteSpellIndex(inMemoryMaxEdits));
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Spell check incremental [" + incremental + "], in memory [" + inMemory + "]");
         }
     }
 
@@ -363,6 +390,9 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
                 reader = IndexReader.open(spellCheckStore.openDirectory(spellIndexSubContext, subIndex));
                 readerMap.put(subIndex, reader);
                 searcherMap.put(subIndex, new IndexSearcher(reader));
+                if (inMemory) {
+                    refreshMemoryIndex(subIndex, reader);
+                }
             } catch (IOException e) {
                 throw new SearchEngineException("Failed to open spell index searcher for sub index [" + subIndex + "]", e);
             }
@@ -441,6 +471,10 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
                     return false;
                 }
 
+                if (incremental) {
+                    return updateIncrementally(subIndex, indexVersion, tr);
+                }
+
                 if (log.isDebugEnabled()) {
                     log.debug("Rebuilding spell index for sub index [" + subIndex + "]");
                 }
@@ -502,6 +536,14 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
     public void deleteIndex(String subIndex) throws SearchEngineException {
         // no need to check if started
         close(subIndex);
+        SubIndexTermFrequencies subIndexTermFrequencies = termFrequencies.remove(subIndex);
+        if (subIndexTermFrequencies != null) {
+            subIndexTermFrequencies.clear();
+        }
+        SymmetricDeleteSpellIndex memoryIndex = memoryIndexes.get(subIndex);
+        if (memoryIndex != null) {
+            memoryIndex.clear();
+        }
         spellCheckStore.deleteIndex(spellIndexSubContext, subIndex);
     }
 
@@ -580,6 +622,19 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
 
     public CompassSpellChecker createSpellChecker(final String[] subIndexes, final String[] aliases) {
         String[] calcSubIndexes = indexStore.calcSubIndexes(subIndexes, aliases);
+        if (inMemory) {
+            ArrayList<SymmetricDeleteSpellIndex> indexes = new ArrayList<SymmetricDeleteSpellIndex>(calcSubIndexes.length);
+            for (String subIndex : calcSubIndexes) {
+                SymmetricDeleteSpellIndex memoryIndex = memoryIndexes.get(subIndex);
+                if (memoryIndex != null && memoryIndex.size() > 0) {
+                    indexes.add(memoryIndex);
+                }
+            }
+            if (indexes.isEmpty()) {
+                return null;
+            }
+            return new CompassSpellChecker(indexes.toArray(new SymmetricDeleteSpellIndex[indexes.size()]));
+        }
         ArrayList<Searchable> searchers = new ArrayList<Searchable>(calcSubIndexes.length);
         ArrayList<IndexReader> readers = new ArrayList<IndexReader>(calcSubIndexes.length);
         for (String subIndex : calcSubIndexes) {
@@ -607,6 +662,104 @@ public class DefaultLuceneSpellCheckManager implements InternalLuceneSearchEngin
         return new CompassSpellChecker(searcher, reader);
     }
 
+    /**
+     * Updates the spell index of the given sub index with only the words that were added to or removed from
+     * the dictionary since the last update, without clearing or optimizing it.
+     */
+    private boolean updateIncrementally(String subIndex, long indexVersion, InternalCompassTransaction tr) {
+        if (log.isDebugEnabled()) {
+            log.debug("Incrementally updating spell index for sub index [" + subIndex + "]");
+        }
+        Directory dir = spellCheckStore.openDirectory(spellIndexSubContext, subIndex);
+        Set<String> toAdd;
+        Set<String> toRemove;
+        boolean spellIndexExists;
+        try {
+            Set<String> words = new HashSet<String>();
+            LuceneSearchEngineInternalSearch search = (LuceneSearchEngineInternalSearch) tr.getSearchEngine().internalSearch(new String[]{subIndex}, null);
+            if (search.getSearcher() != null) {
+                SubIndexTermFrequencies subIndexTermFrequencies = termFrequencies.get(subIndex);
+                if (subIndexTermFrequencies == null) {
+                    subIndexTermFrequencies = new SubIndexTermFrequencies(subIndex, properties.get(subIndex));
+                    termFrequencies.put(subIndex, subIndexTermFrequencies);
+                }
+                words = subIndexTermFrequencies.words(search.getReader(), defaultDictionaryThreshold);
+            }
+            Set<String> existingWords = new HashSet<String>();
+            spellIndexExists = IndexReader.indexExists(dir);
+            if (spellIndexExists) {
+                IndexReader spellReader = IndexReader.open(dir, true);
+                try {
+                    existingWords = readWords(spellReader);
+                } finally {
+                    spellReader.close();
+                }
+            }
+            toAdd = new HashSet<String>(words);
+            toAdd.removeAll(existingWords);
+            toRemove = new HashSet<String>(existingWords);
+            toRemove.removeAll(words);
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to compute spell index changes for sub index [" + subIndex + "]", e);
+        }
+
+        if (!toAdd.isEmpty() || !toRemove.isEmpty() || !spellIndexExists) {
+            IndexWriter writer = null;
+            try {
+                CompassSpellChecker spellChecker = new CompassSpellChecker(dir, true);
+                writer = searchEngineFactory.getLuceneIndexManager().getIndexWritersManager().openIndexWriter(spellCheckSettings, dir, !spellIndexExists, null, new WhitespaceAnalyzer());
+                spellChecker.removeWords(writer, toRemove);
+                spellChecker.indexWords(writer, toAdd);
+            } catch (LockObtainFailedException e) {
+                log.debug("Failed to obtain lock, assuming indexing of spell index is in process for sub index [" + subIndex + "]");
+                return false;
+            } catch (IOException e) {
+                throw new SearchEngineException("Failed to update spell index for sub index [" + subIndex + "]", e);
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        log.warn("Failed to close spell check index writer for sub index [" + subIndex + "]", e);
+                    }
+                }
+            }
+            closeAndRefresh(subIndex);
+        }
+        writeSpellCheckIndexVersion(subIndex, indexVersion);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Finished incrementally updating spell index for sub index [" + subIndex + "], added [" + toAdd.size() + "] words, removed [" + toRemove.size() + "] words");
+        }
+        return !toAdd.isEmpty() || !toRemove.isEmpty();
+    }
+
+    private void refreshMemoryIndex(String subIndex, IndexReader reader) throws IOException {
+        SymmetricDeleteSpellIndex memoryIndex = memoryIndexes.get(subIndex);
+        Set<String> words = readWords(reader);
+        Set<String> toRemove = memoryIndex.words();
+        toRemove.removeAll(words);
+        memoryIndex.remove(toRemove);
+        memoryIndex.add(words);
+    }
+
+    private static Set<String> readWords(IndexReader reader) throws IOException {
+        Set<String> words = new HashSet<String>();
+        TermEnum termEnum = reader.terms(new Term(CompassSpellChecker.F_WORD, ""));
+        try {
+            do {
+                Term term = termEnum.term();
+                if (term == null || !term.field().equals(CompassSpellChecker.F_WORD)) {
+                    break;
+                }
+                words.add(term.text());
+            } while (termEnum.next());
+        } finally {
+            termEnum.close();
+        }
+        return words;
+    }
+
     private void writeSpellCheckIndexVersion(String subIndex, long version) {
         Directory dir = spellCheckStore.openDirectory(spellIndexSubContext, subIndex);
         try {
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.spellcheck;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LuceneUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * Keeps the document frequencies of the terms of the spell check properties of a sub index, per segment.
+ * Segments are immutable (document frequencies do not change when documents are deleted), so only
+ * segments that were not seen before need to be read when computing the dictionary words of a new
+ * version of the sub index.
+ *
+ * @author kimchy
+ */
+public class SubIndexTermFrequencies {
+
+    private static final Log log = LogFactory.getLog(SubIndexTermFrequencies.class);
+
+    private final String subIndex;
+
+    private final Set<String> properties;
+
+    // segment key -> property -> term -> doc freq
+    private Map<String, Map<String, Map<String, Integer>>> segments = new HashMap<String, Map<String, Map<String, Integer>>>();
+
+    public SubIndexTermFrequencies(String subIndex, Set<String> properties) {
+        this.subIndex = subIndex;
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the words (of at least 3 characters) of the spell check properties that appear in at least
+     * <code>threshold</code> of the documents of the given reader (the same words the <code>HighFrequencyDictionary</code>
+     * would return).
+     */
+    public synchronized Set<String> words(IndexReader reader, float threshold) throws IOException {
+        Map<String, IndexReader> segmentReaders = new HashMap<String, IndexReader>();
+        Map<String, Map<String, Map<String, Integer>>> currentSegments;
+        if (LuceneUtils.collectSegmentReaders(reader, segmentReaders)) {
+            currentSegments = new HashMap<String, Map<String, Map<String, Integer>>>();
+            int readSegments = 0;
+            for (Map.Entry<String, IndexReader> entry : segmentReaders.entrySet()) {
+                Map<String, Map<String, Integer>> frequencies = segments.get(entry.getKey());
+                if (frequencies == null) {
+                    frequencies = readFrequencies(entry.getValue());
+                    readSegments++;
+                }
+                currentSegments.put(entry.getKey(), frequencies);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Read term frequencies of [" + readSegments + "] out of [" + currentSegments.size() + "] segments for sub index [" + subIndex + "]");
+            }
+            segments = currentSegments;
+        } else {
+            // not segment based, read the whole reader and don't keep it
+            segments.clear();
+            currentSegments = new HashMap<String, Map<String, Map<String, Integer>>>();
+            currentSegments.put("", readFrequencies(reader));
+        }
+
+        Map<String, Map<String, Integer>> totals = new HashMap<String, Map<String, Integer>>();
+        for (Map<String, Map<String, Integer>> segmentFrequencies : currentSegments.values()) {
+            for (Map.Entry<String, Map<String, Integer>> propertyEntry : segmentFrequencies.entrySet()) {
+                Map<String, Integer> propertyTotals = totals.get(propertyEntry.getKey());
+                if (propertyTotals == null) {
+                    propertyTotals = new HashMap<String, Integer>();
+                    totals.put(propertyEntry.getKey(), propertyTotals);
+                }
+                for (Map.Entry<String, Integer> termEntry : propertyEntry.getValue().entrySet()) {
+                    Integer total = propertyTotals.get(termEntry.getKey());
+                    propertyTotals.put(termEntry.getKey(), total == null ? termEntry.getValue() : total + termEntry.getValue());
+                }
+            }
+        }
+
+        int minNumDocs = (int) (threshold * (float) reader.numDocs());
+        Set<String> words = new HashSet<String>();
+        for (Map<String, Integer> propertyTotals : totals.values()) {
+            for (Map.Entry<String, Integer> termEntry : propertyTotals.entrySet()) {
+                if (termEntry.getKey().length() >= 3 && termEntry.getValue() >= minNumDocs) {
+                    words.add(termEntry.getKey());
+                }
+            }
+        }
+        return words;
+    }
+
+    public synchronized void clear() {
+        segments.clear();
+    }
+
+    private Map<String, Map<String, Integer>> readFrequencies(IndexReader reader) throws IOException {
+        Map<String, Map<String, Integer>> frequencies = new HashMap<String, Map<String, Integer>>();
+        for (String property : properties) {
+            Map<String, Integer> propertyFrequencies = new HashMap<String, Integer>();
+            TermEnum termEnum = reader.terms(new Term(property, ""));
+            try {
+                do {
+                    Term term = termEnum.term();
+                    if (term == null || !term.field().equals(property)) {
+                        break;
+                    }
+                    propertyFrequencies.put(term.text(), termEnum.docFreq());
+                } while (termEnum.next());
+            } finally {
+                termEnum.close();
+            }
+            frequencies.put(property, propertyFrequencies);
+        }
+        return frequencies;
+    }
+}
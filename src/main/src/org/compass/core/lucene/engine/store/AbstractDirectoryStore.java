@@ -62,6 +62,13 @@ public abstract class AbstractDirectoryStore implements DirectoryStore {
     public void registerEventListeners(SearchEngine searchEngine, SearchEngineEventManager eventManager) {
     }
 
+    /**
+     * By default, returns <code>false</code> (the index will be copied).
+     */
+    public boolean replaceFrom(String subContext, String subIndex, Directory dir, Directory src) throws SearchEngineException {
+        return false;
+    }
+
     public CopyFromHolder beforeCopyFrom(String subContext, String subIndex, Directory dir) throws SearchEngineException {
         return new CopyFromHolder();
     }
@@ -618,6 +618,10 @@ public class DefaultLuceneSearchEngineStore implements LuceneSearchEngineStore {
                 throw new SearchEngineException("Failed to clear wrapper for sub index [" + subIndex + "]", e);
             }
         }
+        // no need to pass the sub context to the given search engine store, it has its own sub context
+        if (directoryStore.replaceFrom(subContext, subIndex, unwrappedDir, unwrapDir(searchEngineStore.openDirectory(subIndex)))) {
+            return;
+        }
         CopyFromHolder holder = directoryStore.beforeCopyFrom(subContext, subIndex, unwrappedDir);
         final byte[] buffer = new byte[32768];
         try {
@@ -69,6 +69,14 @@ public interface DirectoryStore {
      */
     void performScheduledTasks(Directory dir, String subContext, String subIndex) throws SearchEngineException;
 
+    /**
+     * Replaces the index of the given sub context and sub index with the index stored in the <code>src</code>
+     * directory without copying its content (for example, by linking to or moving its files). Returns
+     * <code>false</code> if the store can not do it for the given source directory, in which case the
+     * content will be copied (see {@link #beforeCopyFrom(String, String, org.apache.lucene.store.Directory)}).
+     */
+    boolean replaceFrom(String subContext, String subIndex, Directory dir, Directory src) throws SearchEngineException;
+
     CopyFromHolder beforeCopyFrom(String subContext, String subIndex, Directory dir) throws SearchEngineException;
 
     void afterSuccessfulCopyFrom(String subContext, String subIndex, CopyFromHolder holder) throws SearchEngineException;
@@ -19,9 +19,13 @@ package org.compass.core.lucene.engine.store;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.LuceneUtils;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.SimpleFSLockFactory;
@@ -30,11 +34,18 @@ import org.compass.core.config.CompassConfigurable;
 import org.compass.core.config.CompassEnvironment;
 import org.compass.core.config.CompassSettings;
 import org.compass.core.engine.SearchEngineException;
+import org.compass.core.lucene.LuceneEnvironment;
 import org.compass.core.util.FileSystemUtils;
 
 /**
  * A directory store implemented using a file system. Uses Lucene {@link org.apache.lucene.store.FSDirectory}.
  *
+ * <p>When replacing a sub index with another file system based index, the files of the latest commit point
+ * of the replacing index are hard linked (or moved) into a new directory, a new segments file is written in
+ * it, and the new directory is swapped with the current sub index directory using renames. This makes the
+ * replace operation relative to the number of files instead of their size. See
+ * {@link org.compass.core.lucene.LuceneEnvironment.SearchEngineIndex#REPLACE_STRATEGY}.
+ *
  * @author kimchy
  */
 public class FSDirectoryStore extends AbstractDirectoryStore implements CompassConfigurable {
@@ -45,9 +56,18 @@ public class FSDirectoryStore extends AbstractDirectoryStore implements CompassC
 
     private String indexPath;
 
+    private String replaceStrategy;
+
     public void configure(CompassSettings settings) throws CompassException {
         String connection = settings.getSetting(CompassEnvironment.CONNECTION);
         indexPath = findIndexPath(connection);
+        replaceStrategy = settings.getSetting(LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY,
+                LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_LINK);
+        if (!LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_COPY.equals(replaceStrategy)
+                && !LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_LINK.equals(replaceStrategy)
+                && !LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_MOVE.equals(replaceStrategy)) {
+            throw new SearchEngineException("Unknown replace strategy [" + replaceStrategy + "]");
+        }
         // Make sure we use the FSDirectory
         System.setProperty("org.apache.lucene.FSDirectory.class", getFSDirectoryClass());
         FSDirectory directory;
@@ -128,32 +148,105 @@ public class FSDirectoryStore extends AbstractDirectoryStore implements CompassC
     }
 
     @Override
-    public CopyFromHolder beforeCopyFrom(String subContext, String subIndex, Directory dir) throws SearchEngineException {
-        // first rename the current index directory
+    public boolean replaceFrom(String subContext, String subIndex, Directory dir, Directory src) throws SearchEngineException {
+        if (LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_COPY.equals(replaceStrategy) || !(src instanceof FSDirectory)) {
+            return false;
+        }
+        boolean move = LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_MOVE.equals(replaceStrategy);
+        if (!move && !FileSystemUtils.isHardLinkSupported()) {
+            return false;
+        }
         String path = buildPath(subContext, subIndex);
-        File indexPathFile = new File(path);
-        int count = 0;
-        File renameToIndexPathFile;
-        while (true) {
-            renameToIndexPathFile = new File(path + "-copy" + count++);
-            if (!renameToIndexPathFile.exists()) {
-                break;
-            }
+        Set<String> fileNames;
+        try {
+            fileNames = LuceneUtils.listSegmentsFiles(src);
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to read segments of [" + src + "]", e);
         }
-        boolean renamed = false;
-        for (int i = 0; i < 10; i++) {
-            renamed = indexPathFile.renameTo(renameToIndexPathFile);
-            if (!renamed) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    // do nothing
+        if (fileNames == null) {
+            return false;
+        }
+
+        File srcFile = ((FSDirectory) src).getFile();
+        File replaceFile = uniqueFile(path + "-replace");
+        if (!replaceFile.mkdirs()) {
+            throw new SearchEngineException("Failed to create directory [" + replaceFile.getPath() + "]");
+        }
+        List<String> moved = new ArrayList<String>();
+        for (String fileName : fileNames) {
+            File file = new File(srcFile, fileName);
+            File dest = new File(replaceFile, fileName);
+            boolean done = move ? file.renameTo(dest) : FileSystemUtils.hardLink(file, dest);
+            if (!done) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to " + (move ? "move" : "link") + " [" + file.getPath() + "] to ["
+                            + dest.getPath() + "], reverting to copy");
                 }
-            } else {
-                break;
+                // move back what we moved, and fall back to copy
+                revertReplace(srcFile, replaceFile, moved);
+                return false;
             }
+            if (move) {
+                moved.add(fileName);
+            }
+        }
+
+        // write a new segments file pointing to the linked / moved segments
+        try {
+            FSDirectory replaceDir = FSDirectory.getDirectory(replaceFile);
+            try {
+                LuceneUtils.commitSegments(src, replaceDir);
+            } finally {
+                replaceDir.close();
+            }
+        } catch (IOException e) {
+            revertReplace(srcFile, replaceFile, moved);
+            throw new SearchEngineException("Failed to write segments file to [" + replaceFile.getPath() + "]", e);
         }
-        if (!renamed) {
+
+        // swap the directories
+        File indexPathFile = new File(path);
+        File backupFile = uniqueFile(path + "-copy");
+        if (indexPathFile.exists() && !FileSystemUtils.renameWithRetries(indexPathFile, backupFile)) {
+            revertReplace(srcFile, replaceFile, moved);
+            throw new SearchEngineException("Failed to rename index [" + path + "] to [" + backupFile.getPath() + "]");
+        }
+        if (!FileSystemUtils.renameWithRetries(replaceFile, indexPathFile)) {
+            backupFile.renameTo(indexPathFile);
+            revertReplace(srcFile, replaceFile, moved);
+            throw new SearchEngineException("Failed to rename index [" + replaceFile.getPath() + "] to [" + path + "]");
+        }
+        if (backupFile.exists() && !FileSystemUtils.deleteRecursively(backupFile)) {
+            log.warn("Failed to delete backup directory [" + backupFile.getPath() + "]");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Replaced sub context [" + subContext + "] and sub index [" + subIndex + "] by "
+                    + (move ? "moving" : "linking") + " [" + fileNames.size() + "] files from [" + srcFile.getPath() + "]");
+        }
+        return true;
+    }
+
+    /**
+     * Moves the files moved out of the source directory back into it (so it is left intact), and
+     * deletes the replace directory.
+     */
+    private void revertReplace(File srcFile, File replaceFile, List<String> moved) {
+        for (String movedFileName : moved) {
+            File file = new File(replaceFile, movedFileName);
+            if (!file.renameTo(new File(srcFile, movedFileName))) {
+                log.warn("Failed to move [" + file.getPath() + "] back to [" + srcFile.getPath() + "]");
+            }
+        }
+        FileSystemUtils.deleteRecursively(replaceFile);
+    }
+
+    @Override
+    public CopyFromHolder beforeCopyFrom(String subContext, String subIndex, Directory dir) throws SearchEngineException {
+        // first rename the current index directory
+        String path = buildPath(subContext, subIndex);
+        File indexPathFile = new File(path);
+        File renameToIndexPathFile = uniqueFile(path + "-copy");
+        if (!FileSystemUtils.renameWithRetries(indexPathFile, renameToIndexPathFile)) {
             throw new SearchEngineException("Failed to rename index [" + path
                     + "] to [" + renameToIndexPathFile.getPath() + "]");
         }
@@ -180,6 +273,16 @@ public class FSDirectoryStore extends AbstractDirectoryStore implements CompassC
         // TODO if it fails, try to rename the original one back
     }
 
+    private File uniqueFile(String prefix) {
+        int count = 0;
+        while (true) {
+            File file = new File(prefix + count++);
+            if (!file.exists()) {
+                return file;
+            }
+        }
+    }
+
     protected String buildPath(String subContext, String subIndex) {
         return indexPath + "/" + subContext + "/" + subIndex;
     }
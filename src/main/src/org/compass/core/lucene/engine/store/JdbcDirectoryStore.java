@@ -137,6 +137,7 @@ public class JdbcDirectoryStore extends AbstractDirectoryStore implements Compas
         jdbcSettings.setSizeColumnName(settings.getSetting(LuceneEnvironment.JdbcStore.DDL.SIZE_NAME, jdbcSettings.getSizeColumnName()));
         jdbcSettings.setLastModifiedColumnName(settings.getSetting(LuceneEnvironment.JdbcStore.DDL.LAST_MODIFIED_NAME, jdbcSettings.getLastModifiedColumnName()));
         jdbcSettings.setDeletedColumnName(settings.getSetting(LuceneEnvironment.JdbcStore.DDL.DELETED_NAME, jdbcSettings.getDeletedColumnName()));
+        jdbcSettings.setChunkColumnName(settings.getSetting(LuceneEnvironment.JdbcStore.DDL.CHUNK_NAME, jdbcSettings.getChunkColumnName()));
 
         jdbcSettings.setNameColumnLength(settings.getSettingAsInt(LuceneEnvironment.JdbcStore.DDL.NAME_LENGTH, jdbcSettings.getNameColumnLength()));
         jdbcSettings.setValueColumnLengthInK(settings.getSettingAsInt(LuceneEnvironment.JdbcStore.DDL.VALUE_LENGTH, jdbcSettings.getValueColumnLengthInK()));
@@ -145,6 +146,15 @@ public class JdbcDirectoryStore extends AbstractDirectoryStore implements Compas
         jdbcSettings.setTableSchema(settings.getSetting(LuceneEnvironment.JdbcStore.DDL.TABLE_SCHEME, jdbcSettings.getTableSchema()));
         jdbcSettings.setTableType(settings.getSetting(LuceneEnvironment.JdbcStore.DDL.TABLE_TYPE, jdbcSettings.getTableType()));
 
+        jdbcSettings.setChunkSize(settings.getSettingAsInt(LuceneEnvironment.JdbcStore.CHUNK_SIZE, jdbcSettings.getChunkSize()));
+        jdbcSettings.setChunkBatchSize(settings.getSettingAsInt(LuceneEnvironment.JdbcStore.CHUNK_BATCH_SIZE, jdbcSettings.getChunkBatchSize()));
+        jdbcSettings.setChunkReadAheadMax(settings.getSettingAsInt(LuceneEnvironment.JdbcStore.CHUNK_READ_AHEAD_MAX, jdbcSettings.getChunkReadAheadMax()));
+        jdbcSettings.setChunkCacheSize(settings.getSettingAsInt(LuceneEnvironment.JdbcStore.CHUNK_CACHE_SIZE, jdbcSettings.getChunkCacheSize()));
+        if (log.isDebugEnabled() && jdbcSettings.isChunked()) {
+            log.debug("Using chunks of [" + jdbcSettings.getChunkSize() + "] bytes, batch size [" + jdbcSettings.getChunkBatchSize() +
+                    "], read ahead max [" + jdbcSettings.getChunkReadAheadMax() + "], and cache size [" + jdbcSettings.getChunkCacheSize() + "]");
+        }
+
         jdbcSettings.setDeleteMarkDeletedDelta(settings.getSettingAsLong(LuceneEnvironment.JdbcStore.DELETE_MARK_DELETED_DELTA, jdbcSettings.getDeleteMarkDeletedDelta()));
         if (log.isDebugEnabled()) {
             log.debug("Using delete mark deleted older than [" + jdbcSettings.getDeleteMarkDeletedDelta() + "ms]");
@@ -88,6 +88,9 @@ public class LocalCacheManager {
         if (connection.startsWith("memory://")) {
             String connectionString = connection.substring("memory://".length());
             return new MemoryDirectoryCache(connectionString, dir, this);
+        } else if (connection.startsWith("offheap://")) {
+            String connectionString = connection.substring("offheap://".length());
+            return new OffHeapDirectoryCache(connectionString, dir, this);
         } else if (connection.startsWith(RAMDirectoryStore.PROTOCOL)) {
             localCacheDirectory = new RAMDirectory();
         } else if (connection.startsWith(FSDirectoryStore.PROTOCOL) ||
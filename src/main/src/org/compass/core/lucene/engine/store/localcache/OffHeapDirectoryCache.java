@@ -0,0 +1,816 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.lucene.engine.store.localcache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexFileNameFilter;
+import org.apache.lucene.index.LuceneFileNames;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.DirectoryWrapper;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockFactory;
+import org.compass.core.CompassException;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.transaction.context.TransactionContextCallback;
+import org.compass.core.util.StringUtils;
+import org.compass.core.util.concurrent.ConcurrentHashSet;
+
+/**
+ * Evictable off heap directory cache wrapping the actual Lucene Directory the index uses. Works much like
+ * {@link MemoryDirectoryCache}, except that cached buckets are stored within direct (or memory mapped)
+ * {@link ByteBuffer} slabs outside of the Java heap, so large caches do not add to garbage collection
+ * pressure.
+ *
+ * <p>The cache is partitioned into segments, each owning a single slab divided into fixed size buckets.
+ * Buckets are evicted using a second chance (clock) policy, and are looked up using a <code>long</code>
+ * keyed open addressing index (built from an internal file id and the bucket number) so no key objects
+ * are created per cached bucket.
+ *
+ * <p>Accepts connection string parameters: <code>bucketSize</code> which is the size of each bucket entry
+ * (defaults to <code>8k</code>), <code>size</code> which controls the maximum amount of memory that will be
+ * taken by the cache before entries will start to be evicted (defaults to <code>64m</code>),
+ * <code>cacheFileNames</code> that controls if file names will try to be cached as well (defaults to
+ * <code>true</code>), and <code>location</code> which, when set, backs the slabs with memory mapped files
+ * created under the given directory instead of direct buffers.
+ *
+ * <p>The slabs are allocated once and reused when the cache is cleared ({@link #clearWrapper()}). They are
+ * freed when the cache is closed: explicitly if the JVM allows it, otherwise all references to them are
+ * dropped so they are freed once garbage collected.
+ *
+ * @author kimchy
+ */
+public class OffHeapDirectoryCache extends Directory implements DirectoryWrapper {
+
+    private static final Log logger = LogFactory.getLog(OffHeapDirectoryCache.class);
+
+    private static final long MAX_SLAB_SIZE = 1024 * 1024 * 1024;
+
+    private static final int MAX_BUCKETS_PER_SEGMENT = 1 << 24;
+
+    private static final int DEFAULT_NUMBER_OF_SEGMENTS = 16;
+
+    private final Directory dir;
+
+    private final LocalCacheManager localCacheManager;
+
+    private final Set<String> localFileNames = new ConcurrentHashSet<String>();
+
+    private final boolean cacheFileNames;
+
+    private final int bucketSize;
+
+    private final long size;
+
+    private final Segment[] segments;
+
+    private final File[] slabFiles;
+
+    private final ConcurrentHashMap<String, Integer> fileIds = new ConcurrentHashMap<String, Integer>();
+
+    private final AtomicInteger fileIdGenerator = new AtomicInteger();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private ScheduledFuture cleanupTaskFuture;
+
+    private final boolean isCompoundFile;
+
+    public OffHeapDirectoryCache(String connectionString, Directory dir, LocalCacheManager localCacheManager) {
+        this.dir = dir;
+        this.localCacheManager = localCacheManager;
+        String[] args = StringUtils.delimitedListToStringArray(connectionString, "&");
+        int bucketSize = (int) CompassSettings.parseStringAsBytes("8k");
+        long size = CompassSettings.parseStringAsBytes("64m");
+        boolean cacheFileNames = true;
+        String location = null;
+        for (String arg : args) {
+            if (arg.startsWith("bucketSize=")) {
+                bucketSize = (int) CompassSettings.parseStringAsBytes(arg.substring("bucketSize=".length()));
+            } else if (arg.startsWith("size=")) {
+                size = CompassSettings.parseStringAsBytes(arg.substring("size=".length()));
+            } else if (arg.startsWith("cacheFileNames=")) {
+                cacheFileNames = Boolean.parseBoolean(arg.substring("cacheFileNames=".length()));
+            } else if (arg.startsWith("location=")) {
+                location = arg.substring("location=".length());
+            }
+        }
+        if (bucketSize <= 0 || bucketSize > MAX_SLAB_SIZE) {
+            throw new SearchEngineException("Off heap local cache bucket size [" + bucketSize + "] is invalid");
+        }
+        this.cacheFileNames = cacheFileNames;
+        this.bucketSize = bucketSize;
+
+        long numberOfBuckets = Math.max(1, size / bucketSize);
+        this.size = numberOfBuckets * bucketSize;
+        int numberOfSegments = (int) Math.min(DEFAULT_NUMBER_OF_SEGMENTS, numberOfBuckets);
+        while (bucketsPerSegment(numberOfBuckets, numberOfSegments) > MAX_BUCKETS_PER_SEGMENT ||
+                bucketsPerSegment(numberOfBuckets, numberOfSegments) * bucketSize > MAX_SLAB_SIZE) {
+            numberOfSegments *= 2;
+        }
+
+        this.segments = new Segment[numberOfSegments];
+        this.slabFiles = new File[numberOfSegments];
+        File locationDir = null;
+        if (location != null) {
+            locationDir = new File(location);
+            if (!locationDir.exists() && !locationDir.mkdirs()) {
+                throw new SearchEngineException("Failed to create off heap local cache location [" + location + "]");
+            }
+        }
+        for (int i = 0; i < numberOfSegments; i++) {
+            int segmentBuckets = (int) (numberOfBuckets / numberOfSegments + (i < numberOfBuckets % numberOfSegments ? 1 : 0));
+            ByteBuffer slab;
+            if (locationDir == null) {
+                slab = ByteBuffer.allocateDirect(segmentBuckets * bucketSize);
+            } else {
+                slabFiles[i] = createSlabFile(locationDir);
+                slab = mapSlab(slabFiles[i], segmentBuckets * bucketSize);
+            }
+            segments[i] = new Segment(slab, segmentBuckets);
+        }
+
+        if (localCacheManager == null) {
+            isCompoundFile = false; // just cache everything
+        } else {
+            isCompoundFile = localCacheManager.getSearchEngineFactory().getLuceneIndexManager().getStore().isUseCompoundFile();
+        }
+
+        if (cacheFileNames && localCacheManager != null) {
+            cleanupTaskFuture = localCacheManager.getSearchEngineFactory().getExecutorManager().scheduleWithFixedDelay(new CleanupTask(), 10, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long bucketsPerSegment(long numberOfBuckets, int numberOfSegments) {
+        return (numberOfBuckets + numberOfSegments - 1) / numberOfSegments;
+    }
+
+    private static File createSlabFile(File locationDir) {
+        try {
+            File file = File.createTempFile("offheap", ".slab", locationDir);
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to create off heap local cache slab under [" + locationDir + "]", e);
+        }
+    }
+
+    private static ByteBuffer mapSlab(File file, int length) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(length);
+            // the mapping stays valid after the file is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to map off heap local cache slab [" + file + "]", e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * Returns the maximum number of bytes the cache will hold.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of buckets that were read from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of buckets that were not found in the cache and were read from the actual directory.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of buckets evicted from the cache in order to make room for new ones.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of buckets currently cached.
+     */
+    public int getCachedBucketCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            count += segment.size();
+        }
+        return count;
+    }
+
+    public Directory getWrappedDirectory() {
+        return this.dir;
+    }
+
+    public void clearWrapper() throws IOException {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        fileIds.clear();
+    }
+
+    public String[] list() throws IOException {
+        return dir.list();
+    }
+
+    @Override
+    public boolean fileExists(String name) throws IOException {
+        if (!cacheFileNames) {
+            return dir.fileExists(name);
+        }
+        if (shouldPerformOperationOnActualDirectory(name)) {
+            return dir.fileExists(name);
+        }
+        if (localFileNames.contains(name)) {
+            return true;
+        }
+        boolean fileExists = dir.fileExists(name);
+        if (fileExists) {
+            localFileNames.add(name);
+        }
+        return fileExists;
+    }
+
+    @Override
+    public long fileModified(String name) throws IOException {
+        return dir.fileModified(name);
+    }
+
+    @Override
+    public void touchFile(String name) throws IOException {
+        dir.touchFile(name);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        // cached buckets of the deleted file are never looked up again and simply age out
+        fileIds.remove(name);
+        dir.deleteFile(name);
+    }
+
+    @Override
+    public void renameFile(String from, String to) throws IOException {
+        fileIds.remove(from);
+        fileIds.remove(to);
+        dir.renameFile(from, to);
+    }
+
+    @Override
+    public long fileLength(String name) throws IOException {
+        return dir.fileLength(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cleanupTaskFuture != null) {
+            cleanupTaskFuture.cancel(true);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Closing off heap local cache, hits [" + getHitCount() + "], misses [" + getMissCount()
+                    + "], evictions [" + getEvictionCount() + "]");
+        }
+        clearWrapper();
+        localFileNames.clear();
+        for (Segment segment : segments) {
+            segment.free();
+        }
+        for (File slabFile : slabFiles) {
+            if (slabFile != null) {
+                slabFile.delete();
+            }
+        }
+    }
+
+    @Override
+    public Lock makeLock(String name) {
+        return dir.makeLock(name);
+    }
+
+    @Override
+    public void clearLock(String name) throws IOException {
+        dir.clearLock(name);
+    }
+
+    @Override
+    public void setLockFactory(LockFactory lockFactory) {
+        dir.setLockFactory(lockFactory);
+    }
+
+    @Override
+    public LockFactory getLockFactory() {
+        return dir.getLockFactory();
+    }
+
+    @Override
+    public String getLockID() {
+        return dir.getLockID();
+    }
+
+    @Override
+    public IndexOutput createOutput(String name) throws IOException {
+        fileIds.remove(name);
+        return new WrappedIndexOutput(name, dir.createOutput(name));
+    }
+
+    @Override
+    public IndexInput openInput(String name) throws IOException {
+        if (shouldWrapInput(name)) {
+            return new WrappedIndexInput(name);
+        }
+        return dir.openInput(name);
+    }
+
+    @Override
+    public IndexInput openInput(String name, int bufferSize) throws IOException {
+        if (shouldWrapInput(name)) {
+            return new WrappedIndexInput(name);
+        }
+        return dir.openInput(name, bufferSize);
+    }
+
+    private boolean shouldWrapInput(String name) {
+        if (shouldPerformOperationOnActualDirectory(name)) {
+            return false;
+        }
+        if (isCompoundFile && IndexFileNameFilter.getFilter().isCFSFile(name)) {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean shouldPerformOperationOnActualDirectory(String name) {
+        return LuceneFileNames.isStaticFile(name);
+    }
+
+    private int fileId(String name) {
+        Integer fileId = fileIds.get(name);
+        if (fileId == null) {
+            fileId = fileIdGenerator.incrementAndGet();
+            Integer existing = fileIds.putIfAbsent(name, fileId);
+            if (existing != null) {
+                fileId = existing;
+            }
+        }
+        return fileId;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) ((hash >>> 32) & 0x7fffffff) % segments.length];
+    }
+
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private class CleanupTask implements Runnable {
+        public void run() {
+            String[] fileNames = localCacheManager.getSearchEngineFactory().getTransactionContext().execute(new TransactionContextCallback<String[]>() {
+                public String[] doInTransaction() throws CompassException {
+                    try {
+                        return dir.list();
+                    } catch (IOException e) {
+                        logger.error("Failed to list file names", e);
+                        return null;
+                    }
+                }
+            });
+            if (fileNames == null) {
+                return;
+            }
+            localFileNames.clear();
+            for (String fileName : fileNames) {
+                localFileNames.add(fileName);
+            }
+        }
+    }
+
+    /**
+     * A part of the cache owning a single slab. Each bucket sized slot in the slab is tracked by its key,
+     * the length of the data stored in it and a reference bit used by the second chance eviction.
+     */
+    private final class Segment {
+
+        // null once the segment has been freed
+        private ByteBuffer slab;
+
+        private final long[] keys;
+
+        private final int[] lengths;
+
+        private final boolean[] referenced;
+
+        private final SlotIndex index;
+
+        private int used;
+
+        private int hand;
+
+        private Segment(ByteBuffer slab, int numberOfSlots) {
+            this.slab = slab;
+            this.keys = new long[numberOfSlots];
+            this.lengths = new int[numberOfSlots];
+            this.referenced = new boolean[numberOfSlots];
+            this.index = new SlotIndex(numberOfSlots);
+        }
+
+        /**
+         * Copies the cached bucket into the given buffer, returning its length, or <code>-1</code> if it
+         * is not cached.
+         */
+        synchronized int read(long key, long hash, byte[] dest) {
+            if (slab == null) {
+                return -1;
+            }
+            int slot = index.get(key, hash);
+            if (slot < 0) {
+                return -1;
+            }
+            referenced[slot] = true;
+            int length = lengths[slot];
+            slab.position(slot * bucketSize);
+            slab.get(dest, 0, length);
+            return length;
+        }
+
+        synchronized void write(long key, long hash, byte[] src, int length) {
+            if (slab == null) {
+                return;
+            }
+            if (index.get(key, hash) >= 0) {
+                // another input already cached this bucket
+                return;
+            }
+            int slot;
+            if (used < keys.length) {
+                slot = used++;
+            } else {
+                while (referenced[hand]) {
+                    referenced[hand] = false;
+                    hand = (hand + 1) % keys.length;
+                }
+                slot = hand;
+                hand = (hand + 1) % keys.length;
+                index.remove(keys[slot], hash(keys[slot]));
+                evictionCount.incrementAndGet();
+            }
+            keys[slot] = key;
+            lengths[slot] = length;
+            referenced[slot] = false;
+            slab.position(slot * bucketSize);
+            slab.put(src, 0, length);
+            index.put(key, hash, slot);
+        }
+
+        synchronized void clear() {
+            index.clear();
+            Arrays.fill(referenced, false);
+            used = 0;
+            hand = 0;
+        }
+
+        synchronized int size() {
+            return index.size();
+        }
+
+        /**
+         * Frees the slab. Done under the segment lock so no read or write can access it once freed.
+         */
+        synchronized void free() {
+            if (slab == null) {
+                return;
+            }
+            ByteBuffer slab = this.slab;
+            this.slab = null;
+            index.clear();
+            freeSlab(slab);
+        }
+    }
+
+    /**
+     * Frees the native memory (or mapping) of the given slab using its cleaner. If the JVM does not allow
+     * access to it, the slab will be freed once it is garbage collected.
+     */
+    private static void freeSlab(ByteBuffer slab) {
+        if (!slab.isDirect()) {
+            return;
+        }
+        try {
+            Method cleanerMethod = slab.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(slab);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Throwable e) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Failed to free off heap local cache slab, will be freed when garbage collected", e);
+            }
+        }
+    }
+
+    /**
+     * An open addressing (linear probing) index from a <code>long</code> key to a slot within a segment.
+     * Removal shifts back following entries so no tombstones are needed.
+     */
+    private static final class SlotIndex {
+
+        private final long[] keys;
+
+        private final int[] slots;
+
+        private final int mask;
+
+        private int size;
+
+        private SlotIndex(int maxEntries) {
+            int capacity = 2;
+            while (capacity < maxEntries * 2) {
+                capacity <<= 1;
+            }
+            this.keys = new long[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(slots, -1);
+        }
+
+        int get(long key, long hash) {
+            int i = (int) hash & mask;
+            while (slots[i] >= 0) {
+                if (keys[i] == key) {
+                    return slots[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long key, long hash, int slot) {
+            int i = (int) hash & mask;
+            while (slots[i] >= 0) {
+                if (keys[i] == key) {
+                    slots[i] = slot;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            slots[i] = slot;
+            size++;
+        }
+
+        void remove(long key, long hash) {
+            int i = (int) hash & mask;
+            while (keys[i] != key) {
+                if (slots[i] < 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            if (slots[i] < 0) {
+                return;
+            }
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (slots[j] < 0) {
+                    break;
+                }
+                int home = (int) hash(keys[j]) & mask;
+                // move the entry back unless its home position lies cyclically within (i, j]
+                boolean inRange = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+                if (!inRange) {
+                    keys[i] = keys[j];
+                    slots[i] = slots[j];
+                    i = j;
+                }
+            }
+            slots[i] = -1;
+            size--;
+        }
+
+        void clear() {
+            Arrays.fill(slots, -1);
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private class WrappedIndexOutput extends IndexOutput {
+
+        private final String fileName;
+
+        private final IndexOutput indexOutput;
+
+        private WrappedIndexOutput(String fileName, IndexOutput indexOutput) {
+            this.fileName = fileName;
+            this.indexOutput = indexOutput;
+        }
+
+        public void writeByte(byte b) throws IOException {
+            indexOutput.writeByte(b);
+        }
+
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            indexOutput.writeBytes(b, offset, length);
+        }
+
+        public void flush() throws IOException {
+            indexOutput.flush();
+        }
+
+        public void close() throws IOException {
+            indexOutput.close();
+            localFileNames.add(fileName);
+        }
+
+        public long getFilePointer() {
+            return indexOutput.getFilePointer();
+        }
+
+        public void seek(long pos) throws IOException {
+            indexOutput.seek(pos);
+        }
+
+        public long length() throws IOException {
+            return indexOutput.length();
+        }
+    }
+
+    /**
+     * Reads a bucket at a time into a heap buffer (allocated lazily, since Lucene clones inputs often),
+     * either copying it from the off heap cache or reading it from the actual directory and caching it.
+     */
+    private class WrappedIndexInput extends IndexInput {
+
+        private final String fileName;
+
+        private final int fileId;
+
+        private IndexInput indexInput;
+
+        private byte[] buffer;
+
+        private long bufferStart = 0;
+
+        private int bufferLength = 0;
+
+        private long currentPos = 0;
+
+        private WrappedIndexInput(String fileName) throws IOException {
+            this.fileName = fileName;
+            this.fileId = fileId(fileName);
+            this.indexInput = dir.openInput(fileName, 1); // no need for any buffer size, we read fully from source in chunks
+        }
+
+        public byte readByte() throws IOException {
+            if (currentPos < bufferStart || currentPos >= bufferStart + bufferLength) {
+                refill();
+            }
+            return buffer[(int) (currentPos++ - bufferStart)];
+        }
+
+        public void readBytes(byte[] b, int offset, int len) throws IOException {
+            while (len > 0) {
+                if (currentPos < bufferStart || currentPos >= bufferStart + bufferLength) {
+                    refill();
+                }
+                int indexInBuffer = (int) (currentPos - bufferStart);
+                int sizeToRead = bufferLength - indexInBuffer;
+                if (sizeToRead > len) {
+                    sizeToRead = len;
+                }
+                System.arraycopy(buffer, indexInBuffer, b, offset, sizeToRead);
+                offset += sizeToRead;
+                len -= sizeToRead;
+                currentPos += sizeToRead;
+            }
+        }
+
+        @Override
+        public void readBytes(byte[] b, int offset, int len, boolean useBuffer) throws IOException {
+            if (!useBuffer) {
+                indexInput.seek(currentPos);
+                indexInput.readBytes(b, offset, len, useBuffer);
+                currentPos += len;
+            } else {
+                readBytes(b, offset, len);
+            }
+        }
+
+        public void close() throws IOException {
+            indexInput.close();
+        }
+
+        public long getFilePointer() {
+            return currentPos;
+        }
+
+        public void seek(long pos) throws IOException {
+            currentPos = pos;
+        }
+
+        public long length() {
+            return indexInput.length();
+        }
+
+        @Override
+        public Object clone() {
+            WrappedIndexInput clone = (WrappedIndexInput) super.clone();
+            clone.indexInput = (IndexInput) indexInput.clone();
+            clone.buffer = null;
+            clone.bufferStart = 0;
+            clone.bufferLength = 0;
+            return clone;
+        }
+
+        private void refill() throws IOException {
+            if (currentPos >= length()) {
+                throw new IOException("Read past EOF [" + fileName + "]");
+            }
+            if (buffer == null) {
+                buffer = new byte[bucketSize];
+            }
+            long bucket = currentPos / bucketSize;
+            long start = bucket * bucketSize;
+            long key = ((long) fileId << 32) | (bucket & 0xFFFFFFFFL);
+            long hash = hash(key);
+            Segment segment = segmentFor(hash);
+            int length = segment.read(key, hash, buffer);
+            if (length < 0) {
+                missCount.incrementAndGet();
+                length = (int) Math.min(bucketSize, length() - start);
+                indexInput.seek(start);
+                indexInput.readBytes(buffer, 0, length, false);
+                segment.write(key, hash, buffer, length);
+            } else {
+                hitCount.incrementAndGet();
+            }
+            bufferStart = start;
+            bufferLength = length;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction;
+
+import org.compass.core.engine.SearchEngineException;
+
+/**
+ * A {@link org.compass.core.lucene.engine.transaction.TransactionProcessorFactory} that keeps index writers (and
+ * so the sub indexes write locks) open across transactions.
+ *
+ * <p>Index operations that require the sub index write lock (such as replacing, cleaning or optimizing the index)
+ * ask it to release its index writers first using {@link #releaseIndexWriters(String[])}.
+ *
+ * @author kimchy
+ * @see org.compass.core.lucene.engine.transaction.TransactionProcessorManager#releaseIndexWriters(String[])
+ */
+public interface IndexWriterHoldingTransactionProcessorFactory extends TransactionProcessorFactory {
+
+    /**
+     * Commits any pending operations and closes the index writers of the given sub indexes (or all of them if
+     * none are provided), releasing their write locks. The index writers may be reopened by the next transaction.
+     */
+    void releaseIndexWriters(String... subIndexes) throws SearchEngineException;
+}
@@ -27,7 +27,8 @@ import org.compass.core.lucene.engine.LuceneSearchEngine;
  *
  * <p>Optionally, the transaction processor can implments {@link org.compass.core.config.CompassConfigurable} to
  * be injected with Compass settings. It can also implement {@link org.compass.core.config.CompassMappingAware}
- * to be injected with {@link org.compass.core.mapping.CompassMapping}.
+ * to be injected with {@link org.compass.core.mapping.CompassMapping}. Factories keeping index writers open across
+ * transactions should implement {@link org.compass.core.lucene.engine.transaction.IndexWriterHoldingTransactionProcessorFactory}.
  *
  * @author kimchy
  */
@@ -32,6 +32,7 @@ import org.compass.core.lucene.engine.transaction.lucene.LuceneTransactionProces
 import org.compass.core.lucene.engine.transaction.mt.MTTransactionProcessorFactory;
 import org.compass.core.lucene.engine.transaction.readcommitted.ReadCommittedTransactionProcessorFactory;
 import org.compass.core.lucene.engine.transaction.search.SearchTransactionProcessorFactory;
+import org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessorFactory;
 import org.compass.core.util.ClassUtils;
 
 /**
@@ -61,6 +62,8 @@ public class TransactionProcessorManager {
                     type = new LuceneTransactionProcessorFactory();
                 } else if (typeClass.equalsIgnoreCase(LuceneEnvironment.Transaction.Processor.Async.NAME)) {
                     type = new AsyncTransactionProcessorFactory();
+                } else if (typeClass.equalsIgnoreCase(LuceneEnvironment.Transaction.Processor.Shared.NAME)) {
+                    type = new SharedTransactionProcessorFactory();
                 } else {
                     try {
                         type = ClassUtils.forName(typeClass, settings.getClassLoader()).newInstance();
@@ -88,6 +91,7 @@ public class TransactionProcessorManager {
         addDefaulIfRequired(searchEngineFactory, LuceneEnvironment.Transaction.Processor.Async.NAME, AsyncTransactionProcessorFactory.class);
         addDefaulIfRequired(searchEngineFactory, LuceneEnvironment.Transaction.Processor.Search.NAME, SearchTransactionProcessorFactory.class);
         addDefaulIfRequired(searchEngineFactory, LuceneEnvironment.Transaction.Processor.MT.NAME, MTTransactionProcessorFactory.class);
+        addDefaulIfRequired(searchEngineFactory, LuceneEnvironment.Transaction.Processor.Shared.NAME, SharedTransactionProcessorFactory.class);
     }
 
     private void addDefaulIfRequired(LuceneSearchEngineFactory searchEngineFactory, String key, Class<? extends TransactionProcessorFactory> type) {
@@ -119,6 +123,19 @@ public class TransactionProcessorManager {
     }
 
 
+    /**
+     * Releases index writers kept open across transactions by transaction processor factories (see
+     * {@link org.compass.core.lucene.engine.transaction.IndexWriterHoldingTransactionProcessorFactory}) for the
+     * given sub indexes (or all of them if none are provided), so the sub indexes write locks can be obtained.
+     */
+    public void releaseIndexWriters(String... subIndexes) throws SearchEngineException {
+        for (TransactionProcessorFactory transactionProcessorFactory : transactionProcessors.values()) {
+            if (transactionProcessorFactory instanceof IndexWriterHoldingTransactionProcessorFactory) {
+                ((IndexWriterHoldingTransactionProcessorFactory) transactionProcessorFactory).releaseIndexWriters(subIndexes);
+            }
+        }
+    }
+
     public TransactionProcessorFactory getProcessorFactory(String name) {
         TransactionProcessorFactory processorFactory = transactionProcessors.get(name);
         if (processorFactory == null) {
@@ -16,10 +16,14 @@
 
 package org.compass.core.lucene.engine.transaction.async;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -85,6 +89,17 @@ import org.compass.core.transaction.context.TransactionalCallable;
  * disable it, the {@link org.compass.core.lucene.LuceneEnvironment.Transaction.Processor.Async#PROCESS_BEFORE_CLOSE}
  * setting should be set to <code>false</code>.
  *
+ * <p>Transactions are kept in memory until processed, and will be lost if the JVM crashes. An on disk journal of
+ * committed transactions can be used by setting the {@link org.compass.core.lucene.LuceneEnvironment.Transaction.Processor.Async#JOURNAL_LOCATION}
+ * setting. Each committed transaction is then appended (and synced) to the journal before the commit returns, and
+ * transactions that were not processed are replayed when Compass starts. See {@link TransactionJobsJournal}.
+ * Replayed transactions are read from the journal one at a time (and not loaded into memory upfront), and are
+ * applied in an idempotent manner (creates are replayed as updates), since they might have already been applied
+ * to the index before the JVM crashed. A journaled transaction that fails to be processed is retried on its own
+ * (so it won't fail other transactions it was batched with) up to
+ * {@link org.compass.core.lucene.LuceneEnvironment.Transaction.Processor.Async#JOURNAL_MAX_RETRIES} times, after
+ * which it is moved to a dead letter file (see {@link TransactionJobsJournal#deadLetter(long)}).
+ *
  * @author kimchy
  */
 public class AsyncTransactionProcessorFactory implements TransactionProcessorFactory, CompassConfigurable, SearchEngineFactoryAware {
@@ -113,6 +128,19 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
 
     private BlockingQueue<TransactionJobs> jobsToProcess;
 
+    private TransactionJobsJournal journal;
+
+    private final Map<TransactionJobs, Long> journalIds = Collections.synchronizedMap(new IdentityHashMap<TransactionJobs, Long>());
+
+    private int journalMaxRetries;
+
+    // ids of journaled transactions to be processed before new ones (replayed or retried), read from the journal
+    // only when processed. Guarded by itself, as well as the failures map
+    private final LinkedList<Long> journalBacklog = new LinkedList<Long>();
+
+    // number of failures (when processed on its own) of journaled transactions that failed to be processed
+    private final Map<Long, Integer> journalFailures = new HashMap<Long, Integer>();
+
     private Future pollingProcessorFuture;
 
     private volatile PollingProcessor pollingProcessor;
@@ -159,6 +187,33 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
             logger.debug("Async Transaction Processor uses [" + hashing + "] based hashing for concurrent processing");
         }
 
+        String journalLocation = settings.getSetting(LuceneEnvironment.Transaction.Processor.Async.JOURNAL_LOCATION);
+        if (journalLocation != null) {
+            journal = new TransactionJobsJournal(new File(journalLocation),
+                    settings.getSettingAsBytes(LuceneEnvironment.Transaction.Processor.Async.JOURNAL_SEGMENT_SIZE, 16 * 1024 * 1024),
+                    settings.getSettingAsBoolean(LuceneEnvironment.Transaction.Processor.Async.JOURNAL_SYNC, true),
+                    settings.getClassLoader());
+            journalMaxRetries = settings.getSettingAsInt(LuceneEnvironment.Transaction.Processor.Async.JOURNAL_MAX_RETRIES, 3);
+            List<Long> pendingIds;
+            try {
+                pendingIds = journal.open();
+            } catch (IOException e) {
+                throw new SearchEngineException("Failed to open async transaction processor journal [" + journalLocation + "]", e);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Async Transaction Processor uses journal [" + journalLocation + "] with max retries [" + journalMaxRetries + "]");
+            }
+            if (!pendingIds.isEmpty()) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Replaying [" + pendingIds.size() + "] unprocessed transactions from journal [" + journalLocation + "]");
+                }
+                synchronized (journalBacklog) {
+                    journalBacklog.addAll(pendingIds);
+                }
+                startPollingProcessor();
+            }
+        }
+
         if (logger.isDebugEnabled()) {
             logger.debug("Starting Async polling transaction processor");
         }
@@ -173,7 +228,7 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         closed = true;
         if (processBeforeClose && pollingProcessor != null) {
             // TODO don't sleep forever (can be implemented nicely with singal)
-            while (!jobsToProcess.isEmpty()) {
+            while (!jobsToProcess.isEmpty() || (hasJournalBacklog() && indexManager.isRunning())) {
                 try {
                     this.wait(100);
                 } catch (InterruptedException e) {
@@ -199,6 +254,9 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
                 pollingProcessorFuture = null;
             }
         }
+        if (journal != null) {
+            journal.close();
+        }
     }
 
     /**
@@ -220,7 +278,11 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
      * from being processed.
      */
     public boolean remove(TransactionJobs jobs) throws SearchEngineException {
-        return jobsToProcess.remove(jobs);
+        boolean removed = jobsToProcess.remove(jobs);
+        if (removed) {
+            removeFromJournal(jobs);
+        }
+        return removed;
     }
 
     /**
@@ -233,8 +295,31 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
      * commit to block if the backlog is full. The time to wait can be controlled using
      * {@link org.compass.core.lucene.LuceneEnvironment.Transaction.Processor.Async#ADD_TIMEOUT} and defaults to
      * 10 seconds.
+     *
+     * <p>If a journal is used, the jobs are first appended to the journal.
      */
     public void add(TransactionJobs jobs) throws SearchEngineException {
+        startPollingProcessor();
+        if (journal != null) {
+            try {
+                journalIds.put(jobs, journal.append(jobs));
+            } catch (IOException e) {
+                throw new SearchEngineException("Failed to add jobs [" + System.identityHashCode(jobs) + "], failed to append to journal", e);
+            }
+        }
+        try {
+            boolean offered = jobsToProcess.offer(jobs, addTimeout, TimeUnit.MILLISECONDS);
+            if (!offered) {
+                removeFromJournal(jobs);
+                throw new SearchEngineException("Failed to add jobs [" + System.identityHashCode(jobs) + "], queue is full and nothing empties it");
+            }
+        } catch (InterruptedException e) {
+            removeFromJournal(jobs);
+            throw new SearchEngineException("Failed to add jobs [" + System.identityHashCode(jobs) + "], interrupted", e);
+        }
+    }
+
+    private void startPollingProcessor() {
         if (pollingProcessor == null) {
             synchronized (this) {
                 if (pollingProcessor == null) {
@@ -243,17 +328,155 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
                 }
             }
         }
+    }
+
+    private void removeFromJournal(TransactionJobs jobs) throws SearchEngineException {
+        if (journal == null) {
+            return;
+        }
+        Long journalId = journalIds.remove(jobs);
+        if (journalId == null) {
+            return;
+        }
         try {
-            boolean offered = jobsToProcess.offer(jobs, addTimeout, TimeUnit.MILLISECONDS);
-            if (!offered) {
-                throw new SearchEngineException("Failed to add jobs [" + System.identityHashCode(jobs) + "], queue is full and nothing empties it");
+            journal.remove(Collections.singletonList(journalId));
+        } catch (IOException e) {
+            throw new SearchEngineException("Failed to remove jobs [" + System.identityHashCode(jobs) + "] from journal", e);
+        }
+    }
+
+    /**
+     * Marks the given jobs as completed in the journal (if used) once they have been committed to the index.
+     *
+     * <p>Jobs that failed to be processed are retried (read again from the journal) before any new jobs. Jobs that
+     * failed as part of a batch are first retried on their own, and jobs that keep on failing on their own are
+     * moved to a dead letter file once they failed more than the max retries.
+     */
+    private void completeInJournal(List<TransactionJobs> processedJobs, boolean committed) {
+        if (journal == null) {
+            if (!committed) {
+                logger.warn("Failed to process [" + processedJobs.size() + "] transactions");
             }
-        } catch (InterruptedException e) {
-            throw new SearchEngineException("Failed to add jobs [" + System.identityHashCode(jobs) + "], interrupted", e);
+            return;
+        }
+        List<Long> ids = new ArrayList<Long>(processedJobs.size());
+        for (TransactionJobs jobs : processedJobs) {
+            Long journalId = journalIds.remove(jobs);
+            if (journalId != null) {
+                ids.add(journalId);
+            }
+        }
+        if (!committed) {
+            List<Long> deadLetterIds = new ArrayList<Long>();
+            synchronized (journalBacklog) {
+                List<Long> retryIds = new ArrayList<Long>(ids.size());
+                for (Long id : ids) {
+                    Integer failures = journalFailures.get(id);
+                    if (failures == null) {
+                        failures = 0;
+                    }
+                    if (ids.size() == 1) {
+                        failures++;
+                    }
+                    if (failures > journalMaxRetries) {
+                        journalFailures.remove(id);
+                        deadLetterIds.add(id);
+                    } else {
+                        journalFailures.put(id, failures);
+                        retryIds.add(id);
+                    }
+                }
+                journalBacklog.addAll(0, retryIds);
+            }
+            if (deadLetterIds.size() < ids.size()) {
+                logger.warn("Failed to process [" + ids.size() + "] transactions, retrying [" + (ids.size() - deadLetterIds.size()) + "] of them");
+            }
+            for (Long id : deadLetterIds) {
+                deadLetter(id);
+            }
+            return;
+        }
+        synchronized (journalBacklog) {
+            for (Long id : ids) {
+                journalFailures.remove(id);
+            }
+        }
+        try {
+            journal.complete(ids);
+        } catch (IOException e) {
+            logger.warn("Failed to mark [" + ids.size() + "] transactions as completed in the journal, they might be replayed on next startup", e);
+        }
+    }
+
+    private void deadLetter(Long id) {
+        try {
+            File file = journal.deadLetter(id);
+            logger.error("Transaction [" + id + "] failed to be processed, moved it from the journal to dead letter file [" + file.getAbsolutePath() + "]");
+        } catch (IOException e) {
+            logger.error("Failed to move transaction [" + id + "] to a dead letter file, it will be replayed on next startup", e);
+        }
+    }
+
+    private boolean hasJournalBacklog() {
+        synchronized (journalBacklog) {
+            return !journalBacklog.isEmpty();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given jobs were read from the journal after failing to be processed, in
+     * which case they are processed on their own.
+     */
+    private boolean isRetry(TransactionJobs jobs) {
+        Long journalId = journalIds.get(jobs);
+        if (journalId == null) {
+            return false;
+        }
+        synchronized (journalBacklog) {
+            return journalFailures.containsKey(journalId);
+        }
+    }
+
+    /**
+     * Polls the next journaled (replayed or retried) jobs, reading them from the journal. When batching, will not
+     * return jobs that should be retried on their own. Jobs that can not be read from the journal are moved to a
+     * dead letter file.
+     */
+    private TransactionJobs pollJournalBacklog(boolean batching) {
+        while (true) {
+            Long id;
+            synchronized (journalBacklog) {
+                id = journalBacklog.peek();
+                if (id == null || (batching && journalFailures.containsKey(id))) {
+                    return null;
+                }
+                journalBacklog.removeFirst();
+            }
+            try {
+                // the jobs might have already been (partially) applied to the index, apply them in an idempotent manner
+                TransactionJobs jobs = journal.read(id).toIdempotent();
+                journalIds.put(jobs, id);
+                return jobs;
+            } catch (IOException e) {
+                logger.error("Failed to read transaction [" + id + "] from the journal", e);
+                synchronized (journalBacklog) {
+                    journalFailures.remove(id);
+                }
+                deadLetter(id);
+            }
+        }
+    }
+
+    private TransactionJobs pollJobs(long timeout) throws InterruptedException {
+        if (hasJournalBacklog()) {
+            // maintain order, new jobs are only processed once the journal backlog has been processed
+            return pollJournalBacklog(true);
         }
+        return jobsToProcess.poll(timeout, TimeUnit.MILLISECONDS);
     }
 
     private void process(TransactionJobs jobs) throws InterruptedException {
+        List<TransactionJobs> processedJobs = new ArrayList<TransactionJobs>();
         Set<String> subIndexes = new HashSet<String>();
         List<TransactionJob>[] concurrentJobsToProcess = new List[concurrencyLevel];
         for (int i = 0; i < concurrentJobsToProcess.length; i++) {
@@ -261,29 +484,48 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         }
 
         // build the concurrent job list of lists
-        addConcurrentJobsToProcess(concurrentJobsToProcess, subIndexes, jobs);
-        // spin a bit to get more possible jobs, if enabled (batchJobSize is set to higher value than 0)
-        for (int i = 0; i < batchJobsSize; i++) {
-            jobs = jobsToProcess.poll(batchJobTimeout, TimeUnit.MILLISECONDS);
-            if (jobs == null) {
-                break;
+        addConcurrentJobsToProcess(concurrentJobsToProcess, subIndexes, processedJobs, jobs);
+        // jobs that failed to be processed are retried on their own, so they won't fail other jobs
+        if (!isRetry(jobs)) {
+            // spin a bit to get more possible jobs, if enabled (batchJobSize is set to higher value than 0)
+            for (int i = 0; i < batchJobsSize; i++) {
+                jobs = pollJobs(batchJobTimeout);
+                if (jobs == null) {
+                    break;
+                }
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Batching additional Jobs [" + System.identityHashCode(jobs) + "]");
+                }
+                addConcurrentJobsToProcess(concurrentJobsToProcess, subIndexes, processedJobs, jobs);
             }
-            if (logger.isTraceEnabled()) {
-                logger.trace("Batching additional Jobs [" + System.identityHashCode(jobs) + "]");
+            // now spin non blocking (journaled jobs first, in order to maintain order)
+            List<TransactionJobs> nonBlockingDrainToList = new ArrayList<TransactionJobs>();
+            while (nonBlockingDrainToList.size() < nonBlockingBatchSize && (jobs = pollJournalBacklog(true)) != null) {
+                nonBlockingDrainToList.add(jobs);
+            }
+            if (!hasJournalBacklog()) {
+                jobsToProcess.drainTo(nonBlockingDrainToList, nonBlockingBatchSize - nonBlockingDrainToList.size());
             }
-            addConcurrentJobsToProcess(concurrentJobsToProcess, subIndexes, jobs);
-        }
-        // now spin non blocking
-        List<TransactionJobs> nonBlockingDrainToList = new ArrayList<TransactionJobs>();
-        if (jobsToProcess.drainTo(nonBlockingDrainToList, nonBlockingBatchSize) > 0) {
             for (TransactionJobs transactionJobs : nonBlockingDrainToList) {
                 if (logger.isTraceEnabled()) {
                     logger.trace("Batching additional Jobs [" + System.identityHashCode(transactionJobs) + "]");
                 }
-                addConcurrentJobsToProcess(concurrentJobsToProcess, subIndexes, transactionJobs);
+                addConcurrentJobsToProcess(concurrentJobsToProcess, subIndexes, processedJobs, transactionJobs);
             }
         }
 
+        boolean committed = false;
+        try {
+            committed = commit(concurrentJobsToProcess, subIndexes);
+        } finally {
+            completeInJournal(processedJobs, committed);
+        }
+    }
+
+    /**
+     * Applies the jobs to the index and commits them, returning <code>true</code> if the jobs were committed.
+     */
+    private boolean commit(List<TransactionJob>[] concurrentJobsToProcess, Set<String> subIndexes) {
         boolean failure = false;
 
         Map<String, IndexWriter> writers = new HashMap<String, IndexWriter>();
@@ -301,7 +543,7 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         }
         if (failure) {
             closeWriters(writers);
-            return;
+            return false;
         }
 
         // process all the jobs by multiple threads
@@ -321,7 +563,7 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         }
         if (failure) {
             rollbackWriters(writers);
-            return;
+            return false;
         }
 
         // prepare for commit
@@ -337,7 +579,7 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         }
         if (failure) {
             rollbackWriters(writers);
-            return;
+            return false;
         }
 
         // commit
@@ -349,7 +591,9 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
             indexManager.getExecutorManager().invokeAllWithLimitBailOnException(commitCallables, 1);
         } catch (Exception e) {
             logger.warn("Failed to commit", e);
+            return false;
         }
+        return true;
     }
 
     /**
@@ -409,7 +653,9 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         writers.clear();
     }
 
-    private void addConcurrentJobsToProcess(List<TransactionJob>[] concurrentJobsToProcess, Set<String> subIndexes, TransactionJobs jobs) {
+    private void addConcurrentJobsToProcess(List<TransactionJob>[] concurrentJobsToProcess, Set<String> subIndexes,
+                                            List<TransactionJobs> processedJobs, TransactionJobs jobs) {
+        processedJobs.add(jobs);
         subIndexes.addAll(jobs.getSubIndexes());
         for (TransactionJob job : jobs.getJobs()) {
             concurrentJobsToProcess[hashing.hash(job) % concurrencyLevel].add(job);
@@ -437,7 +683,18 @@ public class AsyncTransactionProcessorFactory implements TransactionProcessorFac
         public Object call() throws Exception {
             while (!closed) {
                 try {
-                    TransactionJobs jobs = jobsToProcess.poll(10, TimeUnit.SECONDS);
+                    TransactionJobs jobs = null;
+                    if (hasJournalBacklog()) {
+                        // journaled jobs are processed only once the index manager has started
+                        if (!indexManager.isRunning()) {
+                            Thread.sleep(100);
+                            continue;
+                        }
+                        jobs = pollJournalBacklog(false);
+                    }
+                    if (jobs == null) {
+                        jobs = jobsToProcess.poll(10, TimeUnit.SECONDS);
+                    }
                     if (jobs == null) {
                         continue;
                     }
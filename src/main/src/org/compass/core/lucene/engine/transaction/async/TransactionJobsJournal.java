@@ -0,0 +1,545 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction.async;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJobs;
+
+/**
+ * An append only on disk journal of {@link org.compass.core.lucene.engine.transaction.support.job.TransactionJobs}
+ * used by the {@link org.compass.core.lucene.engine.transaction.async.AsyncTransactionProcessorFactory} in order
+ * not to lose committed transactions that were not processed yet (for example, when the JVM crashes).
+ *
+ * <p>The journal is broken into segment files. Each committed transaction is appended to the current segment
+ * (rolling to a new segment once it reaches the configured segment size), and is marked as completed once it
+ * has been processed and committed to the index. A segment file is deleted once all the transactions appended to
+ * it have been completed (or removed).
+ *
+ * <p>When sync is enabled, {@link #append(TransactionJobs)} only returns once the transaction has been fsync'ed to
+ * disk. Concurrent appends are synced together (group sync), so a single fsync is performed for all the
+ * transactions appended while a previous fsync was in progress.
+ *
+ * <p>Only the location of pending transactions is kept in memory. Transactions are read back from disk (one at a
+ * time) using {@link #read(long)}, so a large backlog of transactions can be replayed without loading it into
+ * memory. A transaction that can not be processed can be moved out of the journal using {@link #deadLetter(long)}.
+ *
+ * @author kimchy
+ */
+public class TransactionJobsJournal {
+
+    private static final Log logger = LogFactory.getLog(TransactionJobsJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String DEAD_LETTER_PREFIX = "dead-letter-";
+
+    private static final String DEAD_LETTER_SUFFIX = ".ser";
+
+    // length (4) + type (1) + id (8)
+    private static final int RECORD_HEADER_SIZE = 13;
+
+    // header + checksum (8)
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 8;
+
+    private static final byte ADD = 1;
+
+    private static final byte REMOVE = 2;
+
+    private static final byte COMPLETE = 3;
+
+    private final File location;
+
+    private final long segmentSize;
+
+    private final boolean sync;
+
+    private final ClassLoader classLoader;
+
+    private final Object writeMutex = new Object();
+
+    private final Object syncMutex = new Object();
+
+    private final Map<Long, Record> pendingRecords = new HashMap<Long, Record>();
+
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+
+    private Segment currentSegment;
+
+    private long nextId = 1;
+
+    private long writeCount;
+
+    private volatile long syncedCount;
+
+    private volatile boolean closed;
+
+    public TransactionJobsJournal(File location, long segmentSize, boolean sync, ClassLoader classLoader) {
+        this.location = location;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Opens the journal, returning (in order) the ids of all the transactions that were appended to the journal
+     * but not completed or removed. The transactions themselves can be read using {@link #read(long)}.
+     */
+    public List<Long> open() throws IOException {
+        if (!location.exists() && !location.mkdirs()) {
+            throw new IOException("Failed to create journal location [" + location.getAbsolutePath() + "]");
+        }
+        Map<Long, Record> pending = new LinkedHashMap<Long, Record>();
+        long lastSegmentNumber = 0;
+        List<Segment> existingSegments = listSegments();
+        for (Segment segment : existingSegments) {
+            lastSegmentNumber = segment.number;
+            readSegment(segment, pending);
+        }
+        synchronized (writeMutex) {
+            for (Map.Entry<Long, Record> entry : pending.entrySet()) {
+                entry.getValue().segment.pending++;
+                pendingRecords.put(entry.getKey(), entry.getValue());
+            }
+            segments.addAll(existingSegments);
+            currentSegment = new Segment(lastSegmentNumber + 1);
+            currentSegment.open();
+            segments.add(currentSegment);
+            deleteReleasedSegments();
+        }
+        return new ArrayList<Long>(pending.keySet());
+    }
+
+    /**
+     * Appends the given transaction to the journal, returning its journal id. If sync is enabled,
+     * will only return once the transaction has been synced to disk.
+     */
+    public long append(TransactionJobs jobs) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(jobs);
+        oos.close();
+        byte[] data = bos.toByteArray();
+
+        long id;
+        long count;
+        synchronized (writeMutex) {
+            id = nextId++;
+            count = write(ADD, id, data);
+            currentSegment.pending++;
+            // the record was just written to the end of the current segment
+            pendingRecords.put(id, new Record(currentSegment, currentSegment.size - data.length - RECORD_OVERHEAD, data.length));
+        }
+        sync(count);
+        return id;
+    }
+
+    /**
+     * Reads the (pending) transaction with the given id from the journal.
+     */
+    public TransactionJobs read(long id) throws IOException {
+        byte[] data = readData(id);
+        try {
+            return (TransactionJobs) new ClassLoaderObjectInputStream(new ByteArrayInputStream(data), classLoader).readObject();
+        } catch (ClassNotFoundException e) {
+            throw (IOException) new IOException("Failed to read transaction [" + id + "] from journal").initCause(e);
+        }
+    }
+
+    /**
+     * Moves the (pending) transaction with the given id out of the journal, into a dead letter file (holding the
+     * serialized transaction) within the journal location, and removes it from the journal. Returns the dead
+     * letter file.
+     */
+    public File deadLetter(long id) throws IOException {
+        byte[] data = readData(id);
+        File file = new File(location, DEAD_LETTER_PREFIX + id + DEAD_LETTER_SUFFIX);
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(data);
+            if (sync) {
+                fos.getFD().sync();
+            }
+        } finally {
+            fos.close();
+        }
+        remove(Collections.singletonList(id));
+        return file;
+    }
+
+    /**
+     * Removes the transactions with the given ids from the journal, so they won't be replayed.
+     */
+    public void remove(Collection<Long> ids) throws IOException {
+        release(REMOVE, ids);
+    }
+
+    /**
+     * Marks the transactions with the given ids as completed (processed and committed to the index),
+     * so they won't be replayed. Segments that all their transactions are completed are deleted.
+     */
+    public void complete(Collection<Long> ids) throws IOException {
+        release(COMPLETE, ids);
+    }
+
+    public void close() {
+        synchronized (writeMutex) {
+            closed = true;
+            if (currentSegment != null) {
+                try {
+                    currentSegment.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close journal segment [" + currentSegment.file + "]", e);
+                }
+                currentSegment = null;
+                deleteReleasedSegments();
+            }
+        }
+    }
+
+    private void release(byte type, Collection<Long> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeInt(ids.size());
+        for (Long id : ids) {
+            dos.writeLong(id);
+        }
+        dos.close();
+        long count;
+        synchronized (writeMutex) {
+            count = write(type, 0, bos.toByteArray());
+        }
+        sync(count);
+        synchronized (writeMutex) {
+            for (Long id : ids) {
+                Record record = pendingRecords.remove(id);
+                if (record != null) {
+                    record.segment.pending--;
+                }
+            }
+            deleteReleasedSegments();
+        }
+    }
+
+    /**
+     * Writes a record to the current segment (must be called under the write mutex), returning
+     * the write count to sync up to.
+     */
+    private long write(byte type, long id, byte[] data) throws IOException {
+        if (closed) {
+            throw new IOException("Journal [" + location.getAbsolutePath() + "] is closed");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(toBytes(id));
+        crc.update(data);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + data.length);
+        buffer.putInt(data.length).put(type).putLong(id).put(data).putLong(crc.getValue());
+
+        if (currentSegment.size > 0 && currentSegment.size + buffer.capacity() > segmentSize) {
+            rollSegment();
+        }
+        currentSegment.write(buffer.array());
+        return ++writeCount;
+    }
+
+    private void rollSegment() throws IOException {
+        Segment segment = currentSegment;
+        // force before closing, so records written to it are synced when rolling
+        segment.close();
+        currentSegment = new Segment(segment.number + 1);
+        currentSegment.open();
+        segments.add(currentSegment);
+        deleteReleasedSegments();
+    }
+
+    /**
+     * Deletes the oldest segments that have no pending transactions (must be called under the write mutex).
+     * Segments are only deleted in order, since a segment might hold the remove / complete records of
+     * transactions appended to older segments.
+     */
+    private void deleteReleasedSegments() {
+        while (!segments.isEmpty()) {
+            Segment segment = segments.getFirst();
+            if (segment == currentSegment || segment.pending > 0) {
+                break;
+            }
+            segments.removeFirst();
+            segment.delete();
+        }
+    }
+
+    /**
+     * Syncs the journal up to the given write count. Concurrent callers are synced using a single
+     * fsync of all the records written up to the time the fsync starts.
+     */
+    private void sync(long count) throws IOException {
+        if (!sync || syncedCount >= count) {
+            return;
+        }
+        synchronized (syncMutex) {
+            if (syncedCount >= count) {
+                return;
+            }
+            long syncCount;
+            Segment segment;
+            synchronized (writeMutex) {
+                syncCount = writeCount;
+                segment = currentSegment;
+            }
+            segment.sync();
+            syncedCount = syncCount;
+        }
+    }
+
+    private List<Segment> listSegments() {
+        List<Segment> result = new ArrayList<Segment>();
+        String[] names = location.list();
+        if (names == null) {
+            return result;
+        }
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    result.add(new Segment(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+                } catch (NumberFormatException e) {
+                    // not a journal segment, ignore
+                }
+            }
+        }
+        Segment[] segmentsArr = result.toArray(new Segment[result.size()]);
+        Arrays.sort(segmentsArr);
+        return Arrays.asList(segmentsArr);
+    }
+
+    private byte[] readData(long id) throws IOException {
+        Record record;
+        synchronized (writeMutex) {
+            record = pendingRecords.get(id);
+        }
+        if (record == null) {
+            throw new IOException("Transaction [" + id + "] is not pending in journal [" + location.getAbsolutePath() + "]");
+        }
+        byte[] data = new byte[record.length];
+        RandomAccessFile raf = new RandomAccessFile(record.segment.file, "r");
+        try {
+            raf.seek(record.offset + RECORD_HEADER_SIZE);
+            raf.readFully(data);
+        } finally {
+            raf.close();
+        }
+        return data;
+    }
+
+    /**
+     * Reads the segment, recording the location of the transactions added (and not released) in it. Note, the
+     * transactions themselves are not read, only their location.
+     */
+    private void readSegment(Segment segment, Map<Long, Record> pending) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)));
+        long position = 0;
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = dis.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte type;
+                long id;
+                byte[] data;
+                try {
+                    type = dis.readByte();
+                    id = dis.readLong();
+                    if (length < 0 || length > segment.file.length()) {
+                        throw new IOException("Invalid record length [" + length + "]");
+                    }
+                    data = new byte[length];
+                    dis.readFully(data);
+                    CRC32 crc = new CRC32();
+                    crc.update(type);
+                    crc.update(toBytes(id));
+                    crc.update(data);
+                    if (crc.getValue() != dis.readLong()) {
+                        throw new IOException("Checksum mismatch");
+                    }
+                } catch (IOException e) {
+                    // a partially written record (crashed while appending), nothing was acknowledged beyond it
+                    logger.warn("Ignoring corrupted tail of journal segment [" + segment.file + "], " + e);
+                    break;
+                }
+                if (type == ADD) {
+                    pending.put(id, new Record(segment, position, length));
+                    nextId = Math.max(nextId, id + 1);
+                } else {
+                    DataInputStream idsStream = new DataInputStream(new ByteArrayInputStream(data));
+                    int size = idsStream.readInt();
+                    for (int i = 0; i < size; i++) {
+                        pending.remove(idsStream.readLong());
+                    }
+                }
+                position += RECORD_OVERHEAD + length;
+            }
+        } finally {
+            dis.close();
+        }
+    }
+
+    private static byte[] toBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private class Segment implements Comparable<Segment> {
+
+        private final long number;
+
+        private final File file;
+
+        private volatile RandomAccessFile raf;
+
+        private long size;
+
+        private int pending;
+
+        private Segment(long number) {
+            this.number = number;
+            this.file = new File(location, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        }
+
+        // note, we use RandomAccessFile and not a FileChannel since a FileChannel is closed when the
+        // writing thread is interrupted
+
+        private void open() throws IOException {
+            raf = new RandomAccessFile(file, "rw");
+            size = raf.length();
+            raf.seek(size);
+        }
+
+        private void write(byte[] data) throws IOException {
+            raf.write(data);
+            size += data.length;
+        }
+
+        private void sync() throws IOException {
+            RandomAccessFile raf = this.raf;
+            if (raf == null) {
+                // closed, which syncs it
+                return;
+            }
+            try {
+                raf.getFD().sync();
+            } catch (IOException e) {
+                if (this.raf != null) {
+                    throw e;
+                }
+                // closed concurrently (rolled), which syncs it
+            }
+        }
+
+        private void close() throws IOException {
+            RandomAccessFile raf = this.raf;
+            if (raf != null) {
+                try {
+                    raf.getFD().sync();
+                } finally {
+                    this.raf = null;
+                    raf.close();
+                }
+            }
+        }
+
+        private void delete() {
+            if (!file.delete() && file.exists()) {
+                logger.warn("Failed to delete journal segment [" + file + "]");
+            }
+        }
+
+        public int compareTo(Segment o) {
+            return number < o.number ? -1 : (number == o.number ? 0 : 1);
+        }
+    }
+
+    /**
+     * The location of a transaction record within a journal segment.
+     */
+    private static class Record {
+
+        private final Segment segment;
+
+        private final long offset;
+
+        private final int length;
+
+        private Record(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        private ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
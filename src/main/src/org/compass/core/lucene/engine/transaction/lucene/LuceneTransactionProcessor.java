@@ -36,6 +36,7 @@ import org.compass.core.lucene.engine.LuceneSearchEngineHits;
 import org.compass.core.lucene.engine.LuceneSearchEngineInternalSearch;
 import org.compass.core.lucene.engine.LuceneSearchEngineQuery;
 import org.compass.core.lucene.engine.transaction.support.AbstractConcurrentTransactionProcessor;
+import org.compass.core.lucene.engine.transaction.support.TransactionJobPipeline;
 import org.compass.core.lucene.engine.transaction.support.CommitCallable;
 import org.compass.core.lucene.engine.transaction.support.PrepareCommitCallable;
 import org.compass.core.lucene.engine.transaction.support.job.TransactionJob;
@@ -55,8 +56,8 @@ public class LuceneTransactionProcessor extends AbstractConcurrentTransactionPro
 
     private Map<String, IndexWriter> indexWriterBySubIndex;
 
-    public LuceneTransactionProcessor(LuceneSearchEngine searchEngine) {
-        super(logger, searchEngine, false, searchEngine.getSearchEngineFactory().getIndexManager().supportsConcurrentOperations());
+    public LuceneTransactionProcessor(LuceneSearchEngine searchEngine, TransactionJobPipeline pipeline) {
+        super(logger, searchEngine, false, searchEngine.getSearchEngineFactory().getIndexManager().supportsConcurrentOperations(), pipeline);
         if (isConcurrentOperations()) {
             indexWriterBySubIndex = new ConcurrentHashMap<String, IndexWriter>();
         } else {
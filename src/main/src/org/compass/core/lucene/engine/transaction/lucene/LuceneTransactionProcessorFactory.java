@@ -16,9 +16,17 @@
 
 package org.compass.core.lucene.engine.transaction.lucene;
 
+import org.compass.core.CompassException;
+import org.compass.core.config.CompassConfigurable;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.config.SearchEngineFactoryAware;
+import org.compass.core.engine.SearchEngineFactory;
+import org.compass.core.lucene.LuceneEnvironment;
 import org.compass.core.lucene.engine.LuceneSearchEngine;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
 import org.compass.core.lucene.engine.transaction.TransactionProcessor;
 import org.compass.core.lucene.engine.transaction.TransactionProcessorFactory;
+import org.compass.core.lucene.engine.transaction.support.TransactionJobPipeline;
 
 /**
  * Lucene based transaction, allows to perfom dirty operations directly over the index
@@ -28,16 +36,34 @@ import org.compass.core.lucene.engine.transaction.TransactionProcessorFactory;
  * @author kimchy
  * @see org.compass.core.lucene.engine.transaction.lucene.LuceneTransactionProcessor
  */
-public class LuceneTransactionProcessorFactory implements TransactionProcessorFactory {
+public class LuceneTransactionProcessorFactory implements TransactionProcessorFactory, CompassConfigurable, SearchEngineFactoryAware {
+
+    private LuceneSearchEngineFactory searchEngineFactory;
+
+    private TransactionJobPipeline pipeline;
+
+    public void setSearchEngineFactory(SearchEngineFactory searchEngineFactory) {
+        this.searchEngineFactory = (LuceneSearchEngineFactory) searchEngineFactory;
+    }
+
+    public void configure(CompassSettings settings) throws CompassException {
+        pipeline = new TransactionJobPipeline(LuceneEnvironment.Transaction.Processor.Lucene.NAME, settings, searchEngineFactory.getExecutorManager());
+    }
 
     /**
      * Creates a new {@link org.compass.core.lucene.engine.transaction.lucene.LuceneTransactionProcessor}.
      */
     public TransactionProcessor create(LuceneSearchEngine searchEngine) {
-        return new LuceneTransactionProcessor(searchEngine);
+        return new LuceneTransactionProcessor(searchEngine, pipeline);
     }
 
+    /**
+     * Closes the shared pipeline processing dirty operations.
+     */
     public void close() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction.readcommitted;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NoLockFactory;
+import org.apache.lucene.store.RAMDirectory;
+import org.compass.core.util.FileSystemUtils;
+
+/**
+ * A transactional log directory that starts storing files in memory and spills to the file system once
+ * the memory taken passes a threshold.
+ *
+ * <p>Once the threshold is reached, new files are created on the file system while files already stored in
+ * memory are kept there until they are deleted (usually as a result of merges). This means that memory
+ * usage is bounded by the threshold (plus the files being written when it was reached) without the need to
+ * copy anything. The file system location is created lazily and deleted when the directory is closed.
+ *
+ * <p>Since the transaction log never needs to survive a crash, files are never synced to stable storage,
+ * which makes the commits required to make changes visible to the transaction readers cheap.
+ *
+ * @author kimchy
+ */
+public class HybridTransLogDirectory extends Directory {
+
+    private final String location;
+
+    private final long ramThreshold;
+
+    private final RAMDirectory ramDirectory = new RAMDirectory();
+
+    private volatile Directory fsDirectory;
+
+    public HybridTransLogDirectory(String location, long ramThreshold) {
+        this.location = location;
+        this.ramThreshold = ramThreshold;
+    }
+
+    /**
+     * Returns <code>true</code> if files are now created on the file system.
+     */
+    public boolean isSpilled() {
+        return fsDirectory != null;
+    }
+
+    /**
+     * Returns the number of bytes currently stored in memory.
+     */
+    public long getRamSizeInBytes() {
+        return ramDirectory.sizeInBytes();
+    }
+
+    public String[] list() throws IOException {
+        if (fsDirectory == null) {
+            return ramDirectory.list();
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (String name : ramDirectory.list()) {
+            names.add(name);
+        }
+        for (String name : fsDirectory.list()) {
+            names.add(name);
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    public boolean fileExists(String name) throws IOException {
+        return ramDirectory.fileExists(name) || (fsDirectory != null && fsDirectory.fileExists(name));
+    }
+
+    public long fileModified(String name) throws IOException {
+        return directoryFor(name).fileModified(name);
+    }
+
+    public void touchFile(String name) throws IOException {
+        directoryFor(name).touchFile(name);
+    }
+
+    public void deleteFile(String name) throws IOException {
+        directoryFor(name).deleteFile(name);
+    }
+
+    public void renameFile(String from, String to) throws IOException {
+        Directory dir = directoryFor(from);
+        if (dir != ramDirectory && ramDirectory.fileExists(to)) {
+            ramDirectory.deleteFile(to);
+        }
+        dir.renameFile(from, to);
+    }
+
+    public long fileLength(String name) throws IOException {
+        return directoryFor(name).fileLength(name);
+    }
+
+    public IndexOutput createOutput(String name) throws IOException {
+        if (fsDirectory == null && ramDirectory.sizeInBytes() < ramThreshold) {
+            return ramDirectory.createOutput(name);
+        }
+        // files such as segments.gen are rewritten, make sure an older copy is not left in memory
+        if (ramDirectory.fileExists(name)) {
+            ramDirectory.deleteFile(name);
+        }
+        return getFSDirectory().createOutput(name);
+    }
+
+    public IndexInput openInput(String name) throws IOException {
+        return directoryFor(name).openInput(name);
+    }
+
+    public IndexInput openInput(String name, int bufferSize) throws IOException {
+        return directoryFor(name).openInput(name, bufferSize);
+    }
+
+    public void close() throws IOException {
+        ramDirectory.close();
+        if (fsDirectory != null) {
+            try {
+                fsDirectory.close();
+            } finally {
+                FileSystemUtils.deleteRecursively(new File(location));
+            }
+        }
+    }
+
+    private Directory directoryFor(String name) throws IOException {
+        if (fsDirectory == null || ramDirectory.fileExists(name)) {
+            return ramDirectory;
+        }
+        return fsDirectory;
+    }
+
+    private Directory getFSDirectory() throws IOException {
+        if (fsDirectory == null) {
+            // since this is single writer access, there is no need to have locks
+            fsDirectory = FSDirectory.getDirectory(location, NoLockFactory.getNoLockFactory());
+        }
+        return fsDirectory;
+    }
+}
@@ -40,7 +40,6 @@ import org.apache.lucene.store.Directory;
 import org.compass.core.Resource;
 import org.compass.core.engine.SearchEngineException;
 import org.compass.core.lucene.LuceneEnvironment;
-import org.compass.core.lucene.engine.DefaultLuceneSearchEngineHits;
 import org.compass.core.lucene.engine.EmptyLuceneSearchEngineHits;
 import org.compass.core.lucene.engine.LuceneSearchEngine;
 import org.compass.core.lucene.engine.LuceneSearchEngineHits;
@@ -48,6 +47,7 @@ import org.compass.core.lucene.engine.LuceneSearchEngineInternalSearch;
 import org.compass.core.lucene.engine.LuceneSearchEngineQuery;
 import org.compass.core.lucene.engine.manager.LuceneIndexHolder;
 import org.compass.core.lucene.engine.transaction.support.AbstractConcurrentTransactionProcessor;
+import org.compass.core.lucene.engine.transaction.support.TransactionJobPipeline;
 import org.compass.core.lucene.engine.transaction.support.job.DeleteByQueryTransactionJob;
 import org.compass.core.lucene.engine.transaction.support.job.DeleteTransactionJob;
 import org.compass.core.lucene.engine.transaction.support.job.FlushCommitTransactionJob;
@@ -80,8 +80,8 @@ public class ReadCommittedTransactionProcessor extends AbstractConcurrentTransac
 
     private final Map<String, LuceneIndexHolder> indexHoldersBySubIndex;
 
-    public ReadCommittedTransactionProcessor(LuceneSearchEngine searchEngine) {
-        super(logger, searchEngine, true, searchEngine.getSearchEngineFactory().getIndexManager().supportsConcurrentOperations());
+    public ReadCommittedTransactionProcessor(LuceneSearchEngine searchEngine, TransactionJobPipeline pipeline) {
+        super(logger, searchEngine, true, searchEngine.getSearchEngineFactory().getIndexManager().supportsConcurrentOperations(), pipeline);
         if (isConcurrentOperations()) {
             indexWriterBySubIndex = new ConcurrentHashMap<String, IndexWriter>();
             indexHoldersBySubIndex = new ConcurrentHashMap<String, LuceneIndexHolder>();
@@ -256,8 +256,7 @@ public class ReadCommittedTransactionProcessor extends AbstractConcurrentTransac
                 qFilter = query.getFilter().getFilter();
             }
         }
-        Hits hits = findByQuery(internalSearch, query, qFilter);
-        return new DefaultLuceneSearchEngineHits(hits, searchEngine, query, internalSearch);
+        return findByQuery(internalSearch, query, qFilter);
     }
 
     @Override
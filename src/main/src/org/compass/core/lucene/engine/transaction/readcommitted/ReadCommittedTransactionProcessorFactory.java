@@ -16,9 +16,17 @@
 
 package org.compass.core.lucene.engine.transaction.readcommitted;
 
+import org.compass.core.CompassException;
+import org.compass.core.config.CompassConfigurable;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.config.SearchEngineFactoryAware;
+import org.compass.core.engine.SearchEngineFactory;
+import org.compass.core.lucene.LuceneEnvironment;
 import org.compass.core.lucene.engine.LuceneSearchEngine;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
 import org.compass.core.lucene.engine.transaction.TransactionProcessor;
 import org.compass.core.lucene.engine.transaction.TransactionProcessorFactory;
+import org.compass.core.lucene.engine.transaction.support.TransactionJobPipeline;
 
 /**
  * A transaction processor factory that creates {@link ReadCommittedTransactionProcessor}
@@ -32,16 +40,34 @@ import org.compass.core.lucene.engine.transaction.TransactionProcessorFactory;
  * @author kimchy
  * @see org.compass.core.lucene.engine.transaction.readcommitted.ReadCommittedTransactionProcessor
  */
-public class ReadCommittedTransactionProcessorFactory implements TransactionProcessorFactory {
+public class ReadCommittedTransactionProcessorFactory implements TransactionProcessorFactory, CompassConfigurable, SearchEngineFactoryAware {
+
+    private LuceneSearchEngineFactory searchEngineFactory;
+
+    private TransactionJobPipeline pipeline;
+
+    public void setSearchEngineFactory(SearchEngineFactory searchEngineFactory) {
+        this.searchEngineFactory = (LuceneSearchEngineFactory) searchEngineFactory;
+    }
+
+    public void configure(CompassSettings settings) throws CompassException {
+        pipeline = new TransactionJobPipeline(LuceneEnvironment.Transaction.Processor.ReadCommitted.NAME, settings, searchEngineFactory.getExecutorManager());
+    }
 
     /**
      * Constructs a new {@link org.compass.core.lucene.engine.transaction.readcommitted.ReadCommittedTransactionProcessor}.
      */
     public TransactionProcessor create(LuceneSearchEngine searchEngine) {
-        return new ReadCommittedTransactionProcessor(searchEngine);
+        return new ReadCommittedTransactionProcessor(searchEngine, pipeline);
     }
 
+    /**
+     * Closes the shared pipeline processing dirty operations.
+     */
     public void close() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
     }
 
     /**
@@ -38,8 +38,9 @@ import org.compass.core.lucene.engine.transaction.support.job.TransactionJob;
 /**
  * A transactional index holding a complete lucene index as the transactional index.
  *
- * <p>The transactional index can either be ram based one (default) or a file based one. If it is
- * a file based one, the temporary index is created (by defualt) under the JAVA temporary location
+ * <p>The transactional index can either be ram based one (default), a file based one, or a hybrid one
+ * that starts in memory and spills to the file system (see {@link HybridTransLogDirectory}). If it is
+ * a file based (or hybrid) one, the temporary index is created (by defualt) under the JAVA temporary location
  * (with <code>compass/translog</code>) with a random generated transaction id.
  *
  * @author kimchy
@@ -50,6 +51,8 @@ public class TransIndex implements CompassConfigurable {
 
     private static final String DEFAULT_LOCATION = System.getProperty("java.io.tmpdir") + "/compass/translog";
 
+    private static final long DEFAULT_RAM_THRESHOLD = 16 * 1024 * 1024;
+
     private final LuceneSearchEngineFactory searchEngineFactory;
 
     private final String subIndex;
@@ -79,6 +82,14 @@ public class TransIndex implements CompassConfigurable {
             String transLogConnection = settings.getSetting(LuceneEnvironment.Transaction.Processor.ReadCommitted.TransLog.CONNECTION, "ram://");
             if ("ram://".equals(transLogConnection)) {
                 directory = new RAMDirectory();
+            } else if (transLogConnection.startsWith("hybrid://")) {
+                String location = transLogConnection.substring("hybrid://".length());
+                if (location.length() == 0) {
+                    location = DEFAULT_LOCATION;
+                }
+                location += "/" + transId.nextLong();
+                long ramThreshold = settings.getSettingAsBytes(LuceneEnvironment.Transaction.Processor.ReadCommitted.TransLog.RAM_THRESHOLD, DEFAULT_RAM_THRESHOLD);
+                directory = new HybridTransLogDirectory(location, ramThreshold);
             } else {
                 if (transLogConnection.equals("file://")) {
                     transLogConnection = DEFAULT_LOCATION;
@@ -87,7 +98,6 @@ public class TransIndex implements CompassConfigurable {
                 }
                 transLogConnection += "/" + transId.nextLong();
                 directory = FSDirectory.getDirectory(transLogConnection);
-                // TODO we can improve the file system one by starting with a ram one and then switching
             }
             // since this is single threaded access, there is no need to have locks
             directory.setLockFactory(NoLockFactory.getNoLockFactory());
@@ -180,6 +190,12 @@ public class TransIndex implements CompassConfigurable {
         }
     }
 
+    /**
+     * Makes the dirty operations performed since the last read visible to the transactional reader. Lucene 2.4
+     * has no near real time reader on an index writer, so this commits the writer and reopens the reader. The
+     * reopen is incremental (only newly flushed segments are opened), and is only done when there were dirty
+     * operations since the last read, otherwise the current reader and searcher are reused.
+     */
     private void innerRefreshIfNeeded() throws IOException {
         if (flushRequired) {
             if (indexWriter != null) {
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction.shared;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.manager.LuceneSearchEngineIndexManager;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJob;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJobs;
+
+/**
+ * A long lived {@link org.apache.lucene.index.IndexWriter} of a single sub index, shared by all the
+ * transactions of the {@link SharedTransactionProcessorFactory}.
+ *
+ * <p>Transactions {@link #apply(org.compass.core.lucene.engine.transaction.support.job.TransactionJobs)} their
+ * jobs concurrently to the writer (under a shared lock), joining the current {@link CommitGroup}. They then call
+ * {@link #commit(CommitGroup, boolean)}: the first transaction to do so becomes the leader and commits (under
+ * an exclusive lock) all the groups applied so far using a single Lucene commit, while the rest wait for it.
+ *
+ * <p>If applying the jobs of a transaction fails, the writer is marked as failed before the shared lock is
+ * released, so no commit can happen until all the operations applied since the last commit are rolled back. The
+ * jobs of the other transactions of the current group are then applied again, so only the failing transaction
+ * fails.
+ *
+ * @author kimchy
+ */
+public class SharedIndexWriter {
+
+    private static final Log logger = LogFactory.getLog(SharedIndexWriter.class);
+
+    private final String subIndex;
+
+    private final LuceneSearchEngineFactory searchEngineFactory;
+
+    private final LuceneSearchEngineIndexManager indexManager;
+
+    private final long commitDelay;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object commitMonitor = new Object();
+
+    private volatile IndexWriter indexWriter;
+
+    // guarded by commitMonitor
+    private CommitGroup currentGroup = new CommitGroup();
+
+    // guarded by commitMonitor
+    private boolean committing;
+
+    // guarded by commitMonitor, set when applying jobs failed and the writer must be rolled back before committing
+    private boolean failed;
+
+    public SharedIndexWriter(String subIndex, LuceneSearchEngineFactory searchEngineFactory, long commitDelay) {
+        this.subIndex = subIndex;
+        this.searchEngineFactory = searchEngineFactory;
+        this.indexManager = searchEngineFactory.getLuceneIndexManager();
+        this.commitDelay = commitDelay;
+    }
+
+    public String getSubIndex() {
+        return subIndex;
+    }
+
+    /**
+     * Applies the given jobs to the shared index writer, returning the commit group that will commit them.
+     */
+    public CommitGroup apply(TransactionJobs jobs) throws SearchEngineException {
+        Exception failure = null;
+        lock.readLock().lock();
+        try {
+            // failing to open the index writer means nothing was applied
+            IndexWriter writer = getOrOpenIndexWriter();
+            try {
+                for (TransactionJob job : jobs.getJobs()) {
+                    job.execute(writer, searchEngineFactory);
+                }
+            } catch (Exception e) {
+                // some of the jobs might have been applied, make sure no one commits them before they are rolled back
+                synchronized (commitMonitor) {
+                    failed = true;
+                }
+                failure = e;
+            }
+            if (failure == null) {
+                synchronized (commitMonitor) {
+                    currentGroup.add(jobs);
+                    return currentGroup;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            recoverIfFailed();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        throw new SearchEngineException("Failed to apply transaction to sub index [" + subIndex + "]", failure);
+    }
+
+    /**
+     * Waits for the given jobs (applied as part of the given group) to be committed, committing them (and any
+     * other group applied since) if no other transaction is already committing.
+     */
+    public void commit(CommitGroup group, TransactionJobs jobs, boolean invalidateCacheOnCommit) throws SearchEngineException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                synchronized (commitMonitor) {
+                    while (!group.isDone(jobs) && committing) {
+                        try {
+                            commitMonitor.wait();
+                        } catch (InterruptedException e) {
+                            // the jobs were already applied, we must wait for the outcome
+                            interrupted = true;
+                        }
+                    }
+                    if (group.isDone(jobs)) {
+                        Exception failure = group.getFailure(jobs);
+                        if (failure != null) {
+                            throw new SearchEngineException("Failed to commit sub index [" + subIndex + "]", failure);
+                        }
+                        return;
+                    }
+                    committing = true;
+                }
+                commitCurrentGroup(invalidateCacheOnCommit);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void commitCurrentGroup(boolean invalidateCacheOnCommit) {
+        CommitGroup group = null;
+        Exception failure = null;
+        try {
+            if (commitDelay > 0) {
+                try {
+                    Thread.sleep(commitDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                // never commit the partial operations of a transaction that failed to apply
+                recoverIfFailed();
+                synchronized (commitMonitor) {
+                    group = currentGroup;
+                    currentGroup = new CommitGroup();
+                }
+                if (indexWriter != null) {
+                    try {
+                        indexWriter.commit();
+                    } catch (Exception e) {
+                        failure = e;
+                        rollbackIndexWriter();
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (failure == null && invalidateCacheOnCommit) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Invalidating cache after commit for sub index [" + subIndex + "]");
+                }
+                indexManager.getIndexHoldersCache().invalidateCache(subIndex);
+            }
+        } finally {
+            synchronized (commitMonitor) {
+                if (group != null) {
+                    group.done(failure);
+                }
+                committing = false;
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Commits any applied operations and closes the index writer, releasing the Lucene write lock. The next
+     * transaction will open a new one.
+     */
+    public void release() throws SearchEngineException {
+        CommitGroup group;
+        Exception failure = null;
+        lock.writeLock().lock();
+        try {
+            recoverIfFailed();
+            if (indexWriter == null) {
+                return;
+            }
+            synchronized (commitMonitor) {
+                group = currentGroup;
+                currentGroup = new CommitGroup();
+            }
+            try {
+                indexWriter.commit();
+                indexWriter.close();
+                indexManager.getIndexWritersManager().trackCloseIndexWriter(subIndex, indexWriter);
+                indexWriter = null;
+            } catch (Exception e) {
+                failure = e;
+                rollbackIndexWriter();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        synchronized (commitMonitor) {
+            group.done(failure);
+            commitMonitor.notifyAll();
+        }
+        if (failure != null) {
+            throw new SearchEngineException("Failed to release index writer for sub index [" + subIndex + "]", failure);
+        }
+        indexManager.getIndexHoldersCache().invalidateCache(subIndex);
+    }
+
+    private IndexWriter getOrOpenIndexWriter() throws SearchEngineException {
+        IndexWriter writer = indexWriter;
+        if (writer != null) {
+            return writer;
+        }
+        synchronized (this) {
+            if (indexWriter == null) {
+                try {
+                    writer = indexManager.getIndexWritersManager().openIndexWriter(searchEngineFactory.getLuceneSettings().getSettings(), subIndex);
+                } catch (IOException e) {
+                    throw new SearchEngineException("Failed to open index writer for sub index [" + subIndex + "]", e);
+                }
+                indexManager.getIndexWritersManager().trackOpenIndexWriter(subIndex, writer);
+                indexWriter = writer;
+            }
+            return indexWriter;
+        }
+    }
+
+    /**
+     * If applying the jobs of a transaction failed, rolls back everything applied since the last commit and applies
+     * the jobs of the current group again. A transaction whose jobs fail again is removed from the group (and
+     * failed), the rest are applied again. Must be called under the write lock.
+     */
+    private void recoverIfFailed() {
+        synchronized (commitMonitor) {
+            if (!failed) {
+                return;
+            }
+            failed = false;
+        }
+        if (indexWriter != null) {
+            rollbackIndexWriter();
+        }
+        while (true) {
+            List<TransactionJobs> groupJobs;
+            synchronized (commitMonitor) {
+                groupJobs = currentGroup.getJobs();
+            }
+            if (groupJobs.isEmpty()) {
+                return;
+            }
+            IndexWriter writer;
+            try {
+                writer = getOrOpenIndexWriter();
+            } catch (SearchEngineException e) {
+                synchronized (commitMonitor) {
+                    currentGroup.done(e);
+                    currentGroup = new CommitGroup();
+                    commitMonitor.notifyAll();
+                }
+                return;
+            }
+            TransactionJobs failedJobs = null;
+            Exception failure = null;
+            for (TransactionJobs jobs : groupJobs) {
+                try {
+                    for (TransactionJob job : jobs.getJobs()) {
+                        job.execute(writer, searchEngineFactory);
+                    }
+                } catch (Exception e) {
+                    failedJobs = jobs;
+                    failure = e;
+                    break;
+                }
+            }
+            if (failedJobs == null) {
+                return;
+            }
+            rollbackIndexWriter();
+            synchronized (commitMonitor) {
+                currentGroup.fail(failedJobs, failure);
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+
+    // must be called under the write lock
+    private void rollbackIndexWriter() {
+        IndexWriter writer = indexWriter;
+        indexWriter = null;
+        try {
+            writer.rollback();
+        } catch (Exception e) {
+            Directory dir = indexManager.getStore().openDirectory(subIndex);
+            try {
+                if (IndexWriter.isLocked(dir)) {
+                    IndexWriter.unlock(dir);
+                }
+            } catch (Exception e1) {
+                logger.warn("Failed to check for locks or unlock failed rollback for sub index [" + subIndex + "]", e1);
+            }
+        } finally {
+            indexManager.getIndexWritersManager().trackCloseIndexWriter(subIndex, writer);
+        }
+    }
+
+    /**
+     * A group of transactions committed using a single Lucene commit. Guarded by the commit monitor of its
+     * writer.
+     */
+    public static class CommitGroup {
+
+        // the jobs of each transaction applied as part of the group, kept to apply them again on failure
+        private final List<TransactionJobs> jobs = new ArrayList<TransactionJobs>();
+
+        // transactions that failed and were removed from the group (by identity, jobs implement equals)
+        private final Map<TransactionJobs, Exception> failures = new IdentityHashMap<TransactionJobs, Exception>();
+
+        private boolean done;
+
+        private Exception failure;
+
+        void add(TransactionJobs transactionJobs) {
+            jobs.add(transactionJobs);
+        }
+
+        List<TransactionJobs> getJobs() {
+            return new ArrayList<TransactionJobs>(jobs);
+        }
+
+        void fail(TransactionJobs transactionJobs, Exception failure) {
+            for (Iterator<TransactionJobs> it = jobs.iterator(); it.hasNext();) {
+                if (it.next() == transactionJobs) {
+                    it.remove();
+                    break;
+                }
+            }
+            failures.put(transactionJobs, failure);
+        }
+
+        void done(Exception failure) {
+            this.done = true;
+            this.failure = failure;
+        }
+
+        boolean isDone(TransactionJobs transactionJobs) {
+            return done || failures.containsKey(transactionJobs);
+        }
+
+        Exception getFailure(TransactionJobs transactionJobs) {
+            Exception transactionFailure = failures.get(transactionJobs);
+            if (transactionFailure != null) {
+                return transactionFailure;
+            }
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction.shared;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.LuceneSearchEngine;
+import org.compass.core.lucene.engine.transaction.support.AbstractJobBasedTransactionProcessor;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJobs;
+
+/**
+ * A transaction processor that accumulates the dirty operations of a transaction and, on commit, applies them
+ * to the long lived {@link SharedIndexWriter}s of its {@link SharedTransactionProcessorFactory}, committing them
+ * together with other concurrent transactions (group commit).
+ *
+ * <p>Search operations only reflect committed data. Changes are atomic per sub index.
+ *
+ * @author kimchy
+ * @see org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessorFactory
+ */
+public class SharedTransactionProcessor extends AbstractJobBasedTransactionProcessor {
+
+    private static final Log logger = LogFactory.getLog(SharedTransactionProcessor.class);
+
+    private final SharedTransactionProcessorFactory processorFactory;
+
+    public SharedTransactionProcessor(SharedTransactionProcessorFactory processorFactory, LuceneSearchEngine searchEngine) {
+        super(logger, searchEngine, false);
+        this.processorFactory = processorFactory;
+    }
+
+    public String getName() {
+        return LuceneEnvironment.Transaction.Processor.Shared.NAME;
+    }
+
+    protected void doPrepare(TransactionJobs jobs) throws SearchEngineException {
+        // nothing to do here, jobs are applied and committed on commit
+    }
+
+    protected void doCommit(boolean onePhase, TransactionJobs jobs) throws SearchEngineException {
+        process(jobs);
+    }
+
+    protected void doRollback(TransactionJobs jobs) throws SearchEngineException {
+        // nothing to do here, jobs are only applied on commit
+    }
+
+    protected void doFlushCommit(TransactionJobs jobs) {
+        if (jobs != null) {
+            process(jobs);
+        }
+    }
+
+    private void process(TransactionJobs jobs) throws SearchEngineException {
+        // first apply to all the sub indexes, so they all join their current commit groups, and then commit
+        Map<String, TransactionJobs> jobsPerSubIndex = jobs.buildJobsPerSubIndex();
+        Map<String, SharedIndexWriter.CommitGroup> commitGroups = new HashMap<String, SharedIndexWriter.CommitGroup>();
+        for (Map.Entry<String, TransactionJobs> entry : jobsPerSubIndex.entrySet()) {
+            SharedIndexWriter indexWriter = processorFactory.getIndexWriter(entry.getKey());
+            commitGroups.put(entry.getKey(), indexWriter.apply(entry.getValue()));
+        }
+        for (Map.Entry<String, SharedIndexWriter.CommitGroup> entry : commitGroups.entrySet()) {
+            processorFactory.getIndexWriter(entry.getKey()).commit(entry.getValue(), jobsPerSubIndex.get(entry.getKey()),
+                    isInvalidateCacheOnCommit());
+        }
+    }
+}
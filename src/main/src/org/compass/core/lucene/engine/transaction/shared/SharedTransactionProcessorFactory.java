@@ -0,0 +1,124 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction.shared;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.config.SearchEngineFactoryAware;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.engine.SearchEngineFactory;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.LuceneSearchEngine;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.transaction.IndexWriterHoldingTransactionProcessorFactory;
+import org.compass.core.lucene.engine.transaction.TransactionProcessor;
+
+/**
+ * The shared transaction processor keeps a single {@link org.apache.lucene.index.IndexWriter} open per sub index
+ * for the life of the Compass instance (see {@link SharedIndexWriter}), instead of opening one (and holding the
+ * sub index write lock) per transaction.
+ *
+ * <p>Each transaction accumulates its dirty operations and applies them to the shared writers on commit.
+ * Transactions committing concurrently against the same sub index are coalesced into a single Lucene commit
+ * (group commit), so write throughput scales with the number of concurrent sessions instead of serializing
+ * behind the write lock. Rolling back a transaction simply discards its accumulated operations.
+ *
+ * <p>Index operations that require the sub index write lock (such as replacing or deleting the index) release
+ * the shared index writers first using {@link #releaseIndexWriters(String[])}.
+ *
+ * @author kimchy
+ */
+public class SharedTransactionProcessorFactory implements IndexWriterHoldingTransactionProcessorFactory, SearchEngineFactoryAware {
+
+    private static final Log logger = LogFactory.getLog(SharedTransactionProcessorFactory.class);
+
+    private LuceneSearchEngineFactory searchEngineFactory;
+
+    private long commitDelay;
+
+    private final ConcurrentMap<String, SharedIndexWriter> indexWriters = new ConcurrentHashMap<String, SharedIndexWriter>();
+
+    public void setSearchEngineFactory(SearchEngineFactory searchEngineFactory) {
+        this.searchEngineFactory = (LuceneSearchEngineFactory) searchEngineFactory;
+        this.commitDelay = this.searchEngineFactory.getLuceneSettings().getSettings().getSettingAsTimeInMillis(LuceneEnvironment.Transaction.Processor.Shared.COMMIT_DELAY, 0);
+    }
+
+    /**
+     * Creates a new {@link org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessor}.
+     */
+    public TransactionProcessor create(LuceneSearchEngine searchEngine) {
+        return new SharedTransactionProcessor(this, searchEngine);
+    }
+
+    /**
+     * Commits any pending operations and closes all the shared index writers.
+     */
+    public void close() {
+        for (SharedIndexWriter indexWriter : indexWriters.values()) {
+            try {
+                indexWriter.release();
+            } catch (Exception e) {
+                logger.warn("Failed to close shared index writer for sub index [" + indexWriter.getSubIndex() + "]", e);
+            }
+        }
+        indexWriters.clear();
+    }
+
+    /**
+     * Shared transaction processor is not thread safe.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Returns the shared index writer of the given sub index.
+     */
+    public SharedIndexWriter getIndexWriter(String subIndex) {
+        SharedIndexWriter indexWriter = indexWriters.get(subIndex);
+        if (indexWriter == null) {
+            indexWriter = new SharedIndexWriter(subIndex, searchEngineFactory, commitDelay);
+            SharedIndexWriter existing = indexWriters.putIfAbsent(subIndex, indexWriter);
+            if (existing != null) {
+                indexWriter = existing;
+            }
+        }
+        return indexWriter;
+    }
+
+    /**
+     * Commits any pending operations and closes the shared index writers of the given sub indexes (or all of them
+     * if none are provided), releasing their write locks. Writers are reopened by the next transaction.
+     */
+    public void releaseIndexWriters(String... subIndexes) throws SearchEngineException {
+        if (subIndexes == null || subIndexes.length == 0) {
+            for (SharedIndexWriter indexWriter : indexWriters.values()) {
+                indexWriter.release();
+            }
+        } else {
+            for (String subIndex : subIndexes) {
+                SharedIndexWriter indexWriter = indexWriters.get(subIndex);
+                if (indexWriter != null) {
+                    indexWriter.release();
+                }
+            }
+        }
+    }
+}
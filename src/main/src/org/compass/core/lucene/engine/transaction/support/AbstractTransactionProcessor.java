@@ -23,15 +23,15 @@ import org.apache.commons.logging.Log;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.Filter;
-import org.apache.lucene.search.Hits;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Sort;
 import org.compass.core.engine.SearchEngineException;
 import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.DefaultLuceneSearchEngineHits;
 import org.compass.core.lucene.engine.LuceneSearchEngine;
 import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.LuceneSearchEngineHits;
 import org.compass.core.lucene.engine.LuceneSearchEngineInternalSearch;
 import org.compass.core.lucene.engine.LuceneSearchEngineQuery;
 import org.compass.core.lucene.engine.manager.LuceneIndexHolder;
@@ -81,12 +81,14 @@ public abstract class AbstractTransactionProcessor implements TransactionProcess
             // the field cache to invalidate each time
             if (!useFieldCache) {
                 ArrayList<IndexReader> readers = new ArrayList<IndexReader>(calcSubIndexes.length);
+                ArrayList<IndexSearcher> searchers = new ArrayList<IndexSearcher>(calcSubIndexes.length);
                 LuceneIndexHolder lastNonEmptyIndexHolder = null;
                 for (String subIndex : calcSubIndexes) {
                     LuceneIndexHolder indexHolder = indexManager.getIndexHoldersCache().getHolder(subIndex);
                     indexHoldersToClose.add(indexHolder);
                     if (indexHolder.getIndexReader().numDocs() > 0) {
                         readers.add(indexHolder.getIndexReader());
+                        searchers.add(indexHolder.getIndexSearcher());
                         lastNonEmptyIndexHolder = indexHolder;
                     }
                 }
@@ -97,6 +99,12 @@ public abstract class AbstractTransactionProcessor implements TransactionProcess
                 if (readers.size() == 1) {
                     return new LuceneSearchEngineInternalSearch(searchEngine, lastNonEmptyIndexHolder, indexHoldersToClose);
                 }
+                if (indexManager.getSettings().isParallelSearch()) {
+                    // a single searcher on top of the multi reader can't be searched in parallel, search each
+                    // sub index reader (the internal search will still create a multi reader on top of them)
+                    MultiSearcher searcher = indexManager.openMultiSearcher(searchers.toArray(new IndexSearcher[searchers.size()]));
+                    return new LuceneSearchEngineInternalSearch(searchEngine, searcher, indexHoldersToClose);
+                }
                 MultiReader reader = new CacheableMultiReader(readers.toArray(new IndexReader[readers.size()]), false);
                 IndexSearcher searcher = indexManager.openIndexSearcher(reader);
                 return new LuceneSearchEngineInternalSearch(searchEngine, reader, searcher, indexHoldersToClose);
@@ -129,8 +137,8 @@ public abstract class AbstractTransactionProcessor implements TransactionProcess
         }
     }
 
-    protected Hits findByQuery(LuceneSearchEngineInternalSearch internalSearch,
-                               LuceneSearchEngineQuery searchEngineQuery, Filter filter) throws SearchEngineException {
+    protected LuceneSearchEngineHits findByQuery(LuceneSearchEngineInternalSearch internalSearch,
+                                                 LuceneSearchEngineQuery searchEngineQuery, Filter filter) throws SearchEngineException {
         Query query = searchEngineQuery.getQuery();
         if (searchEngineQuery.isRewrite()) {
             try {
@@ -139,18 +147,12 @@ public abstract class AbstractTransactionProcessor implements TransactionProcess
                 throw new SearchEngineException("Failed to rewrite query [" + query.toString() + "]", e);
             }
         }
-        Sort sort = searchEngineQuery.getSort();
-        Hits hits;
         try {
-            if (filter == null) {
-                hits = internalSearch.getSearcher().search(query, sort);
-            } else {
-                hits = internalSearch.getSearcher().search(query, filter, sort);
-            }
-        } catch (IOException e) {
-            throw new SearchEngineException("Failed to search with query [" + query + "]", e);
+            return new DefaultLuceneSearchEngineHits(query, filter, searchEngine, searchEngineQuery, internalSearch);
+        } catch (SearchEngineException e) {
+            internalSearch.close();
+            throw e;
         }
-        return hits;
     }
 
     protected boolean isInvalidateCacheOnCommit() {
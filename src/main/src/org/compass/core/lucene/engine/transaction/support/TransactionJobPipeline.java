@@ -0,0 +1,300 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.engine.transaction.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.executor.ExecutorManager;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJob;
+
+/**
+ * A process wide pipeline processing dirty operations ({@link TransactionJob}s) of all the transactions
+ * created by a transaction processor factory, using a fixed set of long lived workers.
+ *
+ * <p>Each worker is fed by its own bounded queue (stripe). Jobs are hashed to a worker based on the
+ * <code>hashing</code> setting (<code>uid</code> or <code>subindex</code>), so jobs of the same resource
+ * (or sub index) are always processed in order. A transaction tracks its own jobs using a
+ * {@link Completion} and only waits for them (and not for other transactions jobs).
+ *
+ * <p>Settings names are based on the transaction processor name: <code>concurrencyLevel</code> controls the
+ * number of workers (defaults to <code>5</code>), <code>backlog</code> the size of each worker queue (defaults
+ * to <code>100</code>), and <code>addTimeout</code> the time to wait for space in a full queue (defaults to
+ * <code>10</code> seconds). Workers are started lazily, on the first job added, using the
+ * {@link ExecutorManager}.
+ *
+ * @author kimchy
+ */
+public class TransactionJobPipeline {
+
+    private static final Log logger = LogFactory.getLog(TransactionJobPipeline.class);
+
+    /**
+     * Processes jobs added through a {@link Completion}, usually by the transaction processor.
+     */
+    public static interface JobProcessor {
+
+        void processJob(TransactionJob job) throws SearchEngineException;
+    }
+
+    private final String name;
+
+    private final ExecutorManager executorManager;
+
+    private final int concurrencyLevel;
+
+    private final ResourceHashing hashing;
+
+    private final int backlog;
+
+    private final long addTimeout;
+
+    private volatile Worker[] workers;
+
+    private final List<Future> workerFutures = new ArrayList<Future>();
+
+    private volatile boolean closed;
+
+    public TransactionJobPipeline(String name, CompassSettings settings, ExecutorManager executorManager) {
+        this.name = name;
+        this.executorManager = executorManager;
+        String prefix = LuceneEnvironment.Transaction.Processor.PREFIX + name + ".";
+        this.concurrencyLevel = settings.getSettingAsInt(prefix + "concurrencyLevel", 5);
+        this.hashing = ResourceHashing.fromName(settings.getSetting(prefix + "hashing", "uid"));
+        this.backlog = settings.getSettingAsInt(prefix + "backlog", 100);
+        this.addTimeout = settings.getSettingAsTimeInMillis(prefix + "addTimeout", 10000);
+    }
+
+    /**
+     * Creates a new completion, tracking the jobs of a single transaction.
+     */
+    public Completion createCompletion(JobProcessor jobProcessor) {
+        return new Completion(jobProcessor);
+    }
+
+    /**
+     * Adds a job to be processed by the worker it hashes to. If a previously added job of the same
+     * completion failed, its exception is thrown.
+     *
+     * <p>If the backlog of the worker is full, will wait till space becomes avaialbe.
+     */
+    public void add(Completion completion, TransactionJob job) throws SearchEngineException {
+        if (completion.exception != null) {
+            throw completion.exception;
+        }
+        Worker worker = getWorkers()[hashing.hash(job) % concurrencyLevel];
+        if (logger.isTraceEnabled()) {
+            logger.trace("Pipeline [" + name + "] worker [" + worker.id + "]: Adding Job [" + job + "]");
+        }
+        completion.pending.incrementAndGet();
+        boolean offered;
+        try {
+            offered = worker.jobs.offer(new Task(completion, job), addTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            completion.jobDone();
+            throw new SearchEngineException("Pipeline [" + name + "] worker [" + worker.id + "]: Failed to add job [" + job + "], interrupted while adding to queue", e);
+        }
+        if (!offered) {
+            completion.jobDone();
+            throw new SearchEngineException("Pipeline [" + name + "] worker [" + worker.id + "]: Failed to add job [" + job + "] after [" + addTimeout + "ms] and backlog size [" + backlog + "]");
+        }
+    }
+
+    /**
+     * Stops the workers. Jobs that were not processed yet are failed.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (workers == null) {
+            return;
+        }
+        for (Future future : workerFutures) {
+            future.cancel(true);
+        }
+        workerFutures.clear();
+        for (Worker worker : workers) {
+            ArrayList<Task> remainingTasks = new ArrayList<Task>();
+            worker.jobs.drainTo(remainingTasks);
+            for (Task task : remainingTasks) {
+                task.completion.fail(new SearchEngineException("Pipeline [" + name + "] closed before processing job [" + task.job + "]"));
+            }
+        }
+        workers = null;
+    }
+
+    private Worker[] getWorkers() {
+        Worker[] workers = this.workers;
+        if (workers != null) {
+            return workers;
+        }
+        synchronized (this) {
+            if (this.workers == null) {
+                if (closed) {
+                    throw new SearchEngineException("Pipeline [" + name + "] is closed");
+                }
+                workers = new Worker[concurrencyLevel];
+                for (int i = 0; i < workers.length; i++) {
+                    workers[i] = new Worker(i);
+                    workerFutures.add(executorManager.submit(workers[i]));
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Pipeline [" + name + "]: Started [" + concurrencyLevel + "] workers with [" + hashing + "] based hashing");
+                }
+                this.workers = workers;
+            }
+            return this.workers;
+        }
+    }
+
+    /**
+     * Tracks the jobs added by a single transaction, allowing it to wait for their completion.
+     */
+    public static final class Completion {
+
+        private final JobProcessor jobProcessor;
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final Object mutex = new Object();
+
+        private volatile SearchEngineException exception;
+
+        private volatile boolean cancelled;
+
+        private Completion(JobProcessor jobProcessor) {
+            this.jobProcessor = jobProcessor;
+        }
+
+        /**
+         * Waits till all the jobs added have been processed (or skipped).
+         */
+        public void await() throws InterruptedException {
+            synchronized (mutex) {
+                while (pending.get() > 0) {
+                    mutex.wait();
+                }
+            }
+        }
+
+        /**
+         * Jobs that have not been processed yet will be skipped.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Returns the first exception a job failed with (later jobs are skipped), and clears it.
+         *
+         * <p>Note, should be called after {@link #await()}.
+         */
+        public SearchEngineException getAndClearException() {
+            SearchEngineException exception = this.exception;
+            this.exception = null;
+            return exception;
+        }
+
+        private void process(TransactionJob job) {
+            try {
+                if (!cancelled && exception == null) {
+                    jobProcessor.processJob(job);
+                }
+            } catch (SearchEngineException e) {
+                exception = e;
+            } catch (Exception e) {
+                exception = new SearchEngineException("Failed to process job [" + job + "]", e);
+            } finally {
+                jobDone();
+            }
+        }
+
+        private void fail(SearchEngineException e) {
+            if (exception == null) {
+                exception = e;
+            }
+            jobDone();
+        }
+
+        private void jobDone() {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (mutex) {
+                    mutex.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static final class Task {
+
+        private final Completion completion;
+
+        private final TransactionJob job;
+
+        private Task(Completion completion, TransactionJob job) {
+            this.completion = completion;
+            this.job = job;
+        }
+    }
+
+    private class Worker implements Callable<Object> {
+
+        private final BlockingQueue<Task> jobs = new LinkedBlockingQueue<Task>(backlog);
+
+        private final int id;
+
+        private Worker(int id) {
+            this.id = id;
+        }
+
+        public Object call() throws Exception {
+            while (!closed) {
+                Task task;
+                try {
+                    task = jobs.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // the interrupt status is cleared, keep processing so jobs hashed to this worker are not
+                    // left behind (and their transactions waiting forever) unless we are closed
+                    if (!closed) {
+                        logger.warn("Pipeline [" + name + "] worker [" + id + "]: Interrupted without being closed, ignoring", e);
+                    }
+                    continue;
+                }
+                if (task != null) {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Pipeline [" + name + "] worker [" + id + "]: Processing Job [" + task.job + "]");
+                    }
+                    task.completion.process(task.job);
+                }
+            }
+            if (logger.isTraceEnabled()) {
+                logger.trace("Pipeline [" + name + "] worker [" + id + "]: Stopped");
+            }
+            return null;
+        }
+    }
+}
@@ -32,13 +32,17 @@ public class CreateTransactionJob implements TransactionJob {
 
     private final String resourceUID;
 
+    private final String subIndex;
+
     public CreateTransactionJob(InternalResource resource) {
         this.resource = resource;
         this.resourceUID = resource.getResourceKey().buildUID();
+        // computed eagerly, since the resource key is not serialized
+        this.subIndex = resource.getSubIndex();
     }
 
     public String getSubIndex() {
-        return resource.getSubIndex();
+        return subIndex;
     }
 
     public String getResourceUID() {
@@ -49,6 +53,14 @@ public class CreateTransactionJob implements TransactionJob {
         return resource;
     }
 
+    /**
+     * Returns an update job of the same resource. Updating deletes the resource (by its uid) before
+     * adding it, so it can be applied even if the create was already applied to the index.
+     */
+    public UpdateTransactionJob toUpdate() {
+        return new UpdateTransactionJob(resource, resourceUID, subIndex);
+    }
+
     public void execute(IndexWriter writer, LuceneSearchEngineFactory sessionFactory) throws Exception {
         resource.attach(sessionFactory);
         WriterHelper.processCreate(writer, resource);
@@ -57,6 +57,23 @@ public class TransactionJobs implements Serializable {
         return this.subIndexes;
     }
 
+    /**
+     * Returns the jobs of this transaction with all the create jobs replaced with update jobs (see
+     * {@link CreateTransactionJob#toUpdate()}), so the transaction can be applied again (for example, when
+     * replayed from a journal) without duplicating resources that were already added to the index.
+     */
+    public TransactionJobs toIdempotent() {
+        TransactionJobs idempotentJobs = new TransactionJobs();
+        for (TransactionJob job : jobs) {
+            if (job instanceof CreateTransactionJob) {
+                idempotentJobs.add(((CreateTransactionJob) job).toUpdate());
+            } else {
+                idempotentJobs.add(job);
+            }
+        }
+        return idempotentJobs;
+    }
+
     /**
      * Takes all the jobs within this transaction and breaks it into one or more
      * {@link TransactionJobs} per
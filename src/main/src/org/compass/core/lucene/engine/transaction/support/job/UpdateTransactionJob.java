@@ -32,13 +32,23 @@ public class UpdateTransactionJob implements TransactionJob {
 
     private final String resourceUID;
 
+    private final String subIndex;
+
     public UpdateTransactionJob(InternalResource resource) {
         this.resource = resource;
         this.resourceUID = resource.getResourceKey().buildUID();
+        // computed eagerly, since the resource key is not serialized
+        this.subIndex = resource.getSubIndex();
+    }
+
+    UpdateTransactionJob(InternalResource resource, String resourceUID, String subIndex) {
+        this.resource = resource;
+        this.resourceUID = resourceUID;
+        this.subIndex = subIndex;
     }
 
     public String getSubIndex() {
-        return resource.getSubIndex();
+        return subIndex;
     }
 
     public String getResourceUID() {
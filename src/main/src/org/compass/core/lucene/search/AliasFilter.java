@@ -0,0 +1,47 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.search;
+
+import java.util.Arrays;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermsFilter;
+
+/**
+ * A filter matching resources of any of the given aliases. Two alias filters are equal if they
+ * match the same set of aliases (regardless of order), allowing them to be cached.
+ *
+ * @author kimchy
+ */
+public class AliasFilter extends TermsFilter {
+
+    private final String aliasProperty;
+
+    private final String[] aliases;
+
+    public AliasFilter(String aliasProperty, String[] aliases) {
+        this.aliasProperty = aliasProperty;
+        this.aliases = aliases;
+        for (String alias : aliases) {
+            addTerm(new Term(aliasProperty, alias));
+        }
+    }
+
+    public String toString() {
+        return aliasProperty + ":" + Arrays.toString(aliases);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.search;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.OpenBitSetDISI;
+import org.apache.lucene.util.SortedVIntList;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.lucene.LuceneEnvironment;
+
+/**
+ * A cache of filters {@link DocIdSet}s per index reader. Only readers that were registered (the readers of
+ * the cached sub index holders) are cached, filters applied to any other reader (for example, a transactional
+ * reader) are simply computed. Once a registered reader is replaced (the sub index was reopened), it should
+ * be invalidated, discarding all of its cached filters.
+ *
+ * <p>Each reader caches up to {@link org.compass.core.lucene.LuceneEnvironment.FilterCache#MAX_ENTRIES}
+ * filters, evicting the least recently used one. Filters are cached based on their <code>equals</code> and
+ * <code>hashCode</code> implementations.
+ *
+ * @author kimchy
+ * @see CachingFilter
+ */
+public class FilterCache {
+
+    private static final Log logger = LogFactory.getLog(FilterCache.class);
+
+    private final boolean enabled;
+
+    private final int maxEntries;
+
+    private final Map<IndexReader, Map<Filter, DocIdSet>> cache = new ConcurrentHashMap<IndexReader, Map<Filter, DocIdSet>>();
+
+    public FilterCache(CompassSettings settings) {
+        this.enabled = settings.getSettingAsBoolean(LuceneEnvironment.FilterCache.ENABLED, true);
+        this.maxEntries = settings.getSettingAsInt(LuceneEnvironment.FilterCache.MAX_ENTRIES, 64);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Filter cache enabled [" + enabled + "] with max entries [" + maxEntries + "] per reader");
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if filters should be cached.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Wraps the given filter with a {@link CachingFilter} if the cache is enabled, otherwise returns it as is.
+     */
+    public Filter cache(Filter filter) {
+        if (!enabled) {
+            return filter;
+        }
+        return new CachingFilter(filter, this);
+    }
+
+    /**
+     * Registers a reader whose filters will be cached until it is {@link #invalidate(IndexReader) invalidated}.
+     */
+    public void register(IndexReader reader) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(reader, new LruMap(maxEntries));
+    }
+
+    /**
+     * Discards all the cached filters of the given reader.
+     */
+    public void invalidate(IndexReader reader) {
+        cache.remove(reader);
+    }
+
+    /**
+     * Discards all the cached filters.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of filters cached for the given reader.
+     */
+    public int size(IndexReader reader) {
+        Map<Filter, DocIdSet> readerCache = cache.get(reader);
+        if (readerCache == null) {
+            return 0;
+        }
+        synchronized (readerCache) {
+            return readerCache.size();
+        }
+    }
+
+    /**
+     * Returns the (possibly cached) doc id set of the filter for the given reader.
+     */
+    public DocIdSet getDocIdSet(Filter filter, IndexReader reader) throws IOException {
+        Map<Filter, DocIdSet> readerCache = cache.get(reader);
+        if (readerCache == null) {
+            return filter.getDocIdSet(reader);
+        }
+        DocIdSet docIdSet;
+        synchronized (readerCache) {
+            docIdSet = readerCache.get(filter);
+        }
+        if (docIdSet != null) {
+            return docIdSet;
+        }
+        // computed outside of the lock, two concurrent searches might compute the same filter
+        docIdSet = toCacheable(filter.getDocIdSet(reader), reader);
+        synchronized (readerCache) {
+            readerCache.put(filter, docIdSet);
+        }
+        return docIdSet;
+    }
+
+    /**
+     * Doc id sets that are not backed by a bit set or a sorted list (for example, ones that iterate
+     * over the index) are copied into an {@link OpenBitSet}.
+     */
+    private DocIdSet toCacheable(DocIdSet docIdSet, IndexReader reader) throws IOException {
+        if (docIdSet instanceof OpenBitSet || docIdSet instanceof SortedVIntList) {
+            return docIdSet;
+        }
+        DocIdSetIterator it = docIdSet.iterator();
+        return new OpenBitSetDISI(it, reader.maxDoc());
+    }
+
+    private static class LruMap extends LinkedHashMap<Filter, DocIdSet> {
+
+        private static final long serialVersionUID = -7306948210394482082L;
+
+        private final int maxEntries;
+
+        private LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Filter, DocIdSet> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.lucene.search;
+
+import java.util.Set;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
+
+/**
+ * A field selector that loads a set of fields, lazily loads another set of fields, and either
+ * loads or skips all the other fields.
+ *
+ * @author kimchy
+ */
+public class PropertiesFieldSelector implements FieldSelector {
+
+    private static final long serialVersionUID = -2893526839317447082L;
+
+    private final Set<String> properties;
+
+    private final Set<String> lazyProperties;
+
+    private final boolean loadOthers;
+
+    /**
+     * @param properties     The names of the fields that will be loaded
+     * @param lazyProperties The names of the fields that will be loaded lazily
+     * @param loadOthers     <code>true</code> if all other fields should be loaded, <code>false</code> if they should be skipped
+     */
+    public PropertiesFieldSelector(Set<String> properties, Set<String> lazyProperties, boolean loadOthers) {
+        this.properties = properties;
+        this.lazyProperties = lazyProperties;
+        this.loadOthers = loadOthers;
+    }
+
+    public FieldSelectorResult accept(String fieldName) {
+        if (lazyProperties.contains(fieldName)) {
+            return FieldSelectorResult.LAZY_LOAD;
+        }
+        if (loadOthers || properties.contains(fieldName)) {
+            return FieldSelectorResult.LOAD;
+        }
+        return FieldSelectorResult.NO_LOAD;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.search;
+
+import org.apache.lucene.search.HitCollector;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ * A hit collector that collects the top <code>numHits</code> hits (ordered by relevance) that
+ * are ranked after a given score and document. Hits ranked before (or at) the given position are
+ * only counted, which allows for deep paging without collecting all the hits ranked before it.
+ *
+ * @author kimchy
+ */
+public class SearchAfterHitCollector extends HitCollector {
+
+    private final float afterScore;
+
+    private final int afterDoc;
+
+    private final int numHits;
+
+    private final ScoreDocQueue queue;
+
+    private int totalHits;
+
+    private float minScore = Float.NEGATIVE_INFINITY;
+
+    /**
+     * Constructs a new collector that collects hits ranked after the given score and
+     * document. Use {@link Float#POSITIVE_INFINITY} as the score in order to collect
+     * all the hits.
+     */
+    public SearchAfterHitCollector(float afterScore, int afterDoc, int numHits) {
+        this.afterScore = afterScore;
+        this.afterDoc = afterDoc;
+        this.numHits = numHits;
+        this.queue = new ScoreDocQueue(numHits);
+    }
+
+    public void collect(int doc, float score) {
+        if (score <= 0.0f) {
+            return;
+        }
+        if (score > afterScore || (score == afterScore && doc <= afterDoc)) {
+            // ranked before (or at) the position we search after
+            return;
+        }
+        totalHits++;
+        if (queue.size() < numHits || score >= minScore) {
+            queue.insert(new ScoreDoc(doc, score));
+            minScore = ((ScoreDoc) queue.top()).score;
+        }
+    }
+
+    /**
+     * Returns the number of hits ranked after the position.
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Returns the top docs collected. Note, the max score is the max score of the
+     * hits collected (and not of all the hits).
+     */
+    public TopDocs topDocs() {
+        ScoreDoc[] scoreDocs = new ScoreDoc[queue.size()];
+        for (int i = scoreDocs.length - 1; i >= 0; i--) {
+            scoreDocs[i] = (ScoreDoc) queue.pop();
+        }
+        float maxScore = scoreDocs.length == 0 ? Float.NEGATIVE_INFINITY : scoreDocs[0].score;
+        return new TopDocs(totalHits, scoreDocs, maxScore);
+    }
+
+    private static final class ScoreDocQueue extends PriorityQueue {
+
+        ScoreDocQueue(int size) {
+            initialize(size);
+        }
+
+        protected boolean lessThan(Object a, Object b) {
+            ScoreDoc hitA = (ScoreDoc) a;
+            ScoreDoc hitB = (ScoreDoc) b;
+            if (hitA.score == hitB.score) {
+                return hitA.doc > hitB.doc;
+            }
+            return hitA.score < hitB.score;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.lucene.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+import org.compass.core.converter.basic.format.TrieUtils;
+
+/**
+ * A range filter over a trie encoded property (see {@link TrieUtils}). The range is split into
+ * a logarithmic number of term ranges over the different precision levels, the full precision
+ * terms are only enumerated at the edges of the range.
+ *
+ * @author kimchy
+ */
+public class TrieRangeFilter extends Filter {
+
+    private final String field;
+
+    private final String lowerPrecisionField;
+
+    private final String low;
+
+    private final String high;
+
+    private final boolean includeLow;
+
+    private final boolean includeHigh;
+
+    private final int precisionStep;
+
+    private final long minBound;
+
+    private final long maxBound;
+
+    /**
+     * Creates a new trie range filter.
+     *
+     * @param field         The property name
+     * @param low           The full precision trie encoded low value, <code>null</code> for an open range
+     * @param high          The full precision trie encoded high value, <code>null</code> for an open range
+     * @param includeLow    Should the low value be included
+     * @param includeHigh   Should the high value be included
+     * @param precisionStep The precision step the property is indexed with
+     */
+    public TrieRangeFilter(String field, String low, String high, boolean includeLow, boolean includeHigh, int precisionStep) {
+        this.field = field.intern();
+        this.lowerPrecisionField = TrieUtils.getLowerPrecisionName(field).intern();
+        this.low = low;
+        this.high = high;
+        this.includeLow = includeLow;
+        this.includeHigh = includeHigh;
+        this.precisionStep = precisionStep;
+
+        long minBound = Long.MIN_VALUE;
+        long maxBound = Long.MAX_VALUE;
+        boolean empty = false;
+        if (low != null) {
+            minBound = TrieUtils.prefixCodedToLong(low);
+            if (!includeLow) {
+                // an exclusive bound on the edge of the value space can not match anything
+                empty = minBound == Long.MAX_VALUE;
+                minBound++;
+            }
+        }
+        if (high != null) {
+            maxBound = TrieUtils.prefixCodedToLong(high);
+            if (!includeHigh) {
+                empty |= maxBound == Long.MIN_VALUE;
+                maxBound--;
+            }
+        }
+        if (empty) {
+            minBound = 0;
+            maxBound = -1;
+        }
+        this.minBound = minBound;
+        this.maxBound = maxBound;
+    }
+
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+        final List<String[]> ranges = new ArrayList<String[]>();
+        TrieUtils.splitRange(minBound, maxBound, precisionStep, new TrieUtils.RangeBuilder() {
+            public void addRange(String minPrefixCoded, String maxPrefixCoded, int shift) {
+                ranges.add(new String[]{shift == 0 ? field : lowerPrecisionField, minPrefixCoded, maxPrefixCoded});
+            }
+        });
+        OpenBitSet bits = new OpenBitSet(reader.maxDoc());
+        if (ranges.isEmpty()) {
+            return bits;
+        }
+        TermDocs termDocs = reader.termDocs();
+        try {
+            for (String[] range : ranges) {
+                String rangeField = range[0];
+                String maxTerm = range[2];
+                TermEnum termEnum = reader.terms(new Term(rangeField, range[1]));
+                try {
+                    do {
+                        Term term = termEnum.term();
+                        if (term == null || term.field() != rangeField || term.text().compareTo(maxTerm) > 0) {
+                            break;
+                        }
+                        termDocs.seek(termEnum);
+                        while (termDocs.next()) {
+                            bits.fastSet(termDocs.doc());
+                        }
+                    } while (termEnum.next());
+                } finally {
+                    termEnum.close();
+                }
+            }
+        } finally {
+            termDocs.close();
+        }
+        return bits;
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TrieRangeFilter)) {
+            return false;
+        }
+        TrieRangeFilter other = (TrieRangeFilter) o;
+        return field == other.field && minBound == other.minBound && maxBound == other.maxBound
+                && precisionStep == other.precisionStep;
+    }
+
+    public int hashCode() {
+        int hash = field.hashCode();
+        hash = 31 * hash + (int) (minBound ^ (minBound >>> 32));
+        hash = 31 * hash + (int) (maxBound ^ (maxBound >>> 32));
+        return 31 * hash + precisionStep;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder(field).append(":");
+        sb.append(includeLow ? '[' : '{');
+        sb.append(low == null ? "*" : Long.toString(TrieUtils.prefixCodedToLong(low)));
+        sb.append(" TO ");
+        sb.append(high == null ? "*" : Long.toString(TrieUtils.prefixCodedToLong(high)));
+        sb.append(includeHigh ? ']' : '}');
+        return sb.append(" (trie)").toString();
+    }
+}
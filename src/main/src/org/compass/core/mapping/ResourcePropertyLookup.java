@@ -1,7 +1,9 @@
 package org.compass.core.mapping;
 
 import org.compass.core.converter.ConversionException;
+import org.compass.core.converter.basic.format.TrieFormatter;
 import org.compass.core.converter.mapping.ResourcePropertyConverter;
+import org.compass.core.converter.mapping.TrieConverter;
 
 /**
  * A simple lookup class, for a given path, will provide simple access to
@@ -135,15 +137,32 @@ public final class ResourcePropertyLookup {
      * value.
      *
      * <p>Note, when {@link #setConvertOnlyWithDotPath(boolean)} is set the <code>true</code>, and
-     * the name passed to the lookup does not contain "dot notation", <code>false</code> will be returned.
+     * the name passed to the lookup does not contain "dot notation", <code>false</code> will be returned,
+     * unless the property is trie encoded (see {@link #getTrieFormatter()}), since the indexed values
+     * can not be matched without it.
      */
     public boolean hasSpecificConverter() {
-        if (dotPathAlias == null && convertOnlyWithDotPath) {
+        if (dotPathAlias == null && convertOnlyWithDotPath && getTrieFormatter() == null) {
             return false;
         }
         return resourcePropertyMapping != null && resourcePropertyMapping.getConverter() != null;
     }
 
+    /**
+     * Returns the trie formatter the property is indexed with, <code>null</code> if the property
+     * is not trie encoded. If not using dot path notation, the first mapping for the name is used.
+     */
+    public TrieFormatter getTrieFormatter() {
+        if (resourcePropertyMapping == null) {
+            return null;
+        }
+        ResourcePropertyConverter converter = resourcePropertyMapping.getResourcePropertyConverter();
+        if (converter instanceof TrieConverter) {
+            return ((TrieConverter) converter).getTrieFormatter();
+        }
+        return null;
+    }
+
     /**
      * Returns the String representation of the provided value Object. If {@link #hasSpecificConverter()}
      * return <code>true</code>, will use the first mapping definition for the given name in order to
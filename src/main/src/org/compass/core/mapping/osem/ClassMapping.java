@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.compass.core.converter.mapping.osem.CompiledClassMappingMarshaller;
 import org.compass.core.engine.naming.PropertyPath;
 import org.compass.core.mapping.AliasMapping;
 import org.compass.core.mapping.Mapping;
@@ -69,6 +70,8 @@ public class ClassMapping extends AbstractResourceMapping implements ResourceMap
 
     private ReflectionConstructor polyConstructor;
 
+    private CompiledClassMappingMarshaller compiledMarshaller;
+
     public Mapping copy() {
         ClassMapping copy = new ClassMapping();
         super.copy(copy);
@@ -277,6 +280,20 @@ public class ClassMapping extends AbstractResourceMapping implements ResourceMap
         this.polyConstructor = polyConstructor;
     }
 
+    /**
+     * Returns the generated marshaller of this class mapping, <code>null</code> if the class mapping
+     * was not compiled. Note, the compiled marshaller is not copied over when the mapping is copied.
+     *
+     * @see org.compass.core.config.CompassEnvironment.Osem#COMPILE_MARSHALLERS
+     */
+    public CompiledClassMappingMarshaller getCompiledMarshaller() {
+        return compiledMarshaller;
+    }
+
+    public void setCompiledMarshaller(CompiledClassMappingMarshaller compiledMarshaller) {
+        this.compiledMarshaller = compiledMarshaller;
+    }
+
     public PropertyPath getBasePath() {
         return basePath;
     }
@@ -48,6 +48,13 @@ public interface InternalResource extends Resource {
      */
     void addUID();
 
+    /**
+     * Returns <code>true</code> if only some of the resource properties were loaded (for example,
+     * when using {@link org.compass.core.CompassQuery#setProperties(String[])}). Partial resources
+     * (and objects unmarshalled from them) should not be cached.
+     */
+    boolean isPartial();
+
     /**
      * Attaches the given resource to the search engine factory.
      */
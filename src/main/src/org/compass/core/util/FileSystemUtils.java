@@ -18,12 +18,74 @@ package org.compass.core.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
 
 /**
  * @author kimchy
  */
 public abstract class FileSystemUtils {
 
+    private static final Method TO_PATH_METHOD;
+
+    private static final Method CREATE_LINK_METHOD;
+
+    static {
+        // hard links are only supported by Java 7 java.nio.file API
+        Method toPathMethod = null;
+        Method createLinkMethod = null;
+        try {
+            Class pathClass = Class.forName("java.nio.file.Path");
+            toPathMethod = File.class.getMethod("toPath");
+            createLinkMethod = Class.forName("java.nio.file.Files").getMethod("createLink", pathClass, pathClass);
+        } catch (Exception e) {
+            toPathMethod = null;
+            createLinkMethod = null;
+        }
+        TO_PATH_METHOD = toPathMethod;
+        CREATE_LINK_METHOD = createLinkMethod;
+    }
+
+    /**
+     * Returns <code>true</code> if the JVM supports creating hard links.
+     */
+    public static boolean isHardLinkSupported() {
+        return CREATE_LINK_METHOD != null;
+    }
+
+    /**
+     * Creates a hard link <code>link</code> to the <code>existing</code> file. Returns <code>false</code>
+     * if the JVM or the file system does not support hard links, or the link could not be created.
+     */
+    public static boolean hardLink(File existing, File link) {
+        if (CREATE_LINK_METHOD == null) {
+            return false;
+        }
+        try {
+            CREATE_LINK_METHOD.invoke(null, TO_PATH_METHOD.invoke(link), TO_PATH_METHOD.invoke(existing));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Renames the given file, retrying (up to 10 times) in case the rename fails (which can happen on
+     * windows if the file is still being closed).
+     */
+    public static boolean renameWithRetries(File file, File dest) {
+        for (int i = 0; i < 10; i++) {
+            if (file.renameTo(dest)) {
+                return true;
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                // do nothing
+            }
+        }
+        return false;
+    }
+
     /**
      * Delete the supplied {@link File} - for directories,
      * recursively delete any nested directories or files as well.
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock free, bounded pool of instances that can only be used by a single thread at a time
+ * (for example, formatters).
+ *
+ * <p>The pool is striped: each thread starts looking for a free instance at its own slot, so
+ * a thread will usually get back the same instance it released, without contending with other
+ * threads. Fetching never blocks. If no instance is free, a new one is created using
+ * {@link #create()}. Releasing an instance into a full pool simply drops it. The initial instances
+ * are only created on the first fetch.
+ *
+ * <p>The number of fetches that found no free instance, and the time spent creating instances
+ * for them, are available using {@link #getMissCount()} and {@link #getMissTime()}.
+ *
+ * @author kimchy
+ */
+public abstract class StripedPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int initialSize;
+
+    private final AtomicBoolean initialized = new AtomicBoolean();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong missTime = new AtomicLong();
+
+    /**
+     * Creates a new pool holding up to <code>maxSize</code> free instances.
+     */
+    protected StripedPool(int maxSize) {
+        this(0, maxSize);
+    }
+
+    /**
+     * Creates a new pool holding up to <code>maxSize</code> free instances, filled with
+     * <code>initialSize</code> instances on the first fetch.
+     */
+    protected StripedPool(int initialSize, int maxSize) {
+        this.initialSize = initialSize;
+        this.slots = new AtomicReferenceArray<T>(Math.max(1, maxSize));
+    }
+
+    /**
+     * Creates a new instance, called when no free instance is available in the pool.
+     */
+    protected abstract T create();
+
+    /**
+     * Fills the pool with up to <code>size</code> newly created instances.
+     */
+    public void fill(int size) {
+        for (int i = 0; i < size && i < slots.length(); i++) {
+            release(create());
+        }
+    }
+
+    /**
+     * Returns a free instance from the pool, creating a new one if there is none.
+     */
+    public T fetch() {
+        if (!initialized.get() && initialized.compareAndSet(false, true)) {
+            fill(initialSize);
+        }
+        int length = slots.length();
+        int start = startIndex(length);
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            T instance = slots.get(index);
+            if (instance != null && slots.compareAndSet(index, instance, null)) {
+                return instance;
+            }
+        }
+        long time = System.nanoTime();
+        T instance = create();
+        missTime.addAndGet(System.nanoTime() - time);
+        missCount.incrementAndGet();
+        return instance;
+    }
+
+    /**
+     * Returns the instance to the pool. If the pool is full, the instance is dropped.
+     */
+    public void release(T instance) {
+        int length = slots.length();
+        int start = startIndex(length);
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of fetches that found no free instance in the pool, and had to create one.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the total time (in nanoseconds) fetches spent creating new instances because no free
+     * instance was available in the pool.
+     */
+    public long getMissTime() {
+        return missTime.get();
+    }
+
+    private int startIndex(int length) {
+        return (int) (Thread.currentThread().getId() % length);
+    }
+}
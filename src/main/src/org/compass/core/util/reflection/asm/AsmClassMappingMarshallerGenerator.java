@@ -0,0 +1,456 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.util.reflection.asm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.compass.core.accessor.BasicPropertyAccessor;
+import org.compass.core.accessor.DirectPropertyAccessor;
+import org.compass.core.accessor.Getter;
+import org.compass.core.accessor.Setter;
+import org.compass.core.converter.Converter;
+import org.compass.core.converter.mapping.osem.CompiledClassMappingMarshaller;
+import org.compass.core.mapping.Mapping;
+import org.compass.core.mapping.osem.ClassMapping;
+import org.compass.core.mapping.osem.ClassPropertyMapping;
+import org.compass.core.mapping.osem.ConstantMetaDataMapping;
+import org.compass.core.mapping.osem.DynamicMetaDataMapping;
+import org.compass.core.mapping.osem.ObjectMapping;
+import org.compass.core.mapping.osem.OsemMapping;
+import org.compass.core.marshall.MarshallingContext;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates a {@link org.compass.core.converter.mapping.osem.CompiledClassMappingMarshaller} for a
+ * {@link org.compass.core.mapping.osem.ClassMapping} using ASM. The generated marshaller unrolls the
+ * class mapping inner mappings and reads / writes the mapped fields and properties directly (using
+ * <code>GETFIELD</code> / <code>PUTFIELD</code> and method invocations) instead of going through
+ * {@link org.compass.core.accessor.Getter} and {@link org.compass.core.accessor.Setter}.
+ *
+ * <p>The generated class is defined within the same package and class loader as the mapped class. Only
+ * class mappings whose inner mappings are all properties, constants or dynamic meta data, accessed using
+ * non private members, can be compiled (see {@link #canGenerate(org.compass.core.mapping.osem.ClassMapping)}).
+ *
+ * @author kimchy
+ */
+public class AsmClassMappingMarshallerGenerator {
+
+    private static final String BASE_INTERNAL_NAME = Type.getInternalName(CompiledClassMappingMarshaller.class);
+
+    private static final String CONVERTER_INTERNAL_NAME = Type.getInternalName(Converter.class);
+
+    private static final String MAPPINGS_DESC = Type.getDescriptor(Mapping[].class);
+
+    private static final String CONVERTERS_DESC = Type.getDescriptor(Converter[].class);
+
+    private static final String MARSHALL_DESC = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[]{
+            Type.getType(org.compass.core.Resource.class), Type.getType(Object.class), Type.getType(MarshallingContext.class)});
+
+    private static final String CONVERTER_MARSHALL_DESC = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, new Type[]{
+            Type.getType(org.compass.core.Resource.class), Type.getType(Object.class), Type.getType(Mapping.class),
+            Type.getType(MarshallingContext.class)});
+
+    private static final String CONVERTER_UNMARSHALL_DESC = Type.getMethodDescriptor(Type.getType(Object.class), new Type[]{
+            Type.getType(org.compass.core.Resource.class), Type.getType(Mapping.class), Type.getType(MarshallingContext.class)});
+
+    private static final String SIGNATURE_FIELD = "SIGNATURE";
+
+    /**
+     * Returns <code>true</code> if a marshaller can be generated for the given class mapping.
+     */
+    public static boolean canGenerate(ClassMapping classMapping) {
+        Class clazz = classMapping.getClazz();
+        if (clazz == null || clazz.isInterface() || clazz.isArray() || clazz.isPrimitive() || clazz.getClassLoader() == null) {
+            return false;
+        }
+        try {
+            if (clazz.getClassLoader().loadClass(CompiledClassMappingMarshaller.class.getName()) != CompiledClassMappingMarshaller.class) {
+                return false;
+            }
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        for (Iterator it = classMapping.mappingsIt(); it.hasNext();) {
+            Mapping mapping = (Mapping) it.next();
+            if (mapping.getConverter() == null) {
+                return false;
+            }
+            if (mapping instanceof ConstantMetaDataMapping || mapping instanceof DynamicMetaDataMapping) {
+                continue;
+            }
+            if (!(mapping instanceof ClassPropertyMapping)) {
+                return false;
+            }
+            ClassPropertyMapping propertyMapping = (ClassPropertyMapping) mapping;
+            Member getter = getMember(propertyMapping.getGetter());
+            if (getter == null || !canAccess(clazz, getter) || !isGetter(getter)) {
+                return false;
+            }
+            if (propertyMapping.getSetter() != null) {
+                Member setter = getMember(propertyMapping.getSetter());
+                if (setter == null || !canAccess(clazz, setter) || !isSetter(setter)
+                        || !canAccess(clazz, getValueType(setter))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates a {@link org.compass.core.converter.mapping.osem.CompiledClassMappingMarshaller} for the
+     * given class mapping. Should only be called if {@link #canGenerate(org.compass.core.mapping.osem.ClassMapping)}
+     * returns <code>true</code>.
+     */
+    public static synchronized CompiledClassMappingMarshaller generateMarshaller(ClassMapping classMapping) throws ClassNotFoundException {
+        Class clazz = classMapping.getClazz();
+        ArrayList<Mapping> mappingsList = new ArrayList<Mapping>();
+        for (Iterator it = classMapping.mappingsIt(); it.hasNext();) {
+            mappingsList.add((Mapping) it.next());
+        }
+        Mapping[] mappings = mappingsList.toArray(new Mapping[mappingsList.size()]);
+        String signature = buildSignature(mappings);
+
+        try {
+            // the generated code only depends on the signature, so reuse a class generated with the same
+            // signature (for example, by a different Compass instance), and use a different name otherwise
+            Class definedClass = null;
+            for (int classIndex = 0; definedClass == null; classIndex++) {
+                String className = clazz.getName() + "CompassMarshaller" + classIndex;
+                try { // checks if was already loaded
+                    Class loadedClass = clazz.getClassLoader().loadClass(className);
+                    if (signature.equals(loadedClass.getField(SIGNATURE_FIELD).get(null))) {
+                        definedClass = loadedClass;
+                    }
+                } catch (ClassNotFoundException e) { // need to build a new class
+                    definedClass = defineClass(clazz, className, generateClass(className, clazz, mappings, signature));
+                }
+            }
+            Constructor ctor = definedClass.getConstructor(Mapping[].class);
+            return (CompiledClassMappingMarshaller) ctor.newInstance(new Object[]{mappings});
+        } catch (Exception e) {
+            ClassNotFoundException err = new ClassNotFoundException("Can't create ASM marshaller for class mapping [" + classMapping.getAlias() + "]");
+            err.initCause(e);
+            throw err;
+        }
+    }
+
+    private static byte[] generateClass(String className, Class clazz, Mapping[] mappings, String signature) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER, className.replace('.', '/'), null, BASE_INTERNAL_NAME, null);
+        cw.visitField(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, SIGNATURE_FIELD,
+                Type.getDescriptor(String.class), null, signature).visitEnd();
+        createConstructor(cw);
+        createMarshallMethod(cw, clazz, mappings);
+        createUnmarshallMethod(cw, clazz, mappings);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void createConstructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + MAPPINGS_DESC + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE_INTERNAL_NAME, "<init>", "(" + MAPPINGS_DESC + ")V");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates <code>marshall(Resource resource, Object root, MarshallingContext context)</code>. Locals: 1 - resource,
+     * 2 - root, 3 - context, 4 - the root casted to the mapped class, 5 - the store flag.
+     */
+    private static void createMarshallMethod(ClassWriter cw, Class clazz, Mapping[] mappings) {
+        String owner = Type.getInternalName(clazz);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "marshall", MARSHALL_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitVarInsn(Opcodes.ASTORE, 4);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 5);
+        for (int i = 0; i < mappings.length; i++) {
+            mv.visitVarInsn(Opcodes.ILOAD, 5);
+            loadArrayElement(mv, "converters", CONVERTERS_DESC, i);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            if (((OsemMapping) mappings[i]).hasAccessors()) {
+                Member getter = getMember(((ObjectMapping) mappings[i]).getGetter());
+                mv.visitVarInsn(Opcodes.ALOAD, 4);
+                if (getter instanceof Field) {
+                    Field field = (Field) getter;
+                    mv.visitFieldInsn(Opcodes.GETFIELD, owner, field.getName(), Type.getDescriptor(field.getType()));
+                } else {
+                    Method method = (Method) getter;
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+                }
+                boxIfNeeded(mv, getValueType(getter));
+            } else {
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+            }
+            loadArrayElement(mv, "mappings", MAPPINGS_DESC, i);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, CONVERTER_INTERNAL_NAME, "marshall", CONVERTER_MARSHALL_DESC);
+            mv.visitInsn(Opcodes.IOR);
+            mv.visitVarInsn(Opcodes.ISTORE, 5);
+        }
+        mv.visitVarInsn(Opcodes.ILOAD, 5);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates <code>unmarshall(Resource resource, Object obj, MarshallingContext context)</code>. Locals: 1 - resource,
+     * 2 - obj, 3 - context, 4 - the obj casted to the mapped class, 5 - the current value, 6 - the not null flag.
+     */
+    private static void createUnmarshallMethod(ClassWriter cw, Class clazz, Mapping[] mappings) {
+        String owner = Type.getInternalName(clazz);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "unmarshall", MARSHALL_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitVarInsn(Opcodes.ASTORE, 4);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 6);
+        for (int i = 0; i < mappings.length; i++) {
+            Member setter = null;
+            if (((OsemMapping) mappings[i]).hasAccessors()) {
+                Setter objectSetter = ((ObjectMapping) mappings[i]).getSetter();
+                if (objectSetter == null) {
+                    continue;
+                }
+                setter = getMember(objectSetter);
+            }
+            loadArrayElement(mv, "converters", CONVERTERS_DESC, i);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            loadArrayElement(mv, "mappings", MAPPINGS_DESC, i);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, CONVERTER_INTERNAL_NAME, "unmarshall", CONVERTER_UNMARSHALL_DESC);
+            if (setter == null) {
+                mv.visitInsn(Opcodes.POP);
+                continue;
+            }
+            mv.visitVarInsn(Opcodes.ASTORE, 5);
+            Label nullValue = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 5);
+            mv.visitJumpInsn(Opcodes.IFNULL, nullValue);
+            mv.visitVarInsn(Opcodes.ALOAD, 4);
+            mv.visitVarInsn(Opcodes.ALOAD, 5);
+            castAndUnboxIfNeeded(mv, getValueType(setter));
+            if (setter instanceof Field) {
+                Field field = (Field) setter;
+                mv.visitFieldInsn(Opcodes.PUTFIELD, owner, field.getName(), Type.getDescriptor(field.getType()));
+            } else {
+                Method method = (Method) setter;
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+                Class returnType = method.getReturnType();
+                if (returnType == Long.TYPE || returnType == Double.TYPE) {
+                    mv.visitInsn(Opcodes.POP2);
+                } else if (returnType != Void.TYPE) {
+                    mv.visitInsn(Opcodes.POP);
+                }
+            }
+            if (mappings[i].controlsObjectNullability()) {
+                mv.visitInsn(Opcodes.ICONST_1);
+                mv.visitVarInsn(Opcodes.ISTORE, 6);
+            }
+            mv.visitLabel(nullValue);
+        }
+        mv.visitVarInsn(Opcodes.ILOAD, 6);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void loadArrayElement(MethodVisitor mv, String fieldName, String fieldDesc, int index) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, BASE_INTERNAL_NAME, fieldName, fieldDesc);
+        if (index <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + index);
+        } else if (index <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, index);
+        } else if (index <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, index);
+        } else {
+            mv.visitLdcInsn(index);
+        }
+        mv.visitInsn(Opcodes.AALOAD);
+    }
+
+    private static void boxIfNeeded(MethodVisitor mv, Class type) {
+        if (!type.isPrimitive()) {
+            return;
+        }
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, Boxer.INTERNAL_NAME, "box", "(" + Type.getDescriptor(type) + ")Ljava/lang/Object;");
+    }
+
+    private static void castAndUnboxIfNeeded(MethodVisitor mv, Class type) {
+        if (!type.isPrimitive()) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+            return;
+        }
+        String wrapper;
+        if (type == Boolean.TYPE) {
+            wrapper = "java/lang/Boolean";
+        } else if (type == Byte.TYPE) {
+            wrapper = "java/lang/Byte";
+        } else if (type == Character.TYPE) {
+            wrapper = "java/lang/Character";
+        } else if (type == Short.TYPE) {
+            wrapper = "java/lang/Short";
+        } else if (type == Integer.TYPE) {
+            wrapper = "java/lang/Integer";
+        } else if (type == Long.TYPE) {
+            wrapper = "java/lang/Long";
+        } else if (type == Float.TYPE) {
+            wrapper = "java/lang/Float";
+        } else {
+            wrapper = "java/lang/Double";
+        }
+        mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + Type.getDescriptor(type));
+    }
+
+    private static String buildSignature(Mapping[] mappings) {
+        StringBuilder sb = new StringBuilder();
+        for (Mapping mapping : mappings) {
+            if (((OsemMapping) mapping).hasAccessors()) {
+                sb.append(describe(getMember(((ObjectMapping) mapping).getGetter())));
+                Setter setter = ((ObjectMapping) mapping).getSetter();
+                sb.append('/').append(setter == null ? "-" : describe(getMember(setter)));
+                sb.append('/').append(mapping.controlsObjectNullability());
+            } else {
+                sb.append("root");
+            }
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    private static String describe(Member member) {
+        if (member instanceof Field) {
+            return member.getName() + ":" + Type.getDescriptor(((Field) member).getType());
+        }
+        return member.getName() + Type.getMethodDescriptor((Method) member);
+    }
+
+    private static Member getMember(Getter getter) {
+        if (getter instanceof BasicPropertyAccessor.BasicGetter) {
+            return ((BasicPropertyAccessor.BasicGetter) getter).getMethod();
+        }
+        if (getter instanceof DirectPropertyAccessor.DirectGetter) {
+            return ((DirectPropertyAccessor.DirectGetter) getter).getField();
+        }
+        return null;
+    }
+
+    private static Member getMember(Setter setter) {
+        if (setter instanceof BasicPropertyAccessor.BasicSetter) {
+            return ((BasicPropertyAccessor.BasicSetter) setter).getMethod();
+        }
+        if (setter instanceof DirectPropertyAccessor.DirectSetter) {
+            return ((DirectPropertyAccessor.DirectSetter) setter).getField();
+        }
+        return null;
+    }
+
+    private static boolean isGetter(Member member) {
+        return member instanceof Field || ((Method) member).getParameterTypes().length == 0;
+    }
+
+    private static boolean isSetter(Member member) {
+        if (member instanceof Field) {
+            return !Modifier.isFinal(member.getModifiers());
+        }
+        return ((Method) member).getParameterTypes().length == 1;
+    }
+
+    private static Class getValueType(Member member) {
+        if (member instanceof Field) {
+            return ((Field) member).getType();
+        }
+        Method method = (Method) member;
+        if (method.getParameterTypes().length == 1) {
+            return method.getParameterTypes()[0];
+        }
+        return method.getReturnType();
+    }
+
+    /**
+     * The generated class lives in the same package as the mapped class, so it can access public members
+     * and non private members declared within the same package.
+     */
+    private static boolean canAccess(Class clazz, Member member) {
+        int modifiers = member.getModifiers();
+        if (Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers)) {
+            return false;
+        }
+        return Modifier.isPublic(modifiers) || isSamePackage(clazz, member.getDeclaringClass());
+    }
+
+    private static boolean canAccess(Class clazz, Class type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (Modifier.isPublic(type.getModifiers()) && (type.getDeclaringClass() == null || canAccess(clazz, type.getDeclaringClass()))) {
+            return true;
+        }
+        return !Modifier.isPrivate(type.getModifiers()) && isSamePackage(clazz, type);
+    }
+
+    private static boolean isSamePackage(Class clazz1, Class clazz2) {
+        if (clazz1.getClassLoader() != clazz2.getClassLoader()) {
+            return false;
+        }
+        String name1 = clazz1.getName();
+        String name2 = clazz2.getName();
+        return name1.substring(0, Math.max(0, name1.lastIndexOf('.'))).equals(name2.substring(0, Math.max(0, name2.lastIndexOf('.'))));
+    }
+
+    private static Class defineClass(Class neighbor, String name, byte[] b) throws Exception {
+        try {
+            Method defineMethod = ClassLoader.class.getDeclaredMethod("defineClass",
+                    String.class, byte[].class, int.class, int.class);
+            defineMethod.setAccessible(true);
+            return (Class) defineMethod.invoke(neighbor.getClassLoader(), name, b, 0, b.length);
+        } catch (RuntimeException e) {
+            // newer JVMs do not allow to open up ClassLoader#defineClass, define the class
+            // using a private lookup on the mapped class instead (Java 9 and above)
+            Class methodHandlesClass = Class.forName("java.lang.invoke.MethodHandles");
+            Class lookupClass = Class.forName("java.lang.invoke.MethodHandles$Lookup");
+            Object lookup = methodHandlesClass.getMethod("lookup").invoke(null);
+            Object privateLookup = methodHandlesClass.getMethod("privateLookupIn", Class.class, lookupClass).invoke(null, neighbor, lookup);
+            return (Class) lookupClass.getMethod("defineClass", byte[].class).invoke(privateLookup, b);
+        }
+    }
+}
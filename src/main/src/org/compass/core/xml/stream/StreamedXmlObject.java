@@ -0,0 +1,87 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.xml.stream;
+
+import java.util.Map;
+
+import org.compass.core.CompassException;
+import org.compass.core.xml.XmlObject;
+import org.compass.core.xml.XmlXPathExpression;
+
+/**
+ * An {@link XmlObject} holding the name and value of an element or attribute matched by a
+ * {@link StreamingXPathMatcher}. The value of an element is the concatenation of its direct text
+ * children (same as the DOM based xml objects).
+ *
+ * <p>Since there is no DOM behind it, xpath expressions can not be evaluated against it.
+ *
+ * @author kimchy
+ */
+public class StreamedXmlObject implements XmlObject {
+
+    private final String name;
+
+    private String value;
+
+    private Map<String, String> namespaces;
+
+    public StreamedXmlObject(String name) {
+        this.name = name;
+    }
+
+    public StreamedXmlObject(String name, String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    void setValue(String value) {
+        this.value = value;
+    }
+
+    public void setNamespaces(Map<String, String> namespaces) {
+        this.namespaces = namespaces;
+    }
+
+    public Map<String, String> getNamespaces() {
+        return namespaces;
+    }
+
+    public XmlObject[] selectPath(String path) throws Exception {
+        throw new CompassException("Operation not allowed on StreamedXmlObject");
+    }
+
+    public boolean canCompileXpath() {
+        return false;
+    }
+
+    public XmlXPathExpression compile(String path) throws Exception {
+        throw new CompassException("Operation not allowed on StreamedXmlObject");
+    }
+
+    public String toString() {
+        return name + "=" + value;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.xml.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An xpath expression compiled so it can be evaluated while streaming over xml, without building
+ * a DOM. Used by {@link StreamingXPathMatcher}.
+ *
+ * <p>Only a subset of xpath can be streamed: location paths made of child (<code>/</code>) and
+ * descendant (<code>//</code>) element steps, with an optional last attribute step (<code>@name</code>).
+ * Step names can be <code>*</code>, and can use namespace prefixes (including <code>prefix:*</code>).
+ * Predicates, functions, node tests, other axes, unions and parent steps are not supported, in which
+ * case {@link #compile(String, java.util.Map)} returns <code>null</code>.
+ *
+ * <p>Names are matched in a namespace aware manner (as dom4j and JDOM do), a name without a prefix
+ * matches elements and attributes that have no namespace.
+ *
+ * @author kimchy
+ */
+public class StreamingXPath {
+
+    /**
+     * A single location step.
+     */
+    static class Step {
+
+        final boolean descendant;
+
+        final boolean attribute;
+
+        final String namespaceURI;
+
+        final String localName;
+
+        Step(boolean descendant, boolean attribute, String namespaceURI, String localName) {
+            this.descendant = descendant;
+            this.attribute = attribute;
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+        }
+
+        boolean matches(String namespaceURI, String localName) {
+            if (this.localName != null && !this.localName.equals(localName)) {
+                return false;
+            }
+            if (this.namespaceURI != null && !this.namespaceURI.equals(namespaceURI == null ? "" : namespaceURI)) {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private final String xpath;
+
+    private final boolean absolute;
+
+    final Step[] steps;
+
+    private StreamingXPath(String xpath, boolean absolute, Step[] steps) {
+        this.xpath = xpath;
+        this.absolute = absolute;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles the given xpath expression. Returns <code>null</code> if the expression can not be
+     * evaluated while streaming.
+     *
+     * @param xpath      The xpath expression
+     * @param namespaces Namespace prefix to uri lookup (can be <code>null</code>)
+     * @return The compiled expression, or <code>null</code> if it is not streamable
+     */
+    public static StreamingXPath compile(String xpath, Map<String, String> namespaces) {
+        if (xpath == null) {
+            return null;
+        }
+        String path = xpath.trim();
+        int length = path.length();
+        if (length == 0) {
+            return null;
+        }
+        boolean absolute = path.charAt(0) == '/';
+        int index = 0;
+        if (path.startsWith("./")) {
+            // relative to the context node, same as no prefix
+            index = 1;
+        }
+        List<Step> steps = new ArrayList<Step>();
+        while (index < length) {
+            boolean descendant = false;
+            if (path.charAt(index) == '/') {
+                index++;
+                if (index < length && path.charAt(index) == '/') {
+                    descendant = true;
+                    index++;
+                }
+            } else if (!steps.isEmpty()) {
+                return null;
+            }
+            int end = path.indexOf('/', index);
+            if (end == -1) {
+                end = length;
+            }
+            if (!steps.isEmpty() && steps.get(steps.size() - 1).attribute) {
+                // attributes can only be the last step
+                return null;
+            }
+            Step step = compileStep(path.substring(index, end), descendant, namespaces);
+            if (step == null) {
+                return null;
+            }
+            steps.add(step);
+            index = end;
+        }
+        if (steps.isEmpty() || path.charAt(length - 1) == '/') {
+            return null;
+        }
+        if (absolute && steps.get(0).attribute) {
+            return null;
+        }
+        return new StreamingXPath(xpath, absolute, steps.toArray(new Step[steps.size()]));
+    }
+
+    private static Step compileStep(String name, boolean descendant, Map<String, String> namespaces) {
+        boolean attribute = false;
+        if (name.startsWith("@")) {
+            attribute = true;
+            name = name.substring(1);
+        }
+        if (name.length() == 0) {
+            return null;
+        }
+        if (name.equals("*")) {
+            return new Step(descendant, attribute, null, null);
+        }
+        char first = name.charAt(0);
+        if (!Character.isLetter(first) && first != '_') {
+            return null;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '.' && c != ':' && c != '*') {
+                return null;
+            }
+        }
+        String namespaceURI = "";
+        String localName = name;
+        int colon = name.indexOf(':');
+        if (colon != -1) {
+            if (namespaces == null) {
+                return null;
+            }
+            namespaceURI = namespaces.get(name.substring(0, colon));
+            if (namespaceURI == null) {
+                return null;
+            }
+            localName = name.substring(colon + 1);
+            if (localName.equals("*")) {
+                localName = null;
+            }
+        }
+        if (localName != null && (localName.length() == 0 || localName.indexOf(':') != -1 || localName.indexOf('*') != -1)) {
+            return null;
+        }
+        if (colon != -1 && name.substring(0, colon).indexOf('*') != -1) {
+            return null;
+        }
+        return new Step(descendant, attribute, namespaceURI, localName);
+    }
+
+    /**
+     * Returns the original xpath expression.
+     */
+    public String getXPath() {
+        return xpath;
+    }
+
+    /**
+     * Returns <code>true</code> if the expression is evaluated from the document, and <code>false</code>
+     * if it is evaluated relative to a context element.
+     */
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    /**
+     * Returns <code>true</code> if the expression selects attributes.
+     */
+    public boolean isAttribute() {
+        return steps[steps.length - 1].attribute;
+    }
+
+    public String toString() {
+        return xpath;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.xml.stream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.compass.core.xml.XmlObject;
+
+/**
+ * Evaluates a set of {@link StreamingXPath} expressions in a single pass over a StAX stream.
+ *
+ * <p>When a root expression is provided, the expressions are evaluated relative to each element the
+ * root expression matches, and the result holds a {@link Scope} for each such element (in document
+ * order). Without a root expression, the expressions must be absolute, and the result holds a single
+ * scope.
+ *
+ * <p>Matching is done by keeping, for each open element, the partially matched steps that apply to its
+ * children. Sub trees that can not match any expression are skipped without allocating anything.
+ *
+ * <p>The matcher holds no state between calls to {@link #match(javax.xml.stream.XMLStreamReader)}, and
+ * can be used by several threads.
+ *
+ * @author kimchy
+ */
+public class StreamingXPathMatcher {
+
+    /**
+     * The values matched for one root expression match (or for the whole document).
+     */
+    public static class Scope {
+
+        private final List<XmlObject>[] values;
+
+        @SuppressWarnings("unchecked")
+        Scope(int size) {
+            this.values = new List[size];
+        }
+
+        void add(int index, XmlObject xmlObject) {
+            if (values[index] == null) {
+                values[index] = new ArrayList<XmlObject>(2);
+            }
+            values[index].add(xmlObject);
+        }
+
+        /**
+         * Returns the xml objects (in document order) matched by the expression at the given index.
+         */
+        public List<XmlObject> getValues(int index) {
+            if (values[index] == null) {
+                return Collections.emptyList();
+            }
+            return values[index];
+        }
+    }
+
+    private static class Entry {
+
+        final Scope scope;
+
+        final int index;
+
+        final int step;
+
+        Entry(Scope scope, int index, int step) {
+            this.scope = scope;
+            this.index = index;
+            this.step = step;
+        }
+    }
+
+    private static class Frame {
+
+        final List<Entry> entries = new ArrayList<Entry>();
+
+        List<StreamedXmlObject> captures;
+
+        StringBuilder text;
+
+        void addEntry(Entry entry) {
+            for (Entry existing : entries) {
+                if (existing.scope == entry.scope && existing.index == entry.index && existing.step == entry.step) {
+                    return;
+                }
+            }
+            entries.add(entry);
+        }
+
+        void capture(StreamedXmlObject xmlObject) {
+            if (captures == null) {
+                captures = new ArrayList<StreamedXmlObject>(2);
+                text = new StringBuilder();
+            }
+            captures.add(xmlObject);
+        }
+
+        void end() {
+            if (captures != null) {
+                String value = text.toString();
+                for (StreamedXmlObject xmlObject : captures) {
+                    xmlObject.setValue(value);
+                }
+            }
+        }
+    }
+
+    private final StreamingXPath rootXPath;
+
+    private final StreamingXPath[] xpaths;
+
+    /**
+     * Creates a new matcher.
+     *
+     * @param rootXPath The root expression (can be <code>null</code>). Must be absolute and select elements.
+     * @param xpaths    The expressions to match, relative if there is a root expression, absolute otherwise.
+     *                  <code>null</code> entries are allowed (and never match).
+     */
+    public StreamingXPathMatcher(StreamingXPath rootXPath, StreamingXPath[] xpaths) {
+        if (rootXPath != null && (!rootXPath.isAbsolute() || rootXPath.isAttribute())) {
+            throw new IllegalArgumentException("Root xpath [" + rootXPath + "] must be absolute and select elements");
+        }
+        for (StreamingXPath xpath : xpaths) {
+            if (xpath != null && xpath.isAbsolute() != (rootXPath == null)) {
+                throw new IllegalArgumentException("Xpath [" + xpath + "] must be " +
+                        (rootXPath == null ? "absolute" : "relative to root xpath [" + rootXPath + "]"));
+            }
+        }
+        this.rootXPath = rootXPath;
+        this.xpaths = xpaths;
+    }
+
+    /**
+     * Reads the given stream till its end, and returns the matches. Does not close the reader.
+     */
+    public List<Scope> match(XMLStreamReader reader) throws XMLStreamException {
+        List<Scope> scopes = new ArrayList<Scope>();
+        Frame current = new Frame();
+        if (rootXPath == null) {
+            Scope scope = new Scope(xpaths.length);
+            scopes.add(scope);
+            for (int i = 0; i < xpaths.length; i++) {
+                if (xpaths[i] != null) {
+                    current.addEntry(new Entry(scope, i, 0));
+                }
+            }
+        } else {
+            current.addEntry(new Entry(null, -1, 0));
+        }
+        List<Frame> stack = new ArrayList<Frame>();
+        int skipDepth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (skipDepth > 0 || current.entries.isEmpty()) {
+                        skipDepth++;
+                    } else {
+                        stack.add(current);
+                        current = startElement(reader, current, scopes);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (skipDepth > 0) {
+                        skipDepth--;
+                    } else {
+                        current.end();
+                        current = stack.remove(stack.size() - 1);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    if (skipDepth == 0 && current.captures != null) {
+                        current.text.append(reader.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return scopes;
+    }
+
+    private Frame startElement(XMLStreamReader reader, Frame parent, List<Scope> scopes) {
+        String namespaceURI = reader.getNamespaceURI();
+        String localName = reader.getLocalName();
+        Frame frame = new Frame();
+        for (Entry entry : parent.entries) {
+            StreamingXPath.Step[] steps = steps(entry);
+            StreamingXPath.Step step = steps[entry.step];
+            if (step.attribute) {
+                // attribute steps apply to the parent element, and were already evaluated against it
+                if (step.descendant) {
+                    frame.addEntry(entry);
+                }
+                continue;
+            }
+            if (step.descendant) {
+                frame.addEntry(entry);
+            }
+            if (!step.matches(namespaceURI, localName)) {
+                continue;
+            }
+            if (entry.step + 1 < steps.length) {
+                frame.addEntry(new Entry(entry.scope, entry.index, entry.step + 1));
+            } else if (entry.index == -1) {
+                Scope scope = new Scope(xpaths.length);
+                scopes.add(scope);
+                for (int i = 0; i < xpaths.length; i++) {
+                    if (xpaths[i] != null) {
+                        frame.addEntry(new Entry(scope, i, 0));
+                    }
+                }
+            } else {
+                StreamedXmlObject xmlObject = new StreamedXmlObject(localName);
+                entry.scope.add(entry.index, xmlObject);
+                frame.capture(xmlObject);
+            }
+        }
+        // evaluate attribute steps against this element, they can only match descendants if they are
+        // descendant steps
+        for (int i = frame.entries.size() - 1; i >= 0; i--) {
+            Entry entry = frame.entries.get(i);
+            StreamingXPath.Step step = steps(entry)[entry.step];
+            if (!step.attribute) {
+                continue;
+            }
+            for (int j = 0; j < reader.getAttributeCount(); j++) {
+                if (step.matches(reader.getAttributeNamespace(j), reader.getAttributeLocalName(j))) {
+                    entry.scope.add(entry.index, new StreamedXmlObject(reader.getAttributeLocalName(j), reader.getAttributeValue(j)));
+                }
+            }
+            if (!step.descendant) {
+                frame.entries.remove(i);
+            }
+        }
+        return frame;
+    }
+
+    private StreamingXPath.Step[] steps(Entry entry) {
+        return entry.index == -1 ? rootXPath.steps : xpaths[entry.index].steps;
+    }
+}
@@ -31,6 +31,7 @@ import org.compass.gps.device.hibernate.indexer.ScrollableHibernateIndexEntities
 import org.compass.gps.device.hibernate.lifecycle.DefaultHibernateEntityLifecycleInjector;
 import org.compass.gps.device.hibernate.lifecycle.HibernateEntityLifecycleInjector;
 import org.compass.gps.device.hibernate.lifecycle.HibernateMirrorFilter;
+import org.compass.gps.device.support.mirror.BatchedMirrorQueue;
 import org.compass.gps.device.support.parallel.AbstractParallelGpsDevice;
 import org.compass.gps.device.support.parallel.IndexEntitiesIndexer;
 import org.compass.gps.device.support.parallel.IndexEntity;
@@ -66,6 +67,11 @@ import org.hibernate.SessionFactory;
  * <p>Mirroring can be turned off using the {@link #setMirrorDataChanges(boolean)} to <code>false</code>.
  * It defaults to <code>true<code>.
  *
+ * <p>By default, each mirrored event is applied within its own Compass transaction on the thread that
+ * performed the Hibernate operation. Setting a {@link #setMirrorQueue(BatchedMirrorQueue)} will cause the
+ * events of each Hibernate transaction to be collected and, once it commits, applied by a background
+ * thread in batches.
+ *
  * <p>The device allows for {@link org.compass.gps.device.hibernate.NativeHibernateExtractor} to be set,
  * for applications that use a framework or by themself wrap the actual
  * <code>SessionFactory</code> implementation.
@@ -90,6 +96,8 @@ public class HibernateGpsDevice extends AbstractParallelGpsDevice implements Pas
 
     private HibernateMirrorFilter mirrorFilter;
 
+    private BatchedMirrorQueue mirrorQueue;
+
     private NativeHibernateExtractor nativeExtractor;
 
     private HibernateIndexEntitiesIndexer entitiesIndexer;
@@ -144,6 +152,9 @@ public class HibernateGpsDevice extends AbstractParallelGpsDevice implements Pas
             if (log.isDebugEnabled()) {
                 log.debug(buildMessage("Using lifecycleInjector [" + lifecycleInjector.getClass().getName() + "]"));
             }
+            if (mirrorQueue != null) {
+                mirrorQueue.start(compassGps.getMirrorCompass());
+            }
             lifecycleInjector.injectLifecycle(nativeSessionFactory, this);
         }
 
@@ -159,6 +170,9 @@ public class HibernateGpsDevice extends AbstractParallelGpsDevice implements Pas
     protected void doStop() throws CompassGpsException {
         if (mirrorDataChanges) {
             lifecycleInjector.removeLifecycle(nativeSessionFactory, this);
+            if (mirrorQueue != null) {
+                mirrorQueue.stop();
+            }
         }
     }
 
@@ -259,6 +273,23 @@ public class HibernateGpsDevice extends AbstractParallelGpsDevice implements Pas
         this.mirrorFilter = mirrorFilter;
     }
 
+    /**
+     * Returns the mirror queue used to apply mirrored events in batches, or <code>null</code> if
+     * each event is mirrored within its own Compass transaction.
+     */
+    public BatchedMirrorQueue getMirrorQueue() {
+        return mirrorQueue;
+    }
+
+    /**
+     * Sets a mirror queue that will be used to apply the mirrored events of committed Hibernate
+     * transactions in batches using a background thread. The queue is started and stopped by the
+     * device. If not set (the default), each event is mirrored within its own Compass transaction.
+     */
+    public void setMirrorQueue(BatchedMirrorQueue mirrorQueue) {
+        this.mirrorQueue = mirrorQueue;
+    }
+
     /**
      * Sets a native Hibernate extractor to work with frameworks that wrap the actual
      * SessionFactory.
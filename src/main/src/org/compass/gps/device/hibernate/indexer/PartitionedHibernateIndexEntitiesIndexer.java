@@ -0,0 +1,548 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.hibernate.indexer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.CompassCallbackWithoutResult;
+import org.compass.core.CompassException;
+import org.compass.core.CompassSession;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.util.concurrent.NamedThreadFactory;
+import org.compass.gps.device.hibernate.HibernateGpsDevice;
+import org.compass.gps.device.hibernate.HibernateGpsDeviceException;
+import org.compass.gps.device.hibernate.entities.EntityInformation;
+import org.compass.gps.device.support.parallel.IndexEntity;
+import org.compass.gps.spi.CompassGpsInterfaceDevice;
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.ObjectNotFoundException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+
+/**
+ * A Hibernate indexer that splits each entity into ranges of its primary key and scrolls each range using its
+ * own Hibernate session, Compass session and thread. This allows a single large entity to be indexed using
+ * several threads, instead of one thread per sub index group.
+ *
+ * <p>Ranges are computed by sampling the entity ids (taking into account the criteria returned by
+ * {@link org.compass.gps.device.hibernate.HibernateQueryProvider#createCriteria(org.hibernate.Session, org.compass.gps.device.hibernate.entities.EntityInformation)}):
+ * the ids (and only the ids) are scrolled in order once, and a range boundary is taken every
+ * {@link #setPartitionSize(int)} ids. Each range therefore holds the same number of rows, regardless of how the
+ * ids are distributed. Entities that do not have a simple id, or that are indexed using a Hibernate
+ * <code>Query</code>, are indexed using {@link ScrollableHibernateIndexEntitiesIndexer}.
+ *
+ * <p>Each range is indexed using its own Compass sessions (obtained from the gps index), and not the session
+ * the indexer is called with. Ranges are indexed concurrently only if the gps index settings use the
+ * <code>shared</code> transaction processor, which allows for concurrent transactions against the same sub
+ * index (other transaction processors either lock the sub index for the duration of the transaction, or apply
+ * it asynchronously). Otherwise, ranges are indexed one after the other. A single pool of
+ * {@link #setThreads(int)} threads is used for all the entities.
+ *
+ * <p>A checkpoint is taken every {@link #setCheckpointInterval(int)} rows of a range by committing the Compass
+ * session used to index them. A range that fails is retried (up to {@link #setPartitionRetries(int)} times)
+ * from its last checkpoint, without indexing again ranges that have already completed. Since some of the data
+ * of a failed range might have already been committed, retries save the data instead of creating it.
+ *
+ * <p>When {@link #setCheckpointLocation(String)} is set, the ranges of an entity and their checkpoints are also
+ * persisted to a file under the given location, and an index operation that finds such a file resumes from
+ * it (the file is deleted once the entity is completely indexed). Note, the built in gps implementations clean
+ * the gps index at the start of each index operation, so persisted checkpoints should only be used with gps
+ * implementations that keep the gps index between index operations.
+ *
+ * @author kimchy
+ */
+public class PartitionedHibernateIndexEntitiesIndexer implements HibernateIndexEntitiesIndexer {
+
+    private static final Log log = LogFactory.getLog(PartitionedHibernateIndexEntitiesIndexer.class);
+
+    private HibernateGpsDevice device;
+
+    private int partitionSize = 100000;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int partitionRetries = 2;
+
+    private int checkpointInterval = 10000;
+
+    private String checkpointLocation;
+
+    private ScrollableHibernateIndexEntitiesIndexer defaultIndexer = new ScrollableHibernateIndexEntitiesIndexer();
+
+    public void setHibernateGpsDevice(HibernateGpsDevice device) {
+        this.device = device;
+        defaultIndexer.setHibernateGpsDevice(device);
+    }
+
+    /**
+     * The number of rows each id range will hold. Defaults to <code>100000</code>.
+     */
+    public void setPartitionSize(int partitionSize) {
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * The number of threads used to index the ranges of the entities. Defaults to the number of
+     * available processors.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * The number of times a failed range will be retried before the indexing process fails.
+     * Defaults to <code>2</code>.
+     */
+    public void setPartitionRetries(int partitionRetries) {
+        this.partitionRetries = partitionRetries;
+    }
+
+    /**
+     * The number of rows of a range indexed (and committed) between checkpoints. Defaults to <code>10000</code>.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * The directory the ranges checkpoints will be persisted to. Defaults to <code>null</code>, which means
+     * checkpoints are not persisted.
+     */
+    public void setCheckpointLocation(String checkpointLocation) {
+        this.checkpointLocation = checkpointLocation;
+    }
+
+    public void performIndex(CompassSession session, IndexEntity[] entities) {
+        String processor = session.getSettings().getSetting(LuceneEnvironment.Transaction.Processor.TYPE);
+        boolean concurrent = threads > 1 && LuceneEnvironment.Transaction.Processor.Shared.NAME.equalsIgnoreCase(processor);
+        if (threads > 1 && !concurrent && log.isDebugEnabled()) {
+            log.debug(device.buildMessage("Transaction processor [" + processor + "] is not [shared], indexing ranges using a single thread"));
+        }
+        List<IndexEntity> nonPartitioned = new ArrayList<IndexEntity>();
+        ExecutorService executorService = null;
+        if (concurrent) {
+            executorService = Executors.newFixedThreadPool(threads, new NamedThreadFactory("Compass Gps Partitioned Index", false));
+        }
+        try {
+            for (IndexEntity entity : entities) {
+                EntityInformation entityInformation = (EntityInformation) entity;
+                if (device.isFilteredForIndex(entityInformation.getName())) {
+                    continue;
+                }
+                if (!device.isRunning()) {
+                    return;
+                }
+                List<Partition> partitions = loadCheckpoint(entityInformation);
+                if (partitions == null) {
+                    partitions = partition(entityInformation);
+                    if (partitions == null) {
+                        nonPartitioned.add(entity);
+                        continue;
+                    }
+                }
+                if (indexPartitions(entityInformation, partitions, executorService)) {
+                    deleteCheckpoint(entityInformation);
+                }
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+        if (!nonPartitioned.isEmpty() && device.isRunning()) {
+            defaultIndexer.performIndex(session, nonPartitioned.toArray(new IndexEntity[nonPartitioned.size()]));
+        }
+    }
+
+    /**
+     * Computes the id ranges of the given entity by sampling its ids, returning <code>null</code> if the entity
+     * can not be partitioned.
+     */
+    private List<Partition> partition(EntityInformation entityInformation) {
+        ScrollableResults cursor = null;
+        Session hibernateSession = device.getSessionFactory().openSession();
+        hibernateSession.setCacheMode(CacheMode.IGNORE);
+        Transaction hibernateTransaction = null;
+        try {
+            hibernateTransaction = hibernateSession.beginTransaction();
+            Criteria criteria = entityInformation.getQueryProvider().createCriteria(hibernateSession, entityInformation);
+            if (criteria == null) {
+                return null;
+            }
+            ClassMetadata metadata = hibernateSession.getSessionFactory().getClassMetadata(entityInformation.getName());
+            String idPropName = metadata.getIdentifierPropertyName();
+            if (idPropName == null || metadata.getIdentifierType().isComponentType()) {
+                return null;
+            }
+            criteria.setProjection(Projections.id());
+            criteria.addOrder(Order.asc(idPropName));
+            criteria.setFetchSize(device.getFetchCount());
+            cursor = criteria.scroll(ScrollMode.FORWARD_ONLY);
+            List<Object> boundaries = new ArrayList<Object>();
+            long count = 0;
+            while (cursor.next()) {
+                if (count % partitionSize == 0) {
+                    boundaries.add(cursor.get(0));
+                }
+                count++;
+            }
+            cursor.close();
+            cursor = null;
+            hibernateTransaction.commit();
+
+            List<Partition> partitions = new ArrayList<Partition>(boundaries.size());
+            for (int i = 0; i < boundaries.size(); i++) {
+                Object to = i + 1 < boundaries.size() ? boundaries.get(i + 1) : null;
+                partitions.add(new Partition(i, idPropName, boundaries.get(i), to));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(device.buildMessage("Indexing entities [" + entityInformation.getName() + "] with [" + count
+                        + "] rows using [" + partitions.size() + "] id ranges " + partitions));
+            }
+            return partitions;
+        } catch (Exception e) {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (Exception e1) {
+                    log.warn(device.buildMessage("Failed to close cursor on error, ignoring"), e1);
+                }
+            }
+            if (hibernateTransaction != null) {
+                try {
+                    hibernateTransaction.rollback();
+                } catch (Exception e1) {
+                    log.warn("Failed to rollback Hibernate", e1);
+                }
+            }
+            throw new HibernateGpsDeviceException(device.buildMessage("Failed to partition entities [" + entityInformation.getName() + "]"), e);
+        } finally {
+            hibernateSession.close();
+        }
+    }
+
+    /**
+     * Indexes the ranges of the given entity, returning <code>true</code> if all of them were indexed, and
+     * <code>false</code> if the device was stopped in the middle.
+     */
+    private boolean indexPartitions(final EntityInformation entityInformation, final List<Partition> partitions,
+                                    ExecutorService executorService) {
+        List<Partition> pending = new ArrayList<Partition>();
+        for (Partition partition : partitions) {
+            if (!partition.done) {
+                pending.add(partition);
+            }
+        }
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<Partition> failed = new ArrayList<Partition>();
+            Exception lastException = null;
+            if (executorService != null) {
+                List<Future> futures = new ArrayList<Future>();
+                for (final Partition partition : pending) {
+                    futures.add(executorService.submit(new Callable<Object>() {
+                        public Object call() throws Exception {
+                            indexPartition(entityInformation, partition, partitions);
+                            return null;
+                        }
+                    }));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        futures.get(i).get();
+                    } catch (InterruptedException e) {
+                        throw new HibernateGpsDeviceException(device.buildMessage("Failed to index the database, interrupted"), e);
+                    } catch (ExecutionException e) {
+                        failed.add(pending.get(i));
+                        lastException = (Exception) e.getCause();
+                    }
+                }
+            } else {
+                for (Partition partition : pending) {
+                    try {
+                        indexPartition(entityInformation, partition, partitions);
+                    } catch (Exception e) {
+                        failed.add(partition);
+                        lastException = e;
+                    }
+                }
+            }
+            if (!device.isRunning()) {
+                return false;
+            }
+            if (!failed.isEmpty()) {
+                if (attempt >= partitionRetries) {
+                    throw new HibernateGpsDeviceException(device.buildMessage("Failed to index entities [" + entityInformation.getName()
+                            + "], ranges " + failed + " failed after [" + (attempt + 1) + "] attempts"), lastException);
+                }
+                log.warn(device.buildMessage("Failed to index entities [" + entityInformation.getName() + "] ranges " + failed
+                        + ", retrying from their last checkpoint"), lastException);
+            }
+            pending = failed;
+        }
+        return true;
+    }
+
+    /**
+     * Indexes a single range (from its last checkpoint), using its own Hibernate session, and committing a
+     * Compass session every checkpoint interval rows.
+     */
+    private void indexPartition(final EntityInformation entityInformation, final Partition partition,
+                                final List<Partition> partitions) throws Exception {
+        ScrollableResults cursor = null;
+        final Session hibernateSession = device.getSessionFactory().openSession();
+        hibernateSession.setCacheMode(CacheMode.IGNORE);
+        Transaction hibernateTransaction = null;
+        try {
+            hibernateTransaction = hibernateSession.beginTransaction();
+            if (log.isDebugEnabled()) {
+                log.debug(device.buildMessage("Indexing entities [" + entityInformation.getName() + "] range " + partition));
+            }
+            Criteria criteria = entityInformation.getQueryProvider().createCriteria(hibernateSession, entityInformation);
+            criteria.add(Restrictions.ge(partition.idPropName, partition.from));
+            if (partition.to != null) {
+                criteria.add(Restrictions.lt(partition.idPropName, partition.to));
+            }
+            // data before the last checkpoint has already been committed, and is not indexed again
+            final boolean resumed = partition.lastId != null;
+            if (resumed) {
+                criteria.add(Restrictions.gt(partition.idPropName, partition.lastId));
+            }
+            criteria.addOrder(Order.asc(partition.idPropName));
+            criteria.setFetchSize(device.getFetchCount());
+            cursor = criteria.scroll(ScrollMode.FORWARD_ONLY);
+
+            final ScrollableResults rangeCursor = cursor;
+            final Object[] buffer = new Object[device.getFetchCount()];
+            final boolean[] exhausted = new boolean[1];
+            while (!exhausted[0] && device.isRunning()) {
+                ((CompassGpsInterfaceDevice) device.getGps()).executeForIndex(new CompassCallbackWithoutResult() {
+                    protected void doInCompassWithoutResult(CompassSession session) throws CompassException {
+                        int rows = 0;
+                        int index = 0;
+                        Object lastId = null;
+                        while (rows < checkpointInterval && device.isRunning()) {
+                            try {
+                                if (!rangeCursor.next()) {
+                                    exhausted[0] = true;
+                                    break;
+                                }
+                            } catch (ObjectNotFoundException e) {
+                                continue;
+                            }
+                            buffer[index++] = rangeCursor.get(0);
+                            rows++;
+                            if (index == buffer.length) {
+                                lastId = hibernateSession.getIdentifier(buffer[index - 1]);
+                                flush(session, hibernateSession, buffer, index, resumed || partition.retry);
+                                index = 0;
+                            }
+                        }
+                        if (index > 0) {
+                            lastId = hibernateSession.getIdentifier(buffer[index - 1]);
+                            flush(session, hibernateSession, buffer, index, resumed || partition.retry);
+                        }
+                        if (lastId != null) {
+                            // the checkpoint is only taken once the session commits (when the callback returns)
+                            partition.pendingLastId = lastId;
+                        }
+                    }
+                });
+                // the rows were committed, checkpoint the range
+                if (partition.pendingLastId != null) {
+                    partition.lastId = partition.pendingLastId;
+                    partition.pendingLastId = null;
+                }
+                if (exhausted[0]) {
+                    partition.done = true;
+                }
+                saveCheckpoint(entityInformation, partitions);
+            }
+            cursor.close();
+            cursor = null;
+            hibernateTransaction.commit();
+        } catch (Exception e) {
+            // whatever happens, the next attempt saves the data since it might have been partially committed
+            partition.retry = true;
+            partition.pendingLastId = null;
+            log.error(device.buildMessage("Failed to index entities [" + entityInformation.getName() + "] range " + partition), e);
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (Exception e1) {
+                    log.warn(device.buildMessage("Failed to close cursor on error, ignoring"), e1);
+                }
+            }
+            if (hibernateTransaction != null) {
+                try {
+                    hibernateTransaction.rollback();
+                } catch (Exception e1) {
+                    log.warn("Failed to rollback Hibernate", e1);
+                }
+            }
+            throw e;
+        } finally {
+            hibernateSession.close();
+        }
+    }
+
+    private void flush(CompassSession session, Session hibernateSession, Object[] buffer, int length, boolean save) {
+        for (int i = 0; i < length; i++) {
+            if (save) {
+                session.save(buffer[i]);
+            } else {
+                session.create(buffer[i]);
+            }
+        }
+        // clear buffer and sessions to allow for GC (each range thread has its own sessions)
+        Arrays.fill(buffer, null);
+        session.evictAll();
+        hibernateSession.clear();
+    }
+
+    private File checkpointFile(EntityInformation entityInformation) {
+        return new File(checkpointLocation, entityInformation.getName() + ".checkpoint");
+    }
+
+    /**
+     * Loads the persisted ranges of the given entity, returning <code>null</code> if there are none.
+     */
+    private List<Partition> loadCheckpoint(EntityInformation entityInformation) {
+        if (checkpointLocation == null) {
+            return null;
+        }
+        File file = checkpointFile(entityInformation);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file));
+            try {
+                List<Partition> partitions = (List<Partition>) ois.readObject();
+                if (log.isInfoEnabled()) {
+                    log.info(device.buildMessage("Resuming indexing of entities [" + entityInformation.getName() + "] from checkpoint [" + file.getAbsolutePath() + "]"));
+                }
+                for (Partition partition : partitions) {
+                    // data might have been committed after the last checkpoint
+                    partition.retry = true;
+                }
+                return partitions;
+            } finally {
+                ois.close();
+            }
+        } catch (Exception e) {
+            log.warn(device.buildMessage("Failed to read checkpoint [" + file.getAbsolutePath() + "], indexing entities [" + entityInformation.getName() + "] from scratch"), e);
+            return null;
+        }
+    }
+
+    /**
+     * Persists the ranges of the given entity (if a checkpoint location is set). The file is written to a
+     * temporary file first, and then renamed, so a crash while writing it does not lose the previous checkpoint.
+     */
+    private void saveCheckpoint(EntityInformation entityInformation, List<Partition> partitions) throws IOException {
+        if (checkpointLocation == null) {
+            return;
+        }
+        synchronized (partitions) {
+            File dir = new File(checkpointLocation);
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Failed to create checkpoint location [" + dir.getAbsolutePath() + "]");
+            }
+            File file = checkpointFile(entityInformation);
+            File tempFile = new File(checkpointLocation, entityInformation.getName() + ".checkpoint.tmp");
+            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(tempFile));
+            try {
+                oos.writeObject(new ArrayList<Partition>(partitions));
+            } finally {
+                oos.close();
+            }
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Failed to replace checkpoint [" + file.getAbsolutePath() + "]");
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename checkpoint [" + tempFile.getAbsolutePath() + "] to [" + file.getAbsolutePath() + "]");
+            }
+        }
+    }
+
+    private void deleteCheckpoint(EntityInformation entityInformation) {
+        if (checkpointLocation == null) {
+            return;
+        }
+        File file = checkpointFile(entityInformation);
+        if (file.exists() && !file.delete()) {
+            log.warn(device.buildMessage("Failed to delete checkpoint [" + file.getAbsolutePath() + "]"));
+        }
+    }
+
+    /**
+     * A range of ids, from (inclusive) to (exclusive, <code>null</code> for the last range), along with its
+     * checkpoint (the last committed id).
+     */
+    private static class Partition implements Serializable {
+
+        final int index;
+
+        final String idPropName;
+
+        final Object from;
+
+        final Object to;
+
+        volatile Object lastId;
+
+        volatile boolean done;
+
+        transient volatile Object pendingLastId;
+
+        transient volatile boolean retry;
+
+        Partition(int index, String idPropName, Object from, Object to) {
+            this.index = index;
+            this.idPropName = idPropName;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String toString() {
+            return "[" + index + ": " + from + "-" + (to == null ? "" : to) + "]";
+        }
+    }
+}
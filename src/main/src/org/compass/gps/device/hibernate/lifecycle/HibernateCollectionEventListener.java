@@ -24,6 +24,7 @@ import org.compass.core.CompassSession;
 import org.compass.core.mapping.Cascade;
 import org.compass.gps.device.hibernate.HibernateGpsDevice;
 import org.compass.gps.device.hibernate.HibernateGpsDeviceException;
+import org.compass.gps.device.support.mirror.MirrorOperation;
 import org.compass.gps.spi.CompassGpsInterfaceDevice;
 import org.hibernate.engine.spi.CollectionEntry;
 import org.hibernate.engine.spi.EntityEntry;
@@ -89,6 +90,10 @@ public class HibernateCollectionEventListener extends HibernateEventListener imp
             log.warn("Unable to reindex entity on collection change, id cannot be extracted: " + event.getAffectedOwnerEntityName());
             return;
         }
+        if (device.getMirrorQueue() != null) {
+            enqueueForMirror(event.getSession(), MirrorOperation.Type.SAVE, event.getAffectedOwnerEntityName(), id, entity);
+            return;
+        }
         try {
             if (log.isTraceEnabled()) {
                 log.trace(device.buildMessage("Updating [" + entity + "]"));
@@ -31,6 +31,8 @@ import org.compass.core.CompassSession;
 import org.compass.core.mapping.Cascade;
 import org.compass.gps.device.hibernate.HibernateGpsDevice;
 import org.compass.gps.device.hibernate.HibernateGpsDeviceException;
+import org.compass.gps.device.support.mirror.MirrorOperation;
+import org.compass.gps.device.support.mirror.MirrorOperationBatch;
 import org.compass.gps.spi.CompassGpsInterfaceDevice;
 import org.hibernate.engine.spi.CollectionEntry;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
@@ -45,6 +47,12 @@ import org.hibernate.event.spi.PostUpdateEventListener;
 /**
  * A default implementation for Hibernate lifecycle callbacks.
  *
+ * <p>If the device is configured with a {@link org.compass.gps.device.support.mirror.BatchedMirrorQueue},
+ * the events of each Hibernate transaction are collected (merging events of the same entity) and handed
+ * to the queue once the transaction commits, instead of being mirrored within their own Compass transaction.
+ * In such a case, pending cascades and collections processing do not apply, since the entities are mirrored
+ * after all of them have been persisted, outside of the Hibernate session.
+ *
  * @author kimchy
  * @see org.compass.gps.device.hibernate.lifecycle.DefaultHibernateEntityLifecycleInjector
  */
@@ -66,6 +74,8 @@ public class HibernateEventListener implements PostInsertEventListener, PostUpda
 
     private Map<Object, Collection> pendingSave = Collections.synchronizedMap(new IdentityHashMap<Object, Collection>());
 
+    private Map<Object, MirrorOperationBatch> mirrorBatches = Collections.synchronizedMap(new IdentityHashMap<Object, MirrorOperationBatch>());
+
     public HibernateEventListener(HibernateGpsDevice device, boolean marshallIds, boolean pendingCascades, boolean processCollections) {
         this.device = device;
         this.mirrorFilter = device.getMirrorFilter();
@@ -92,6 +102,15 @@ public class HibernateEventListener implements PostInsertEventListener, PostUpda
             }
         }
 
+        if (device.getMirrorQueue() != null) {
+            if (marshallIds) {
+                postInsertEvent.getPersister().setIdentifier(entity, postInsertEvent.getId(), postInsertEvent.getSession());
+            }
+            enqueueForMirror(postInsertEvent.getSession(), MirrorOperation.Type.CREATE,
+                    postInsertEvent.getPersister().getEntityName(), postInsertEvent.getId(), entity);
+            return;
+        }
+
         try {
             if (log.isTraceEnabled()) {
                 log.trace(device.buildMessage("Creating [" + entity + "]"));
@@ -128,6 +147,12 @@ public class HibernateEventListener implements PostInsertEventListener, PostUpda
             }
         }
 
+        if (device.getMirrorQueue() != null) {
+            enqueueForMirror(postUpdateEvent.getSession(), MirrorOperation.Type.SAVE,
+                    postUpdateEvent.getPersister().getEntityName(), postUpdateEvent.getId(), entity);
+            return;
+        }
+
         Collection<CollectionEntry> collectionsBefore = null;
         if (processCollections) {
             collectionsBefore = new HashSet<CollectionEntry>(postUpdateEvent.getSession().getPersistenceContext().getCollectionEntries().values());
@@ -177,6 +202,12 @@ public class HibernateEventListener implements PostInsertEventListener, PostUpda
             }
         }
 
+        if (device.getMirrorQueue() != null) {
+            enqueueForMirror(postDeleteEvent.getSession(), MirrorOperation.Type.DELETE,
+                    postDeleteEvent.getPersister().getEntityName(), postDeleteEvent.getId(), entity);
+            return;
+        }
+
         try {
             if (log.isTraceEnabled()) {
                 log.trace(device.buildMessage("Deleting [" + entity + "]"));
@@ -195,6 +226,19 @@ public class HibernateEventListener implements PostInsertEventListener, PostUpda
         }
     }
 
+    /**
+     * Adds the operation to the mirror batch of the current Hibernate transaction, which will be handed to
+     * the device mirror queue once the transaction commits.
+     */
+    protected void enqueueForMirror(EventSource eventSource, MirrorOperation.Type type, String entityName,
+                                    Serializable id, Object entity) {
+        if (log.isTraceEnabled()) {
+            log.trace(device.buildMessage("Queueing " + type + " [" + entity + "]"));
+        }
+        HibernateEventListenerUtils.enqueueForMirror(eventSource, mirrorBatches, device.getMirrorQueue(),
+                new MirrorOperation(type, MirrorOperation.entityKey(entityName, id), entity));
+    }
+
     protected void doInsert(CompassSession session, PostInsertEvent postInsertEvent, Object entity, CompassGpsInterfaceDevice compassGps) {
         if (marshallIds) {
             Serializable id = postInsertEvent.getId();
@@ -22,8 +22,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import javax.transaction.Status;
 import javax.transaction.Synchronization;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import org.compass.core.CompassSession;
 import org.compass.core.mapping.Cascade;
 import org.compass.core.mapping.CompassMapping;
@@ -33,6 +37,9 @@ import org.compass.core.mapping.osem.ClassMapping;
 import org.compass.core.mapping.osem.ClassPropertyMetaDataMapping;
 import org.compass.core.spi.InternalCompass;
 import org.compass.core.util.Assert;
+import org.compass.gps.device.support.mirror.BatchedMirrorQueue;
+import org.compass.gps.device.support.mirror.MirrorOperation;
+import org.compass.gps.device.support.mirror.MirrorOperationBatch;
 import org.compass.gps.spi.CompassGpsInterfaceDevice;
 import org.hibernate.EntityMode;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
@@ -48,10 +55,32 @@ import org.hibernate.type.Type;
  */
 public abstract class HibernateEventListenerUtils {
 
+    private static final Log log = LogFactory.getLog(HibernateEventListenerUtils.class);
+
     public static void registerRemovalHook(EventSource eventSource, Map<Object, Collection> pendingMap, Object entity) {
         eventSource.getTransaction().registerSynchronization(new RemoveFromPending(pendingMap, entity));
     }
 
+    /**
+     * Adds the operation to the mirror batch of the current transaction of the given session, registering
+     * a synchronization that hands the batch to the mirror queue once the transaction commits. If there is
+     * no active transaction, the operation is enqueued directly.
+     */
+    public static void enqueueForMirror(EventSource eventSource, Map<Object, MirrorOperationBatch> batches,
+                                        BatchedMirrorQueue mirrorQueue, MirrorOperation operation) {
+        if (!eventSource.getTransaction().isActive()) {
+            mirrorQueue.enqueue(operation);
+            return;
+        }
+        MirrorOperationBatch batch = batches.get(eventSource);
+        if (batch == null) {
+            batch = new MirrorOperationBatch(mirrorQueue);
+            batches.put(eventSource, batch);
+            eventSource.getTransaction().registerSynchronization(new EnqueueOnCommit(batches, eventSource, batch));
+        }
+        batch.add(operation);
+    }
+
 
     public static Collection getAssociatedDependencies(Object entity, Map<Object, Collection> pendingMap) {
         Set dependencies = new HashSet();
@@ -215,4 +244,31 @@ public abstract class HibernateEventListenerUtils {
         public void beforeCompletion() {
         }
     }
+
+    private static class EnqueueOnCommit implements Synchronization {
+        private Map<Object, MirrorOperationBatch> batches;
+        private Object key;
+        private MirrorOperationBatch batch;
+
+        public EnqueueOnCommit(Map<Object, MirrorOperationBatch> batches, Object key, MirrorOperationBatch batch) {
+            this.batches = batches;
+            this.key = key;
+            this.batch = batch;
+        }
+
+        public void afterCompletion(int status) {
+            batches.remove(key);
+            if (status != Status.STATUS_COMMITTED) {
+                return;
+            }
+            try {
+                batch.enqueue();
+            } catch (Exception e) {
+                log.error("Failed to enqueue [" + batch.size() + "] mirror operations", e);
+            }
+        }
+
+        public void beforeCompletion() {
+        }
+    }
 }
@@ -42,6 +42,7 @@ import org.compass.gps.device.jdbc.mapping.VersionColumnMapping;
 import org.compass.gps.device.jdbc.snapshot.ConfigureSnapshotEvent;
 import org.compass.gps.device.jdbc.snapshot.CreateAndUpdateSnapshotEvent;
 import org.compass.gps.device.jdbc.snapshot.DeleteSnapshotEvent;
+import org.compass.gps.device.jdbc.snapshot.IncrementalJdbcSnapshotPersister;
 import org.compass.gps.device.jdbc.snapshot.JdbcAliasRowSnapshot;
 import org.compass.gps.device.jdbc.snapshot.JdbcAliasSnapshot;
 import org.compass.gps.device.jdbc.snapshot.JdbcSnapshot;
@@ -68,6 +69,13 @@ import org.compass.gps.device.jdbc.snapshot.JdbcSnapshot;
  * The <code>autoDetectVersionColumnSqlType</code> setting (which defauls to
  * <code>true</code>) will automatically set the version column jdbc type for
  * mappings that support versioning.
+ * <p>
+ * During mirroring, changed rows are reported to the
+ * {@link org.compass.gps.device.jdbc.snapshot.JdbcSnapshotEventListener} (and
+ * saved by an {@link org.compass.gps.device.jdbc.snapshot.IncrementalJdbcSnapshotPersister})
+ * in batches of <code>mirrorBatchSize</code> rows (defaults to <code>1000</code>)
+ * while the version query is being read, so the changes are never held in memory
+ * all at once.
  *
  * @author kimchy
  * @see org.compass.gps.device.jdbc.mapping.ResultSetToResourceMapping
@@ -81,6 +89,8 @@ public class ResultSetJdbcGpsDevice extends AbstractJdbcActiveMirrorGpsDevice {
 
     private boolean autoDetectVersionColumnSqlType = true;
 
+    private int mirrorBatchSize = 1000;
+
     protected JdbcSnapshot getJdbcSnapshot() {
         return this.snapshot;
     }
@@ -309,9 +319,8 @@ public class ResultSetJdbcGpsDevice extends AbstractJdbcActiveMirrorGpsDevice {
                     continue;
                 }
                 JdbcAliasSnapshot newAliasSnapshot = new JdbcAliasSnapshot(mapping.getAlias());
-                ArrayList createdRows = new ArrayList();
-                ArrayList updatedRows = new ArrayList();
-                ArrayList deletedRows = new ArrayList();
+                ArrayList<JdbcAliasRowSnapshot> createdRows = new ArrayList<JdbcAliasRowSnapshot>();
+                ArrayList<JdbcAliasRowSnapshot> updatedRows = new ArrayList<JdbcAliasRowSnapshot>();
                 if (log.isDebugEnabled()) {
                     log.debug(buildMessage("Executing version query [" + mapping.getVersionQuery() + "]"));
                 }
@@ -351,27 +360,40 @@ public class ResultSetJdbcGpsDevice extends AbstractJdbcActiveMirrorGpsDevice {
                         createdRows.add(newRowSnapshot);
                     } else if (oldRowSnapshot.isOlderThan(newRowSnapshot)) {
                         updatedRows.add(newRowSnapshot);
+                    } else {
+                        // unchanged, reuse the old row so only changed rows are held twice in memory
+                        newRowSnapshot = oldRowSnapshot;
                     }
 
                     newAliasSnapshot.putRow(newRowSnapshot);
+
+                    if (createdRows.size() + updatedRows.size() >= mirrorBatchSize) {
+                        dirtySnapshot = true;
+                        mirrorCreatedAndUpdated(connection, mapping, createdRows, updatedRows);
+                        createdRows = new ArrayList<JdbcAliasRowSnapshot>();
+                        updatedRows = new ArrayList<JdbcAliasRowSnapshot>();
+                    }
+                }
+                if (!createdRows.isEmpty() || !updatedRows.isEmpty()) {
+                    dirtySnapshot = true;
+                    mirrorCreatedAndUpdated(connection, mapping, createdRows, updatedRows);
                 }
+                ArrayList<JdbcAliasRowSnapshot> deletedRows = new ArrayList<JdbcAliasRowSnapshot>();
                 for (Iterator oldRowIt = oldAliasSnapshot.rowSnapshotIt(); oldRowIt.hasNext();) {
                     JdbcAliasRowSnapshot tmpRow = (JdbcAliasRowSnapshot) oldRowIt.next();
                     // deleted row
                     if (newAliasSnapshot.getRow(tmpRow) == null) {
                         deletedRows.add(tmpRow);
+                        if (deletedRows.size() >= mirrorBatchSize) {
+                            dirtySnapshot = true;
+                            mirrorDeleted(connection, mapping, deletedRows);
+                            deletedRows = new ArrayList<JdbcAliasRowSnapshot>();
+                        }
                     }
                 }
-                if (!createdRows.isEmpty() || !updatedRows.isEmpty()) {
-                    dirtySnapshot = true;
-                    getSnapshotEventListener().onCreateAndUpdate(
-                            new CreateAndUpdateSnapshotEvent(connection, dialect, mapping, createdRows, updatedRows,
-                                    compassGps));
-                }
                 if (!deletedRows.isEmpty()) {
                     dirtySnapshot = true;
-                    getSnapshotEventListener().onDelete(
-                            new DeleteSnapshotEvent(connection, dialect, mapping, deletedRows, compassGps));
+                    mirrorDeleted(connection, mapping, deletedRows);
                 }
                 snapshot.putAliasSnapshot(newAliasSnapshot);
             }
@@ -383,7 +405,35 @@ public class ResultSetJdbcGpsDevice extends AbstractJdbcActiveMirrorGpsDevice {
             JdbcUtils.closeConnection(connection);
         }
         if (isSaveSnapshotAfterMirror() && dirtySnapshot) {
-            getSnapshotPersister().save(snapshot);
+            if (getSnapshotPersister() instanceof IncrementalJdbcSnapshotPersister) {
+                ((IncrementalJdbcSnapshotPersister) getSnapshotPersister()).commitChanges(snapshot);
+            } else {
+                getSnapshotPersister().save(snapshot);
+            }
+        }
+    }
+
+    private void mirrorCreatedAndUpdated(Connection connection, ResultSetToResourceMapping mapping,
+                                         List<JdbcAliasRowSnapshot> createdRows, List<JdbcAliasRowSnapshot> updatedRows)
+            throws JdbcGpsDeviceException {
+        getSnapshotEventListener().onCreateAndUpdate(
+                new CreateAndUpdateSnapshotEvent(connection, dialect, mapping, createdRows, updatedRows, compassGps));
+        if (isSaveSnapshotAfterMirror() && getSnapshotPersister() instanceof IncrementalJdbcSnapshotPersister) {
+            ArrayList<JdbcAliasRowSnapshot> changedRows =
+                    new ArrayList<JdbcAliasRowSnapshot>(createdRows.size() + updatedRows.size());
+            changedRows.addAll(createdRows);
+            changedRows.addAll(updatedRows);
+            ((IncrementalJdbcSnapshotPersister) getSnapshotPersister()).saveChanges(mapping.getAlias(), changedRows,
+                    new ArrayList<JdbcAliasRowSnapshot>());
+        }
+    }
+
+    private void mirrorDeleted(Connection connection, ResultSetToResourceMapping mapping,
+                               List<JdbcAliasRowSnapshot> deletedRows) throws JdbcGpsDeviceException {
+        getSnapshotEventListener().onDelete(new DeleteSnapshotEvent(connection, dialect, mapping, deletedRows, compassGps));
+        if (isSaveSnapshotAfterMirror() && getSnapshotPersister() instanceof IncrementalJdbcSnapshotPersister) {
+            ((IncrementalJdbcSnapshotPersister) getSnapshotPersister()).saveChanges(mapping.getAlias(),
+                    new ArrayList<JdbcAliasRowSnapshot>(), deletedRows);
         }
     }
 
@@ -416,4 +466,19 @@ public class ResultSetJdbcGpsDevice extends AbstractJdbcActiveMirrorGpsDevice {
     public void setAutoDetectVersionColumnSqlType(boolean autoDetectVersionColumnSqlType) {
         this.autoDetectVersionColumnSqlType = autoDetectVersionColumnSqlType;
     }
+
+    /**
+     * The number of changed rows reported (and saved) in one batch while mirroring.
+     */
+    public int getMirrorBatchSize() {
+        return mirrorBatchSize;
+    }
+
+    /**
+     * Sets the number of changed rows reported (and saved) in one batch while
+     * mirroring. Defaults to <code>1000</code>.
+     */
+    public void setMirrorBatchSize(int mirrorBatchSize) {
+        this.mirrorBatchSize = mirrorBatchSize;
+    }
 }
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.jdbc.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.gps.device.jdbc.JdbcGpsDeviceException;
+
+/**
+ * A FS (File System) based snapshot persister using a compact binary encoding
+ * instead of Java serialization, and supporting incremental saves.
+ * <p>
+ * The full snapshot is stored in the file set using {@link #setPath(String)}.
+ * Each row is written as its id values followed by its version values (encoded
+ * as variable length longs), without any of the class and object graph
+ * information Java serialization writes.
+ * <p>
+ * Changes made during a mirror operation (see {@link #saveChanges(String, java.util.List, java.util.List)})
+ * are appended to a change log file (<code>path</code> with a <code>.log</code>
+ * suffix) instead of rewriting the whole snapshot. The change log is replayed
+ * on top of the snapshot file when loading, and is folded back into the
+ * snapshot file (compacted) once it grows beyond the snapshot file size
+ * multiplied by the <code>compactionFactor</code> (defaults to <code>1</code>).
+ * <p>
+ * Full saves are written and synced to a temporary file which is then renamed
+ * over the snapshot file, so a failure while saving never leaves a partially
+ * written snapshot behind. The snapshot file ends with a CRC32 checksum of its
+ * content, and each change log entry carries its own checksum. Both are
+ * verified when loading, failing the load on corrupted data. Snapshot files
+ * saved by {@link org.compass.gps.device.jdbc.snapshot.FSJdbcSnapshotPersister}
+ * are detected and loaded as well, and will be converted to the compact format
+ * on the next save.
+ *
+ * @author kimchy
+ */
+public class CompactFSJdbcSnapshotPersister implements IncrementalJdbcSnapshotPersister {
+
+    private static final Log log = LogFactory.getLog(CompactFSJdbcSnapshotPersister.class);
+
+    private static final int MAGIC = 0x434A534E;
+
+    private static final int LOG_MAGIC = 0x434A534C;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+
+    private static final byte OP_PUT = 1;
+
+    private static final byte OP_DELETE = 2;
+
+    private String path;
+
+    private float compactionFactor = 1;
+
+    public CompactFSJdbcSnapshotPersister() {
+
+    }
+
+    public CompactFSJdbcSnapshotPersister(String path) {
+        this.path = path;
+    }
+
+    public JdbcSnapshot load() throws JdbcGpsDeviceException {
+        File file = new File(path);
+        File tempFile = getTempFile();
+        if (!file.exists() && tempFile.exists()) {
+            // we failed between removing the old snapshot and renaming the new one
+            tempFile.renameTo(file);
+        }
+        if (!file.exists()) {
+            if (log.isDebugEnabled()) {
+                log.debug("No snapshot data found at [" + path + "], creating a new one");
+            }
+            getLogFile().delete();
+            return new JdbcSnapshot();
+        }
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Snapshot data found at [" + path + "], loading [" + file.length() + "bytes]");
+            }
+            JdbcSnapshot snapshot = loadSnapshot(file);
+            replayLog(snapshot);
+            return snapshot;
+        } catch (Exception e) {
+            throw new JdbcGpsDeviceException("Failed to load jdbc snapshot", e);
+        }
+    }
+
+    public void save(JdbcSnapshot snapshot) throws JdbcGpsDeviceException {
+        File file = new File(path);
+        File tempFile = getTempFile();
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tempFile);
+            try {
+                CheckedOutputStream checkedOut = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+                DataOutputStream out = new DataOutputStream(checkedOut);
+                writeSnapshot(out, snapshot);
+                out.writeLong(checkedOut.getChecksum().getValue());
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                fileOut.close();
+            }
+            replaceFile(tempFile, file);
+            getLogFile().delete();
+            if (log.isDebugEnabled()) {
+                log.debug("Saved snapshot data to [" + path + "] size [" + file.length() + "bytes]");
+            }
+        } catch (IOException e) {
+            throw new JdbcGpsDeviceException("Failed to save jdbc snapshot", e);
+        }
+    }
+
+    public void saveChanges(String alias, List<JdbcAliasRowSnapshot> changedRows,
+                            List<JdbcAliasRowSnapshot> deletedRows) throws JdbcGpsDeviceException {
+        if (!new File(path).exists()) {
+            // no snapshot to apply the changes to, a full save will be made on commit
+            return;
+        }
+        File logFile = getLogFile();
+        try {
+            boolean newLog = logFile.length() == 0;
+            FileOutputStream fileOut = new FileOutputStream(logFile, true);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+                if (newLog) {
+                    out.writeInt(LOG_MAGIC);
+                    out.writeByte(FORMAT_VERSION);
+                }
+                ByteArrayOutputStream entry = new ByteArrayOutputStream();
+                CRC32 crc = new CRC32();
+                for (JdbcAliasRowSnapshot row : changedRows) {
+                    writeLogEntry(out, entry, crc, OP_PUT, alias, row);
+                }
+                for (JdbcAliasRowSnapshot row : deletedRows) {
+                    writeLogEntry(out, entry, crc, OP_DELETE, alias, row);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                fileOut.close();
+            }
+        } catch (IOException e) {
+            throw new JdbcGpsDeviceException("Failed to save jdbc snapshot changes", e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Saved [" + changedRows.size() + "] changed and [" + deletedRows.size() + "] deleted rows for alias ["
+                    + alias + "] to [" + logFile.getPath() + "] size [" + logFile.length() + "bytes]");
+        }
+    }
+
+    public void commitChanges(JdbcSnapshot snapshot) throws JdbcGpsDeviceException {
+        File file = new File(path);
+        if (!file.exists()) {
+            save(snapshot);
+            return;
+        }
+        File logFile = getLogFile();
+        if (logFile.length() > file.length() * compactionFactor) {
+            if (log.isDebugEnabled()) {
+                log.debug("Compacting snapshot changes log [" + logFile.getPath() + "] into [" + path + "]");
+            }
+            save(snapshot);
+        }
+    }
+
+    private JdbcSnapshot loadSnapshot(File file) throws IOException, ClassNotFoundException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            DataInputStream in = new DataInputStream(is);
+            is.mark(2);
+            if (in.readShort() == SERIALIZATION_MAGIC) {
+                is.reset();
+                if (log.isDebugEnabled()) {
+                    log.debug("Snapshot data at [" + path + "] is serialized, loading it using serialization");
+                }
+                return (JdbcSnapshot) new ObjectInputStream(is).readObject();
+            }
+            is.reset();
+            CheckedInputStream checkedIn = new CheckedInputStream(is, new CRC32());
+            JdbcSnapshot snapshot = readSnapshot(new DataInputStream(checkedIn));
+            long checksum = checkedIn.getChecksum().getValue();
+            if (in.readLong() != checksum) {
+                throw new IOException("Checksum mismatch for snapshot data at [" + path + "], the file is corrupted");
+            }
+            return snapshot;
+        } finally {
+            is.close();
+        }
+    }
+
+    private void replayLog(JdbcSnapshot snapshot) throws IOException {
+        File logFile = getLogFile();
+        if (!logFile.exists()) {
+            return;
+        }
+        int count = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+        try {
+            int magic;
+            int formatVersion;
+            try {
+                magic = in.readInt();
+                formatVersion = in.readByte();
+            } catch (EOFException e) {
+                log.warn("Snapshot changes log [" + logFile.getPath() + "] has a partial header, ignoring it");
+                return;
+            }
+            if (magic != LOG_MAGIC) {
+                throw new IOException("Snapshot changes log [" + logFile.getPath() + "] is not a compact snapshot changes log");
+            }
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported compact snapshot changes log format version [" + formatVersion + "]");
+            }
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > logFile.length()) {
+                    throw new IOException("Invalid entry length [" + length + "] in snapshot changes log [" + logFile.getPath() + "]");
+                }
+                byte[] entry = new byte[length];
+                long checksum;
+                try {
+                    in.readFully(entry);
+                    checksum = in.readLong();
+                } catch (EOFException e) {
+                    log.warn("Snapshot changes log [" + logFile.getPath() + "] ends with a partial entry, ignoring it");
+                    break;
+                }
+                crc.reset();
+                crc.update(entry, 0, length);
+                if (crc.getValue() != checksum) {
+                    throw new IOException("Checksum mismatch for entry [" + count + "] in snapshot changes log [" + logFile.getPath() + "]");
+                }
+                DataInputStream entryIn = new DataInputStream(new ByteArrayInputStream(entry));
+                byte op = entryIn.readByte();
+                String alias = entryIn.readUTF();
+                JdbcAliasRowSnapshot row = readRow(entryIn);
+                JdbcAliasSnapshot aliasSnapshot = snapshot.getAliasSnapshot(alias);
+                if (aliasSnapshot == null) {
+                    aliasSnapshot = new JdbcAliasSnapshot(alias);
+                    snapshot.putAliasSnapshot(aliasSnapshot);
+                }
+                if (op == OP_PUT) {
+                    aliasSnapshot.putRow(row);
+                } else if (op == OP_DELETE) {
+                    aliasSnapshot.removeRow(row);
+                } else {
+                    throw new IOException("Unknown operation [" + op + "] in snapshot changes log [" + logFile.getPath() + "]");
+                }
+                count++;
+            }
+        } finally {
+            in.close();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Replayed [" + count + "] changes from [" + logFile.getPath() + "]");
+        }
+    }
+
+    private static void writeLogEntry(DataOutput out, ByteArrayOutputStream entry, CRC32 crc, byte op, String alias,
+                                      JdbcAliasRowSnapshot row) throws IOException {
+        entry.reset();
+        DataOutputStream entryOut = new DataOutputStream(entry);
+        entryOut.writeByte(op);
+        entryOut.writeUTF(alias);
+        writeRow(entryOut, row);
+        entryOut.flush();
+        byte[] bytes = entry.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeLong(crc.getValue());
+    }
+
+    private void writeSnapshot(DataOutput out, JdbcSnapshot snapshot) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        int aliasCount = 0;
+        for (Iterator<JdbcAliasSnapshot> it = snapshot.aliasSnapshotIt(); it.hasNext(); it.next()) {
+            aliasCount++;
+        }
+        writeVInt(out, aliasCount);
+        for (Iterator<JdbcAliasSnapshot> it = snapshot.aliasSnapshotIt(); it.hasNext();) {
+            JdbcAliasSnapshot aliasSnapshot = it.next();
+            out.writeUTF(aliasSnapshot.getAlias());
+            writeVInt(out, aliasSnapshot.getRowCount());
+            for (Iterator<JdbcAliasRowSnapshot> rowIt = aliasSnapshot.rowSnapshotIt(); rowIt.hasNext();) {
+                writeRow(out, rowIt.next());
+            }
+        }
+    }
+
+    private JdbcSnapshot readSnapshot(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Snapshot data at [" + path + "] is not a compact snapshot");
+        }
+        int formatVersion = in.readByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported compact snapshot format version [" + formatVersion + "]");
+        }
+        JdbcSnapshot snapshot = new JdbcSnapshot();
+        int aliasCount = readVInt(in);
+        for (int i = 0; i < aliasCount; i++) {
+            JdbcAliasSnapshot aliasSnapshot = new JdbcAliasSnapshot(in.readUTF());
+            int rowCount = readVInt(in);
+            for (int j = 0; j < rowCount; j++) {
+                aliasSnapshot.putRow(readRow(in));
+            }
+            snapshot.putAliasSnapshot(aliasSnapshot);
+        }
+        return snapshot;
+    }
+
+    private static void writeRow(DataOutput out, JdbcAliasRowSnapshot row) throws IOException {
+        writeVInt(out, row.getIdCount());
+        for (int i = 0; i < row.getIdCount(); i++) {
+            out.writeUTF(row.getId(i));
+        }
+        writeVInt(out, row.getVersionCount());
+        for (int i = 0; i < row.getVersionCount(); i++) {
+            writeVLong(out, row.getVersion(i));
+        }
+    }
+
+    private static JdbcAliasRowSnapshot readRow(DataInput in) throws IOException {
+        JdbcAliasRowSnapshot row = new JdbcAliasRowSnapshot();
+        int idCount = readVInt(in);
+        for (int i = 0; i < idCount; i++) {
+            row.addIdValue(in.readUTF());
+        }
+        int versionCount = readVInt(in);
+        for (int i = 0; i < versionCount; i++) {
+            row.addVersionValue(readVLong(in));
+        }
+        return row;
+    }
+
+    private static void writeVInt(DataOutput out, int value) throws IOException {
+        writeVLong(out, value);
+    }
+
+    private static int readVInt(DataInput in) throws IOException {
+        return (int) readVLong(in);
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length long, so small (and small negative)
+     * values take a single byte.
+     */
+    private static void writeVLong(DataOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static long readVLong(DataInput in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed variable length long in snapshot data");
+    }
+
+    /**
+     * Renames the temp file over the snapshot file, which atomically replaces it
+     * on POSIX file systems. File systems that do not allow renaming over an
+     * existing file fall back to deleting the snapshot file first, {@link #load()}
+     * recovers the temp file if a failure happens in between.
+     */
+    private static void replaceFile(File tempFile, File file) throws IOException {
+        if (tempFile.renameTo(file)) {
+            return;
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Failed to delete old snapshot file [" + file.getAbsolutePath() + "]");
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Failed to rename [" + tempFile.getAbsolutePath() + "] to [" + file.getAbsolutePath() + "]");
+        }
+    }
+
+    private File getTempFile() {
+        return new File(path + ".tmp");
+    }
+
+    private File getLogFile() {
+        return new File(path + ".log");
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the path to the snapshot file. The changes log is stored next to it
+     * with a <code>.log</code> suffix.
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public float getCompactionFactor() {
+        return compactionFactor;
+    }
+
+    /**
+     * Sets the ratio between the changes log size and the snapshot file size
+     * above which the changes log is compacted into the snapshot file. Defaults
+     * to <code>1</code>.
+     */
+    public void setCompactionFactor(float compactionFactor) {
+        this.compactionFactor = compactionFactor;
+    }
+}
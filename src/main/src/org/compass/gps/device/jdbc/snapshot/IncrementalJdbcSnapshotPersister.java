@@ -0,0 +1,58 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.jdbc.snapshot;
+
+import java.util.List;
+
+import org.compass.gps.device.jdbc.JdbcGpsDeviceException;
+
+/**
+ * A {@link org.compass.gps.device.jdbc.snapshot.JdbcSnapshotPersister} that can
+ * persist only the rows that changed during a mirror operation instead of
+ * saving the whole {@link org.compass.gps.device.jdbc.snapshot.JdbcSnapshot}.
+ * <p>
+ * When the device is configured to save the snapshot after each mirror
+ * operation, it will call {@link #saveChanges(String, java.util.List, java.util.List)}
+ * for each batch of changed rows as they are detected, and
+ * {@link #commitChanges(JdbcSnapshot)} once the mirror operation is done.
+ *
+ * @author kimchy
+ * @see org.compass.gps.device.jdbc.snapshot.CompactFSJdbcSnapshotPersister
+ */
+public interface IncrementalJdbcSnapshotPersister extends JdbcSnapshotPersister {
+
+    /**
+     * Saves a batch of changes of a single alias to the store. Might be called
+     * several times for the same alias during a single mirror operation.
+     *
+     * @param alias       The alias the changes were made to
+     * @param changedRows The created and updated rows
+     * @param deletedRows The deleted rows
+     * @throws JdbcGpsDeviceException
+     */
+    void saveChanges(String alias, List<JdbcAliasRowSnapshot> changedRows,
+                     List<JdbcAliasRowSnapshot> deletedRows) throws JdbcGpsDeviceException;
+
+    /**
+     * Called once the mirror operation saved all its changes, allowing the
+     * persister to fold the changes into a full save if needed.
+     *
+     * @param snapshot The full snapshot, already updated with all the changes
+     * @throws JdbcGpsDeviceException
+     */
+    void commitChanges(JdbcSnapshot snapshot) throws JdbcGpsDeviceException;
+}
@@ -16,8 +16,13 @@
 
 package org.compass.gps.device.jdbc.snapshot;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -29,6 +34,12 @@ import java.util.List;
  * <p>
  * A utility method {@link #isOlderThan(JdbcAliasRowSnapshot)} is provides to
  * compare it with other row snapshots.
+ * <p>
+ * The ids and versions are kept internally as plain arrays (rows usually have a
+ * single id and a single version) in order to reduce the memory footprint of
+ * large snapshots. The arrays grow by doubling their capacity, so adding values
+ * is amortized constant time. The serialized form is kept the same as the list based one
+ * so snapshots saved by previous versions can still be loaded.
  * 
  * @author kimchy
  */
@@ -36,25 +47,71 @@ public class JdbcAliasRowSnapshot implements Serializable {
 
     private static final long serialVersionUID = 4300559727598252558L;
 
-    private ArrayList<String> ids = new ArrayList<String>();
+    private static final String[] EMPTY_IDS = new String[0];
+
+    private static final long[] EMPTY_VERSIONS = new long[0];
+
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("ids", ArrayList.class),
+            new ObjectStreamField("versions", ArrayList.class)
+    };
+
+    private transient String[] ids = EMPTY_IDS;
 
-    private ArrayList<Long> versions = new ArrayList<Long>();
+    private transient int idCount;
+
+    private transient long[] versions = EMPTY_VERSIONS;
+
+    private transient int versionCount;
 
     public void addIdValue(String idValue) {
-        ids.add(idValue);
+        if (idCount == ids.length) {
+            String[] newIds = new String[Math.max(1, ids.length << 1)];
+            System.arraycopy(ids, 0, newIds, 0, idCount);
+            ids = newIds;
+        }
+        ids[idCount++] = idValue;
     }
 
     public List<String> getIds() {
-        return ids;
+        return Arrays.asList(ids).subList(0, idCount);
     }
 
+    /**
+     * Adds a version value. A <code>null</code> version is stored as <code>0</code>.
+     */
     public void addVersionValue(Long versionValue) {
-        versions.add(versionValue);
+        addVersionValue(versionValue == null ? 0 : versionValue.longValue());
+    }
+
+    public void addVersionValue(long versionValue) {
+        if (versionCount == versions.length) {
+            long[] newVersions = new long[Math.max(1, versions.length << 1)];
+            System.arraycopy(versions, 0, newVersions, 0, versionCount);
+            versions = newVersions;
+        }
+        versions[versionCount++] = versionValue;
+    }
+
+    public int getIdCount() {
+        return idCount;
+    }
+
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    public int getVersionCount() {
+        return versionCount;
+    }
+
+    public long getVersion(int index) {
+        return versions[index];
     }
 
     public boolean isOlderThan(JdbcAliasRowSnapshot rowSnapshot) {
-        for (int i = 0; i < versions.size(); i++) {
-            if ((versions.get(i)).compareTo(rowSnapshot.versions.get(i)) < 0) {
+        for (int i = 0; i < versionCount; i++) {
+            if (versions[i] < rowSnapshot.versions[i]) {
                 return true;
             }
         }
@@ -63,14 +120,14 @@ public class JdbcAliasRowSnapshot implements Serializable {
 
     public boolean equals(Object other) {
         JdbcAliasRowSnapshot otherRow = (JdbcAliasRowSnapshot) other;
-        if (otherRow.ids.size() == 1) {
-            return ids.get(0).equals(otherRow.ids.get(0));
+        if (otherRow.idCount == 1) {
+            return ids[0].equals(otherRow.ids[0]);
         } else {
-            if (ids.size() != otherRow.ids.size()) {
+            if (idCount != otherRow.idCount) {
                 return false;
             }
-            for (int i = 0; i < ids.size(); i++) {
-                if (!ids.get(i).equals(otherRow.ids.get(i))) {
+            for (int i = 0; i < idCount; i++) {
+                if (!ids[i].equals(otherRow.ids[i])) {
                     return false;
                 }
             }
@@ -80,10 +137,10 @@ public class JdbcAliasRowSnapshot implements Serializable {
 
     public int hashCode() {
         int result;
-        result = ids.get(0).hashCode();
-        if (ids.size() > 1) {
-            for (int i = 1; i < ids.size(); i++) {
-                result = 7 * result + ids.get(i).hashCode();
+        result = ids[0].hashCode();
+        if (idCount > 1) {
+            for (int i = 1; i < idCount; i++) {
+                result = 7 * result + ids[i].hashCode();
             }
         }
         return result;
@@ -92,16 +149,45 @@ public class JdbcAliasRowSnapshot implements Serializable {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Ids [");
-        for (String id : ids) {
-            sb.append(id);
+        for (int i = 0; i < idCount; i++) {
+            sb.append(ids[i]);
             sb.append(",");
         }
         sb.append("] Versions [");
-        for (Long version : versions) {
-            sb.append(version);
+        for (int i = 0; i < versionCount; i++) {
+            sb.append(versions[i]);
             sb.append(",");
         }
         sb.append("]");
         return sb.toString();
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ArrayList<Long> versionsList = new ArrayList<Long>(versionCount);
+        for (int i = 0; i < versionCount; i++) {
+            versionsList.add(versions[i]);
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("ids", new ArrayList<String>(getIds()));
+        fields.put("versions", versionsList);
+        out.writeFields();
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        List<String> idsList = (List<String>) fields.get("ids", null);
+        List<Long> versionsList = (List<Long>) fields.get("versions", null);
+        ids = idsList == null ? EMPTY_IDS : idsList.toArray(new String[idsList.size()]);
+        idCount = ids.length;
+        versions = EMPTY_VERSIONS;
+        if (versionsList != null) {
+            versions = new long[versionsList.size()];
+            for (int i = 0; i < versions.length; i++) {
+                Long version = versionsList.get(i);
+                versions[i] = version == null ? 0 : version;
+            }
+        }
+        versionCount = versions.length;
+    }
 }
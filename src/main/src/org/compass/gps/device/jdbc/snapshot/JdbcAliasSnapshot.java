@@ -55,6 +55,14 @@ public class JdbcAliasSnapshot implements Serializable {
         return this.rowEntries.get(rowSnapshot);
     }
 
+    public JdbcAliasRowSnapshot removeRow(JdbcAliasRowSnapshot rowSnapshot) {
+        return this.rowEntries.remove(rowSnapshot);
+    }
+
+    public int getRowCount() {
+        return this.rowEntries.size();
+    }
+
     public Iterator<JdbcAliasRowSnapshot> rowSnapshotIt() {
         return this.rowEntries.values().iterator();
     }
@@ -18,6 +18,7 @@ package org.compass.gps.device.jdbc.snapshot;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Iterator;
 
 /**
  * A system level (collection of aliases - <code>ResultSet</code>s)
@@ -44,6 +45,10 @@ public class JdbcSnapshot implements Serializable {
         return aliasSnapshots.remove(alias);
     }
 
+    public Iterator<JdbcAliasSnapshot> aliasSnapshotIt() {
+        return aliasSnapshots.values().iterator();
+    }
+
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Snapshot ");
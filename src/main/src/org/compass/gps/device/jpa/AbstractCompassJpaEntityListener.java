@@ -31,6 +31,8 @@ import org.compass.core.mapping.Cascade;
 import org.compass.core.mapping.ResourceMapping;
 import org.compass.core.spi.InternalCompass;
 import org.compass.core.util.ClassUtils;
+import org.compass.gps.device.support.mirror.BatchedMirrorQueue;
+import org.compass.gps.device.support.mirror.MirrorOperation;
 
 /**
  * An abstract support class for event lifecycle JPA spec support. Requires the <code>Compass<code>
@@ -38,6 +40,9 @@ import org.compass.core.util.ClassUtils;
  * is the least prefereable way to use lifecycle event listerens, please see
  * {@link JpaGpsDevice} and {@link org.compass.gps.device.jpa.lifecycle.JpaEntityLifecycleInjector}.
  *
+ * <p>If {@link #getMirrorQueue()} returns a mirror queue, the operations are enqueued and applied in
+ * batches by the queue background thread instead of within their own Compass transaction.
+ *
  * @author kimchy
  */
 public abstract class AbstractCompassJpaEntityListener {
@@ -60,6 +65,14 @@ public abstract class AbstractCompassJpaEntityListener {
         return false;
     }
 
+    /**
+     * Returns the mirror queue the operations will be enqueued to. Defaults to <code>null</code>,
+     * which means each operation is applied within its own Compass transaction.
+     */
+    protected BatchedMirrorQueue getMirrorQueue() {
+        return null;
+    }
+
     protected boolean hasMappingForEntity(Class clazz, Cascade cascade) {
         ResourceMapping resourceMapping = ((InternalCompass) getCompass()).getMapping().getMappingByClass(clazz);
         if (resourceMapping == null) {
@@ -101,6 +114,12 @@ public abstract class AbstractCompassJpaEntityListener {
             return;
         }
 
+        BatchedMirrorQueue mirrorQueue = getMirrorQueue();
+        if (mirrorQueue != null) {
+            mirrorQueue.enqueue(new MirrorOperation(MirrorOperation.Type.CREATE, MirrorOperation.identityKey(entity), entity));
+            return;
+        }
+
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Creating [" + entity + "]");
@@ -127,6 +146,12 @@ public abstract class AbstractCompassJpaEntityListener {
             return;
         }
 
+        BatchedMirrorQueue mirrorQueue = getMirrorQueue();
+        if (mirrorQueue != null) {
+            mirrorQueue.enqueue(new MirrorOperation(MirrorOperation.Type.SAVE, MirrorOperation.identityKey(entity), entity));
+            return;
+        }
+
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Updating [" + entity + "]");
@@ -153,6 +178,12 @@ public abstract class AbstractCompassJpaEntityListener {
             return;
         }
 
+        BatchedMirrorQueue mirrorQueue = getMirrorQueue();
+        if (mirrorQueue != null) {
+            mirrorQueue.enqueue(new MirrorOperation(MirrorOperation.Type.DELETE, MirrorOperation.identityKey(entity), entity));
+            return;
+        }
+
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Removing [" + entity + "]");
@@ -17,6 +17,7 @@
 package org.compass.gps.device.jpa;
 
 import org.compass.core.Compass;
+import org.compass.gps.device.support.mirror.BatchedMirrorQueue;
 import org.compass.gps.spi.CompassGpsInterfaceDevice;
 
 /**
@@ -38,4 +39,8 @@ public abstract class AbstractDeviceJpaEntityListener extends AbstractCompassJpa
     protected boolean disable() {
         return !getDevice().shouldMirrorDataChanges() || getDevice().isPerformingIndexOperation();
     }
+
+    protected BatchedMirrorQueue getMirrorQueue() {
+        return getDevice().getMirrorQueue();
+    }
 }
@@ -34,6 +34,7 @@ import org.compass.gps.device.jpa.lifecycle.JpaEntityLifecycleInjector;
 import org.compass.gps.device.jpa.lifecycle.JpaEntityLifecycleInjectorDetector;
 import org.compass.gps.device.jpa.queryprovider.DefaultJpaQueryProvider;
 import org.compass.gps.device.jpa.queryprovider.JpaQueryProvider;
+import org.compass.gps.device.support.mirror.BatchedMirrorQueue;
 import org.compass.gps.device.support.parallel.AbstractParallelGpsDevice;
 import org.compass.gps.device.support.parallel.IndexEntitiesIndexer;
 import org.compass.gps.device.support.parallel.IndexEntity;
@@ -78,6 +79,11 @@ import org.compass.gps.device.support.parallel.IndexEntity;
  * <p>Mirroring can be turned off using the {@link #setMirrorDataChanges(boolean)} to <code>false</code>.
  * It defaults to <code>true<code>.
  *
+ * <p>By default, each mirrored event is applied within its own Compass transaction on the thread that
+ * performed the JPA operation. Setting a {@link #setMirrorQueue(BatchedMirrorQueue)} will cause the
+ * events to be applied by a background thread in batches. When using the Hibernate lifecycle injector,
+ * the events of each transaction are collected and handed to the queue only once it commits.
+ *
  * <p>The device allows for {@link NativeJpaExtractor} to be set, for applications
  * that use a framework or by themself wrap the actual <code>EntityManagerFactory</code> implementation.
  *
@@ -132,6 +138,8 @@ public class JpaGpsDevice extends AbstractParallelGpsDevice implements PassiveMi
 
     private JpaIndexEntitiesIndexer entitiesIndexer;
 
+    private BatchedMirrorQueue mirrorQueue;
+
     protected void doStart() throws CompassGpsException {
         Assert.notNull(entityManagerFactory, buildMessage("Must set JPA EntityManagerFactory"));
         if (entityManagerWrapper == null) {
@@ -165,6 +173,10 @@ public class JpaGpsDevice extends AbstractParallelGpsDevice implements PassiveMi
             }
         }
 
+        if (mirrorDataChanges && mirrorQueue != null) {
+            mirrorQueue.start(compassGps.getMirrorCompass());
+        }
+
         injectLifecycle();
 
         if (entitiesIndexer == null) {
@@ -178,6 +190,9 @@ public class JpaGpsDevice extends AbstractParallelGpsDevice implements PassiveMi
 
     protected void doStop() throws CompassGpsException {
         removeLifecycle();
+        if (mirrorDataChanges && mirrorQueue != null) {
+            mirrorQueue.stop();
+        }
     }
 
     @Override
@@ -292,6 +307,23 @@ public class JpaGpsDevice extends AbstractParallelGpsDevice implements PassiveMi
         this.lifecycleInjector = lifecycleInjector;
     }
 
+    /**
+     * Returns the mirror queue used to apply mirrored events in batches, or <code>null</code> if
+     * each event is mirrored within its own Compass transaction.
+     */
+    public BatchedMirrorQueue getMirrorQueue() {
+        return mirrorQueue;
+    }
+
+    /**
+     * Sets a mirror queue that will be used to apply the mirrored events in batches using a background
+     * thread. The queue is started and stopped by the device. If not set (the default), each event is
+     * mirrored within its own Compass transaction.
+     */
+    public void setMirrorQueue(BatchedMirrorQueue mirrorQueue) {
+        this.mirrorQueue = mirrorQueue;
+    }
+
     /**
      * Sets a specific enteties locator, which is responsible for locating enteties
      * that need to be indexed. Not a required parameter, since will use the
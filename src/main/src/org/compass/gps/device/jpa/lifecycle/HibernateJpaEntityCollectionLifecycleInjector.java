@@ -20,8 +20,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import javax.persistence.EntityManagerFactory;
 
+import org.compass.core.mapping.Cascade;
 import org.compass.gps.device.jpa.JpaGpsDevice;
 import org.compass.gps.device.jpa.JpaGpsDeviceException;
+import org.compass.gps.device.support.mirror.MirrorOperation;
 import org.hibernate.ejb.HibernateEntityManagerFactory;
 import org.hibernate.engine.spi.EntityEntry;
 import org.hibernate.event.service.spi.EventListenerGroup;
@@ -74,6 +76,11 @@ public class HibernateJpaEntityCollectionLifecycleInjector extends HibernateJpaE
                 return;
             }
 
+            if (getMirrorQueue() != null) {
+                enqueueForMirror(event.getSession(), MirrorOperation.Type.SAVE, Cascade.SAVE,
+                        event.getAffectedOwnerEntityName(), id, entity);
+                return;
+            }
             postUpdate(entity);
         }
 
@@ -16,17 +16,26 @@
 
 package org.compass.gps.device.jpa.lifecycle;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import javax.persistence.EntityManagerFactory;
 
+import org.compass.core.mapping.Cascade;
 import org.compass.gps.device.hibernate.lifecycle.HibernateCollectionEventListener;
+import org.compass.gps.device.hibernate.lifecycle.HibernateEventListenerUtils;
 import org.compass.gps.device.jpa.AbstractDeviceJpaEntityListener;
 import org.compass.gps.device.jpa.JpaGpsDevice;
 import org.compass.gps.device.jpa.JpaGpsDeviceException;
+import org.compass.gps.device.support.mirror.MirrorOperation;
+import org.compass.gps.device.support.mirror.MirrorOperationBatch;
 import org.hibernate.ejb.HibernateEntityManagerFactory;
 import org.hibernate.event.service.spi.EventListenerGroup;
 import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
 import org.hibernate.event.spi.EventType;
 import org.hibernate.event.spi.PostCollectionRecreateEventListener;
 import org.hibernate.event.spi.PostCollectionRemoveEventListener;
@@ -46,6 +55,9 @@ import org.hibernate.internal.SessionFactoryImpl;
  * by Hibernate before committing (and up to Hibernate flushing logic). Also allows to be created
  * with setting the <code>registerPostCommitListeneres</code> to <code>true</code> which will cause
  * the insert/update/delete listeneres to be registered as post commit events.
+ *
+ * <p>If the device has a {@link org.compass.gps.device.support.mirror.BatchedMirrorQueue} set, the events
+ * of each Hibernate transaction are collected and handed to the queue once the transaction commits.
  * 
  * @author kimchy
  */
@@ -56,6 +68,8 @@ public class HibernateJpaEntityLifecycleInjector implements JpaEntityLifecycleIn
 
         private JpaGpsDevice device;
 
+        private Map<Object, MirrorOperationBatch> mirrorBatches = Collections.synchronizedMap(new IdentityHashMap<Object, MirrorOperationBatch>());
+
         public HibernateEventListener(JpaGpsDevice device) {
             this.device = device;
         }
@@ -65,16 +79,50 @@ public class HibernateJpaEntityLifecycleInjector implements JpaEntityLifecycleIn
         }
 
         public void onPostInsert(PostInsertEvent postInsertEvent) {
+            if (getMirrorQueue() != null) {
+                enqueueForMirror(postInsertEvent.getSession(), MirrorOperation.Type.CREATE, Cascade.CREATE,
+                        postInsertEvent.getPersister().getEntityName(), postInsertEvent.getId(), postInsertEvent.getEntity());
+                return;
+            }
             postPersist(postInsertEvent.getEntity());
         }
 
         public void onPostUpdate(PostUpdateEvent postUpdateEvent) {
+            if (getMirrorQueue() != null) {
+                enqueueForMirror(postUpdateEvent.getSession(), MirrorOperation.Type.SAVE, Cascade.SAVE,
+                        postUpdateEvent.getPersister().getEntityName(), postUpdateEvent.getId(), postUpdateEvent.getEntity());
+                return;
+            }
             postUpdate(postUpdateEvent.getEntity());
         }
 
         public void onPostDelete(PostDeleteEvent postDeleteEvent) {
+            if (getMirrorQueue() != null) {
+                enqueueForMirror(postDeleteEvent.getSession(), MirrorOperation.Type.DELETE, Cascade.DELETE,
+                        postDeleteEvent.getPersister().getEntityName(), postDeleteEvent.getId(), postDeleteEvent.getEntity());
+                return;
+            }
             postRemove(postDeleteEvent.getEntity());
         }
+
+        /**
+         * Adds the operation to the mirror batch of the current Hibernate transaction, which will be handed
+         * to the device mirror queue once the transaction commits.
+         */
+        protected void enqueueForMirror(EventSource eventSource, MirrorOperation.Type type, Cascade cascade,
+                                        String entityName, Serializable id, Object entity) {
+            if (disable()) {
+                return;
+            }
+            if (!hasMappingForEntity(entity.getClass(), cascade)) {
+                return;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Queueing " + type + " [" + entity + "]");
+            }
+            HibernateEventListenerUtils.enqueueForMirror(eventSource, mirrorBatches, getMirrorQueue(),
+                    new MirrorOperation(type, MirrorOperation.entityKey(entityName, id), entity));
+        }
     }
 
     protected final boolean registerPostCommitListeneres;
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.support.mirror;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.compass.core.Compass;
+import org.compass.core.CompassCallbackWithoutResult;
+import org.compass.core.CompassException;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTemplate;
+import org.compass.core.util.concurrent.NamedThreadFactory;
+import org.compass.gps.CompassGpsException;
+
+/**
+ * A bounded queue of mirror operations that are applied to the index by a background thread
+ * in batches, each batch within a single Compass transaction.
+ *
+ * <p>Mirroring devices (such as the Hibernate and JPA devices) can be configured with a mirror
+ * queue. In such a case, instead of executing a Compass transaction for each entity event on the
+ * database thread, the events of a database transaction are collected (and merged) using a
+ * {@link MirrorOperationBatch}, and handed to the queue once the database transaction commits.
+ * The background thread drains up to {@link #setBatchSize(int)} operations at a time, merges
+ * operations on the same entity, and applies them within a single Compass transaction. If a batch
+ * fails, its operations are retried each within its own transaction, and the ones that still fail
+ * are logged (and counted, see {@link #getFailedOperations()}).
+ *
+ * <p>The queue is bounded by {@link #setCapacity(int)}. When it is full, enqueuing blocks until space
+ * becomes available, slowing down producers to the rate the index can handle (a warning is logged every
+ * {@link #setOfferTimeout(long)} milliseconds spent waiting). Operations are never applied on the calling
+ * thread while older operations are still queued, so operations on the same entity are always applied in
+ * order. Operations enqueued while the queue is not running are applied on the calling thread. Starting
+ * and stopping the queue (which applies all the pending operations) excludes enqueuing, so no operation
+ * is lost or reordered by a concurrent stop.
+ *
+ * <p>Note, the operations are applied after the database transaction has completed, on a different
+ * thread, so mapped (searchable) associations of the mirrored entities must not rely on lazy loading.
+ *
+ * <p>The queue exposes metrics such as the current queue size ({@link #getQueueSize()}), the age of the
+ * oldest pending operation ({@link #getLag()}), and counters of enqueued, merged, applied and failed
+ * operations.
+ *
+ * @author kimchy
+ */
+public class BatchedMirrorQueue implements Runnable {
+
+    private static final Log log = LogFactory.getLog(BatchedMirrorQueue.class);
+
+    private int capacity = 10000;
+
+    private int batchSize = 500;
+
+    private long offerTimeout = 1000;
+
+    private CompassTemplate compassTemplate;
+
+    private BlockingQueue<MirrorOperation> queue;
+
+    private Thread thread;
+
+    private volatile boolean running;
+
+    // enqueuing holds the read lock, starting and stopping the write lock
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    private final Object flushMonitor = new Object();
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private final AtomicLong enqueuedOperations = new AtomicLong();
+
+    private final AtomicLong mergedOperations = new AtomicLong();
+
+    private final AtomicLong appliedOperations = new AtomicLong();
+
+    private final AtomicLong failedOperations = new AtomicLong();
+
+    private final AtomicLong callerRunsOperations = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile int lastBatchSize;
+
+    private volatile long lastBatchLag;
+
+    /**
+     * Starts the queue background thread, applying the operations using the given
+     * (mirror) <code>Compass</code> instance.
+     */
+    public synchronized void start(Compass compass) throws CompassGpsException {
+        runningLock.writeLock().lock();
+        try {
+            if (running) {
+                return;
+            }
+            if (capacity <= 0) {
+                throw new CompassGpsException("Mirror queue capacity must be greater than 0, is [" + capacity + "]");
+            }
+            if (batchSize <= 0) {
+                throw new CompassGpsException("Mirror queue batch size must be greater than 0, is [" + batchSize + "]");
+            }
+            this.compassTemplate = new CompassTemplate(compass);
+            this.queue = new LinkedBlockingQueue<MirrorOperation>(capacity);
+            this.running = true;
+            thread = new NamedThreadFactory("Compass Gps Mirror", true).newThread(this);
+            thread.start();
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Started mirror queue with capacity [" + capacity + "] and batch size [" + batchSize + "]");
+        }
+    }
+
+    /**
+     * Stops the queue, waiting for the background thread to apply all the pending operations.
+     * Enqueuing blocks until the pending operations have been applied.
+     */
+    public synchronized void stop() {
+        runningLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Stopped mirror queue, applied [" + appliedOperations.get() + "] operations in [" + batches.get()
+                    + "] batches, failed [" + failedOperations.get() + "]");
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Waits until all the operations enqueued so far have been applied, or the given timeout
+     * (in milliseconds) has elapsed. Returns <code>true</code> if there are no more pending operations.
+     */
+    public boolean flush(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (flushMonitor) {
+            while (pending.get() > 0) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0 || !running) {
+                    return pending.get() == 0;
+                }
+                try {
+                    flushMonitor.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return pending.get() == 0;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Enqueues a single operation.
+     */
+    public void enqueue(MirrorOperation operation) {
+        List<MirrorOperation> operations = new ArrayList<MirrorOperation>(1);
+        operations.add(operation);
+        enqueue(operations, 0);
+    }
+
+    /**
+     * Enqueues the given operations (usually, the merged operations of a single database transaction).
+     *
+     * @param operations The operations to enqueue
+     * @param merged     The number of operations that were already merged before calling this method
+     */
+    public void enqueue(Collection<MirrorOperation> operations, int merged) {
+        mergedOperations.addAndGet(merged);
+        if (operations.isEmpty()) {
+            return;
+        }
+        boolean interrupted = false;
+        runningLock.readLock().lock();
+        try {
+            if (!running) {
+                callerRunsOperations.addAndGet(operations.size());
+                apply(new ArrayList<MirrorOperation>(operations), false);
+                return;
+            }
+            for (MirrorOperation operation : operations) {
+                pending.incrementAndGet();
+                while (true) {
+                    try {
+                        if (queue.offer(operation, offerTimeout, TimeUnit.MILLISECONDS)) {
+                            break;
+                        }
+                        if (log.isWarnEnabled()) {
+                            log.warn("Mirror queue is full with [" + queue.size() + "] operations, waiting for space to enqueue "
+                                    + operation);
+                        }
+                    } catch (InterruptedException e) {
+                        // the database transaction is already committed, the operation must not be lost
+                        interrupted = true;
+                    }
+                }
+                enqueuedOperations.incrementAndGet();
+            }
+        } finally {
+            runningLock.readLock().unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void run() {
+        List<MirrorOperation> drained = new ArrayList<MirrorOperation>(batchSize);
+        while (running || !queue.isEmpty()) {
+            MirrorOperation first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            drained.add(first);
+            queue.drainTo(drained, batchSize - 1);
+            try {
+                Map<Object, MirrorOperation> operations = new LinkedHashMap<Object, MirrorOperation>();
+                int merged = 0;
+                for (MirrorOperation operation : drained) {
+                    merged += MirrorOperationBatch.merge(operations, operation);
+                }
+                mergedOperations.addAndGet(merged);
+                apply(new ArrayList<MirrorOperation>(operations.values()), true);
+            } catch (Throwable e) {
+                log.error("Unexpected failure while applying mirror operations", e);
+            } finally {
+                processed(drained.size());
+                drained.clear();
+            }
+        }
+    }
+
+    private void processed(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (flushMonitor) {
+                flushMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Applies the given operations, <code>batch</code> is <code>true</code> when called by the background
+     * thread (in which case the batch metrics are updated).
+     */
+    private void apply(final List<MirrorOperation> operations, boolean batch) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (compassTemplate == null) {
+            throw new CompassGpsException("Mirror queue must be started before mirroring operations");
+        }
+        long oldest = Long.MAX_VALUE;
+        for (MirrorOperation operation : operations) {
+            oldest = Math.min(oldest, operation.getTimestamp());
+        }
+        try {
+            compassTemplate.execute(new CompassCallbackWithoutResult() {
+                protected void doInCompassWithoutResult(CompassSession session) throws CompassException {
+                    for (MirrorOperation operation : operations) {
+                        apply(session, operation);
+                    }
+                }
+            });
+            appliedOperations.addAndGet(operations.size());
+        } catch (Exception e) {
+            if (operations.size() == 1) {
+                failedOperations.incrementAndGet();
+                log.error("Failed to mirror " + operations.get(0), e);
+            } else {
+                if (log.isWarnEnabled()) {
+                    log.warn("Failed to mirror a batch of [" + operations.size() + "] operations, applying them one by one", e);
+                }
+                for (final MirrorOperation operation : operations) {
+                    try {
+                        compassTemplate.execute(new CompassCallbackWithoutResult() {
+                            protected void doInCompassWithoutResult(CompassSession session) throws CompassException {
+                                apply(session, operation);
+                            }
+                        });
+                        appliedOperations.incrementAndGet();
+                    } catch (Exception e1) {
+                        failedOperations.incrementAndGet();
+                        log.error("Failed to mirror " + operation, e1);
+                    }
+                }
+            }
+        }
+        if (batch) {
+            batches.incrementAndGet();
+            lastBatchSize = operations.size();
+            lastBatchLag = System.currentTimeMillis() - oldest;
+        }
+    }
+
+    private void apply(CompassSession session, MirrorOperation operation) {
+        if (log.isTraceEnabled()) {
+            log.trace("Mirroring " + operation);
+        }
+        switch (operation.getType()) {
+            case CREATE:
+                session.create(operation.getEntity());
+                break;
+            case SAVE:
+                session.save(operation.getEntity());
+                break;
+            case DELETE:
+                session.delete(operation.getEntity());
+                break;
+        }
+    }
+
+    /**
+     * The maximum number of operations the queue can hold. Defaults to <code>10000</code>.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The maximum number of operations the queue can hold. Defaults to <code>10000</code>.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * The maximum number of operations applied within a single Compass transaction.
+     * Defaults to <code>500</code>.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The maximum number of operations applied within a single Compass transaction.
+     * Defaults to <code>500</code>.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The time (in milliseconds) to wait for space in a full queue before logging a warning and
+     * waiting again. Defaults to <code>1000</code>.
+     */
+    public long getOfferTimeout() {
+        return offerTimeout;
+    }
+
+    /**
+     * The time (in milliseconds) to wait for space in a full queue before logging a warning and
+     * waiting again. Defaults to <code>1000</code>.
+     */
+    public void setOfferTimeout(long offerTimeout) {
+        this.offerTimeout = offerTimeout;
+    }
+
+    /**
+     * Returns the number of operations waiting in the queue.
+     */
+    public int getQueueSize() {
+        BlockingQueue<MirrorOperation> queue = this.queue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Returns the time (in milliseconds) the oldest operation waiting in the queue was created,
+     * or <code>0</code> if the queue is empty.
+     */
+    public long getLag() {
+        BlockingQueue<MirrorOperation> queue = this.queue;
+        MirrorOperation head = queue == null ? null : queue.peek();
+        if (head == null) {
+            return 0;
+        }
+        return System.currentTimeMillis() - head.getTimestamp();
+    }
+
+    /**
+     * Returns the time (in milliseconds) between the creation of the oldest operation in the last
+     * applied batch and the time the batch was applied.
+     */
+    public long getLastBatchLag() {
+        return lastBatchLag;
+    }
+
+    /**
+     * Returns the number of operations applied in the last batch.
+     */
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /**
+     * Returns the number of batches applied.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Returns the number of operations that were added to the queue.
+     */
+    public long getEnqueuedOperations() {
+        return enqueuedOperations.get();
+    }
+
+    /**
+     * Returns the number of operations that were removed by merging them with other operations
+     * on the same entity.
+     */
+    public long getMergedOperations() {
+        return mergedOperations.get();
+    }
+
+    /**
+     * Returns the number of operations applied to the index.
+     */
+    public long getAppliedOperations() {
+        return appliedOperations.get();
+    }
+
+    /**
+     * Returns the number of operations that failed to be applied to the index.
+     */
+    public long getFailedOperations() {
+        return failedOperations.get();
+    }
+
+    /**
+     * Returns the number of operations that were applied on the calling thread since the queue was not running.
+     */
+    public long getCallerRunsOperations() {
+        return callerRunsOperations.get();
+    }
+}
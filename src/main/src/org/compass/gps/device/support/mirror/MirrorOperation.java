@@ -0,0 +1,162 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.support.mirror;
+
+import java.io.Serializable;
+
+/**
+ * A single mirror operation (create, save or delete) of an entity that is queued for
+ * later execution by the {@link BatchedMirrorQueue}.
+ *
+ * <p>Each operation has a key identifying the entity it applies to. Operations with the same
+ * key are merged (see {@link #merge(MirrorOperation)}) so that multiple changes of the same
+ * entity result in a single operation against the index. The key is either based on the entity
+ * name and its id ({@link #entityKey(String, java.io.Serializable)}) or, when the id is not
+ * known, on the identity of the entity instance ({@link #identityKey(Object)}).
+ *
+ * @author kimchy
+ */
+public class MirrorOperation {
+
+    public static enum Type {
+        CREATE,
+        SAVE,
+        DELETE
+    }
+
+    private final Type type;
+
+    private final Object key;
+
+    private final Object entity;
+
+    private final long timestamp;
+
+    public MirrorOperation(Type type, Object key, Object entity) {
+        this(type, key, entity, System.currentTimeMillis());
+    }
+
+    private MirrorOperation(Type type, Object key, Object entity, long timestamp) {
+        this.type = type;
+        this.key = key;
+        this.entity = entity;
+        this.timestamp = timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public Object getEntity() {
+        return entity;
+    }
+
+    /**
+     * The time (in milliseconds) the operation (or the first operation it was merged with)
+     * was created.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Merges a later operation on the same entity with this one. Returns the operation that
+     * represents both, or <code>null</code> if they cancel each other (an entity that was
+     * created and then deleted). The entity of the later operation is used since it holds
+     * the latest state.
+     */
+    public MirrorOperation merge(MirrorOperation next) {
+        Type mergedType;
+        if (type == Type.CREATE) {
+            if (next.type == Type.DELETE) {
+                return null;
+            }
+            mergedType = Type.CREATE;
+        } else if (type == Type.DELETE) {
+            mergedType = next.type == Type.DELETE ? Type.DELETE : Type.SAVE;
+        } else {
+            mergedType = next.type == Type.DELETE ? Type.DELETE : Type.SAVE;
+        }
+        return new MirrorOperation(mergedType, key, next.entity, timestamp);
+    }
+
+    public String toString() {
+        return type + " [" + entity + "]";
+    }
+
+    /**
+     * Creates a key based on the entity name and its id.
+     */
+    public static Object entityKey(String entityName, Serializable id) {
+        return new EntityKey(entityName, id);
+    }
+
+    /**
+     * Creates a key based on the identity of the entity instance.
+     */
+    public static Object identityKey(Object entity) {
+        return new IdentityKey(entity);
+    }
+
+    private static final class EntityKey {
+
+        private final String entityName;
+
+        private final Serializable id;
+
+        private EntityKey(String entityName, Serializable id) {
+            this.entityName = entityName;
+            this.id = id;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EntityKey)) {
+                return false;
+            }
+            EntityKey other = (EntityKey) o;
+            return entityName.equals(other.entityName) && id.equals(other.id);
+        }
+
+        public int hashCode() {
+            return 31 * entityName.hashCode() + id.hashCode();
+        }
+    }
+
+    private static final class IdentityKey {
+
+        private final Object entity;
+
+        private IdentityKey(Object entity) {
+            this.entity = entity;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).entity == entity;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(entity);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.support.mirror;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects mirror operations (usually of a single database transaction), merging operations
+ * that apply to the same entity. Once the transaction commits, the collected operations are
+ * handed to the {@link BatchedMirrorQueue} using {@link #enqueue()}.
+ *
+ * <p>Not thread safe.
+ *
+ * @author kimchy
+ */
+public class MirrorOperationBatch {
+
+    private final BatchedMirrorQueue mirrorQueue;
+
+    private final Map<Object, MirrorOperation> operations = new LinkedHashMap<Object, MirrorOperation>();
+
+    private int merged;
+
+    public MirrorOperationBatch(BatchedMirrorQueue mirrorQueue) {
+        this.mirrorQueue = mirrorQueue;
+    }
+
+    public void add(MirrorOperation operation) {
+        merged += merge(operations, operation);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Returns the (merged) operations collected so far.
+     */
+    public Collection<MirrorOperation> getOperations() {
+        return new ArrayList<MirrorOperation>(operations.values());
+    }
+
+    /**
+     * Hands the collected operations to the mirror queue.
+     */
+    public void enqueue() {
+        mirrorQueue.enqueue(getOperations(), merged);
+        operations.clear();
+        merged = 0;
+    }
+
+    /**
+     * Adds the operation to the given operations map (keyed by the operation key), merging
+     * it with a previous operation on the same entity. Returns the number of operations
+     * that were removed by the merge.
+     */
+    static int merge(Map<Object, MirrorOperation> operations, MirrorOperation operation) {
+        MirrorOperation previous = operations.get(operation.getKey());
+        if (previous == null) {
+            operations.put(operation.getKey(), operation);
+            return 0;
+        }
+        MirrorOperation mergedOperation = previous.merge(operation);
+        if (mergedOperation == null) {
+            operations.remove(operation.getKey());
+            return 2;
+        }
+        operations.put(operation.getKey(), mergedOperation);
+        return 1;
+    }
+}
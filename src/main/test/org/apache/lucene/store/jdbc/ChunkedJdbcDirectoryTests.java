@@ -0,0 +1,194 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.store.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.DirectoryTemplate;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.jdbc.datasource.DataSourceUtils;
+import org.apache.lucene.store.jdbc.support.JdbcTable;
+import org.apache.lucene.store.jdbc.support.JdbcTemplate;
+
+/**
+ * @author kimchy
+ */
+public class ChunkedJdbcDirectoryTests extends AbstractJdbcDirectoryTests {
+
+    private JdbcDirectory jdbcDirectory;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        JdbcDirectorySettings settings = new JdbcDirectorySettings();
+        settings.setChunkSize(16);
+        settings.setChunkBatchSize(3);
+        settings.setChunkReadAheadMax(4);
+        jdbcDirectory = new JdbcDirectory(dataSource, new JdbcTable(settings, createDialect(), "TEST"));
+
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        jdbcDirectory.create();
+        DataSourceUtils.commitConnectionIfPossible(con);
+        DataSourceUtils.releaseConnection(con);
+    }
+
+    protected void tearDown() throws Exception {
+        jdbcDirectory.close();
+        super.tearDown();
+    }
+
+    public void testWriteAndReadAcrossChunks() throws IOException {
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        IndexOutput indexOutput = jdbcDirectory.createOutput("value1");
+        for (int i = 0; i < 200; i++) {
+            indexOutput.writeByte((byte) i);
+        }
+        // seek back to chunks that were already inserted
+        indexOutput.seek(20);
+        indexOutput.writeByte((byte) -1);
+        indexOutput.seek(70);
+        indexOutput.writeBytes(new byte[]{-2, -3, -4}, 3);
+        indexOutput.seek(200);
+        indexOutput.close();
+        DataSourceUtils.commitConnectionIfPossible(con);
+        DataSourceUtils.releaseConnection(con);
+
+        con = DataSourceUtils.getConnection(dataSource);
+        assertTrue(jdbcDirectory.fileExists("value1"));
+        assertEquals(200, jdbcDirectory.fileLength("value1"));
+        assertEquals(13, countRows("value1"));
+
+        IndexInput indexInput = jdbcDirectory.openInput("value1");
+        assertEquals(200, indexInput.length());
+        byte[] data = new byte[200];
+        indexInput.readBytes(data, 0, 200);
+        for (int i = 0; i < 200; i++) {
+            if (i == 20) {
+                assertEquals((byte) -1, data[i]);
+            } else if (i >= 70 && i < 73) {
+                assertEquals((byte) (-2 - (i - 70)), data[i]);
+            } else {
+                assertEquals((byte) i, data[i]);
+            }
+        }
+        indexInput.seek(150);
+        assertEquals((byte) 150, indexInput.readByte());
+        indexInput.seek(5);
+        assertEquals((byte) 5, indexInput.readByte());
+        try {
+            indexInput.seek(199);
+            indexInput.readBytes(data, 0, 2);
+            fail("should fail reading past EOF");
+        } catch (IOException e) {
+            // all is well
+        }
+        indexInput.close();
+        DataSourceUtils.commitConnectionIfPossible(con);
+        DataSourceUtils.releaseConnection(con);
+    }
+
+    public void testEmptyFile() throws IOException {
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        jdbcDirectory.createOutput("empty").close();
+        assertTrue(jdbcDirectory.fileExists("empty"));
+        assertEquals(0, jdbcDirectory.fileLength("empty"));
+        IndexInput indexInput = jdbcDirectory.openInput("empty");
+        assertEquals(0, indexInput.length());
+        indexInput.close();
+        DataSourceUtils.commitConnectionIfPossible(con);
+        DataSourceUtils.releaseConnection(con);
+    }
+
+    public void testFileEntryOperations() throws IOException {
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        IndexOutput indexOutput = jdbcDirectory.createOutput("value1");
+        indexOutput.writeBytes(new byte[40], 40);
+        indexOutput.close();
+        String[] names = jdbcDirectory.list();
+        assertEquals(1, names.length);
+        assertEquals("value1", names[0]);
+
+        jdbcDirectory.renameFile("value1", "value2");
+        assertFalse(jdbcDirectory.fileExists("value1"));
+        assertTrue(jdbcDirectory.fileExists("value2"));
+        assertEquals(40, jdbcDirectory.fileLength("value2"));
+        assertEquals(3, countRows("value2"));
+
+        // mark deleted, and then delete all the marked rows
+        jdbcDirectory.deleteFile("value2");
+        assertFalse(jdbcDirectory.fileExists("value2"));
+        assertEquals(0, jdbcDirectory.list().length);
+        jdbcDirectory.deleteMarkDeleted(-JdbcDirectorySettings.HOUR);
+        assertEquals(0, countRows("value2"));
+        DataSourceUtils.commitConnectionIfPossible(con);
+        DataSourceUtils.releaseConnection(con);
+    }
+
+    public void testIndexAndSearch() throws IOException {
+        DirectoryTemplate template = new DirectoryTemplate(jdbcDirectory);
+        template.execute(new DirectoryTemplate.DirectoryCallbackWithoutResult() {
+            protected void doInDirectoryWithoutResult(Directory dir) throws IOException {
+                IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+                writer.setUseCompoundFile(true);
+                for (int i = 0; i < 100; i++) {
+                    Document doc = new Document();
+                    doc.add(new Field("id", Integer.toString(i), Field.Store.YES, Field.Index.UN_TOKENIZED));
+                    doc.add(new Field("text", (i % 2 == 0) ? "even number" : "odd number", Field.Store.YES, Field.Index.TOKENIZED));
+                    writer.addDocument(doc);
+                }
+                writer.optimize();
+                writer.close();
+            }
+        });
+        template.execute(new DirectoryTemplate.DirectoryCallbackWithoutResult() {
+            protected void doInDirectoryWithoutResult(Directory dir) throws IOException {
+                IndexSearcher searcher = new IndexSearcher(dir);
+                assertEquals(50, searcher.search(new TermQuery(new Term("text", "even")), null, 100).totalHits);
+                assertEquals(100, searcher.search(new TermQuery(new Term("text", "number")), null, 100).totalHits);
+                assertEquals(1, searcher.search(new TermQuery(new Term("id", "42")), null, 100).totalHits);
+                assertEquals("42", searcher.doc(42).get("id"));
+                searcher.close();
+            }
+        });
+    }
+
+
+    private int countRows(final String name) throws IOException {
+        return ((Integer) jdbcDirectory.getJdbcTemplate().executeSelect("select count(*) from " + jdbcDirectory.getTable().getQualifiedName() +
+                " where " + jdbcDirectory.getTable().getNameColumn().getQuotedName() + " = ?", new JdbcTemplate.ExecuteSelectCallback() {
+            public void fillPrepareStatement(PreparedStatement ps) throws Exception {
+                ps.setString(1, name);
+            }
+
+            public Object execute(ResultSet rs) throws Exception {
+                rs.next();
+                return new Integer(rs.getInt(1));
+            }
+        })).intValue();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.store.jdbc.index;
+
+import org.apache.lucene.store.jdbc.JdbcDirectorySettings;
+
+/**
+ * @author kimchy
+ */
+public class ChunkedInputOutputTests extends AbstractIndexInputOutputTests {
+
+    protected void configureSettings(JdbcDirectorySettings settings) {
+        settings.setChunkSize(7);
+        settings.setChunkBatchSize(2);
+    }
+
+    protected Class indexInputClass() {
+        return ChunkedJdbcIndexInput.class;
+    }
+
+    protected Class indexOutputClass() {
+        return ChunkedJdbcIndexOutput.class;
+    }
+}
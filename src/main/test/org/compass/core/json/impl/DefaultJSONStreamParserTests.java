@@ -0,0 +1,122 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.json.impl;
+
+import junit.framework.TestCase;
+import org.compass.core.json.impl.DefaultJSONStreamParser.Token;
+
+/**
+ * @author kimchy
+ */
+public class DefaultJSONStreamParserTests extends TestCase {
+
+    public void testTokens() {
+        DefaultJSONStreamParser parser = new DefaultJSONStreamParser("{id : 1, 'value' : \"test\", obj : {b : true, n : null}, arr : [1.5, [], {}]}");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertField(parser, "id");
+        assertValue(parser, new Integer(1));
+        assertField(parser, "value");
+        assertValue(parser, "test");
+        assertField(parser, "obj");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertField(parser, "b");
+        assertValue(parser, Boolean.TRUE);
+        assertField(parser, "n");
+        assertValue(parser, DefaultJSONObject.NULL);
+        assertEquals(Token.END_OBJECT, parser.nextToken());
+        assertField(parser, "arr");
+        assertEquals(Token.START_ARRAY, parser.nextToken());
+        assertValue(parser, new Double(1.5));
+        assertEquals(Token.START_ARRAY, parser.nextToken());
+        assertEquals(Token.END_ARRAY, parser.nextToken());
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertEquals(Token.END_OBJECT, parser.nextToken());
+        assertEquals(Token.END_ARRAY, parser.nextToken());
+        assertEquals(Token.END_OBJECT, parser.nextToken());
+        assertNull(parser.nextToken());
+    }
+
+    public void testLenientSyntax() {
+        DefaultJSONStreamParser parser = new DefaultJSONStreamParser("{a = 1; b => [1, , 2], c : [3,],}");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertField(parser, "a");
+        assertValue(parser, new Integer(1));
+        assertField(parser, "b");
+        assertEquals(Token.START_ARRAY, parser.nextToken());
+        assertValue(parser, new Integer(1));
+        assertValue(parser, null);
+        assertValue(parser, new Integer(2));
+        assertEquals(Token.END_ARRAY, parser.nextToken());
+        assertField(parser, "c");
+        assertEquals(Token.START_ARRAY, parser.nextToken());
+        assertValue(parser, new Integer(3));
+        assertEquals(Token.END_ARRAY, parser.nextToken());
+        assertEquals(Token.END_OBJECT, parser.nextToken());
+        assertNull(parser.nextToken());
+    }
+
+    public void testReadValue() {
+        DefaultJSONStreamParser parser = new DefaultJSONStreamParser("{obj : {a : [1, 2]}, arr : [{b : 1}], last : 'x'}");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertField(parser, "obj");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        DefaultJSONObject obj = (DefaultJSONObject) parser.readValue();
+        assertEquals(2, obj.getJSONArray("a").length());
+        assertField(parser, "arr");
+        assertEquals(Token.START_ARRAY, parser.nextToken());
+        DefaultJSONArray arr = (DefaultJSONArray) parser.readValue();
+        assertEquals(1, arr.getJSONObject(0).getInt("b"));
+        assertField(parser, "last");
+        assertValue(parser, "x");
+        assertEquals(Token.END_OBJECT, parser.nextToken());
+        assertNull(parser.nextToken());
+    }
+
+    public void testSkipChildren() {
+        DefaultJSONStreamParser parser = new DefaultJSONStreamParser("{skip : {a : {b : [1, {c : 2}]}}, last : 'x'}");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertField(parser, "skip");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        parser.skipChildren();
+        assertField(parser, "last");
+        assertValue(parser, "x");
+        assertEquals(Token.END_OBJECT, parser.nextToken());
+    }
+
+    public void testSyntaxError() {
+        DefaultJSONStreamParser parser = new DefaultJSONStreamParser("{a : 1 : 2}");
+        assertEquals(Token.START_OBJECT, parser.nextToken());
+        assertField(parser, "a");
+        assertValue(parser, new Integer(1));
+        try {
+            parser.nextToken();
+            fail();
+        } catch (DefaultJSONException e) {
+            // all is well
+        }
+    }
+
+    private void assertField(DefaultJSONStreamParser parser, String name) {
+        assertEquals(Token.FIELD_NAME, parser.nextToken());
+        assertEquals(name, parser.getCurrentName());
+    }
+
+    private void assertValue(DefaultJSONStreamParser parser, Object value) {
+        assertEquals(Token.VALUE, parser.nextToken());
+        assertEquals(value, parser.getValue());
+    }
+}
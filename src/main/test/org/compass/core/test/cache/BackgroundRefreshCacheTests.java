@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.cache;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.manager.IndexHolderWarmer;
+
+/**
+ * @author kimchy
+ */
+public class BackgroundRefreshCacheTests extends AbstractCacheTests {
+
+    private final CountingWarmer countingWarmer = new CountingWarmer();
+
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(LuceneEnvironment.SearchEngineIndex.CACHE_ASYNC_INVALIDATION, true);
+        settings.setBooleanSetting(LuceneEnvironment.SearchEngineIndex.CACHE_BACKGROUND_REFRESH, true);
+        settings.setGroupSettings(LuceneEnvironment.CacheWarmer.PREFIX, "byValue",
+                new String[]{LuceneEnvironment.CacheWarmer.QUERY, LuceneEnvironment.CacheWarmer.SORT},
+                new String[]{"value1", "value:string:reverse"});
+        settings.setGroupSettings(LuceneEnvironment.CacheWarmer.PREFIX, "counting",
+                new String[]{LuceneEnvironment.CacheWarmer.TYPE},
+                new Object[]{countingWarmer});
+    }
+
+    public void testChangesBecomeVisibleAfterWarmup() throws Exception {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        A a = new A();
+        a.setId(1l);
+        a.setValue("value1");
+        session.save("a1", a);
+        tr.commit();
+        session.close();
+
+        assertEquals(1, waitForCount("value1", 1));
+
+        session = openSession();
+        tr = session.beginTransaction();
+        a = new A();
+        a.setId(2l);
+        a.setValue("value1");
+        session.save("a1", a);
+        tr.commit();
+        session.close();
+
+        // the refreshed holder is published once the background refresh (and warm up) is done
+        assertEquals(2, waitForCount("value1", 2));
+        assertTrue(countingWarmer.count.get() > 0);
+    }
+
+    private long waitForCount(String query, long expected) throws InterruptedException {
+        long count = countFind(query);
+        for (int i = 0; i < 50 && count != expected; i++) {
+            Thread.sleep(100);
+            count = countFind(query);
+        }
+        return count;
+    }
+
+    private long countFind(String query) {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        long count = session.queryBuilder().queryString(query).toQuery().count();
+        tr.commit();
+        session.close();
+        return count;
+    }
+
+    private static class CountingWarmer implements IndexHolderWarmer {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public void warm(String subIndex, IndexSearcher indexSearcher) throws IOException {
+            count.incrementAndGet();
+        }
+    }
+}
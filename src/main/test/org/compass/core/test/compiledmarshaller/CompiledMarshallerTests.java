@@ -0,0 +1,155 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.test.compiledmarshaller;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.mapping.osem.ClassMapping;
+import org.compass.core.spi.InternalCompass;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class CompiledMarshallerTests extends AbstractTestCase {
+
+    protected String[] getMappings() {
+        return new String[]{"compiledmarshaller/mapping.cpm.xml"};
+    }
+
+    protected void addSettings(CompassSettings settings) {
+        settings.setBooleanSetting(CompassEnvironment.Osem.COMPILE_MARSHALLERS, true);
+    }
+
+    public void testCompiledMappings() {
+        assertNotNull(getClassMapping("a").getCompiledMarshaller());
+        // has a component mapping
+        assertNull(getClassMapping("b").getCompiledMarshaller());
+        // has a private setter
+        assertNull(getClassMapping("c").getCompiledMarshaller());
+    }
+
+    public void testMarshallAndUnmarshall() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2009, 0, 1);
+        Date date = cal.getTime();
+
+        A a = new A();
+        a.setId(1l);
+        a.setValue("test");
+        a.intValue = 2;
+        a.longValue = 3;
+        a.doubleValue = 4.5;
+        a.booleanValue = true;
+        a.integerValue = 6;
+        a.setDateValue(date);
+        session.save(a);
+
+        Resource resource = session.loadResource(A.class, 1);
+        assertEquals("typea", resource.getValue("type"));
+        assertEquals("test", resource.getValue("value"));
+        assertEquals("2", resource.getValue("intValue"));
+        assertEquals("3", resource.getValue("longValue"));
+        assertEquals("4.5", resource.getValue("doubleValue"));
+        assertEquals("true", resource.getValue("booleanValue"));
+        assertEquals("6", resource.getValue("integerValue"));
+        assertEquals("2009-01-01", resource.getValue("dateValue"));
+
+        tr.commit();
+        session.close();
+
+        session = openSession();
+        tr = session.beginTransaction();
+
+        a = session.load(A.class, 1);
+        assertEquals("test", a.getValue());
+        assertEquals(2, a.intValue);
+        assertEquals(3, a.longValue);
+        assertEquals(4.5, a.doubleValue, 0.001);
+        assertEquals(true, a.booleanValue);
+        assertEquals(new Integer(6), a.integerValue);
+        assertEquals(date, a.getDateValue());
+
+        assertEquals(1, session.find("value:test").length());
+        assertEquals(1, session.find("type:typea").length());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testNullValues() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        A a = new A();
+        a.setId(1l);
+        session.save(a);
+
+        a = session.load(A.class, 1);
+        assertNull(a.getValue());
+        assertNull(a.integerValue);
+        assertNull(a.getDateValue());
+        assertEquals(0, a.intValue);
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testNotCompiledMappings() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        A a = new A();
+        a.setId(1l);
+        a.setValue("avalue");
+        B b = new B();
+        b.setId(2l);
+        b.setValue("bvalue");
+        b.setA(a);
+        session.save(b);
+
+        C c = new C();
+        c.setId(3l);
+        c.updateValue("cvalue");
+        session.save(c);
+
+        b = session.load(B.class, 2);
+        assertEquals("bvalue", b.getValue());
+        assertEquals("avalue", b.getA().getValue());
+
+        c = session.load(C.class, 3);
+        assertEquals("cvalue", c.getValue());
+
+        tr.commit();
+        session.close();
+    }
+
+    private ClassMapping getClassMapping(String alias) {
+        return (ClassMapping) ((InternalCompass) getCompass()).getMapping().getRootMappingByAlias(alias);
+    }
+}
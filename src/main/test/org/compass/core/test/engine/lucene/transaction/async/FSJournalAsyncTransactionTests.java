@@ -0,0 +1,263 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.engine.lucene.transaction.async;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.index.IndexWriter;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.engine.SearchEngineQuery;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.transaction.async.TransactionJobsJournal;
+import org.compass.core.lucene.engine.transaction.support.job.CreateTransactionJob;
+import org.compass.core.lucene.engine.transaction.support.job.FlushCommitTransactionJob;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJob;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJobs;
+import org.compass.core.lucene.engine.transaction.support.job.UpdateTransactionJob;
+import org.compass.core.spi.InternalResource;
+import org.compass.core.spi.MultiResource;
+
+/**
+ * @author kimchy
+ */
+public class FSJournalAsyncTransactionTests extends AbstractAsyncTransactionTests {
+
+    private static final String JOURNAL_LOCATION = "target/test-journal";
+
+    @Override
+    protected void setUp() throws Exception {
+        deleteJournal();
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        deleteJournal();
+    }
+
+    @Override
+    protected CompassSettings buildCompassSettings() {
+        CompassSettings settings = super.buildCompassSettings();
+        settings.setSetting(CompassEnvironment.CONNECTION, "target/test-index");
+        settings.setSetting(LuceneEnvironment.Transaction.Processor.Async.JOURNAL_LOCATION, JOURNAL_LOCATION);
+        settings.setIntSetting(LuceneEnvironment.Transaction.Processor.Async.JOURNAL_MAX_RETRIES, 1);
+        return settings;
+    }
+
+    public void testJournalReplay() throws Exception {
+        File location = new File("target/test-journal-replay");
+        deleteDir(location);
+        TransactionJobsJournal journal = new TransactionJobsJournal(location, 1024, true, getClass().getClassLoader());
+        assertTrue(journal.open().isEmpty());
+        long id1 = journal.append(createJobs("a"));
+        long id2 = journal.append(createJobs("b"));
+        long id3 = journal.append(createJobs("c"));
+        journal.complete(Collections.singletonList(id1));
+        journal.remove(Collections.singletonList(id3));
+        journal.close();
+
+        journal = new TransactionJobsJournal(location, 1024, true, getClass().getClassLoader());
+        List<Long> pendingIds = journal.open();
+        assertEquals(1, pendingIds.size());
+        assertEquals(id2, pendingIds.get(0).longValue());
+        assertEquals("b", journal.read(id2).getJobs().get(0).getSubIndex());
+        long id4 = journal.append(createJobs("d"));
+        assertTrue(id4 > id2);
+        assertEquals("d", journal.read(id4).getJobs().get(0).getSubIndex());
+        journal.complete(pendingIds);
+        journal.complete(Collections.singletonList(id4));
+        journal.close();
+
+        // all the segments are deleted once all their transactions completed
+        assertEquals(0, location.list().length);
+        deleteDir(location);
+    }
+
+    public void testJournalIgnoresCorruptedTail() throws Exception {
+        File location = new File("target/test-journal-replay");
+        deleteDir(location);
+        TransactionJobsJournal journal = new TransactionJobsJournal(location, 1024 * 1024, true, getClass().getClassLoader());
+        journal.open();
+        long id1 = journal.append(createJobs("a"));
+        journal.close();
+
+        // simulate a crash in the middle of appending a record
+        File segment = location.listFiles()[0];
+        FileOutputStream fos = new FileOutputStream(segment, true);
+        fos.write(new byte[]{0, 0, 0, 100, 1, 0, 0});
+        fos.close();
+
+        journal = new TransactionJobsJournal(location, 1024 * 1024, true, getClass().getClassLoader());
+        List<Long> pendingIds = journal.open();
+        assertEquals(1, pendingIds.size());
+        assertEquals(id1, pendingIds.get(0).longValue());
+        journal.complete(pendingIds);
+        journal.close();
+        deleteDir(location);
+    }
+
+    public void testJournalDeadLetter() throws Exception {
+        File location = new File("target/test-journal-replay");
+        deleteDir(location);
+        TransactionJobsJournal journal = new TransactionJobsJournal(location, 1024 * 1024, true, getClass().getClassLoader());
+        journal.open();
+        long id1 = journal.append(createJobs("a"));
+        File deadLetter = journal.deadLetter(id1);
+        assertTrue(deadLetter.exists());
+        journal.close();
+
+        journal = new TransactionJobsJournal(location, 1024 * 1024, true, getClass().getClassLoader());
+        assertTrue(journal.open().isEmpty());
+        journal.close();
+        deleteDir(location);
+    }
+
+    public void testIdempotentJobs() throws Exception {
+        getSearchEngine().begin();
+        TransactionJobs jobs = new TransactionJobs();
+        jobs.add(new CreateTransactionJob(createSingleIdInternalResource()));
+        jobs.add(new FlushCommitTransactionJob("a"));
+        getSearchEngine().rollback();
+
+        TransactionJobs idempotentJobs = jobs.toIdempotent();
+        assertEquals(2, idempotentJobs.getJobs().size());
+        assertTrue(idempotentJobs.getJobs().get(0) instanceof UpdateTransactionJob);
+        assertEquals(jobs.getJobs().get(0).getResourceUID(), idempotentJobs.getJobs().get(0).getResourceUID());
+        assertEquals(jobs.getJobs().get(0).getSubIndex(), idempotentJobs.getJobs().get(0).getSubIndex());
+        assertSame(jobs.getJobs().get(1), idempotentJobs.getJobs().get(1));
+    }
+
+    public void testReplayedCreateDoesNotDuplicate() throws Exception {
+        getSearchEngine().begin();
+        TransactionJobs jobs = new TransactionJobs();
+        jobs.add(new CreateTransactionJob(createSingleIdInternalResource()));
+        getSearchEngine().create(createSingleIdResource(getSearchEngine()));
+        getSearchEngine().commit(true);
+        sleepForChangesToOccur();
+
+        // simulate a crash after the transaction was applied to the index, but before it was completed in the journal
+        restartWithPendingJobs(jobs);
+        sleepForChangesToOccur();
+
+        getSearchEngine().begin();
+        assertEquals(1, countSingleIdResources());
+        getSearchEngine().rollback();
+    }
+
+    public void testFailedJobsAreRetriedOnTheirOwnAndDeadLettered() throws Exception {
+        getSearchEngine().begin();
+        CreateTransactionJob createJob = new CreateTransactionJob(createSingleIdInternalResource());
+        getSearchEngine().rollback();
+        TransactionJobs failingJobs = new TransactionJobs();
+        failingJobs.add(new FailingTransactionJob(createJob.getSubIndex()));
+        TransactionJobs jobs = new TransactionJobs();
+        jobs.add(createJob);
+
+        // both are replayed (and batched) together, the failing jobs should not fail the other jobs
+        restartWithPendingJobs(failingJobs, jobs);
+        sleepForChangesToOccur();
+
+        getSearchEngine().begin();
+        assertEquals(1, countSingleIdResources());
+        getSearchEngine().rollback();
+
+        File[] deadLetters = new File(JOURNAL_LOCATION).listFiles();
+        int deadLettersCount = 0;
+        for (File file : deadLetters) {
+            if (file.getName().startsWith("dead-letter-")) {
+                deadLettersCount++;
+            }
+        }
+        assertEquals(1, deadLettersCount);
+    }
+
+    private InternalResource createSingleIdInternalResource() {
+        Resource resource = createSingleIdResource(getSearchEngine());
+        if (resource instanceof MultiResource) {
+            resource = ((MultiResource) resource).resource(0);
+        }
+        return (InternalResource) resource;
+    }
+
+    private int countSingleIdResources() {
+        SearchEngineQuery query = getSearchEngine().queryBuilder().queryString(PROPERTY_VAL1 + ":" + VALUE_VAL1).toQuery();
+        return query.hits(getSearchEngine()).getLength();
+    }
+
+    /**
+     * Closes Compass, appends the given jobs to its journal (without completing them) and starts it again.
+     */
+    private void restartWithPendingJobs(TransactionJobs... pendingJobs) throws Exception {
+        getSearchEngine().close();
+        compass.close();
+        TransactionJobsJournal journal = new TransactionJobsJournal(new File(JOURNAL_LOCATION), 1024 * 1024, true, getClass().getClassLoader());
+        journal.open();
+        for (TransactionJobs jobs : pendingJobs) {
+            journal.append(jobs);
+        }
+        journal.close();
+        super.setUp();
+    }
+
+    private TransactionJobs createJobs(String subIndex) {
+        TransactionJobs jobs = new TransactionJobs();
+        jobs.add(new FlushCommitTransactionJob(subIndex));
+        return jobs;
+    }
+
+    private void deleteJournal() {
+        deleteDir(new File(JOURNAL_LOCATION));
+    }
+
+    private static class FailingTransactionJob implements TransactionJob {
+
+        private final String subIndex;
+
+        private FailingTransactionJob(String subIndex) {
+            this.subIndex = subIndex;
+        }
+
+        public String getSubIndex() {
+            return subIndex;
+        }
+
+        public String getResourceUID() {
+            return null;
+        }
+
+        public void execute(IndexWriter writer, LuceneSearchEngineFactory sessionFactory) throws Exception {
+            throw new IllegalStateException("Failing job");
+        }
+    }
+
+    private void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.engine.lucene.transaction.shared;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.index.IndexWriter;
+import org.compass.core.Property;
+import org.compass.core.Resource;
+import org.compass.core.ResourceFactory;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.engine.SearchEngine;
+import org.compass.core.engine.SearchEngineException;
+import org.compass.core.engine.SearchEngineHits;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.transaction.shared.SharedIndexWriter;
+import org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessor;
+import org.compass.core.lucene.engine.transaction.shared.SharedTransactionProcessorFactory;
+import org.compass.core.lucene.engine.transaction.support.job.CreateTransactionJob;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJob;
+import org.compass.core.lucene.engine.transaction.support.job.TransactionJobs;
+import org.compass.core.spi.InternalResource;
+import org.compass.core.spi.MultiResource;
+import org.compass.core.test.engine.lucene.transaction.AbstractTransactionEngineTests;
+
+/**
+ * @author kimchy
+ */
+public abstract class AbstractSharedTransactionEngineTests extends AbstractTransactionEngineTests {
+
+    protected CompassSettings buildCompassSettings() {
+        CompassSettings settings = super.buildCompassSettings();
+        settings.setSetting(LuceneEnvironment.Transaction.Processor.TYPE, LuceneEnvironment.Transaction.Processor.Shared.NAME);
+        return settings;
+    }
+
+    public void testSettings() {
+        assertEquals(LuceneEnvironment.Transaction.Processor.Shared.NAME, getSettings().getSetting(
+                LuceneEnvironment.Transaction.Processor.TYPE));
+    }
+
+    public void testSearchEngineTransactionProcessorInstance() {
+        getSearchEngine().begin();
+        assertTrue(getLuceneSearchEngine().getTransactionProcessor() instanceof SharedTransactionProcessor);
+        getSearchEngine().rollback();
+    }
+
+    public void testRollbackDoesNotAffectConcurrentTransaction() throws Exception {
+        SearchEngine otherSearchEngine = createNewSearchEngine();
+        getSearchEngine().begin();
+        otherSearchEngine.begin();
+        getSearchEngine().create(createSingleIdResource(getSearchEngine()));
+        otherSearchEngine.create(createMultiIdResource(otherSearchEngine));
+        otherSearchEngine.rollback();
+        getSearchEngine().commit(true);
+        otherSearchEngine.close();
+
+        getSearchEngine().begin();
+        assertSingleIdResourceExists(getSearchEngine());
+        assertMulitIdResourceNotExists(getSearchEngine());
+        getSearchEngine().rollback();
+    }
+
+    public void testConcurrentCommits() throws Exception {
+        final int numberOfThreads = 10;
+        final int resourcesPerThread = 20;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(numberOfThreads);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            final int threadId = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < resourcesPerThread; j++) {
+                            SearchEngine searchEngine = createNewSearchEngine();
+                            try {
+                                searchEngine.begin();
+                                searchEngine.create(createResource(searchEngine, threadId + "_" + j));
+                                searchEngine.commit(true);
+                            } finally {
+                                searchEngine.close();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            }, "shared-" + i).start();
+        }
+        startLatch.countDown();
+        doneLatch.await();
+        if (failure.get() != null) {
+            throw new Exception("Concurrent commit failed", failure.get());
+        }
+
+        getSearchEngine().begin();
+        SearchEngineHits hits = getSearchEngine().queryBuilder().queryString(PROPERTY_VAL1 + ":" + VALUE_VAL1).toQuery().hits(getSearchEngine());
+        assertEquals(numberOfThreads * resourcesPerThread, hits.getLength());
+        getSearchEngine().rollback();
+    }
+
+    public void testFailedApplyIsNotCommittedByConcurrentTransaction() throws Exception {
+        LuceneSearchEngineFactory searchEngineFactory = (LuceneSearchEngineFactory) getSearchEngine().getSearchEngineFactory();
+        SharedTransactionProcessorFactory processorFactory = (SharedTransactionProcessorFactory) searchEngineFactory
+                .getTransactionProcessorManager().getProcessorFactory(LuceneEnvironment.Transaction.Processor.Shared.NAME);
+        InternalResource failedResource = createInternalResource("failed");
+        final SharedIndexWriter indexWriter = processorFactory.getIndexWriter(failedResource.getSubIndex());
+        final CountDownLatch appliedLatch = new CountDownLatch(1);
+        final TransactionJobs failedJobs = new TransactionJobs();
+        failedJobs.add(new CreateTransactionJob(failedResource));
+        failedJobs.add(new FailingTransactionJob(failedResource.getSubIndex(), appliedLatch));
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread failingThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    indexWriter.apply(failedJobs);
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        }, "shared-failing");
+        failingThread.start();
+
+        // commit another transaction while the failing one has partially applied its jobs
+        if (!appliedLatch.await(10, TimeUnit.SECONDS)) {
+            throw new Exception("Failing transaction did not apply", failure.get());
+        }
+        SearchEngine searchEngine = createNewSearchEngine();
+        try {
+            searchEngine.begin();
+            searchEngine.create(createResource(searchEngine, "committed"));
+            searchEngine.commit(true);
+        } finally {
+            searchEngine.close();
+        }
+        failingThread.join();
+        assertTrue(failure.get() instanceof SearchEngineException);
+
+        getSearchEngine().begin();
+        assertEquals(1, getSearchEngine().queryBuilder().queryString(PROPERTY_ID1 + ":committed").toQuery().hits(getSearchEngine()).getLength());
+        assertEquals(0, getSearchEngine().queryBuilder().queryString(PROPERTY_ID1 + ":failed").toQuery().hits(getSearchEngine()).getLength());
+        getSearchEngine().rollback();
+    }
+
+    public void testFailedApplyDoesNotFailOtherTransactionsOfTheGroup() throws Exception {
+        LuceneSearchEngineFactory searchEngineFactory = (LuceneSearchEngineFactory) getSearchEngine().getSearchEngineFactory();
+        SharedTransactionProcessorFactory processorFactory = (SharedTransactionProcessorFactory) searchEngineFactory
+                .getTransactionProcessorManager().getProcessorFactory(LuceneEnvironment.Transaction.Processor.Shared.NAME);
+        InternalResource resource = createInternalResource("committed");
+        InternalResource failedResource = createInternalResource("failed");
+        SharedIndexWriter indexWriter = processorFactory.getIndexWriter(resource.getSubIndex());
+
+        TransactionJobs jobs = new TransactionJobs();
+        jobs.add(new CreateTransactionJob(resource));
+        SharedIndexWriter.CommitGroup group = indexWriter.apply(jobs);
+
+        TransactionJobs failedJobs = new TransactionJobs();
+        failedJobs.add(new CreateTransactionJob(failedResource));
+        failedJobs.add(new FailingTransactionJob(failedResource.getSubIndex(), new CountDownLatch(1)));
+        try {
+            indexWriter.apply(failedJobs);
+            fail("applying the failing job should fail");
+        } catch (SearchEngineException e) {
+            // all is well
+        }
+        indexWriter.commit(group, jobs, true);
+
+        getSearchEngine().begin();
+        assertEquals(1, getSearchEngine().queryBuilder().queryString(PROPERTY_ID1 + ":committed").toQuery().hits(getSearchEngine()).getLength());
+        assertEquals(0, getSearchEngine().queryBuilder().queryString(PROPERTY_ID1 + ":failed").toQuery().hits(getSearchEngine()).getLength());
+        getSearchEngine().rollback();
+    }
+
+    private static class FailingTransactionJob implements TransactionJob {
+
+        private final String subIndex;
+
+        private final transient CountDownLatch appliedLatch;
+
+        private FailingTransactionJob(String subIndex, CountDownLatch appliedLatch) {
+            this.subIndex = subIndex;
+            this.appliedLatch = appliedLatch;
+        }
+
+        public String getSubIndex() {
+            return subIndex;
+        }
+
+        public String getResourceUID() {
+            return null;
+        }
+
+        public void execute(IndexWriter writer, LuceneSearchEngineFactory sessionFactory) throws Exception {
+            appliedLatch.countDown();
+            // give a concurrent transaction the chance to apply and try to commit
+            Thread.sleep(200);
+            throw new Exception("failing on purpose");
+        }
+    }
+
+    private InternalResource createInternalResource(String id) {
+        Resource resource = createResource(getSearchEngine(), id);
+        if (resource instanceof MultiResource) {
+            resource = ((MultiResource) resource).resource(0);
+        }
+        return (InternalResource) resource;
+    }
+
+    private Resource createResource(SearchEngine searchEngine, String id) {
+        ResourceFactory resourceFactory = searchEngine.getSearchEngineFactory().getResourceFactory();
+        Resource resource = resourceFactory.createResource(ALIAS_SINGLE);
+        resource.addProperty(resourceFactory.createProperty(PROPERTY_ID1, id, Property.Store.YES,
+                Property.Index.NOT_ANALYZED));
+        resource.addProperty(resourceFactory.createProperty(PROPERTY_VAL1, VALUE_VAL1, Property.Store.YES,
+                Property.Index.ANALYZED));
+        ((InternalResource) resource).addUID();
+        return resource;
+    }
+}
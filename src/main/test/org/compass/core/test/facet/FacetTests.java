@@ -0,0 +1,146 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.facet;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.compass.core.CompassFacet;
+import org.compass.core.CompassFacetsBuilder;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class FacetTests extends AbstractTestCase {
+
+    protected String[] getMappings() {
+        return new String[]{"facet/mapping.cpm.xml"};
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        session.save("item1", new Item(1l, "books", 5, date(2008, 1, 10), "red apple"));
+        session.save("item1", new Item(2l, "books", 15, date(2008, 1, 20), "green apple"));
+        session.save("item1", new Item(3l, "music", 25, date(2008, 2, 5), "red song"));
+        session.save("item2", new Item(4l, "books", 50, date(2008, 2, 15), "blue book"));
+        session.save("item2", new Item(5l, "music", 150, date(2008, 3, 1), "red tune"));
+        session.save("item2", new Item(6l, "movies", 15, date(2009, 1, 1), "red film"));
+        tr.commit();
+        session.close();
+    }
+
+    public void testTermsFacet() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassFacet[] facets = session.queryBuilder().matchAll().facets()
+                .addTermsFacet("all", "category", 10)
+                .addTermsFacet("top", "category", 2)
+                .toFacets();
+        assertEquals(2, facets.length);
+        assertEquals("all", facets[0].getName());
+        assertEntries(facets[0], "books", 3, "music", 2, "movies", 1);
+        assertEquals("top", facets[1].getName());
+        assertEntries(facets[1], "books", 3, "music", 2);
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testTermsFacetOnlyCountsMatchingDocuments() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassFacet[] facets = session.queryBuilder().queryString("red").toQuery().facets()
+                .addTermsFacet("category", "category", 10)
+                .toFacets();
+        // ties are ordered by term
+        assertEntries(facets[0], "music", 2, "books", 1, "movies", 1);
+
+        facets = session.queryBuilder().matchAll().setAliases("item1").facets()
+                .addTermsFacet("category", "category", 10)
+                .toFacets();
+        assertEntries(facets[0], "books", 2, "music", 1);
+
+        facets = session.queryBuilder().matchAll()
+                .setFilter(session.queryFilterBuilder().query(session.queryBuilder().term("category", "books")))
+                .facets().addTermsFacet("category", "category", 10).toFacets();
+        assertEntries(facets[0], "books", 3);
+
+        facets = session.queryBuilder().term("category", "nothing").facets()
+                .addTermsFacet("category", "category", 10)
+                .toFacets();
+        assertEquals(0, facets[0].getEntries().length);
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testRangeFacet() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassFacet[] facets = session.queryBuilder().matchAll().facets()
+                .addRangeFacet("price", "price", null, 10, 100, null)
+                .toFacets();
+        assertEntries(facets[0], "* TO 10", 1, "10 TO 100", 4, "100 TO *", 1);
+
+        facets = session.queryBuilder().queryString("red").toQuery().facets()
+                .addRangeFacet("price", "price", 10, 30)
+                .toFacets();
+        assertEntries(facets[0], "10 TO 30", 2);
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testDateHistogramFacet() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassFacet[] facets = session.queryBuilder().matchAll().facets()
+                .addDateHistogramFacet("month", "date", CompassFacetsBuilder.Interval.MONTH)
+                .addDateHistogramFacet("year", "date", CompassFacetsBuilder.Interval.YEAR)
+                .toFacets();
+        assertEntries(facets[0], date(2008, 1, 1), 2, date(2008, 2, 1), 2, date(2008, 3, 1), 1, date(2009, 1, 1), 1);
+        assertEntries(facets[1], date(2008, 1, 1), 5, date(2009, 1, 1), 1);
+
+        tr.commit();
+        session.close();
+    }
+
+    private void assertEntries(CompassFacet facet, Object... valuesAndCounts) {
+        CompassFacet.Entry[] entries = facet.getEntries();
+        assertEquals(valuesAndCounts.length / 2, entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            assertEquals(valuesAndCounts[i * 2], entries[i].getValue());
+            assertEquals(((Number) valuesAndCounts[i * 2 + 1]).longValue(), entries[i].getCount());
+        }
+    }
+
+    private static Date date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.filtercache;
+
+import org.apache.lucene.index.IndexReader;
+import org.compass.core.CompassHits;
+import org.compass.core.CompassQueryFilter;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.lucene.engine.LuceneSearchEngineFactory;
+import org.compass.core.lucene.engine.manager.LuceneIndexHolder;
+import org.compass.core.lucene.search.FilterCache;
+import org.compass.core.spi.InternalCompass;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class FilterCacheTests extends AbstractTestCase {
+
+    protected String[] getMappings() {
+        return new String[]{"filtercache/mapping.cpm.xml"};
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        session.save("a1", new A(1l, "first"));
+        session.save("a1", new A(2l, "second"));
+        session.save("a2", new A(3l, "first"));
+        session.save("a3", new A(4l, "first"));
+        tr.commit();
+        session.close();
+    }
+
+    public void testAliasRestrictionIsCached() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        assertEquals(2, session.queryBuilder().matchAll().setAliases("a1").hits().length());
+        assertEquals(1, cacheSize());
+        assertEquals(2, session.queryBuilder().queryString("first").toQuery().setAliases("a1", "a2").hits().length());
+        assertEquals(2, cacheSize());
+        // the same aliases in a different order reuse the cached filter
+        CompassHits hits = session.queryBuilder().queryString("first").toQuery().setAliases("a2", "a1").hits();
+        assertEquals(2, hits.length());
+        assertEquals(2, cacheSize());
+        assertEquals(1, session.queryBuilder().queryString("first").toQuery().setAliases("a3").count());
+        assertEquals(3, cacheSize());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testQueryFilterIsCached() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassQueryFilter filter = session.queryFilterBuilder().query(session.queryBuilder().term("value", "first"));
+        assertEquals(3, session.queryBuilder().matchAll().setFilter(filter).hits().length());
+        assertEquals(1, cacheSize());
+        assertEquals(3, session.queryBuilder().matchAll().setFilter(filter).hits().length());
+        assertEquals(1, cacheSize());
+        // an equal filter built again uses the cached one
+        filter = session.queryFilterBuilder().query(session.queryBuilder().term("value", "first"));
+        assertEquals(1, session.queryBuilder().matchAll().setAliases("a1").setFilter(filter).hits().length());
+        assertEquals(2, cacheSize());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testCacheInvalidatedOnReopen() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        assertEquals(2, session.queryBuilder().matchAll().setAliases("a1").hits().length());
+        tr.commit();
+        session.close();
+
+        IndexReader origReader = holderReader();
+        assertEquals(1, getFilterCache().size(origReader));
+
+        session = openSession();
+        tr = session.beginTransaction();
+        session.save("a1", new A(5l, "third"));
+        tr.commit();
+        session.close();
+
+        session = openSession();
+        tr = session.beginTransaction();
+        assertEquals(3, session.queryBuilder().matchAll().setAliases("a1").hits().length());
+        tr.commit();
+        session.close();
+
+        assertNotSame(origReader, holderReader());
+        assertEquals(0, getFilterCache().size(origReader));
+        assertEquals(1, cacheSize());
+    }
+
+    private FilterCache getFilterCache() {
+        return ((LuceneSearchEngineFactory) ((InternalCompass) getCompass()).getSearchEngineFactory()).getFilterCache();
+    }
+
+    private IndexReader holderReader() {
+        LuceneIndexHolder indexHolder = ((LuceneSearchEngineFactory) ((InternalCompass) getCompass()).getSearchEngineFactory())
+                .getLuceneIndexManager().getIndexHoldersCache().getHolder("index");
+        try {
+            return indexHolder.getIndexReader();
+        } finally {
+            indexHolder.release();
+        }
+    }
+
+    private int cacheSize() {
+        return getFilterCache().size(holderReader());
+    }
+}
@@ -16,13 +16,18 @@
 
 package org.compass.core.test.find;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.lucene.search.Explanation;
 import org.compass.core.CompassDetachedHits;
+import org.compass.core.CompassException;
 import org.compass.core.CompassHit;
 import org.compass.core.CompassHits;
+import org.compass.core.CompassHitsCursor;
+import org.compass.core.CompassQuery;
 import org.compass.core.CompassSession;
 import org.compass.core.CompassTransaction;
 import org.compass.core.Resource;
@@ -207,6 +212,74 @@ public class FindTests extends AbstractTestCase {
         session.close();
     }
 
+    public void testPageSize() {
+        addDataA(0, 50);
+
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        CompassHits hits = session.queryBuilder().queryString("alias:a1").toQuery().setPageSize(5).hits();
+        assertEquals(50, hits.getLength());
+        Set<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < hits.getLength(); i++) {
+            ids.add(((A) hits.data(i)).getId());
+        }
+        assertEquals(50, ids.size());
+        try {
+            hits.data(50);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // all is well
+        }
+
+        CompassDetachedHits detachedHits = session.queryBuilder().queryString("alias:a1").toQuery()
+                .setPageSize(5).hits().detach(20, 20);
+        assertEquals(20, detachedHits.getLength());
+        assertEquals(50, detachedHits.totalLength());
+        tr.commit();
+        session.close();
+    }
+
+    public void testSearchAfterCursor() {
+        addDataA(0, 50);
+
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        CompassHits allHits = session.find("alias:a1 OR mvalue:value7 OR mvalue:value23");
+        assertEquals(50, allHits.getLength());
+
+        CompassHitsCursor cursor = null;
+        int count = 0;
+        while (true) {
+            CompassQuery query = session.queryBuilder().queryString("alias:a1 OR mvalue:value7 OR mvalue:value23").toQuery();
+            CompassDetachedHits page = query.setSearchAfter(cursor).setPageSize(10).hits().detach(0, 10);
+            assertEquals(50 - count, page.totalLength());
+            if (page.getLength() == 0) {
+                assertNull(page.getCursor());
+                break;
+            }
+            for (int i = 0; i < page.getLength(); i++) {
+                assertEquals(((A) allHits.data(count + i)).getId(), ((A) page.data(i)).getId());
+                assertEquals(allHits.score(count + i), page.score(i), 0.0001f);
+            }
+            count += page.getLength();
+            cursor = page.getCursor();
+            assertNotNull(cursor);
+        }
+        assertEquals(50, count);
+
+        try {
+            session.queryBuilder().queryString("alias:a1").toQuery()
+                    .addSort("mvalue").setSearchAfter(allHits.cursor(0)).hits();
+            fail();
+        } catch (CompassException e) {
+            // all is well, sorted queries do not support cursors
+        }
+        assertNull(session.queryBuilder().queryString("alias:a1").toQuery().addSort("mvalue").hits().cursor(0));
+
+        tr.commit();
+        session.close();
+    }
+
     private void addDataA(int from, int to) {
         CompassSession session = openSession();
         CompassTransaction tr = session.beginTransaction();
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.first.cache;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.cache.first.BoundedFirstLevelCache;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.spi.InternalCompassSession;
+
+/**
+ * @author kimchy
+ */
+public class BoundedFirstCacheTests extends FirstCacheTests {
+
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setSetting(CompassEnvironment.Cache.FirstLevel.TYPE, BoundedFirstLevelCache.class.getName());
+        settings.setSetting(CompassEnvironment.Cache.FirstLevel.MAX_ENTRIES, "2");
+    }
+
+    public void testLruEviction() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        BoundedFirstLevelCache cache = (BoundedFirstLevelCache) ((InternalCompassSession) session).getFirstLevelCache();
+
+        A a1 = createA(1);
+        A a2 = createA(2);
+        session.save(a1);
+        session.save(a2);
+        assertTrue(a1 == session.get(A.class, new Long(1)));
+
+        // a2 is the least recently used one
+        A a3 = createA(3);
+        session.save(a3);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(a1 == session.get(A.class, new Long(1)));
+        assertTrue(a3 == session.get(A.class, new Long(3)));
+        A loadedA2 = session.get(A.class, new Long(2));
+        assertFalse(a2 == loadedA2);
+        assertEquals("value2", loadedA2.getValue());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testHitRate() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        BoundedFirstLevelCache cache = (BoundedFirstLevelCache) ((InternalCompassSession) session).getFirstLevelCache();
+
+        session.save(createA(1));
+        long hits = cache.getHitCount();
+        session.get(A.class, new Long(1));
+        session.get(A.class, new Long(1));
+        assertTrue(cache.getHitCount() >= hits + 2);
+        assertTrue(cache.getHitRate() > 0);
+
+        tr.commit();
+        session.close();
+    }
+
+    private A createA(long id) {
+        A a = new A();
+        a.setId(new Long(id));
+        a.setValue("value" + id);
+        return a;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.highlighter;
+
+import org.compass.core.CompassHits;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.lucene.LuceneEnvironment;
+
+/**
+ * Runs the highlighter tests with the term vector highlighter set as the default one (properties without
+ * term vectors fall back to the default highlighter).
+ *
+ * @author kimchy
+ */
+public class TermVectorHighlighterTests extends HighlighterTests {
+
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setGroupSettings(LuceneEnvironment.Highlighter.PREFIX, LuceneEnvironment.Highlighter.DEFAULT_GROUP,
+                new String[]{LuceneEnvironment.Highlighter.TYPE}, new String[]{LuceneEnvironment.Highlighter.TYPE_TERM_VECTOR});
+        settings.setGroupSettings(LuceneEnvironment.Highlighter.PREFIX, "smallTermVector",
+                new String[]{LuceneEnvironment.Highlighter.TYPE, LuceneEnvironment.Highlighter.Fragmenter.SIMPLE_SIZE},
+                new String[]{LuceneEnvironment.Highlighter.TYPE_TERM_VECTOR, "30"});
+    }
+
+    public void testTermVectorFragments() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        Resource resource = getResourceFactory().createResource("a1");
+        resource.addProperty("id", "1");
+        resource.addProperty("text", "Kennedy is mentioned at the beginning of this text, then there is a long " +
+                "part without any mention at all, and at the end there is Kennedy and Kennedy again");
+        session.save(resource);
+
+        CompassHits hits = session.find("kennedy");
+        assertEquals(1, hits.length());
+
+        String[] fragments = hits.highlighter(0).setHighlighter("smallTermVector").setMaxNumFragments(2).fragments("text");
+        assertEquals(2, fragments.length);
+        // the denser fragment (two occurrences) comes first
+        assertEquals("is <b>Kennedy</b> and <b>Kennedy</b> again", fragments[0]);
+        assertEquals("<b>Kennedy</b> is mentioned at the", fragments[1]);
+
+        String fragment = hits.highlighter(0).setHighlighter("smallTermVector").fragment("text");
+        assertEquals("is <b>Kennedy</b> and <b>Kennedy</b> again", fragment);
+
+        hits = session.find("nothing");
+        assertEquals(0, hits.length());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testTermVectorMultiValueFragments() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        Resource resource = getResourceFactory().createResource("a1");
+        resource.addProperty("id", "1");
+        resource.addProperty("text", "first value about Lucene, the");
+        resource.addProperty("text", "second value without it");
+        resource.addProperty("text", "third value about lucene");
+        session.save(resource);
+
+        CompassHits hits = session.find("lucene");
+        assertEquals(1, hits.length());
+
+        String[] fragments = hits.highlighter(0).multiValueFragment("text");
+        assertEquals(2, fragments.length);
+        assertEquals("first value about <b>Lucene</b>, the", fragments[0]);
+        assertEquals("third value about <b>lucene</b>", fragments[1]);
+
+        tr.commit();
+        session.close();
+    }
+}
@@ -97,6 +97,34 @@ public class ReplaceIndexTests extends TestCase {
         }
     }
 
+    public void testReplaceFSWithFSUsingCopy() throws Exception {
+        CompassSettings actualSettings = new CompassSettings().setSetting(CompassEnvironment.CONNECTION,
+                "target/test-index").setSetting(LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY,
+                LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_COPY);
+        CompassSettings fromSettings = new CompassSettings().setSetting(CompassEnvironment.CONNECTION,
+                "target/test-index-temp");
+        setUpOrigCompass(actualSettings);
+        try {
+            innerTestReplaceIndex(fromSettings);
+        } finally {
+            tearDownOrigCompass();
+        }
+    }
+
+    public void testReplaceFSWithFSUsingMove() throws Exception {
+        CompassSettings actualSettings = new CompassSettings().setSetting(CompassEnvironment.CONNECTION,
+                "target/test-index").setSetting(LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY,
+                LuceneEnvironment.SearchEngineIndex.REPLACE_STRATEGY_MOVE);
+        CompassSettings fromSettings = new CompassSettings().setSetting(CompassEnvironment.CONNECTION,
+                "target/test-index-temp");
+        setUpOrigCompass(actualSettings);
+        try {
+            innerTestReplaceIndex(fromSettings);
+        } finally {
+            tearDownOrigCompass();
+        }
+    }
+
     public void testReplaceFSWithRAM() throws Exception {
         CompassSettings actualSettings = new CompassSettings().setSetting(CompassEnvironment.CONNECTION,
                 "target/test-index");
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.json.array.dynamic;
+
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+
+/**
+ * Runs the dynamic json array tests with streaming marshalling enabled.
+ *
+ * @author kimchy
+ */
+public class StreamingDynamicJsonArrayTests extends SimpleDynamicJsonArrayTests {
+
+    @Override
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(CompassEnvironment.Jsem.Streaming.ENABLED, true);
+    }
+}
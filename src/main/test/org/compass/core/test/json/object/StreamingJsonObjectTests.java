@@ -0,0 +1,58 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.json.object;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.json.RawAliasedJsonObject;
+
+/**
+ * Runs the json object tests with streaming marshalling enabled.
+ *
+ * @author kimchy
+ */
+public class StreamingJsonObjectTests extends SimpleJsonObjectTests {
+
+    @Override
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(CompassEnvironment.Jsem.Streaming.ENABLED, true);
+    }
+
+    public void testUnmappedValuesAreSkipped() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        RawAliasedJsonObject jsonObject = new RawAliasedJsonObject("a", "{skip : {x : [1, {y : 2}], z : []}, id : 1, " +
+                "obj : { arr : [1, 2], skip : \"x\", objValue1 : \"4\"}, value : \"test\"}");
+        session.save(jsonObject);
+
+        Resource resource = session.loadResource("a", 1);
+        assertEquals("test", resource.getValue("value"));
+        assertEquals(new Integer(4), resource.getObject("objValue1"));
+        assertEquals(2, resource.getProperties("arr").length);
+        assertNull(resource.getValue("skip"));
+        assertNull(resource.getValue("x"));
+        assertNull(resource.getValue("y"));
+
+        tr.commit();
+        session.close();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.json.simple;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.json.RawAliasedJsonObject;
+
+/**
+ * Runs the simple json tests with streaming marshalling enabled.
+ *
+ * @author kimchy
+ */
+public class StreamingJsonTests extends SimpleJsonTests {
+
+    @Override
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(CompassEnvironment.Jsem.Streaming.ENABLED, true);
+    }
+
+    public void testRawContentIsStoredAsIs() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        String json = "{id : 1, value : \"test\", other : [1, {a : 2}]}";
+        session.save(new RawAliasedJsonObject("b", json));
+
+        Resource resource = session.loadResource("b", 1);
+        assertEquals("test", resource.getValue("value"));
+        assertEquals(json, resource.getValue("test"));
+        assertNull(resource.getValue("other"));
+
+        tr.commit();
+        session.close();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.test.localcache;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.compass.core.lucene.engine.store.localcache.OffHeapDirectoryCache;
+import org.compass.core.util.FileSystemUtils;
+
+/**
+ * @author kimchy
+ */
+public class OffHeapLocalCacheTests extends TestCase {
+
+    public void test1Buffer() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=1&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        verifyData(dir);
+        dir.close();
+    }
+
+    public void test3Buffer() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=3&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        verifyData(dir);
+        dir.close();
+    }
+
+    public void test15Buffer() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=15&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        verifyData(dir);
+        dir.close();
+    }
+
+    public void test40Buffer() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=40&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        verifyData(dir);
+        dir.close();
+    }
+
+    public void testMappedSlabs() throws Exception {
+        File location = new File("target/test-offheap");
+        FileSystemUtils.deleteRecursively(location);
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=10&size=1k&location=" + location.getPath(), new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        verifyData(dir);
+        dir.close();
+        assertEquals(0, location.list().length);
+    }
+
+    public void testHitsAndMisses() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=10&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        // 38 bytes long file, 4 buckets
+        assertEquals(4, dir.getMissCount());
+        assertEquals(4, dir.getCachedBucketCount());
+        long hits = dir.getHitCount();
+        verifyData(dir);
+        assertEquals(4, dir.getMissCount());
+        assertTrue(dir.getHitCount() > hits);
+        assertEquals(0, dir.getEvictionCount());
+        dir.close();
+    }
+
+    public void testEviction() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=10&size=20", new RAMDirectory(), null);
+        insertData(dir);
+        for (int i = 0; i < 3; i++) {
+            verifyData(dir);
+        }
+        assertEquals(2, dir.getCachedBucketCount());
+        assertTrue(dir.getEvictionCount() > 0);
+        dir.close();
+    }
+
+    public void testRecreatedFileIsNotServedFromCache() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=10&size=1k", new RAMDirectory(), null);
+        IndexOutput indexOutput = dir.createOutput("value1");
+        indexOutput.writeInt(1);
+        indexOutput.close();
+        IndexInput indexInput = dir.openInput("value1");
+        assertEquals(1, indexInput.readInt());
+        indexInput.close();
+
+        dir.deleteFile("value1");
+        indexOutput = dir.createOutput("value1");
+        indexOutput.writeInt(2);
+        indexOutput.close();
+        indexInput = dir.openInput("value1");
+        assertEquals(2, indexInput.readInt());
+        indexInput.close();
+        dir.close();
+    }
+
+    public void testCacheFileNamesWithoutLocalCacheManager() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("bucketSize=10&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        dir.close();
+    }
+
+    public void testClosedCacheReadsFromActualDirectory() throws Exception {
+        OffHeapDirectoryCache dir = new OffHeapDirectoryCache("cacheFileNames=false&bucketSize=10&size=1k", new RAMDirectory(), null);
+        insertData(dir);
+        verifyData(dir);
+        dir.close();
+        // the slabs are freed, nothing is cached anymore
+        verifyData(dir);
+        assertEquals(0, dir.getCachedBucketCount());
+    }
+
+    private void insertData(OffHeapDirectoryCache dir) throws IOException {
+        byte[] test = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+        IndexOutput indexOutput = dir.createOutput("value1");
+        indexOutput.writeBytes(new byte[]{2, 4, 6, 7, 8}, 5);
+        indexOutput.writeInt(-1);
+        indexOutput.writeLong(10);
+        indexOutput.writeInt(0);
+        indexOutput.writeInt(0);
+        indexOutput.writeBytes(test, 8);
+        indexOutput.writeBytes(test, 5);
+
+        indexOutput.seek(0);
+        indexOutput.writeByte((byte) 8);
+        if (dir.getBucketSize() > 4) {
+            indexOutput.seek(2);
+            indexOutput.writeBytes(new byte[]{1, 2}, 2);
+        }
+
+        indexOutput.close();
+    }
+
+    private void verifyData(OffHeapDirectoryCache dir) throws IOException {
+        byte[] test = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+        assertTrue(dir.fileExists("value1"));
+        assertEquals(38, dir.fileLength("value1"));
+
+        IndexInput indexInput = dir.openInput("value1");
+        indexInput.readBytes(test, 0, 5);
+        assertEquals(8, test[0]);
+        assertEquals(-1, indexInput.readInt());
+        assertEquals(10, indexInput.readLong());
+        assertEquals(0, indexInput.readInt());
+        assertEquals(0, indexInput.readInt());
+        indexInput.readBytes(test, 0, 8);
+        assertEquals((byte) 1, test[0]);
+        assertEquals((byte) 8, test[7]);
+        indexInput.readBytes(test, 0, 5);
+        assertEquals((byte) 1, test[0]);
+        assertEquals((byte) 5, test[4]);
+
+        indexInput.seek(28);
+        assertEquals((byte) 4, indexInput.readByte());
+        indexInput.seek(30);
+        assertEquals((byte) 6, indexInput.readByte());
+
+        IndexInput clone = (IndexInput) indexInput.clone();
+        clone.seek(5);
+        assertEquals(-1, clone.readInt());
+        clone.close();
+
+        indexInput.close();
+    }
+}
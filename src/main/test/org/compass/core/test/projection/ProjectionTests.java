@@ -0,0 +1,151 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.test.projection;
+
+import org.compass.core.CompassHits;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.cache.first.PlainFirstLevelCache;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.lucene.LuceneProperty;
+import org.compass.core.spi.InternalResource;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class ProjectionTests extends AbstractTestCase {
+
+    protected String[] getMappings() {
+        return new String[]{"projection/mapping.cpm.xml"};
+    }
+
+    protected void addSettings(CompassSettings settings) {
+        settings.setSetting(CompassEnvironment.Cache.FirstLevel.TYPE, PlainFirstLevelCache.class.getName());
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        A a = new A();
+        a.setId(1l);
+        a.setTitle("first");
+        a.setName("firstname");
+        a.setBody("the body of the first");
+        session.save(a);
+        tr.commit();
+        session.close();
+    }
+
+    public void testProjectedProperties() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassHits hits = session.queryBuilder().queryString("first").toQuery().setProperties("title").hits();
+        assertEquals(1, hits.length());
+        Resource resource = hits.resource(0);
+        assertTrue(((InternalResource) resource).isPartial());
+        assertEquals("a", resource.getAlias());
+        assertEquals("1", resource.getId());
+        assertEquals("first", resource.getValue("title"));
+        assertNull(resource.getValue("body"));
+
+        A a = (A) hits.data(0);
+        assertEquals(1, a.getId().longValue());
+        assertEquals("first", a.getTitle());
+        assertNull(a.getName());
+        assertNull(a.getBody());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testProjectedPropertyWithInternalId() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassHits hits = session.queryBuilder().queryString("first").toQuery().setProperties("name").hits();
+        A a = (A) hits.data(0);
+        assertEquals("firstname", a.getName());
+        assertNull(a.getTitle());
+        assertNull(a.getBody());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testProjectionIsNotCached() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassHits hits = session.queryBuilder().queryString("first").toQuery().setProperties("title").hits();
+        A a = (A) hits.data(0);
+        assertNull(a.getBody());
+
+        a = session.load(A.class, 1);
+        assertEquals("the body of the first", a.getBody());
+        assertEquals("the body of the first", session.loadResource(A.class, 1).getValue("body"));
+
+        // a full object already in the session cache is returned as is
+        hits = session.queryBuilder().queryString("first").toQuery().setProperties("title").hits();
+        assertSame(a, hits.data(0));
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testLazyProperties() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassHits hits = session.queryBuilder().queryString("first").toQuery().setLazyProperties("body").hits();
+        Resource resource = hits.resource(0);
+        assertFalse(((InternalResource) resource).isPartial());
+        assertTrue(((LuceneProperty) resource.getProperty("body")).getField().isLazy());
+        assertFalse(((LuceneProperty) resource.getProperty("title")).getField().isLazy());
+        assertEquals("the body of the first", resource.getValue("body"));
+
+        A a = (A) hits.data(0);
+        assertEquals("first", a.getTitle());
+        assertEquals("the body of the first", a.getBody());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testProjectedAndLazyProperties() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassHits hits = session.queryBuilder().queryString("first").toQuery()
+                .setProperties("title").setLazyProperties("body").hits();
+        Resource resource = hits.resource(0);
+        assertEquals("first", resource.getValue("title"));
+        assertTrue(((LuceneProperty) resource.getProperty("body")).getField().isLazy());
+        A a = (A) hits.data(0);
+        assertEquals("first", a.getTitle());
+        assertEquals("the body of the first", a.getBody());
+        assertNull(a.getName());
+
+        tr.commit();
+        session.close();
+    }
+}
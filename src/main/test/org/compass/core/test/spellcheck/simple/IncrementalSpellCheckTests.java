@@ -0,0 +1,62 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.spellcheck.simple;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.engine.spellcheck.SearchEngineSpellCheckManager;
+import org.compass.core.lucene.LuceneEnvironment;
+
+/**
+ * @author kimchy
+ */
+public class IncrementalSpellCheckTests extends SpellCheckTests {
+
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(LuceneEnvironment.SpellCheck.INCREMENTAL, true);
+    }
+
+    public void testIncrementalUpdate() {
+        setUpData();
+        SearchEngineSpellCheckManager spellCheckManager = getCompass().getSpellCheckManager();
+        assertTrue(spellCheckManager.rebuild());
+        assertFalse(spellCheckManager.rebuild());
+        assertFalse(spellCheckManager.suggestBuilder("seven").subIndexes("a1").suggest().isExists());
+
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        A a = new A();
+        a.id = 2;
+        a.value1 = "seven";
+        a.value2 = "eleven";
+        session.save("a1", a);
+        tr.commit();
+        session.close();
+
+        assertTrue(spellCheckManager.isRebuildNeeded());
+        assertTrue(spellCheckManager.rebuild());
+        assertFalse(spellCheckManager.isRebuildNeeded());
+
+        assertTrue(spellCheckManager.suggestBuilder("seven").subIndexes("a1").suggest().isExists());
+        assertTrue(spellCheckManager.suggestBuilder("five").subIndexes("a1").suggest().isExists());
+        String[] suggestions = spellCheckManager.suggestBuilder("sevn").suggest().getSuggestions();
+        assertEquals(1, suggestions.length);
+        assertEquals("seven", suggestions[0]);
+    }
+}
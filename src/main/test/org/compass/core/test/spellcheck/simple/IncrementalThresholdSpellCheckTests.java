@@ -0,0 +1,71 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.spellcheck.simple;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.engine.spellcheck.SearchEngineSpellCheckManager;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class IncrementalThresholdSpellCheckTests extends AbstractTestCase {
+
+    protected String[] getMappings() {
+        return new String[]{"spellcheck/simple/mapping.cpm.xml"};
+    }
+
+    protected void addSettings(CompassSettings settings) {
+        settings.setBooleanSetting(LuceneEnvironment.SpellCheck.ENABLE, true);
+        settings.setBooleanSetting(LuceneEnvironment.SpellCheck.SCHEDULE, false);
+        settings.setBooleanSetting(LuceneEnvironment.SpellCheck.INCREMENTAL, true);
+        settings.setFloatSetting(LuceneEnvironment.SpellCheck.DICTIONARY_THRESHOLD, 0.5f);
+    }
+
+    public void testWordsCrossingThreshold() {
+        save(1, "five", "sixteen");
+        SearchEngineSpellCheckManager spellCheckManager = getCompass().getSpellCheckManager();
+        assertTrue(spellCheckManager.rebuild());
+        assertTrue(spellCheckManager.suggestBuilder("five").suggest().isExists());
+        assertFalse(spellCheckManager.suggestBuilder("seven").suggest().isExists());
+
+        for (int i = 2; i < 5; i++) {
+            save(i, "seven", "eleven");
+        }
+        assertTrue(spellCheckManager.rebuild());
+
+        // five now appears in 1 out of 4 documents, below the threshold
+        assertFalse(spellCheckManager.suggestBuilder("five").suggest().isExists());
+        assertTrue(spellCheckManager.suggestBuilder("seven").suggest().isExists());
+        assertTrue(spellCheckManager.suggestBuilder("eleven").suggest().isExists());
+    }
+
+    private void save(int id, String value1, String value2) {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        A a = new A();
+        a.id = id;
+        a.value1 = value1;
+        a.value2 = value2;
+        session.save("a1", a);
+        tr.commit();
+        session.close();
+    }
+}
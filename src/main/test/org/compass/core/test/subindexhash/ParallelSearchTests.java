@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.subindexhash;
+
+import org.compass.core.CompassHits;
+import org.compass.core.CompassQuery;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class ParallelSearchTests extends AbstractTestCase {
+
+    protected String[] getMappings() {
+        return new String[]{"subindexhash/osem-modulo.cpm.xml"};
+    }
+
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(LuceneEnvironment.Search.PARALLEL, true);
+    }
+
+    public void testParallelSearchAcrossSubIndexes() throws Exception {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        for (long i = 0; i < 20; i++) {
+            A a = new A();
+            a.setId(i);
+            a.setValue("value");
+            session.save(a);
+        }
+        tr.commit();
+
+        tr = session.beginTransaction();
+        CompassHits hits = session.find("value");
+        assertEquals(20, hits.length());
+
+        hits = session.queryBuilder().queryString("value").toQuery()
+                .addSort("id", CompassQuery.SortPropertyType.LONG, CompassQuery.SortDirection.REVERSE).hits();
+        assertEquals(20, hits.length());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(new Long(19 - i), ((A) hits.data(i)).getId());
+        }
+        tr.commit();
+        session.close();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.transaction.processor.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.lucene.LuceneEnvironment;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * Verifies that concurrent transactions share the dirty operations processing threads while
+ * each transaction only waits for (and sees) its own operations.
+ *
+ * @author kimchy
+ */
+public class SharedPipelineTests extends AbstractTestCase {
+
+    private static final int NUMBER_OF_THREADS = 10;
+
+    private static final int OPERATIONS_PER_TRANSACTION = 20;
+
+    protected String[] getMappings() {
+        return new String[]{"transaction/processor/pipeline/mapping.cpm.xml"};
+    }
+
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setIntSetting(LuceneEnvironment.Transaction.Processor.ReadCommitted.CONCURRENCY_LEVEL, 3);
+        settings.setIntSetting(LuceneEnvironment.Transaction.Processor.ReadCommitted.BACKLOG, 5);
+        settings.setSetting(LuceneEnvironment.Transaction.LOCK_TIMEOUT, "30s");
+    }
+
+    public void testConcurrentTransactions() throws Exception {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[NUMBER_OF_THREADS];
+        for (int i = 0; i < threads.length; i++) {
+            final int threadId = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        CompassSession session = openSession();
+                        CompassTransaction tr = session.beginTransaction();
+                        for (int j = 0; j < OPERATIONS_PER_TRANSACTION; j++) {
+                            long id = threadId * OPERATIONS_PER_TRANSACTION + j;
+                            session.create(new A(id, "thread" + threadId));
+                        }
+                        // a transaction sees all of its own operations, and only them, before commit
+                        assertEquals(OPERATIONS_PER_TRANSACTION, session.find("value:thread" + threadId).length());
+                        tr.commit();
+                        session.close();
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            }, "T" + i);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!errors.isEmpty()) {
+            throw new Exception("Concurrent transaction failed", errors.get(0));
+        }
+
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        assertEquals(NUMBER_OF_THREADS * OPERATIONS_PER_TRANSACTION, session.queryBuilder().alias("a").hits().length());
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            assertEquals(OPERATIONS_PER_TRANSACTION, session.find("value:thread" + i).length());
+        }
+        tr.commit();
+        session.close();
+    }
+
+    /**
+     * Note, uses a different sub index for each transaction, since the writer lock is acquired by the
+     * calling thread.
+     */
+    public void testRollbackDoesNotAffectOtherTransactions() throws Exception {
+        final CountDownLatch created = new CountDownLatch(1);
+        final CountDownLatch committed = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    CompassSession session = openSession();
+                    CompassTransaction tr = session.beginTransaction();
+                    for (long i = 0; i < OPERATIONS_PER_TRANSACTION; i++) {
+                        session.create(new A(i, "first"));
+                    }
+                    created.countDown();
+                    committed.await();
+                    tr.rollback();
+                    session.close();
+                } catch (Throwable e) {
+                    errors.add(e);
+                    created.countDown();
+                }
+            }
+        }, "T");
+        thread.start();
+
+        created.await();
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        for (long i = 0; i < OPERATIONS_PER_TRANSACTION; i++) {
+            session.create(new B(i, "second"));
+        }
+        tr.commit();
+        session.close();
+        committed.countDown();
+        thread.join();
+        if (!errors.isEmpty()) {
+            throw new Exception("Rolled back transaction failed", errors.get(0));
+        }
+
+        session = openSession();
+        tr = session.beginTransaction();
+        assertEquals(0, session.find("value:first").length());
+        assertEquals(OPERATIONS_PER_TRANSACTION, session.find("value:second").length());
+        tr.commit();
+        session.close();
+    }
+}
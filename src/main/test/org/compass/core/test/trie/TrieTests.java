@@ -0,0 +1,201 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.test.trie;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.compass.core.CompassHits;
+import org.compass.core.CompassQuery;
+import org.compass.core.CompassQueryBuilder;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.test.AbstractTestCase;
+
+/**
+ * @author kimchy
+ */
+public class TrieTests extends AbstractTestCase {
+
+    private List<A> values = new ArrayList<A>();
+
+    protected String[] getMappings() {
+        return new String[]{"trie/mapping.cpm.xml"};
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        values.clear();
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        long id = 1;
+        for (int i = -60; i <= 60; i++) {
+            A a = new A(id++, i * 37, i * 123456789012L, i / 4f, i * 1.5e10 / 7, date(2008, 6, 1, i));
+            values.add(a);
+            session.save(a);
+        }
+        tr.commit();
+        session.close();
+    }
+
+    public void testMarshallingRoundTrip() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        for (A expected : new A[]{values.get(0), values.get(60), values.get(120)}) {
+            A a = session.load(A.class, expected.getId());
+            assertEquals(expected.getIntValue(), a.getIntValue());
+            assertEquals(expected.getLongValue(), a.getLongValue());
+            assertEquals(expected.getFloatValue(), a.getFloatValue(), 0);
+            assertEquals(expected.getDoubleValue(), a.getDoubleValue(), 0);
+            assertEquals(expected.getDate(), a.getDate());
+        }
+
+        // lower precision terms are indexed, but are internal and not stored
+        Resource resource = session.loadResource(A.class, values.get(0).getId());
+        assertNull(resource.getProperty("$trie/intValue"));
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testIntRanges() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        CompassQueryBuilder queryBuilder = session.queryBuilder();
+
+        assertCount(countInt(-370, 370, true, true), queryBuilder.between("intValue", -370, 370, true));
+        assertCount(countInt(-370, 370, false, false), queryBuilder.between("intValue", -370, 370, false));
+        assertCount(countInt(-1000, 1500, true, true), queryBuilder.between("intValue", -1000, 1500, true));
+        assertCount(countInt(Integer.MIN_VALUE, 0, true, false), queryBuilder.lt("intValue", 0));
+        assertCount(countInt(Integer.MIN_VALUE, 0, true, true), queryBuilder.le("intValue", 0));
+        assertCount(countInt(111, Integer.MAX_VALUE, false, true), queryBuilder.gt("intValue", 111));
+        assertCount(countInt(111, Integer.MAX_VALUE, true, true), queryBuilder.ge("intValue", 111));
+        assertCount(0, queryBuilder.between("intValue", 10000, 20000, true));
+        assertCount(1, queryBuilder.term("intValue", 37));
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testLongAndFloatingPointRanges() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+        CompassQueryBuilder queryBuilder = session.queryBuilder();
+
+        int expected = 0;
+        for (A a : values) {
+            if (a.getLongValue() >= -1000000000000L && a.getLongValue() < 5000000000000L) {
+                expected++;
+            }
+        }
+        assertCount(expected, queryBuilder.bool()
+                .addMust(queryBuilder.ge("longValue", -1000000000000L))
+                .addMust(queryBuilder.lt("longValue", 5000000000000L)).toQuery());
+
+        expected = 0;
+        for (A a : values) {
+            if (a.getFloatValue() >= -2.5f && a.getFloatValue() <= 7.25f) {
+                expected++;
+            }
+        }
+        assertCount(expected, queryBuilder.between("floatValue", -2.5f, 7.25f, true));
+
+        expected = 0;
+        for (A a : values) {
+            if (a.getDoubleValue() > -1.0e11 && a.getDoubleValue() < 3.3e10) {
+                expected++;
+            }
+        }
+        assertCount(expected, queryBuilder.between("doubleValue", -1.0e11, 3.3e10, false));
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testDateRange() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        assertCount(10, session.queryBuilder().between("date", date(2008, 6, 1, 0), date(2008, 6, 1, 9), true));
+        assertCount(10, session.queryBuilder().queryString("date:[2008-06-01 TO 2008-06-10]").toQuery());
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testQueryStringAndFilterRanges() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        assertCount(countInt(-370, 370, true, true), session.queryBuilder().queryString("intValue:[-370 TO 370]").toQuery());
+        assertCount(countInt(-370, 370, false, false), session.queryBuilder().queryString("intValue:{-370 TO 370}").toQuery());
+        assertCount(countInt(0, Integer.MAX_VALUE, true, true), session.queryBuilder().queryString("intValue:[0 TO *]").toQuery());
+
+        CompassQuery query = session.queryBuilder().matchAll();
+        query.setFilter(session.queryFilterBuilder().between("intValue", -370, 370, true, false));
+        assertCount(countInt(-370, 370, true, false), query);
+
+        query = session.queryBuilder().matchAll();
+        query.setFilter(session.queryFilterBuilder().gt("intValue", 1000));
+        assertCount(countInt(1000, Integer.MAX_VALUE, false, true), query);
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testSortByTrieProperty() {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        CompassHits hits = session.queryBuilder().between("intValue", -74, 74, true)
+                .addSort("intValue", CompassQuery.SortPropertyType.STRING).hits();
+        assertEquals(5, hits.length());
+        for (int i = 0; i < hits.length(); i++) {
+            assertEquals((i - 2) * 37, ((A) hits.data(i)).getIntValue());
+        }
+
+        tr.commit();
+        session.close();
+    }
+
+    private int countInt(int low, int high, boolean includeLow, boolean includeHigh) {
+        int count = 0;
+        for (A a : values) {
+            int value = a.getIntValue();
+            if ((value > low || (includeLow && value == low)) && (value < high || (includeHigh && value == high))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void assertCount(int expected, CompassQuery query) {
+        assertEquals(query.toString(), expected, query.hits().length());
+    }
+
+    private static Date date(int year, int month, int day, int addDays) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        calendar.add(Calendar.DAY_OF_MONTH, addDays);
+        return calendar.getTime();
+    }
+}
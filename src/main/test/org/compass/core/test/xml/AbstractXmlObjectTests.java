@@ -115,7 +115,7 @@ public abstract class AbstractXmlObjectTests extends AbstractTestCase {
 
     protected abstract AliasedXmlObject buildAliasedXmlObject(String alias, Reader data) throws Exception;
 
-    private Reader readData(String path) {
+    protected Reader readData(String path) {
         path = "org/compass/core/test/xml/" + path + ".xml";
         return new InputStreamReader(Thread.currentThread().getContextClassLoader().getResourceAsStream(path));
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.test.xml.dom4j;
+
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.Resource;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.core.config.CompassSettings;
+import org.compass.core.xml.AliasedXmlObject;
+import org.compass.core.xml.XmlObject;
+
+/**
+ * Runs the raw xml object tests with streaming marshalling enabled.
+ *
+ * @author kimchy
+ */
+public class StreamingRawXmlObjectTests extends RawXmlObjectTests {
+
+    @Override
+    protected String[] getMappings() {
+        return new String[]{"xml/xml.cpm.xml", "xml/dom4j/streaming.cpm.xml"};
+    }
+
+    @Override
+    protected void addSettings(CompassSettings settings) {
+        super.addSettings(settings);
+        settings.setBooleanSetting(CompassEnvironment.Xsem.Streaming.ENABLED, true);
+    }
+
+    public void testStreamingWithNamespaces() throws Exception {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        AliasedXmlObject xmlObject = buildAliasedXmlObject("stream5", readData("data5"));
+        session.save(xmlObject);
+
+        Resource resource = session.loadResource("stream5", "1");
+        assertEquals(2, resource.getProperties("eleText").length);
+        assertEquals("data11", resource.getProperties("eleText")[0].getStringValue());
+        assertEquals("data12", resource.getProperties("eleText")[1].getStringValue());
+        assertEquals(2, resource.getProperties("value").length);
+        assertNull(session.getResource("stream5", "2"));
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testStreamingWithValueConverters() throws Exception {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        AliasedXmlObject xmlObject = buildAliasedXmlObject("stream6", readData("data6"));
+        session.save(xmlObject);
+
+        Resource resource = session.loadResource("stream6", "1");
+        assertEquals("2001-12-03", resource.getValue("eleText"));
+        assertEquals("000021.2000", resource.getValue("value"));
+
+        tr.commit();
+        session.close();
+    }
+
+    public void testStreamingWithDomFallbackAndContent() throws Exception {
+        CompassSession session = openSession();
+        CompassTransaction tr = session.beginTransaction();
+
+        AliasedXmlObject xmlObject = buildAliasedXmlObject("streamMixed", readData("data1"));
+        session.save(xmlObject);
+
+        Resource resource = session.loadResource("streamMixed", "1");
+        assertEquals(2, resource.getProperties("eleText").length);
+        // relative xpath, marshalled using DOM
+        assertEquals(2, resource.getProperties("value").length);
+        assertEquals("data11attr", resource.getProperties("value")[0].getStringValue());
+
+        xmlObject = (AliasedXmlObject) session.get("streamMixed", "1");
+        XmlObject[] ids = xmlObject.selectPath("/xml-fragment/data/id/@value");
+        assertEquals(1, ids.length);
+        assertEquals("1", ids[0].getValue());
+
+        tr.commit();
+        session.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.core.util.concurrent;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * @author kimchy
+ */
+public class StripedPoolTests extends TestCase {
+
+    private static class CountingPool extends StripedPool<Object> {
+
+        final AtomicInteger created = new AtomicInteger();
+
+        CountingPool(int maxSize) {
+            super(maxSize);
+        }
+
+        CountingPool(int initialSize, int maxSize) {
+            super(initialSize, maxSize);
+        }
+
+        protected Object create() {
+            created.incrementAndGet();
+            return new Object();
+        }
+    }
+
+    public void testFetchReusesReleasedInstance() {
+        CountingPool pool = new CountingPool(4);
+        pool.fill(2);
+        assertEquals(2, pool.created.get());
+
+        Object instance = pool.fetch();
+        pool.release(instance);
+        assertSame(instance, pool.fetch());
+        assertEquals(2, pool.created.get());
+        assertEquals(0, pool.getMissCount());
+    }
+
+    public void testInitialInstancesAreCreatedOnFirstFetch() {
+        CountingPool pool = new CountingPool(3, 4);
+        assertEquals(0, pool.created.get());
+
+        Object instance = pool.fetch();
+        assertEquals(3, pool.created.get());
+        assertEquals(0, pool.getMissCount());
+        pool.release(instance);
+        pool.fetch();
+        assertEquals(3, pool.created.get());
+    }
+
+    public void testExhaustedPoolCreatesInstances() {
+        CountingPool pool = new CountingPool(2);
+        pool.fill(2);
+
+        Set<Object> instances = new HashSet<Object>();
+        for (int i = 0; i < 5; i++) {
+            instances.add(pool.fetch());
+        }
+        assertEquals(5, instances.size());
+        assertEquals(5, pool.created.get());
+        assertEquals(3, pool.getMissCount());
+
+        // only two are kept once released
+        for (Object instance : instances) {
+            pool.release(instance);
+        }
+        pool.fetch();
+        pool.fetch();
+        pool.fetch();
+        assertEquals(6, pool.created.get());
+    }
+
+    public void testInstancesAreNotShared() throws Exception {
+        final CountingPool pool = new CountingPool(4);
+        pool.fill(4);
+        final Set<Object> inUse = new ConcurrentHashSet<Object>();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CountDownLatch latch = new CountDownLatch(16);
+        for (int i = 0; i < 16; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10000; j++) {
+                            Object instance = pool.fetch();
+                            if (!inUse.add(instance)) {
+                                failure.set("Instance fetched by two threads");
+                            }
+                            inUse.remove(instance);
+                            pool.release(instance);
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        assertNull(failure.get(), failure.get());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.compass.core.xml.stream;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import junit.framework.TestCase;
+import org.compass.core.xml.XmlObject;
+
+/**
+ * @author kimchy
+ */
+public class StreamingXPathMatcherTests extends TestCase {
+
+    private static final String XML = "<root xmlns:t='http://test'>" +
+            "<item id='1'><name>first</name><t:tag>a</t:tag><sub><name>nested</name></sub></item>" +
+            "<item id='2'>text<name>second</name>more<!-- comment --><![CDATA[ cdata]]></item>" +
+            "</root>";
+
+    private Map<String, String> namespaces = new HashMap<String, String>();
+
+    protected void setUp() throws Exception {
+        namespaces.put("t", "http://test");
+    }
+
+    public void testCompile() {
+        assertNotNull(StreamingXPath.compile("/root/item", namespaces));
+        assertNotNull(StreamingXPath.compile("//item/@id", namespaces));
+        assertNotNull(StreamingXPath.compile("./name", namespaces));
+        assertNotNull(StreamingXPath.compile("t:*", namespaces));
+        assertNotNull(StreamingXPath.compile("*/@*", namespaces));
+        assertTrue(StreamingXPath.compile("/root/item", namespaces).isAbsolute());
+        assertFalse(StreamingXPath.compile("name", namespaces).isAbsolute());
+        assertTrue(StreamingXPath.compile("item/@id", namespaces).isAttribute());
+
+        assertNull(StreamingXPath.compile("/root/item[1]", namespaces));
+        assertNull(StreamingXPath.compile("/root/item/text()", namespaces));
+        assertNull(StreamingXPath.compile("../item", namespaces));
+        assertNull(StreamingXPath.compile(".", namespaces));
+        assertNull(StreamingXPath.compile("/", namespaces));
+        assertNull(StreamingXPath.compile("/root/", namespaces));
+        assertNull(StreamingXPath.compile("/@id", namespaces));
+        assertNull(StreamingXPath.compile("@id/name", namespaces));
+        assertNull(StreamingXPath.compile("a | b", namespaces));
+        assertNull(StreamingXPath.compile("child::a", namespaces));
+        assertNull(StreamingXPath.compile("x:a", namespaces));
+    }
+
+    public void testAbsoluteExpressions() throws Exception {
+        StreamingXPathMatcher matcher = new StreamingXPathMatcher(null, new StreamingXPath[]{
+                StreamingXPath.compile("/root/item/name", namespaces),
+                StreamingXPath.compile("//name", namespaces),
+                StreamingXPath.compile("/root/item/@id", namespaces),
+                null,
+                StreamingXPath.compile("/root/*/t:tag", namespaces),
+                StreamingXPath.compile("/root/item", namespaces)
+        });
+        List<StreamingXPathMatcher.Scope> scopes = match(matcher);
+        assertEquals(1, scopes.size());
+        StreamingXPathMatcher.Scope scope = scopes.get(0);
+        assertValues(scope.getValues(0), "first", "second");
+        assertValues(scope.getValues(1), "first", "nested", "second");
+        assertValues(scope.getValues(2), "1", "2");
+        assertEquals("id", scope.getValues(2).get(0).getName());
+        assertEquals(0, scope.getValues(3).size());
+        assertValues(scope.getValues(4), "a");
+        assertEquals("tag", scope.getValues(4).get(0).getName());
+        // only direct text, ignoring comments
+        assertValues(scope.getValues(5), "", "textmore cdata");
+    }
+
+    public void testRootExpression() throws Exception {
+        StreamingXPathMatcher matcher = new StreamingXPathMatcher(StreamingXPath.compile("/root/item", namespaces),
+                new StreamingXPath[]{
+                        StreamingXPath.compile("@id", namespaces),
+                        StreamingXPath.compile("name", namespaces),
+                        StreamingXPath.compile(".//name", namespaces),
+                        StreamingXPath.compile(".//@id", namespaces)
+                });
+        List<StreamingXPathMatcher.Scope> scopes = match(matcher);
+        assertEquals(2, scopes.size());
+        assertValues(scopes.get(0).getValues(0), "1");
+        assertValues(scopes.get(0).getValues(1), "first");
+        assertValues(scopes.get(0).getValues(2), "first", "nested");
+        assertValues(scopes.get(0).getValues(3), "1");
+        assertValues(scopes.get(1).getValues(0), "2");
+        assertValues(scopes.get(1).getValues(1), "second");
+        assertValues(scopes.get(1).getValues(2), "second");
+    }
+
+    public void testNestedRootMatches() throws Exception {
+        String xml = "<a><b><v>1</v><b><v>2</v></b></b></a>";
+        StreamingXPathMatcher matcher = new StreamingXPathMatcher(StreamingXPath.compile("//b", namespaces),
+                new StreamingXPath[]{StreamingXPath.compile(".//v", namespaces)});
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+        List<StreamingXPathMatcher.Scope> scopes = matcher.match(reader);
+        assertEquals(2, scopes.size());
+        assertValues(scopes.get(0).getValues(0), "1", "2");
+        assertValues(scopes.get(1).getValues(0), "2");
+    }
+
+    public void testInvalidCombinations() {
+        try {
+            new StreamingXPathMatcher(null, new StreamingXPath[]{StreamingXPath.compile("name", namespaces)});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // all is well
+        }
+        try {
+            new StreamingXPathMatcher(StreamingXPath.compile("/root", namespaces),
+                    new StreamingXPath[]{StreamingXPath.compile("/root/name", namespaces)});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // all is well
+        }
+    }
+
+    private List<StreamingXPathMatcher.Scope> match(StreamingXPathMatcher matcher) throws Exception {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(XML));
+        try {
+            return matcher.match(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void assertValues(List<XmlObject> values, String... expected) {
+        assertEquals(expected.length, values.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], values.get(i).getValue());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.hibernate.simple;
+
+import org.compass.gps.device.hibernate.HibernateGpsDevice;
+import org.compass.gps.device.hibernate.indexer.PartitionedHibernateIndexEntitiesIndexer;
+
+/**
+ * @author kimchy
+ */
+public class PartitionedSimpleHibernateGpsDeviceTests extends AbstractSimpleHibernateGpsDeviceTests {
+
+    protected void addDeviceSettings(HibernateGpsDevice device) {
+        PartitionedHibernateIndexEntitiesIndexer indexer = new PartitionedHibernateIndexEntitiesIndexer();
+        // a range per row
+        indexer.setPartitionSize(1);
+        indexer.setThreads(2);
+        indexer.setCheckpointInterval(1);
+        device.setEntitiesIndexer(indexer);
+        device.setFetchCount(1);
+    }
+}
@@ -16,8 +16,11 @@
 
 package org.compass.gps.device.jdbc;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
 
 import org.compass.core.Compass;
 import org.compass.core.CompassDetachedHits;
@@ -28,7 +31,12 @@ import org.compass.core.config.CompassEnvironment;
 import org.compass.gps.device.jdbc.mapping.DataColumnToPropertyMapping;
 import org.compass.gps.device.jdbc.mapping.TableToResourceMapping;
 import org.compass.gps.device.jdbc.mapping.VersionColumnMapping;
+import org.compass.gps.device.jdbc.snapshot.CompactFSJdbcSnapshotPersister;
 import org.compass.gps.device.jdbc.snapshot.FSJdbcSnapshotPersister;
+import org.compass.gps.device.jdbc.snapshot.JdbcAliasRowSnapshot;
+import org.compass.gps.device.jdbc.snapshot.JdbcAliasSnapshot;
+import org.compass.gps.device.jdbc.snapshot.JdbcSnapshot;
+import org.compass.gps.device.jdbc.snapshot.JdbcSnapshotPersister;
 import org.compass.gps.impl.SingleCompassGps;
 
 /**
@@ -103,6 +111,10 @@ public class TableJdbcGpsDeviceTests extends AbstractJdbcGpsDeviceTests {
     }
 
     protected void setUpAutomaticMapping() throws Exception {
+        setUpAutomaticMapping(new FSJdbcSnapshotPersister("target/testindex/snapshot"));
+    }
+
+    protected void setUpAutomaticMapping(JdbcSnapshotPersister snapshotPersister) throws Exception {
         // set up the database mappings, since they are used both to generate
         // the resource mappings and configure the jdbc gps device
         TableToResourceMapping parentMapping = new TableToResourceMapping("PARENT", "parent");
@@ -126,7 +138,7 @@ public class TableJdbcGpsDeviceTests extends AbstractJdbcGpsDeviceTests {
         compassTemplate = new CompassTemplate(compass);
 
         gpsDevice = new ResultSetJdbcGpsDevice();
-        gpsDevice.setSnapshotPersister(new FSJdbcSnapshotPersister("target/testindex/snapshot"));
+        gpsDevice.setSnapshotPersister(snapshotPersister);
         gpsDevice.setDataSource(dataSource);
         gpsDevice.setName("tableJdbcDevice");
         gpsDevice.addMapping(parentMapping);
@@ -205,4 +217,195 @@ public class TableJdbcGpsDeviceTests extends AbstractJdbcGpsDeviceTests {
         r = compassTemplate.getResource("parent", "999");
         assertNull(r);
     }
+
+    public void testAutomaticMappingWithMirroringAndCompactFSPersister() throws Exception {
+        deleteCompactSnapshot("target/testindex/compact-snapshot");
+        setUpAutomaticMapping(new CompactFSJdbcSnapshotPersister("target/testindex/compact-snapshot"));
+        gpsDevice.setMirrorDataChanges(true);
+        gpsDevice.setSaveSnapshotAfterMirror(true);
+        gps.index();
+        CompassDetachedHits hits = compassTemplate.findWithDetach("parent");
+        assertEquals(4, hits.getLength());
+
+        // test that create works, and that the change survives a reload of the snapshot
+        Connection con = JdbcUtils.getConnection(dataSource);
+        PreparedStatement ps = con
+                .prepareStatement("INSERT INTO parent VALUES (999, 'parent first 999', 'last 999', 1);");
+        ps.execute();
+        ps.close();
+        con.commit();
+        con.close();
+
+        gpsDevice.performMirroring();
+        compassTemplate.loadResource("parent", "999");
+        assertTrue(new File("target/testindex/compact-snapshot.log").exists());
+
+        gps.stop();
+        gps.start();
+        // nothing changed since the reload, so the mirror should not detect anything
+        compassTemplate.delete("parent", "999");
+        gpsDevice.performMirroring();
+        assertNull(compassTemplate.getResource("parent", "999"));
+
+        // test that update works
+        con = JdbcUtils.getConnection(dataSource);
+        ps = con.prepareStatement("update parent set first_name = 'new first name', version = 2 where id = 1");
+        ps.execute();
+        ps.close();
+        con.commit();
+        con.close();
+
+        gpsDevice.performMirroring();
+        Resource r = compassTemplate.loadResource("parent", "1");
+        assertEquals("new first name", r.getValue("FIRST_NAME"));
+
+        // test that delete works
+        con = JdbcUtils.getConnection(dataSource);
+        ps = con.prepareStatement("delete from parent where id = 999");
+        ps.execute();
+        ps.close();
+        con.commit();
+        con.close();
+
+        gpsDevice.performMirroring();
+
+        // the reloaded snapshot should reflect both the update and the delete
+        gps.stop();
+        gps.start();
+        JdbcAliasSnapshot aliasSnapshot = gpsDevice.getJdbcSnapshot().getAliasSnapshot("parent");
+        assertEquals(4, aliasSnapshot.getRowCount());
+        JdbcAliasRowSnapshot rowSnapshot = new JdbcAliasRowSnapshot();
+        rowSnapshot.addIdValue("1");
+        assertEquals(2, aliasSnapshot.getRow(rowSnapshot).getVersion(0));
+    }
+
+    public void testMirroringInBatchesWithCompactFSPersister() throws Exception {
+        deleteCompactSnapshot("target/testindex/compact-snapshot");
+        setUpAutomaticMapping(new CompactFSJdbcSnapshotPersister("target/testindex/compact-snapshot"));
+        gpsDevice.setMirrorDataChanges(true);
+        gpsDevice.setSaveSnapshotAfterMirror(true);
+        gpsDevice.setMirrorBatchSize(1);
+        gps.index();
+
+        Connection con = JdbcUtils.getConnection(dataSource);
+        PreparedStatement ps = con.prepareStatement("INSERT INTO parent VALUES (998, 'parent first 998', 'last 998', 1);");
+        ps.execute();
+        ps.close();
+        ps = con.prepareStatement("INSERT INTO parent VALUES (999, 'parent first 999', 'last 999', 1);");
+        ps.execute();
+        ps.close();
+        ps = con.prepareStatement("update parent set first_name = 'new first name', version = 2 where id = 1");
+        ps.execute();
+        ps.close();
+        con.commit();
+        con.close();
+
+        gpsDevice.performMirroring();
+        compassTemplate.loadResource("parent", "998");
+        compassTemplate.loadResource("parent", "999");
+        assertEquals("new first name", compassTemplate.loadResource("parent", "1").getValue("FIRST_NAME"));
+
+        con = JdbcUtils.getConnection(dataSource);
+        ps = con.prepareStatement("delete from parent where id >= 998");
+        ps.execute();
+        ps.close();
+        con.commit();
+        con.close();
+
+        gpsDevice.performMirroring();
+        assertNull(compassTemplate.getResource("parent", "998"));
+        assertNull(compassTemplate.getResource("parent", "999"));
+
+        gps.stop();
+        gps.start();
+        JdbcAliasSnapshot aliasSnapshot = gpsDevice.getJdbcSnapshot().getAliasSnapshot("parent");
+        assertEquals(4, aliasSnapshot.getRowCount());
+        JdbcAliasRowSnapshot rowSnapshot = new JdbcAliasRowSnapshot();
+        rowSnapshot.addIdValue("1");
+        assertEquals(2, aliasSnapshot.getRow(rowSnapshot).getVersion(0));
+    }
+
+    public void testCompactFSPersisterDetectsCorruption() throws Exception {
+        File file = new File("target/compact-snapshot-corruption");
+        File logFile = new File(file.getPath() + ".log");
+        deleteCompactSnapshot(file.getPath());
+        CompactFSJdbcSnapshotPersister persister = new CompactFSJdbcSnapshotPersister(file.getPath());
+        persister.setCompactionFactor(100);
+        JdbcSnapshot snapshot = new JdbcSnapshot();
+        JdbcAliasSnapshot aliasSnapshot = new JdbcAliasSnapshot("parent");
+        aliasSnapshot.putRow(createRow("1", 1));
+        snapshot.putAliasSnapshot(aliasSnapshot);
+        persister.save(snapshot);
+
+        ArrayList<JdbcAliasRowSnapshot> changedRows = new ArrayList<JdbcAliasRowSnapshot>();
+        changedRows.add(createRow("2", 1));
+        persister.saveChanges("parent", changedRows, new ArrayList<JdbcAliasRowSnapshot>());
+        persister.commitChanges(snapshot);
+        assertEquals(2, persister.load().getAliasSnapshot("parent").getRowCount());
+
+        // flip the last byte of the changes log entry (part of its checksum)
+        corruptLastByte(logFile);
+        try {
+            persister.load();
+            fail("a corrupted changes log should fail the load");
+        } catch (JdbcGpsDeviceException e) {
+            // all is well
+        }
+        logFile.delete();
+
+        // flip the last byte of the snapshot file (part of its checksum)
+        corruptLastByte(file);
+        try {
+            persister.load();
+            fail("a corrupted snapshot file should fail the load");
+        } catch (JdbcGpsDeviceException e) {
+            // all is well
+        }
+        file.delete();
+    }
+
+    public void testRowSnapshotWithSeveralIdsAndVersions() {
+        JdbcAliasRowSnapshot row = new JdbcAliasRowSnapshot();
+        JdbcAliasRowSnapshot sameRow = new JdbcAliasRowSnapshot();
+        for (int i = 0; i < 5; i++) {
+            row.addIdValue("id" + i);
+            sameRow.addIdValue("id" + i);
+            row.addVersionValue(i);
+            sameRow.addVersionValue(i + 1);
+        }
+        assertEquals(5, row.getIdCount());
+        assertEquals(5, row.getIds().size());
+        assertEquals("id4", row.getIds().get(4));
+        assertEquals(5, row.getVersionCount());
+        assertEquals(4, row.getVersion(4));
+        assertEquals(row, sameRow);
+        assertEquals(row.hashCode(), sameRow.hashCode());
+        assertTrue(row.isOlderThan(sameRow));
+        assertFalse(sameRow.isOlderThan(row));
+    }
+
+    private JdbcAliasRowSnapshot createRow(String id, long version) {
+        JdbcAliasRowSnapshot row = new JdbcAliasRowSnapshot();
+        row.addIdValue(id);
+        row.addVersionValue(version);
+        return row;
+    }
+
+    private void deleteCompactSnapshot(String path) {
+        new File(path).delete();
+        new File(path + ".log").delete();
+        new File(path + ".tmp").delete();
+    }
+
+    private void corruptLastByte(File file) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+    }
 }
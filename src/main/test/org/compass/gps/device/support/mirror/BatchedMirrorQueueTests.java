@@ -0,0 +1,212 @@
+/*
+ * Copyright 2004-2009 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.compass.gps.device.support.mirror;
+
+import junit.framework.TestCase;
+import org.compass.core.Compass;
+import org.compass.core.CompassSession;
+import org.compass.core.CompassTransaction;
+import org.compass.core.config.CompassConfiguration;
+import org.compass.core.config.CompassEnvironment;
+import org.compass.gps.device.MockIndexGpsDeviceObject;
+
+/**
+ * @author kimchy
+ */
+public class BatchedMirrorQueueTests extends TestCase {
+
+    private Compass compass;
+
+    private BatchedMirrorQueue mirrorQueue;
+
+    protected void setUp() throws Exception {
+        CompassConfiguration conf = new CompassConfiguration();
+        conf.setSetting(CompassEnvironment.CONNECTION, "target/test-index");
+        conf.addClass(MockIndexGpsDeviceObject.class);
+        compass = conf.buildCompass();
+        compass.getSearchEngineIndexManager().deleteIndex();
+        compass.getSearchEngineIndexManager().createIndex();
+        mirrorQueue = new BatchedMirrorQueue();
+    }
+
+    protected void tearDown() throws Exception {
+        mirrorQueue.stop();
+        compass.close();
+    }
+
+    public void testMergeOperations() {
+        MirrorOperationBatch batch = new MirrorOperationBatch(mirrorQueue);
+        MockIndexGpsDeviceObject o1 = object(1, "first");
+        MockIndexGpsDeviceObject o2 = object(2, "second");
+        MockIndexGpsDeviceObject o3 = object(3, "third");
+        batch.add(operation(MirrorOperation.Type.CREATE, o1));
+        batch.add(operation(MirrorOperation.Type.SAVE, o1));
+        batch.add(operation(MirrorOperation.Type.SAVE, o1));
+        batch.add(operation(MirrorOperation.Type.CREATE, o2));
+        batch.add(operation(MirrorOperation.Type.DELETE, o2));
+        batch.add(operation(MirrorOperation.Type.SAVE, o3));
+        batch.add(operation(MirrorOperation.Type.DELETE, o3));
+        assertEquals(2, batch.size());
+        MirrorOperation[] operations = batch.getOperations().toArray(new MirrorOperation[2]);
+        assertEquals(MirrorOperation.Type.CREATE, operations[0].getType());
+        assertSame(o1, operations[0].getEntity());
+        assertEquals(MirrorOperation.Type.DELETE, operations[1].getType());
+        assertSame(o3, operations[1].getEntity());
+
+        MirrorOperation deleteThenCreate = operation(MirrorOperation.Type.DELETE, o1).merge(operation(MirrorOperation.Type.CREATE, o1));
+        assertEquals(MirrorOperation.Type.SAVE, deleteThenCreate.getType());
+    }
+
+    public void testBatchedMirroring() {
+        mirrorQueue.setBatchSize(50);
+        mirrorQueue.start(compass);
+
+        for (int tx = 0; tx < 10; tx++) {
+            MirrorOperationBatch batch = new MirrorOperationBatch(mirrorQueue);
+            for (int i = 0; i < 20; i++) {
+                long id = tx * 20 + i;
+                batch.add(operation(MirrorOperation.Type.CREATE, object(id, "value")));
+                batch.add(operation(MirrorOperation.Type.SAVE, object(id, "updated")));
+            }
+            batch.enqueue();
+        }
+        assertTrue(mirrorQueue.flush(10000));
+
+        assertEquals(200, mirrorQueue.getEnqueuedOperations());
+        assertEquals(200, mirrorQueue.getMergedOperations());
+        assertEquals(200, mirrorQueue.getAppliedOperations());
+        assertEquals(0, mirrorQueue.getFailedOperations());
+        assertTrue(mirrorQueue.getBatches() >= 4);
+        assertTrue(mirrorQueue.getBatches() < 200);
+        assertEquals(0, mirrorQueue.getQueueSize());
+        assertEquals(0, mirrorQueue.getLag());
+
+        CompassSession session = compass.openSession();
+        CompassTransaction tr = session.beginTransaction();
+        assertEquals(200, session.queryBuilder().matchAll().hits().length());
+        assertEquals(200, session.queryBuilder().term("value", "updated").hits().length());
+        tr.commit();
+        session.close();
+
+        MirrorOperationBatch batch = new MirrorOperationBatch(mirrorQueue);
+        for (long id = 0; id < 100; id++) {
+            batch.add(operation(MirrorOperation.Type.DELETE, object(id, "updated")));
+        }
+        batch.enqueue();
+        assertTrue(mirrorQueue.flush(10000));
+        assertEquals(100, count());
+    }
+
+    public void testFailedOperationDoesNotFailBatch() {
+        mirrorQueue.start(compass);
+        MirrorOperationBatch batch = new MirrorOperationBatch(mirrorQueue);
+        batch.add(operation(MirrorOperation.Type.CREATE, object(1, "value")));
+        MockIndexGpsDeviceObject noId = new MockIndexGpsDeviceObject();
+        noId.value = "value";
+        batch.add(new MirrorOperation(MirrorOperation.Type.CREATE, MirrorOperation.identityKey(noId), noId));
+        batch.add(operation(MirrorOperation.Type.CREATE, object(2, "value")));
+        batch.enqueue();
+        assertTrue(mirrorQueue.flush(10000));
+
+        assertEquals(2, mirrorQueue.getAppliedOperations());
+        assertEquals(1, mirrorQueue.getFailedOperations());
+        assertEquals(2, count());
+    }
+
+    public void testApplyOnCallingThreadWhenStopped() {
+        mirrorQueue.start(compass);
+        mirrorQueue.stop();
+        mirrorQueue.enqueue(operation(MirrorOperation.Type.CREATE, object(1, "value")));
+        assertEquals(0, mirrorQueue.getEnqueuedOperations());
+        assertEquals(1, mirrorQueue.getAppliedOperations());
+        assertEquals(1, mirrorQueue.getCallerRunsOperations());
+        assertEquals(0, mirrorQueue.getBatches());
+        assertEquals(0, mirrorQueue.getLastBatchSize());
+        assertEquals(1, count());
+    }
+
+    public void testFullQueueWaitsAndKeepsOrder() {
+        mirrorQueue.setCapacity(1);
+        mirrorQueue.setBatchSize(1);
+        mirrorQueue.setOfferTimeout(1);
+        mirrorQueue.start(compass);
+
+        MockIndexGpsDeviceObject o1 = object(1, "v0");
+        mirrorQueue.enqueue(operation(MirrorOperation.Type.CREATE, o1));
+        for (int i = 1; i <= 100; i++) {
+            mirrorQueue.enqueue(operation(MirrorOperation.Type.SAVE, object(1, "v" + i)));
+        }
+        mirrorQueue.enqueue(operation(MirrorOperation.Type.DELETE, object(1, "v100")));
+        mirrorQueue.enqueue(operation(MirrorOperation.Type.CREATE, object(2, "last")));
+        assertTrue(mirrorQueue.flush(10000));
+
+        assertEquals(103, mirrorQueue.getEnqueuedOperations());
+        assertEquals(103, mirrorQueue.getAppliedOperations());
+        assertEquals(0, mirrorQueue.getCallerRunsOperations());
+        assertEquals(0, mirrorQueue.getFailedOperations());
+        assertEquals(1, count());
+    }
+
+    public void testStopWhileEnqueuingDoesNotLoseOperations() throws Exception {
+        mirrorQueue.setCapacity(10);
+        mirrorQueue.setBatchSize(5);
+        mirrorQueue.setOfferTimeout(1);
+        mirrorQueue.start(compass);
+
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                for (long id = 0; id < 200; id++) {
+                    mirrorQueue.enqueue(operation(MirrorOperation.Type.CREATE, object(id, "value")));
+                }
+            }
+        });
+        producer.start();
+        while (mirrorQueue.getEnqueuedOperations() < 50) {
+            Thread.sleep(1);
+        }
+        mirrorQueue.stop();
+        producer.join(10000);
+        assertFalse(producer.isAlive());
+
+        assertEquals(200, mirrorQueue.getEnqueuedOperations() + mirrorQueue.getCallerRunsOperations());
+        assertEquals(200, mirrorQueue.getAppliedOperations());
+        assertEquals(0, mirrorQueue.getFailedOperations());
+        assertEquals(200, count());
+    }
+
+    private int count() {
+        CompassSession session = compass.openSession();
+        CompassTransaction tr = session.beginTransaction();
+        try {
+            return session.queryBuilder().matchAll().hits().length();
+        } finally {
+            tr.commit();
+            session.close();
+        }
+    }
+
+    private MirrorOperation operation(MirrorOperation.Type type, MockIndexGpsDeviceObject object) {
+        return new MirrorOperation(type, MirrorOperation.entityKey("a", object.id), object);
+    }
+
+    private MockIndexGpsDeviceObject object(long id, String value) {
+        MockIndexGpsDeviceObject object = new MockIndexGpsDeviceObject();
+        object.id = id;
+        object.value = value;
+        return object;
+    }
+}